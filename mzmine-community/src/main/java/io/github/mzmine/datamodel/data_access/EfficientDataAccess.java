@@ -31,9 +31,11 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A factory to get efficient data access to scans in RawDataFile and features in FeatureList.
@@ -110,6 +112,24 @@ public class EfficientDataAccess {
     };
   }
 
+  /**
+   * Access the chromatographic data of features in a subset of rows of a feature list sorted by
+   * scan ID (usually sorted by retention time). Used to process shards of a feature list in parallel,
+   * see {@link ParallelFeatureProcessor}.
+   *
+   * @param flist    target feature list. Loops through all features in dataFile
+   * @param type     defines the data accession type
+   * @param dataFile define the data file in an aligned feature list
+   * @param rows     the rows to loop over, a subset of the rows in flist
+   */
+  public static FeatureDataAccess of(FeatureList flist, FeatureDataType type,
+      @Nullable RawDataFile dataFile, @NotNull List<FeatureListRow> rows) {
+    return switch (type) {
+      case ONLY_DETECTED -> new FeatureDetectedDataAccess(flist, dataFile, rows);
+      case INCLUDE_ZEROS -> new FeatureFullDataAccess(flist, dataFile, rows);
+    };
+  }
+
   public static MobilogramDataAccess of(final IonMobilogramTimeSeries ionTrace,
       final MobilogramAccessType accessType) {
     return new MobilogramDataAccess(ionTrace, accessType);
@@ -90,12 +90,25 @@ public abstract class FeatureDataAccess implements IonTimeSeries<Scan> {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
+    this(flist, dataFile, flist.getRows());
+  }
+
+  /**
+   * Access the chromatographic data of features in a subset of rows of a feature list sorted by
+   * scan ID (usually sorted by retention time). Used to process a feature list in parallel with one
+   * data access per subset.
+   *
+   * @param flist    target feature list. Loops through all features in dataFile
+   * @param dataFile define the data file in an aligned feature list
+   * @param allRows  the rows to loop over, a subset of the rows in flist
+   */
+  protected FeatureDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      @NotNull List<FeatureListRow> allRows) {
     this.flist = flist;
     this.dataFile = dataFile;
 
     // set rows and number of features
     int totalFeatures = 0;
-    List<FeatureListRow> allRows = flist.getRows();
     // handle aligned flist
     if (flist.getNumberOfRawDataFiles() > 1) {
       if (dataFile != null) {
@@ -29,8 +29,10 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import java.util.Arrays;
 import java.util.List;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -78,7 +80,20 @@ public class FeatureFullDataAccess extends FeatureDataAccess {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureFullDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
-    super(flist, dataFile);
+    this(flist, dataFile, flist.getRows());
+  }
+
+  /**
+   * Access the chromatographic data of features in a subset of rows of a feature list. Full data
+   * access uses all scans of the whole chromatogram and adds zeros for missing data points.
+   *
+   * @param flist    target feature list. Loops through all features in dataFile
+   * @param dataFile define the data file in an aligned feature list
+   * @param rows     the rows to loop over, a subset of the rows in flist
+   */
+  protected FeatureFullDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      @NotNull List<FeatureListRow> rows) {
+    super(flist, dataFile, rows);
 
     // return all scans that were used to create the chromatograms in the first place
     int max = 0;
@@ -29,6 +29,7 @@ import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.*;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
 import io.github.mzmine.datamodel.impl.MobilityScanStorage;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
 import io.github.mzmine.datamodel.msms.MsMsInfo;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.util.ArrayUtils;
@@ -48,8 +49,8 @@ public class MobilityScanDataAccess implements MobilityScan {
   protected final int totalFrames;
 
   protected final List<Frame> eligibleFrames;
-  protected final double[] mzs;
-  protected final double[] intensities;
+  protected double[] mzs;
+  protected double[] intensities;
   protected final Map<Frame, Integer> frameIndexMap = new HashMap<>();
   private final ScanSelection selection;
   // current data
@@ -262,6 +263,12 @@ public class MobilityScanDataAccess implements MobilityScan {
       storage.getAllRawMobilityScanMzValues(mzs);
       storage.getAllRawMobilityScanIntensityValues(intensities);
     } else {
+      // mass lists detected on demand are not included in the initial array size
+      final int numPoints = storage.getMassListTotalNumPoints();
+      if (numPoints > mzs.length) {
+        mzs = new double[numPoints];
+        intensities = new double[numPoints];
+      }
       storage.getAllMassListMzValues(mzs);
       storage.getAllMassListIntensityValues(intensities);
     }
@@ -358,8 +365,11 @@ public class MobilityScanDataAccess implements MobilityScan {
     return switch (type) {
       case RAW -> frames.stream().mapToInt(Frame::getTotalMobilityScanRawDataPoints).max()
           .orElse(0);
-      case MASS_LIST -> frames.stream().mapToInt(Frame::getTotalMobilityScanMassListDataPoints).max()
-          .orElse(0);
+      // do not detect on demand mass lists of all frames just to get the size
+      case MASS_LIST -> frames.stream()
+          .filter(frame -> !(frame instanceof SimpleFrame simpleFrame)
+                           || !simpleFrame.getMobilityScanStorage().isMassListDetectionOnDemand())
+          .mapToInt(Frame::getTotalMobilityScanMassListDataPoints).max().orElse(0);
     };
   }
 
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.data_access;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.FeatureDataType;
+import io.github.mzmine.datamodel.featuredata.impl.IonSeriesArena;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.operations.AbstractTaskSubProcessor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Processes all features of a feature list in parallel. The rows are split into consecutive shards
+ * and each shard is processed by one worker with its own {@link FeatureDataAccess} and its own
+ * worker state, e.g., scratch arrays or an algorithm instance that is not thread safe. The
+ * {@link FeatureOperator} should only compute a result from the current feature data. All results
+ * are committed afterwards on the calling thread in the order of the rows, so that the feature list
+ * is only modified by one thread and the result does not depend on the number of threads.
+ *
+ * @param <W> the worker state, one instance per shard
+ * @param <R> the result of one feature
+ */
+public class ParallelFeatureProcessor<W, R> extends AbstractTaskSubProcessor {
+
+  /**
+   * minimum number of rows in one shard
+   */
+  private static final int MIN_SHARD_SIZE = 16;
+
+  private final FeatureList flist;
+  private final FeatureDataType type;
+  private final @Nullable RawDataFile dataFile;
+  private final Supplier<W> workerFactory;
+  private final FeatureOperator<W, R> operator;
+  private final BiConsumer<Feature, R> commit;
+  private final AtomicInteger processedFeatures = new AtomicInteger(0);
+  private int totalFeatures;
+
+  /**
+   * @param flist         target feature list
+   * @param type          defines the data accession type
+   * @param dataFile      define the data file in an aligned feature list, may be null
+   * @param workerFactory creates the worker state for each shard
+   * @param operator      computes the result for the current feature of a data access
+   * @param commit        applies the result of a feature, called in the order of the rows on the
+   *                      calling thread
+   * @param parentTask    processing stops if the parent task is canceled
+   */
+  public ParallelFeatureProcessor(@NotNull FeatureList flist, @NotNull FeatureDataType type,
+      @Nullable RawDataFile dataFile, @NotNull Supplier<W> workerFactory,
+      @NotNull FeatureOperator<W, R> operator, @NotNull BiConsumer<Feature, R> commit,
+      @Nullable Task parentTask) {
+    super(parentTask);
+    this.flist = flist;
+    this.type = type;
+    this.dataFile = dataFile;
+    this.workerFactory = workerFactory;
+    this.operator = operator;
+    this.commit = commit;
+  }
+
+  @Override
+  public void process() {
+    final List<FeatureListRow> rows = flist.getRows();
+    final int numShards = Math.max(1, Math.min(
+        Runtime.getRuntime().availableProcessors() * 4, rows.size() / MIN_SHARD_SIZE));
+    final int shardSize = (rows.size() + numShards - 1) / numShards;
+
+    final List<FeatureDataAccess> accesses = new ArrayList<>(numShards);
+    for (int i = 0; i < numShards; i++) {
+      final List<FeatureListRow> shard = rows.subList(Math.min(i * shardSize, rows.size()),
+          Math.min((i + 1) * shardSize, rows.size()));
+      accesses.add(EfficientDataAccess.of(flist, type, dataFile, shard));
+    }
+    totalFeatures = accesses.stream().mapToInt(FeatureDataAccess::getNumOfFeatures).sum();
+
+    // series created by the workers go to the ion series arena of the calling task
+    final IonSeriesArena arena = IonSeriesArena.current();
+    final List<List<ProcessedFeature<R>>> results = IntStream.range(0, numShards).parallel()
+        .mapToObj(i -> IonSeriesArena.callWith(arena, () -> processShard(accesses.get(i))))
+        .toList();
+
+    if (isCanceled()) {
+      return;
+    }
+
+    for (List<ProcessedFeature<R>> shardResults : results) {
+      for (ProcessedFeature<R> result : shardResults) {
+        commit.accept(result.feature(), result.result());
+      }
+    }
+  }
+
+  private List<ProcessedFeature<R>> processShard(FeatureDataAccess access) {
+    final W worker = workerFactory.get();
+    final List<ProcessedFeature<R>> results = new ArrayList<>(access.getNumOfFeatures());
+    while (access.hasNextFeature()) {
+      if (isCanceled()) {
+        return results;
+      }
+      final Feature feature = access.nextFeature();
+      results.add(new ProcessedFeature<>(feature, operator.apply(worker, access, feature)));
+      processedFeatures.getAndIncrement();
+    }
+    return results;
+  }
+
+  @Override
+  public @NotNull String getTaskDescription() {
+    return "Processing features of " + flist.getName() + ": " + processedFeatures.get() + "/"
+        + totalFeatures;
+  }
+
+  @Override
+  public double getFinishedPercentage() {
+    return totalFeatures == 0 ? 0 : processedFeatures.get() / (double) totalFeatures;
+  }
+
+  /**
+   * Computes the result for the current feature of the data access. Must not modify the feature
+   * list, changes are applied in the commit step.
+   *
+   * @param <W> the worker state of the current shard
+   * @param <R> the result type
+   */
+  @FunctionalInterface
+  public interface FeatureOperator<W, R> {
+
+    R apply(@NotNull W worker, @NotNull FeatureDataAccess access, @NotNull Feature feature);
+  }
+
+  private record ProcessedFeature<R>(Feature feature, R result) {
+
+  }
+}
@@ -29,8 +29,12 @@ import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.IonSeriesArena;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
 import io.github.mzmine.datamodel.featuredata.impl.SummedIntensityMobilitySeries;
 import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
 import io.github.mzmine.datamodel.features.types.numbers.AreaType;
 import io.github.mzmine.datamodel.features.types.numbers.AsymmetryFactorType;
 import io.github.mzmine.datamodel.features.types.numbers.FwhmType;
@@ -41,6 +45,7 @@ import io.github.mzmine.datamodel.features.types.numbers.TailingFactorType;
 import io.github.mzmine.modules.tools.qualityparameters.QualityParameters;
 import io.github.mzmine.util.ArrayUtils;
 import io.github.mzmine.util.DataPointUtils;
+import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.maths.CenterFunction;
 import io.github.mzmine.util.maths.CenterMeasure;
 import io.github.mzmine.util.maths.Weighting;
@@ -68,6 +73,11 @@ public class FeatureDataUtils {
 
   private static final Logger logger = Logger.getLogger(FeatureDataUtils.class.getName());
 
+  /**
+   * Feature data is compacted after filtering if fewer rows than this fraction were kept.
+   */
+  private static final double COMPACTION_MAX_KEPT_FRACTION = 0.5;
+
   /**
    * The Rt range of the series.
    *
@@ -357,6 +367,53 @@ public class FeatureDataUtils {
     return smallestDelta;
   }
 
+  /**
+   * Compacts the feature data if a filter removed most rows of a feature list whose series were
+   * stored in an {@link IonSeriesArena}. The kept series would otherwise keep all arena segments
+   * of the removed features alive.
+   *
+   * @param flist          the filtered feature list
+   * @param sourceStorage  the storage of the feature list the rows were taken from
+   * @param numRowsBefore  number of rows before filtering
+   * @return true if the feature data was compacted
+   */
+  public static boolean compactFeatureDataIfSparse(@NotNull ModularFeatureList flist,
+      @Nullable MemoryMapStorage sourceStorage, int numRowsBefore) {
+    final int numRows = flist.getNumberOfRows();
+    if (numRows == 0 || numRows >= numRowsBefore * COMPACTION_MAX_KEPT_FRACTION
+        || !IonSeriesArena.hasArenaData(sourceStorage)) {
+      return false;
+    }
+    compactFeatureData(flist);
+    return true;
+  }
+
+  /**
+   * Copies the ion series of all features to new arena segments of the feature list's storage.
+   * Segments that are only referenced by removed features are reclaimed afterwards. Values are
+   * not changed, so no dependent types are recalculated.
+   *
+   * @param flist the feature list
+   */
+  public static void compactFeatureData(@NotNull ModularFeatureList flist) {
+    final MemoryMapStorage storage = flist.getMemoryMapStorage();
+    if (storage == null) {
+      // in RAM, removed series are garbage collected
+      return;
+    }
+    final long bytesBefore = StorageUtils.getStoredBytes();
+    try (var _ = IonSeriesArena.open(storage)) {
+      flist.streamFeatures().forEach(feature -> {
+        final IonTimeSeries<? extends Scan> data = feature.getFeatureData();
+        if (data != null) {
+          feature.set(FeatureDataType.class, (IonTimeSeries<? extends Scan>) data.copy(storage));
+        }
+      });
+    }
+    logger.fine(() -> "Compacted feature data of %s to %d bytes".formatted(flist.getName(),
+        StorageUtils.getStoredBytes() - bytesBefore));
+  }
+
   private static void calculateQualityParameters(@NotNull ModularFeature feature) {
     float fwhm = QualityParameters.calculateFWHM(feature);
     if (!Float.isNaN(fwhm)) {
@@ -124,7 +124,7 @@ public class BuildingIonSeries implements IonSeries {
     }
 
     return new SimpleIonTimeSeries(storage, fmzs.toDoubleArray(), fintensities.toDoubleArray(),
-        fscans);
+        fscans, scans);
   }
 
   private Scan addDpToIonTimeSeries(final List<Scan> scans, final DoubleArrayList fmzs,
@@ -142,7 +142,7 @@ public class BuildingIonSeries implements IonSeries {
    */
   public IonTimeSeries<? extends Scan> toFullIonTimeSeries(@Nullable MemoryMapStorage storage,
       final List<? extends Scan> scans) {
-    return new SimpleIonTimeSeries(storage, mzs, intensities, scans);
+    return new SimpleIonTimeSeries(storage, mzs, intensities, scans, scans);
   }
 
   /**
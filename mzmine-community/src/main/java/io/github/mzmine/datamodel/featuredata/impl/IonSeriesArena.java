@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.featuredata.impl;
+
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Task scoped writer that appends the double values of all ion series stored to a
+ * {@link MemoryMapStorage} to large memory mapped segments and hands out read-only slices of them.
+ * An open arena is bound to the thread that opened it. While it is bound,
+ * {@link StorageUtils#storeValuesToDoubleBuffer} writes values for the arena's storage to the
+ * arena, so series constructors do not need to know about it. Other threads and tasks using the
+ * same storage are not affected. Worker threads of a task join the arena with
+ * {@link #callWith(IonSeriesArena, Supplier)}. This replaces millions of small synchronized
+ * allocations in the storage with one slice per array.
+ * <p>
+ * Segments are not registered in the storage and are unmapped once no series references them
+ * anymore. The full size of each segment is added to {@link StorageUtils#getStoredBytes()} when it
+ * is mapped. Use {@link io.github.mzmine.datamodel.featuredata.FeatureDataUtils#compactFeatureData}
+ * to move the series of a filtered feature list to new segments, so that the segments of removed
+ * features can be reclaimed.
+ *
+ * <pre>{@code
+ * try (var _ = IonSeriesArena.open(getMemoryMapStorage())) {
+ *   // create ion series
+ * }
+ * }</pre>
+ */
+public final class IonSeriesArena implements AutoCloseable {
+
+  private static final Logger logger = Logger.getLogger(IonSeriesArena.class.getName());
+
+  /**
+   * 64 MB per segment. Larger arrays are stored in the storage directly.
+   */
+  private static final int SEGMENT_DOUBLES = 1 << 23;
+  private static final int MAX_ARENA_DOUBLES = SEGMENT_DOUBLES / 8;
+
+  private static final ThreadLocal<IonSeriesArena> boundArena = new ThreadLocal<>();
+  /**
+   * Storages that had an arena. Compaction only reclaims space of series stored in an arena.
+   */
+  private static final Set<MemoryMapStorage> arenaStorages = Collections.synchronizedSet(
+      Collections.newSetFromMap(new WeakHashMap<>()));
+
+  private final MemoryMapStorage storage;
+  private final Thread owner;
+  // restored on close, arenas may be nested
+  private final IonSeriesArena previous;
+  private volatile boolean closed = false;
+
+  // guarded by this
+  private DoubleBuffer segment;
+  private DoubleBuffer readOnlySegment;
+  private int segmentPosition;
+  private int numSegments = 0;
+  private long storedValues = 0;
+
+  private IonSeriesArena(@NotNull MemoryMapStorage storage) {
+    this.storage = storage;
+    this.owner = Thread.currentThread();
+    this.previous = boundArena.get();
+  }
+
+  /**
+   * Opens a new arena for the storage and binds it to the current thread. Close it on the same
+   * thread after all series were created.
+   *
+   * @param storage the storage of the task, null if data is kept in RAM
+   * @return the arena or null if storage is null. try-with-resources accepts null resources.
+   */
+  @Nullable
+  public static IonSeriesArena open(@Nullable MemoryMapStorage storage) {
+    if (storage == null) {
+      return null;
+    }
+    arenaStorages.add(storage);
+    final IonSeriesArena arena = new IonSeriesArena(storage);
+    boundArena.set(arena);
+    return arena;
+  }
+
+  /**
+   * @return the arena bound to the current thread or null. Pass it to worker threads with
+   * {@link #callWith(IonSeriesArena, Supplier)}.
+   */
+  @Nullable
+  public static IonSeriesArena current() {
+    return boundArena.get();
+  }
+
+  /**
+   * Binds the arena to the current thread while the call runs. Used by worker threads of a task
+   * that opened the arena.
+   *
+   * @param arena the arena of the task, may be null
+   * @param call  the call that creates series
+   * @return the result of the call
+   */
+  public static <T> T callWith(@Nullable IonSeriesArena arena, @NotNull Supplier<T> call) {
+    final IonSeriesArena before = boundArena.get();
+    if (arena == before) {
+      return call.get();
+    }
+    bind(arena);
+    try {
+      return call.get();
+    } finally {
+      bind(before);
+    }
+  }
+
+  private static void bind(@Nullable IonSeriesArena arena) {
+    if (arena == null) {
+      boundArena.remove();
+    } else {
+      boundArena.set(arena);
+    }
+  }
+
+  /**
+   * @return the open arena of this storage bound to the current thread or null
+   */
+  @Nullable
+  static IonSeriesArena get(@NotNull MemoryMapStorage storage) {
+    final IonSeriesArena arena = boundArena.get();
+    return arena != null && !arena.closed && arena.storage == storage ? arena : null;
+  }
+
+  /**
+   * @return true if an arena was opened for this storage. Feature data of this storage may be
+   * reclaimed by compaction.
+   */
+  public static boolean hasArenaData(@Nullable MemoryMapStorage storage) {
+    return storage != null && arenaStorages.contains(storage);
+  }
+
+  /**
+   * Appends the values to the current segment.
+   *
+   * @return a read-only slice of the segment with the values
+   */
+  @NotNull
+  synchronized DoubleBuffer store(@NotNull double[] values) throws IOException {
+    if (values.length > MAX_ARENA_DOUBLES) {
+      final DoubleBuffer buffer = storage.storeData(values);
+      StorageUtils.addStoredBytes((long) values.length * Double.BYTES);
+      return buffer;
+    }
+    if (segment == null || SEGMENT_DOUBLES - segmentPosition < values.length) {
+      createSegment();
+    }
+    final int position = segmentPosition;
+    segment.put(position, values);
+    segmentPosition += values.length;
+    storedValues += values.length;
+    return readOnlySegment.slice(position, values.length);
+  }
+
+  private void createSegment() throws IOException {
+    final File file = FileAndPathUtil.createTempFile("mzmine", ".tmp");
+    final MappedByteBuffer mapped;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      mapped = raf.getChannel().map(MapMode.READ_WRITE, 0, (long) SEGMENT_DOUBLES * Double.BYTES);
+    }
+    // the mapping stays valid, deleting the file now releases the disk space with the mapping.
+    // not possible on windows while the file is mapped
+    if (!file.delete()) {
+      file.deleteOnExit();
+    }
+    segment = mapped.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    readOnlySegment = segment.asReadOnlyBuffer();
+    segmentPosition = 0;
+    numSegments++;
+    StorageUtils.addStoredBytes((long) SEGMENT_DOUBLES * Double.BYTES);
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    if (Thread.currentThread() != owner) {
+      throw new IllegalStateException(
+          "Ion series arena must be closed by the thread that opened it");
+    }
+    closed = true;
+    bind(previous);
+    logger.finest(() -> "Closed ion series arena with %d values in %d segments".formatted(
+        storedValues, numSegments));
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.featuredata.impl;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read-only list of scans that stores the index of the first scan in a sorted list of base scans
+ * and the offsets of all other scans instead of one scan reference per data point. The base scans
+ * are usually the selected scans of the feature list, e.g., the MS1 scans of a DDA file, so that
+ * most chromatograms are consecutive and need no offsets at all. Other offsets are packed with 8,
+ * 16 or 32 bits per scan, depending on the largest offset, and written to the
+ * {@link MemoryMapStorage} or kept in a heap buffer if there is no storage.
+ */
+final class ScanIndexList extends AbstractList<Scan> implements RandomAccess {
+
+  private final List<? extends Scan> baseScans;
+  private final int firstIndex;
+  private final int size;
+  /**
+   * packed offsets to the first index, null if all scans are consecutive
+   */
+  private final @Nullable IntBuffer offsets;
+  /**
+   * 8, 16 or 32
+   */
+  private final int bitsPerOffset;
+
+  private ScanIndexList(List<? extends Scan> baseScans, int firstIndex, int size,
+      @Nullable IntBuffer offsets, int bitsPerOffset) {
+    this.baseScans = baseScans;
+    this.firstIndex = firstIndex;
+    this.size = size;
+    this.offsets = offsets;
+    this.bitsPerOffset = bitsPerOffset;
+  }
+
+  /**
+   * @param storage   packed offsets of non-consecutive scans are stored here, or on the heap if
+   *                  null.
+   * @param baseScans scans sorted by scan number to index into, usually the selected scans of the
+   *                  feature list.
+   *                  If null or if the scans are not part of them, the scans of the raw data file
+   *                  are used.
+   * @return a compact list of the scans or the original list, if the scans are not a sorted
+   * sub-list of the base scans or the scans of the raw data file.
+   */
+  static <T extends Scan> List<T> compact(@Nullable MemoryMapStorage storage,
+      @NotNull List<T> scans, @Nullable List<? extends Scan> baseScans) {
+    if (scans.size() < 2 || scans instanceof ScanIndexList) {
+      return scans;
+    }
+    if (baseScans != null) {
+      final List<T> compact = compact(storage, scans, baseScans);
+      if (compact != scans) {
+        return compact;
+      }
+    }
+    final RawDataFile file = scans.getFirst().getDataFile();
+    if (file == null || file.getScans() == baseScans) {
+      return scans;
+    }
+    return compact(storage, scans, file.getScans());
+  }
+
+  /**
+   * @return the base scans if this list indexes into them. Used to keep the same base for sub
+   * series.
+   */
+  static @Nullable List<? extends Scan> getBaseScans(@NotNull List<? extends Scan> scans) {
+    return scans instanceof ScanIndexList list ? list.baseScans : null;
+  }
+
+  private static <T extends Scan> List<T> compact(@Nullable MemoryMapStorage storage,
+      @NotNull List<T> scans, @NotNull List<? extends Scan> baseScans) {
+    final Scan first = scans.getFirst();
+    final int firstIndex = Collections.binarySearch((List<Scan>) baseScans, first);
+    if (firstIndex < 0 || baseScans.get(firstIndex) != first) {
+      return scans;
+    }
+
+    // walk forward through the base scans, scans must be sorted
+    final int[] offsets = new int[scans.size()];
+    boolean consecutive = true;
+    int index = firstIndex;
+    for (int i = 1; i < scans.size(); i++) {
+      final Scan scan = scans.get(i);
+      do {
+        index++;
+      } while (index < baseScans.size() && baseScans.get(index) != scan
+               && baseScans.get(index).compareTo(scan) < 0);
+      if (index >= baseScans.size() || baseScans.get(index) != scan) {
+        return scans;
+      }
+      offsets[i] = index - firstIndex;
+      consecutive &= offsets[i] == i;
+    }
+
+    if (consecutive) {
+      return (List<T>) new ScanIndexList(baseScans, firstIndex, scans.size(), null, 32);
+    }
+    final int maxOffset = offsets[offsets.length - 1];
+    final int bitsPerOffset = maxOffset <= 0xFF ? 8 : maxOffset <= 0xFFFF ? 16 : 32;
+    return (List<T>) new ScanIndexList(baseScans, firstIndex, scans.size(),
+        StorageUtils.storeValuesToIntBuffer(storage, pack(offsets, bitsPerOffset)),
+        bitsPerOffset);
+  }
+
+  /**
+   * Packs the offsets into ints, lowest bits first.
+   */
+  static int[] pack(int[] offsets, int bitsPerOffset) {
+    if (bitsPerOffset == 32) {
+      return offsets;
+    }
+    final int perInt = 32 / bitsPerOffset;
+    final int[] packed = new int[(offsets.length + perInt - 1) / perInt];
+    for (int i = 0; i < offsets.length; i++) {
+      packed[i / perInt] |= offsets[i] << ((i % perInt) * bitsPerOffset);
+    }
+    return packed;
+  }
+
+  @Override
+  public Scan get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return baseScans.get(firstIndex + getOffset(index));
+  }
+
+  private int getOffset(int index) {
+    if (offsets == null) {
+      return index;
+    }
+    return switch (bitsPerOffset) {
+      case 8 -> (offsets.get(index >> 2) >>> ((index & 3) << 3)) & 0xFF;
+      case 16 -> (offsets.get(index >> 1) >>> ((index & 1) << 4)) & 0xFFFF;
+      default -> offsets.get(index);
+    };
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the bits per stored offset or 0 if all scans are consecutive
+   */
+  int getBitsPerOffset() {
+    return offsets == null ? 0 : bitsPerOffset;
+  }
+}
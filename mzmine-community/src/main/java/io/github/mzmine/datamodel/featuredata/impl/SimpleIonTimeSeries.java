@@ -66,10 +66,27 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
    * @param storage         may be null if forceStoreInRam is true
    * @param mzValues
    * @param intensityValues
-   * @param scans
+   * @param scans           stored as indices into the scans of the raw data file if they are a
+   *                        sorted sub-list of them
    */
   public SimpleIonTimeSeries(@Nullable MemoryMapStorage storage, @NotNull double[] mzValues,
       @NotNull double[] intensityValues, @NotNull List<? extends Scan> scans) {
+    this(storage, mzValues, intensityValues, scans, null);
+  }
+
+  /**
+   * @param storage         may be null if forceStoreInRam is true
+   * @param mzValues
+   * @param intensityValues
+   * @param scans           stored as indices into the selected scans if they are a sorted sub-list
+   *                        of them
+   * @param selectedScans   the scans the series was built from, e.g., the selected scans of the
+   *                        feature list. If null, the scans of the raw data file are used. Must
+   *                        not be modified afterwards.
+   */
+  public SimpleIonTimeSeries(@Nullable MemoryMapStorage storage, @NotNull double[] mzValues,
+      @NotNull double[] intensityValues, @NotNull List<? extends Scan> scans,
+      @Nullable List<? extends Scan> selectedScans) {
     if (mzValues.length != intensityValues.length || mzValues.length != scans.size()) {
       throw new IllegalArgumentException("Length of mz, intensity and/or scans does not match.");
     }
@@ -80,7 +97,8 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
       }
     }
 
-    this.scans = scans;
+    // index based list instead of one scan reference per data point
+    this.scans = ScanIndexList.compact(storage, scans, selectedScans);
 
     this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzValues);
     this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensityValues);
@@ -156,7 +174,8 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
       intensities[i] = getIntensity(sindex);
     }
 
-    return new SimpleIonTimeSeries(storage, mzs, intensities, subset);
+    return new SimpleIonTimeSeries(storage, mzs, intensities, subset,
+        ScanIndexList.getBaseScans(scans));
   }
 
   @Override
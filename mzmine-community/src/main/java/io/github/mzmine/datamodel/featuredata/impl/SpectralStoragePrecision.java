@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.featuredata.impl;
+
+/**
+ * Precision of spectral data (m/z and intensity values of scans, mass lists and mobility scans)
+ * written to the {@link io.github.mzmine.util.MemoryMapStorage}. Data kept in RAM without a
+ * storage is always kept as doubles.
+ */
+public enum SpectralStoragePrecision {
+
+  /**
+   * m/z and intensity values as 64 bit doubles (lossless)
+   */
+  DOUBLE,
+  /**
+   * intensities as 32 bit floats and m/z values as 32 bit logarithmic steps relative to the
+   * smallest m/z of each spectrum, accurate to a configurable ppb. Halves the size of the temporary
+   * files.
+   */
+  COMPACT;
+
+  @Override
+  public String toString() {
+    return switch (this) {
+      case DOUBLE -> "Double (lossless)";
+      case COMPACT -> "Compact (float intensities, ppb m/z)";
+    };
+  }
+
+  /**
+   * Apply this option to all spectral data stored from now on.
+   *
+   * @param mzPrecisionPpb the maximum relative m/z error in ppb for {@link #COMPACT}
+   */
+  public void enforce(double mzPrecisionPpb) {
+    StorageUtils.setSpectralStoragePrecision(this, mzPrecisionPpb);
+  }
+}
@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -48,6 +49,54 @@ import org.jetbrains.annotations.Nullable;
  */
 public class StorageUtils {
 
+  /**
+   * Bytes written to a {@link MemoryMapStorage} through this class and bytes mapped by
+   * {@link IonSeriesArena} segments since the start of mzmine. Used to profile the temporary
+   * storage footprint of processing steps.
+   */
+  private static final LongAdder storedBytes = new LongAdder();
+
+  /**
+   * @return the total number of bytes written to any {@link MemoryMapStorage} via this class or
+   * mapped by ion series arenas. Take the difference of two calls to measure the bytes written in
+   * between.
+   */
+  public static long getStoredBytes() {
+    return storedBytes.sum();
+  }
+
+  /**
+   * Adds memory mapped bytes that were not written through this class, e.g., arena segments.
+   */
+  static void addStoredBytes(long bytes) {
+    storedBytes.add(bytes);
+  }
+
+  private static volatile SpectralStoragePrecision spectralStoragePrecision =
+      SpectralStoragePrecision.DOUBLE;
+  private static volatile double mzStoragePrecisionPpb = 10d;
+
+  /**
+   * Sets the precision for spectral data stored via {@link #storeMzValues(MemoryMapStorage,
+   * double[])} and {@link #storeIntensityValues(MemoryMapStorage, double[])}. Only applies to new
+   * data.
+   *
+   * @param mzPrecisionPpb maximum relative error of stored m/z values in ppb, only used for
+   *                       {@link SpectralStoragePrecision#COMPACT}.
+   */
+  public static void setSpectralStoragePrecision(@NotNull SpectralStoragePrecision precision,
+      double mzPrecisionPpb) {
+    if (!(mzPrecisionPpb > 0)) {
+      throw new IllegalArgumentException("m/z precision must be > 0 ppb");
+    }
+    spectralStoragePrecision = precision;
+    mzStoragePrecisionPpb = mzPrecisionPpb;
+  }
+
+  public static SpectralStoragePrecision getSpectralStoragePrecision() {
+    return spectralStoragePrecision;
+  }
+
   public static <T> List<double[][]> mapTo2dDoubleArrayList(List<T> objects,
       Function<T, double[]> firstDimension, Function<T, double[]> secondDimension) {
     return objects.stream().<double[][]>mapMulti((scan, c) -> {
@@ -158,6 +207,65 @@ public class StorageUtils {
     return basePeakIndices;
   }
 
+  /**
+   * Stores m/z values in the current {@link SpectralStoragePrecision}. Values kept in RAM
+   * (storage is null) are always wrapped as doubles.
+   * <p>
+   * {@link SpectralStoragePrecision#COMPACT} stores unsigned 32 bit steps on a logarithmic scale
+   * relative to the smallest value. Each step is a factor of {@code 1 + ppb * 1e-9}, so the
+   * relative error of every value is below half the configured ppb, independent of the m/z. 32 bit
+   * cover a ratio of max / min of e^42 at 10 ppb. Arrays that span a wider ratio or contain values
+   * <= 0 are stored as doubles.
+   */
+  @NotNull
+  public static StoredDoubleValues storeMzValues(@Nullable final MemoryMapStorage storage,
+      @NotNull final double[] values) {
+    if (storage == null || values.length == 0
+        || spectralStoragePrecision == SpectralStoragePrecision.DOUBLE) {
+      return StoredDoubleValues.of(storeValuesToDoubleBuffer(storage, values));
+    }
+
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (final double value : values) {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+    final double logStep = Math.log1p(mzStoragePrecisionPpb * 1E-9);
+    // also catches NaN and infinite values
+    if (!(min > 0) || !(max < Double.POSITIVE_INFINITY)
+        || Math.log(max / min) / logStep >= 0xFFFFFFFFL) {
+      return StoredDoubleValues.of(storeValuesToDoubleBuffer(storage, values));
+    }
+
+    final int[] steps = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      steps[i] = (int) Math.round(Math.log(values[i] / min) / logStep);
+    }
+    return new StoredDoubleValues.OfLogQuantized(storeValuesToIntBuffer(storage, steps), min,
+        logStep);
+  }
+
+  /**
+   * Stores intensity values in the current {@link SpectralStoragePrecision}, as 32 bit floats for
+   * {@link SpectralStoragePrecision#COMPACT}. Values kept in RAM (storage is null) are always
+   * wrapped as doubles.
+   */
+  @NotNull
+  public static StoredDoubleValues storeIntensityValues(@Nullable final MemoryMapStorage storage,
+      @NotNull final double[] values) {
+    if (storage == null || values.length == 0
+        || spectralStoragePrecision == SpectralStoragePrecision.DOUBLE) {
+      return StoredDoubleValues.of(storeValuesToDoubleBuffer(storage, values));
+    }
+
+    final float[] floats = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floats[i] = (float) values[i];
+    }
+    return new StoredDoubleValues.OfFloats(storeValuesToFloatBuffer(storage, floats));
+  }
+
   /**
    * Stores the given array into a double buffer.
    *
@@ -178,7 +286,14 @@ public class StorageUtils {
     DoubleBuffer buffer;
     if (storage != null) {
       try {
-        buffer = storage.storeData(values);
+        // tasks may collect all their series in large segments. The arena counts its segments
+        final IonSeriesArena arena = IonSeriesArena.get(storage);
+        if (arena != null) {
+          buffer = arena.store(values);
+        } else {
+          buffer = storage.storeData(values);
+          storedBytes.add((long) values.length * Double.BYTES);
+        }
       } catch (IOException e) {
         e.printStackTrace();
         buffer = DoubleBuffer.wrap(values);
@@ -210,6 +325,7 @@ public class StorageUtils {
     if (storage != null) {
       try {
         buffer = storage.storeData(values);
+        storedBytes.add((long) values.length * Float.BYTES);
       } catch (IOException e) {
         e.printStackTrace();
         buffer = FloatBuffer.wrap(values);
@@ -238,6 +354,7 @@ public class StorageUtils {
     if (storage != null) {
       try {
         buffer = storage.storeData(values);
+        storedBytes.add((long) values.length * Integer.BYTES);
       } catch (IOException e) {
         e.printStackTrace();
         buffer = IntBuffer.wrap(values);
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.featuredata.impl;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Random access to double values that were stored by {@link StorageUtils}, either in full double
+ * precision or in one of the compact encodings selected by {@link SpectralStoragePrecision}. All
+ * implementations provide constant time access to single values.
+ */
+public sealed interface StoredDoubleValues permits StoredDoubleValues.OfDoubles,
+    StoredDoubleValues.OfFloats, StoredDoubleValues.OfLogQuantized {
+
+  StoredDoubleValues EMPTY = new OfDoubles(DoubleBuffer.wrap(new double[0]));
+
+  static StoredDoubleValues of(@NotNull DoubleBuffer buffer) {
+    return new OfDoubles(buffer);
+  }
+
+  /**
+   * @return the number of stored values
+   */
+  int size();
+
+  double get(int index);
+
+  /**
+   * Absolute bulk get, same as {@link DoubleBuffer#get(int, double[], int, int)}.
+   */
+  void get(int index, double[] dst, int offset, int length);
+
+  /**
+   * 64 bit doubles, lossless.
+   */
+  record OfDoubles(@NotNull DoubleBuffer buffer) implements StoredDoubleValues {
+
+    @Override
+    public int size() {
+      return buffer.limit();
+    }
+
+    @Override
+    public double get(int index) {
+      return buffer.get(index);
+    }
+
+    @Override
+    public void get(int index, double[] dst, int offset, int length) {
+      buffer.get(index, dst, offset, length);
+    }
+  }
+
+  /**
+   * 32 bit floats, used for intensities. Instruments record intensities in float precision or
+   * below, so no information is lost for raw data.
+   */
+  record OfFloats(@NotNull FloatBuffer buffer) implements StoredDoubleValues {
+
+    @Override
+    public int size() {
+      return buffer.limit();
+    }
+
+    @Override
+    public double get(int index) {
+      return buffer.get(index);
+    }
+
+    @Override
+    public void get(int index, double[] dst, int offset, int length) {
+      for (int i = 0; i < length; i++) {
+        dst[offset + i] = buffer.get(index + i);
+      }
+    }
+  }
+
+  /**
+   * Unsigned 32 bit steps on a logarithmic scale relative to a base value. Every step is a constant
+   * factor, so the relative error is the same for low and high values. The fixed width keeps random
+   * access in constant time, which a variable length encoding would not.
+   *
+   * @param steps   unsigned multiples of logStep, value = base * exp(steps * logStep)
+   * @param base    the smallest stored value
+   * @param logStep the natural logarithm of the step factor, the relative error is at most about
+   *                logStep / 2
+   */
+  record OfLogQuantized(@NotNull IntBuffer steps, double base, double logStep) implements
+      StoredDoubleValues {
+
+    @Override
+    public int size() {
+      return steps.limit();
+    }
+
+    @Override
+    public double get(int index) {
+      return base * Math.exp(Integer.toUnsignedLong(steps.get(index)) * logStep);
+    }
+
+    @Override
+    public void get(int index, double[] dst, int offset, int length) {
+      for (int i = 0; i < length; i++) {
+        dst[offset + i] = base * Math.exp(Integer.toUnsignedLong(steps.get(index + i)) * logStep);
+      }
+    }
+  }
+}
@@ -98,7 +98,8 @@ public class ModularFeature implements Feature, ModularDataModel {
     //
     map.addListener((MapChangeListener<? super DataType, ? super Object>) change -> {
       if (change.wasAdded()) {
-        flist.addFeatureType(change.getKey());
+        // use the current feature list, features may be transferred to another list
+        this.flist.addFeatureType(change.getKey());
       }
     });
   }
@@ -40,6 +40,7 @@ import io.github.mzmine.datamodel.features.types.modifiers.GraphicalColumType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
 import io.github.mzmine.datamodel.features.types.tasks.NodeGenerationThread;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestCache;
 import io.github.mzmine.modules.io.projectload.CachedIMSFrame;
 import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
 import io.github.mzmine.project.ProjectService;
@@ -48,6 +49,7 @@ import io.github.mzmine.util.CorrelationGroupingUtils;
 import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.scans.MergedFragmentScanCache;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -63,12 +65,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import javafx.collections.ObservableSet;
@@ -114,6 +118,12 @@ public class ModularFeatureList implements FeatureList {
   private final ObservableList<FeatureListAppliedMethod> descriptionOfAppliedTasks;
 
   private final R2RNetworkingMaps r2rNetworkingMaps = new R2RNetworkingMaps();
+  private final MergedFragmentScanCache mergedFragmentScanCache = new MergedFragmentScanCache();
+  private final RowSignificanceTestCache rowSignificanceTestCache = new RowSignificanceTestCache();
+  /**
+   * Incremented on every change of the row list
+   */
+  private final AtomicLong rowsModificationCount = new AtomicLong();
 
   @NotNull
   private String nameProperty = "";
@@ -154,6 +164,9 @@ public class ModularFeatureList implements FeatureList {
   }
 
   private void addDefaultListeners() {
+    featureListRows.addListener(
+        (ListChangeListener<? super FeatureListRow>) _ -> rowsModificationCount.incrementAndGet());
+
     addFeatureTypeListener(new FeatureDataType(), (dataModel, type, oldValue, newValue) -> {
       // check feature data for graphical columns
       DataTypeUtils.applyFeatureSpecificGraphicalTypes((ModularFeature) dataModel);
@@ -759,6 +772,29 @@ public class ModularFeatureList implements FeatureList {
     return r2rNetworkingMaps;
   }
 
+  /**
+   * @return the merged fragment spectra of rows in this list, use
+   * {@link MergedFragmentScanCache#clear()} to release them
+   */
+  public MergedFragmentScanCache getMergedFragmentScanCache() {
+    return mergedFragmentScanCache;
+  }
+
+  /**
+   * @return the results of significance tests on the rows of this list
+   */
+  public RowSignificanceTestCache getRowSignificanceTestCache() {
+    return rowSignificanceTestCache;
+  }
+
+  /**
+   * @return a counter that changes whenever rows are added, removed or replaced. Used to detect
+   * outdated results that were computed for the rows of this list.
+   */
+  public long getRowsModificationCount() {
+    return rowsModificationCount.get();
+  }
+
   @Override
   public @NotNull Map<DataType<?>, List<DataTypeValueChangeListener<?>>> getFeatureTypeChangeListeners() {
     return featureTypeListeners;
@@ -821,6 +857,77 @@ public class ModularFeatureList implements FeatureList {
     return flist;
   }
 
+  /**
+   * Creates a new feature list that takes over all rows and features of this feature list instead
+   * of copying them. This saves the time and memory of a deep copy, but all rows and features are
+   * moved to the new list. Only use this if this feature list is discarded afterwards, e.g., if it
+   * is removed from the project.
+   *
+   * @param title the new title
+   * @return the new feature list with all rows of this list
+   */
+  public ModularFeatureList createTransferredCopy(String title,
+      @Nullable MemoryMapStorage storage) {
+    return createTransferredCopy(title, storage, getRows());
+  }
+
+  /**
+   * Creates a new feature list that takes over the given rows and their features instead of
+   * copying them. Only use this if this feature list is discarded afterwards, e.g., if it is removed
+   * from the project.
+   *
+   * @param title the new title
+   * @param rows  rows of this list that are moved to the new list
+   * @return the new feature list with the given rows
+   */
+  public ModularFeatureList createTransferredCopy(String title, @Nullable MemoryMapStorage storage,
+      @NotNull Collection<? extends FeatureListRow> rows) {
+    ModularFeatureList flist = new ModularFeatureList(title, storage, getRawDataFiles());
+    flist.transferRows(this, rows);
+
+    // Load previous applied methods
+    for (FeatureListAppliedMethod proc : this.getAppliedMethods()) {
+      flist.addDescriptionOfAppliedTask(proc);
+    }
+
+    selectedScans.forEach(flist::setSelectedScans);
+    return flist;
+  }
+
+  /**
+   * Moves rows and their features from another feature list to this feature list without copying
+   * them. The rows and features are assigned to this list and should not be used in the source
+   * list afterwards, so only use this if the source list is discarded.
+   *
+   * @param source the feature list that currently contains the rows, with the same raw data files
+   * @param rows   rows of the source list
+   */
+  public void transferRows(@NotNull ModularFeatureList source,
+      @NotNull Collection<? extends FeatureListRow> rows) {
+    if (!getRawDataFiles().containsAll(source.getRawDataFiles())) {
+      throw new IllegalArgumentException(
+          "Cannot transfer rows of feature list " + source.getName() + " with other data files");
+    }
+    // types first, so that row bindings are only registered once and not applied to all rows.
+    // row values are already calculated by the same bindings in the source list
+    addRowType(source.getRowTypes());
+    addFeatureType(source.getFeatureTypes());
+
+    final List<ModularFeatureListRow> transferred = new ArrayList<>(rows.size());
+    for (FeatureListRow row : rows) {
+      if (!(row instanceof ModularFeatureListRow modularRow)) {
+        throw new IllegalArgumentException(
+            "Can not add non-modular feature list row to modular feature list");
+      }
+      modularRow.setFeatureList(this);
+      for (ModularFeature feature : modularRow.getFilesFeatures().values()) {
+        feature.setFeatureList(this);
+      }
+      transferred.add(modularRow);
+    }
+    featureListRows.addAll(transferred);
+  }
+
   @Nullable
   public MemoryMapStorage getMemoryMapStorage() {
     return memoryMapStorage;
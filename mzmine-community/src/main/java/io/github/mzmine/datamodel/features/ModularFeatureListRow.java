@@ -123,7 +123,8 @@ public class ModularFeatureListRow implements FeatureListRow {
 
     map.addListener((MapChangeListener<? super DataType, ? super Object>) change -> {
       if (change.wasAdded()) {
-        flist.addRowType(change.getKey());
+        // use the current feature list, rows may be transferred to another list
+        this.flist.addRowType(change.getKey());
       }
     });
 
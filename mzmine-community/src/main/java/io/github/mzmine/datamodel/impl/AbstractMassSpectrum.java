@@ -29,9 +29,8 @@ import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.MassSpectrumType;
-import io.github.mzmine.util.DataPointUtils;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues;
 import io.github.mzmine.util.scans.ScanUtils;
-import java.nio.DoubleBuffer;
 import java.util.Iterator;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -52,15 +51,15 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
 
   protected synchronized void updateMzRangeAndTICValues() {
 
-    final DoubleBuffer mzValues = getMzValues();
-    final DoubleBuffer intensityValues = getIntensityValues();
+    final StoredDoubleValues mzValues = getMzValues();
+    final StoredDoubleValues intensityValues = getIntensityValues();
 
     assert mzValues != null;
     assert intensityValues != null;
-    assert mzValues.limit() == intensityValues.limit();
+    assert mzValues.size() == intensityValues.size();
 
 
-    if (mzValues.limit() == 0) {
+    if (mzValues.size() == 0) {
       totalIonCurrent = 0.0;
       mzRange = null;
       basePeakIndex = null;
@@ -72,7 +71,7 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
     double lastMz = mzValues.get(0);
     double maxIntensity = intensityValues.get(0);
     totalIonCurrent = maxIntensity;
-    for (int i = 1; i < mzValues.limit(); i++) {
+    for (int i = 1; i < mzValues.size(); i++) {
 
       // Check the order of the m/z values
       double mz = mzValues.get(i);
@@ -93,7 +92,7 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
       lastMz = mz;
     }
     // set range after checking the order
-    mzRange = Range.closed(mzValues.get(0), mzValues.get(mzValues.limit() - 1));
+    mzRange = Range.closed(mzValues.get(0), mzValues.get(mzValues.size() - 1));
   }
 
 
@@ -102,7 +101,7 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
    */
   @Override
   public int getNumberOfDataPoints() {
-    return getMzValues().limit();
+    return getMzValues().size();
   }
 
   /**
@@ -133,9 +132,8 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
   @Override
   public MassSpectrumType getSpectrumType() {
     if (spectrumType == null) {
-      spectrumType = ScanUtils.detectSpectrumType(
-          DataPointUtils.getDoubleBufferAsArray(getMzValues()),
-          DataPointUtils.getDoubleBufferAsArray(getIntensityValues()));
+      spectrumType = ScanUtils.detectSpectrumType(getMzValues(new double[0]),
+          getIntensityValues(new double[0]));
     }
 
     return spectrumType;
@@ -175,9 +173,9 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
     }
   }
 
-  abstract DoubleBuffer getMzValues();
+  abstract StoredDoubleValues getMzValues();
 
-  abstract DoubleBuffer getIntensityValues();
+  abstract StoredDoubleValues getIntensityValues();
 
   @Override
   public Iterator<DataPoint> iterator() {
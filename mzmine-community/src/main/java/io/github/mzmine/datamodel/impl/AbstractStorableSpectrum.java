@@ -27,6 +27,7 @@ package io.github.mzmine.datamodel.impl;
 
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
@@ -44,8 +45,8 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
   public static final DoubleBuffer EMPTY_BUFFER = DoubleBuffer.wrap(new double[0]);
   public static final FloatBuffer EMPTY_FLOAT_BUFFER = FloatBuffer.wrap(new float[0]);
   private static final Logger logger = Logger.getLogger(AbstractStorableSpectrum.class.getName());
-  protected DoubleBuffer mzValues;
-  protected DoubleBuffer intensityValues;
+  protected StoredDoubleValues mzValues;
+  protected StoredDoubleValues intensityValues;
 
   /**
    * Note: mz and intensity values for a scan shall only be set once and are enforced to be
@@ -73,8 +74,8 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
           "%s is null and the other not".formatted(mzValues == null ? "mzs" : "intensities"));
     } else if (mzValues != null) {
       assert mzValues.limit() == intensityValues.limit();
-      this.mzValues = mzValues;
-      this.intensityValues = intensityValues;
+      this.mzValues = StoredDoubleValues.of(mzValues);
+      this.intensityValues = StoredDoubleValues.of(intensityValues);
       //todo transfer checks
       onDataChangedEvent();
     }
@@ -100,8 +101,9 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     SimpleSpectralArrays sorted = DataPointUtils.ensureSortingMzAscendingDefault(
         new SimpleSpectralArrays(mzValues, intensityValues));
 
-    this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, sorted.mzs());
-    this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, sorted.intensities());
+    // precision depends on the global SpectralStoragePrecision
+    this.mzValues = StorageUtils.storeMzValues(storage, sorted.mzs());
+    this.intensityValues = StorageUtils.storeIntensityValues(storage, sorted.intensities());
     onDataChangedEvent();
   }
 
@@ -109,17 +111,17 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     updateMzRangeAndTICValues();
   }
 
-  DoubleBuffer getMzValues() {
+  StoredDoubleValues getMzValues() {
     if (mzValues == null) {
-      return EMPTY_BUFFER;
+      return StoredDoubleValues.EMPTY;
     } else {
       return mzValues;
     }
   }
 
-  DoubleBuffer getIntensityValues() {
+  StoredDoubleValues getIntensityValues() {
     if (intensityValues == null) {
-      return EMPTY_BUFFER;
+      return StoredDoubleValues.EMPTY;
     } else {
       return intensityValues;
     }
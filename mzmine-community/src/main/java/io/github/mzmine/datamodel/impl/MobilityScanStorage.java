@@ -30,15 +30,19 @@ import io.github.mzmine.datamodel.MassList;
 import io.github.mzmine.datamodel.MobilityScan;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues;
 import io.github.mzmine.datamodel.impl.masslist.StoredMobilityScanMassList;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.ScanUtils;
+import java.lang.ref.WeakReference;
 import java.nio.DoubleBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -52,10 +56,30 @@ import org.jetbrains.annotations.Nullable;
  */
 public class MobilityScanStorage {
 
+  /**
+   * Upper bound for the mass lists that were detected on demand and are kept in memory, in bytes
+   * of all frames. The least recently used frames are released first and detected again if
+   * accessed.
+   */
+  private static final long MAX_DECODED_BYTES = 128L << 20;
+  /**
+   * Least recently used order of the mass lists detected on demand. Only the mass lists are held,
+   * so frames of removed raw data files are not kept alive.
+   */
+  private static final Map<MassListData, Boolean> decodedFrames = new LinkedHashMap<>(64, 0.75f,
+      true);
+  // guarded by decodedFrames
+  private static long decodedBytes = 0;
+  /**
+   * The mass lists of the last access. Accessing the mobility scans of the same frame again does
+   * not need to lock {@link #decodedFrames}.
+   */
+  private static volatile MassListData lastAccessedDecoded = null;
+
   // raw data
   private final Frame frame;
-  private final DoubleBuffer rawMzValues;
-  private final DoubleBuffer rawIntensityValues;
+  private final StoredDoubleValues rawMzValues;
+  private final StoredDoubleValues rawIntensityValues;
   /**
    * Per scan
    */
@@ -67,17 +91,13 @@ public class MobilityScanStorage {
   private final int rawMaxNumPoints;
 
   // mass list
-  private DoubleBuffer massListMzValues = null;
-  private DoubleBuffer massListIntensityValues = null;
-  /**
-   * Per scan
-   */
-  private IntBuffer massListStorageOffsets = null;
+  private volatile MassListData massListData = null;
   /**
-   * Per scan
+   * Set if mass lists are detected on the first access. The detected mass lists are only weakly
+   * referenced and kept alive by {@link #decodedFrames}.
    */
-  private IntBuffer massListBasePeakIndices = null;
-  private int massListMaxNumPoints = -1;
+  private volatile OnDemandMassDetection onDemandDetection = null;
+  private volatile WeakReference<MassListData> decodedMassListData = null;
 
   public MobilityScanStorage(@Nullable MemoryMapStorage storage, @NotNull final Frame frame,
       @NotNull final List<BuildingMobilityScan> mobilityScans) {
@@ -109,8 +129,8 @@ public class MobilityScanStorage {
     final int[] rawBasePeakIndices = StorageUtils.putAllValuesIntoOneArray(data, 1, intensities);
     this.rawBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage, rawBasePeakIndices);
 
-    rawMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    rawIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    rawMzValues = StorageUtils.storeMzValues(storage, mzs);
+    rawIntensityValues = StorageUtils.storeIntensityValues(storage, intensities);
   }
 
   public MobilityScanStorage(@Nullable MemoryMapStorage storage, @NotNull final Frame frame,
@@ -118,11 +138,7 @@ public class MobilityScanStorage {
     this(storage, frame, mobilityScans);
 
     if (useAsMassList) {
-      massListBasePeakIndices = rawBasePeakIndices;
-      massListMaxNumPoints = rawMaxNumPoints;
-      massListMzValues = rawMzValues;
-      massListIntensityValues = rawIntensityValues;
-      massListStorageOffsets = rawStorageOffsets;
+      useRawDataAsMassLists();
     }
   }
 
@@ -143,16 +159,12 @@ public class MobilityScanStorage {
     this.frame = frame;
     rawBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage, basePeakIndices);
     rawStorageOffsets = StorageUtils.storeValuesToIntBuffer(storage, storageOffsets);
-    rawMzValues = mzValues;
-    rawIntensityValues = intensityValues;
+    rawMzValues = StoredDoubleValues.of(mzValues);
+    rawIntensityValues = StoredDoubleValues.of(intensityValues);
     rawMaxNumPoints = maxNumPoints;
 
     if (useAsMassList) {
-      massListBasePeakIndices = rawBasePeakIndices;
-      massListMaxNumPoints = rawMaxNumPoints;
-      massListMzValues = rawMzValues;
-      massListIntensityValues = rawIntensityValues;
-      massListStorageOffsets = rawStorageOffsets;
+      useRawDataAsMassLists();
     }
   }
 
@@ -165,15 +177,59 @@ public class MobilityScanStorage {
 
     if (!massDetector.filtersActive()) {
       // no need to run mass detection in this case.
-      massListBasePeakIndices = rawBasePeakIndices;
-      massListMaxNumPoints = rawMaxNumPoints;
-      massListMzValues = rawMzValues;
-      massListIntensityValues = rawIntensityValues;
-      massListStorageOffsets = rawStorageOffsets;
+      useRawDataAsMassLists();
+      return;
+    }
+
+    setMassLists(storage, detectMassLists(massDetector, denormalizeMSnScans));
+  }
+
+  /**
+   * Mass lists are detected the first time they are accessed, e.g., by a
+   * {@link io.github.mzmine.datamodel.data_access.MobilityScanDataAccess}, and are not written to
+   * the storage. Only the mass lists of the most recently accessed frames are kept in memory, up to
+   * {@link #MAX_DECODED_BYTES} for all frames, others are detected again on the next access. Saves
+   * the temporary storage of all mobility scan mass lists if only few frames are accessed later.
+   *
+   * @param massDetector The mass detector
+   */
+  public void setMassListsOnDemand(@NotNull MassDetector massDetector,
+      boolean denormalizeMSnScans) {
+    if (!massDetector.filtersActive()) {
+      // no need to run mass detection in this case.
+      useRawDataAsMassLists();
       return;
     }
 
-    // mobility scan -> [0][] = mzs, [1][] = intensities
+    decodedMassListData = null;
+    onDemandDetection = new OnDemandMassDetection(massDetector, denormalizeMSnScans);
+    massListData = null;
+  }
+
+  /**
+   * @return true if the mass lists are detected on the first access
+   */
+  public boolean isMassListDetectionOnDemand() {
+    return onDemandDetection != null;
+  }
+
+  private void useRawDataAsMassLists() {
+    setMassListData(
+        new MassListData(rawMzValues, rawIntensityValues, rawStorageOffsets, rawBasePeakIndices,
+            rawMaxNumPoints));
+  }
+
+  private void setMassListData(@NotNull MassListData data) {
+    onDemandDetection = null;
+    decodedMassListData = null;
+    massListData = data;
+  }
+
+  /**
+   * @return mass spectrum -> [0][] = mzs, [1][] = intensities
+   */
+  private List<double[][]> detectMassLists(@NotNull MassDetector massDetector,
+      boolean denormalizeMSnScans) {
     final List<double[][]> data = new ArrayList<>();
 
     for (MobilityScan mobilityScan : getMobilityScans()) {
@@ -184,8 +240,82 @@ public class MobilityScanStorage {
       }
       data.add(mzIntensity);
     }
+    return data;
+  }
+
+  /**
+   * @return the mass lists or null if no mass detection was applied
+   */
+  @Nullable
+  private MassListData getMassListData() {
+    final MassListData data = massListData;
+    if (data != null) {
+      return data;
+    }
+    final OnDemandMassDetection detection = onDemandDetection;
+    if (detection == null) {
+      return null;
+    }
+
+    final WeakReference<MassListData> decodedRef = decodedMassListData;
+    final MassListData decoded = decodedRef != null ? decodedRef.get() : null;
+    if (decoded != null) {
+      touchDecoded(decoded);
+      return decoded;
+    }
+    return detectOnDemand(detection);
+  }
+
+  private synchronized MassListData detectOnDemand(@NotNull OnDemandMassDetection detection) {
+    final WeakReference<MassListData> decodedRef = decodedMassListData;
+    MassListData decoded = decodedRef != null ? decodedRef.get() : null;
+    if (decoded != null) {
+      touchDecoded(decoded);
+      return decoded;
+    }
 
-    setMassLists(storage, data);
+    decoded = createMassListData(null,
+        detectMassLists(detection.massDetector(), detection.denormalizeMSnScans()));
+    if (onDemandDetection != detection) {
+      // mass lists were replaced in the meantime
+      final MassListData data = massListData;
+      return data != null ? data : decoded;
+    }
+    decodedMassListData = new WeakReference<>(decoded);
+    addDecoded(decoded);
+    return decoded;
+  }
+
+  /**
+   * Marks the mass lists as most recently used
+   */
+  private static void touchDecoded(@NotNull MassListData decoded) {
+    if (lastAccessedDecoded == decoded) {
+      return;
+    }
+    synchronized (decodedFrames) {
+      // access order, moves the entry to the end
+      decodedFrames.get(decoded);
+      lastAccessedDecoded = decoded;
+    }
+  }
+
+  /**
+   * Keeps the new mass lists alive and releases the least recently used ones until the total size
+   * is within {@link #MAX_DECODED_BYTES}. The most recent mass lists are always kept.
+   */
+  private static void addDecoded(@NotNull MassListData decoded) {
+    synchronized (decodedFrames) {
+      decodedFrames.put(decoded, Boolean.TRUE);
+      decodedBytes += decoded.estimateBytes();
+      lastAccessedDecoded = decoded;
+
+      final var iterator = decodedFrames.keySet().iterator();
+      while (decodedBytes > MAX_DECODED_BYTES && decodedFrames.size() > 1) {
+        decodedBytes -= iterator.next().estimateBytes();
+        iterator.remove();
+      }
+    }
   }
 
   /**
@@ -196,11 +326,13 @@ public class MobilityScanStorage {
    *                in this frame
    */
   public void setMassLists(final @Nullable MemoryMapStorage storage, final List<double[][]> data) {
+    setMassListData(createMassListData(storage, data));
+  }
+
+  private static MassListData createMassListData(final @Nullable MemoryMapStorage storage,
+      final List<double[][]> data) {
     AtomicInteger biggestOffset = new AtomicInteger(0);
     final int[] massListStorageOffsets = StorageUtils.generateOffsets(data, biggestOffset);
-    this.massListStorageOffsets = StorageUtils.storeValuesToIntBuffer(storage,
-        massListStorageOffsets);
-    massListMaxNumPoints = biggestOffset.get();
 
     final int numDp = massListStorageOffsets[massListStorageOffsets.length - 1] + data.get(
         data.size() - 1)[0].length;
@@ -210,14 +342,15 @@ public class MobilityScanStorage {
     StorageUtils.putAllValuesIntoOneArray(data, 0, mzs);
     final int[] massListBasePeakIndices = StorageUtils.putAllValuesIntoOneArray(data, 1,
         intensities);
-    this.massListBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage,
-        massListBasePeakIndices);
-    massListMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    massListIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    return new MassListData(StorageUtils.storeMzValues(storage, mzs),
+        StorageUtils.storeIntensityValues(storage, intensities),
+        StorageUtils.storeValuesToIntBuffer(storage, massListStorageOffsets),
+        StorageUtils.storeValuesToIntBuffer(storage, massListBasePeakIndices),
+        biggestOffset.get());
   }
 
   public MassList getMassList(int mobilityScanIndex) {
-    if (massListIntensityValues == null) {
+    if (massListData == null && onDemandDetection == null) {
       return null;
     }
     return new StoredMobilityScanMassList(mobilityScanIndex, this);
@@ -267,7 +400,7 @@ public class MobilityScanStorage {
     if (index < rawStorageOffsets.capacity() - 1) {
       return rawStorageOffsets.get(index + 1) - rawStorageOffsets.get(index);
     } else {
-      return rawMzValues.capacity() - rawStorageOffsets.get(index);
+      return rawMzValues.size() - rawStorageOffsets.get(index);
     }
   }
 
@@ -291,7 +424,7 @@ public class MobilityScanStorage {
    * @return The total number of points in this {@link  MobilityScanStorage}.
    */
   public int getRawTotalNumPoints() {
-    return rawMzValues.capacity();
+    return rawMzValues.size();
   }
 
   public Frame getFrame() {
@@ -334,18 +467,20 @@ public class MobilityScanStorage {
   }
 
   // mass list
-  public int getNumberOfMassListDatapoints(int index) {
-    if (massListStorageOffsets == null) {
+  @NotNull
+  private MassListData requireMassListData() {
+    final MassListData data = getMassListData();
+    if (data == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
+    return data;
+  }
+
+  public int getNumberOfMassListDatapoints(int index) {
     assert index < getNumberOfMobilityScans();
-    if (index < massListStorageOffsets.capacity() - 1) {
-      return massListStorageOffsets.get(index + 1) - massListStorageOffsets.get(index);
-    } else {
-      return massListMzValues.capacity() - massListStorageOffsets.get(index);
-    }
+    return requireMassListData().getNumberOfDatapoints(index);
   }
 
   /**
@@ -353,12 +488,7 @@ public class MobilityScanStorage {
    * @return The storage offset (where data points of this mass list start)
    */
   public int getMassListStorageOffset(int index) {
-    if (massListStorageOffsets == null) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
-    }
-    return massListStorageOffsets.get(index);
+    return requireMassListData().storageOffsets().get(index);
   }
 
   /**
@@ -366,95 +496,107 @@ public class MobilityScanStorage {
    * @return The base peak index (may be -1 if no base peak was detected).
    */
   public int getMassListBasePeakIndex(int index) {
-    if (massListBasePeakIndices == null) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
-    }
-    return massListBasePeakIndices.get(index);
+    return requireMassListData().basePeakIndices().get(index);
   }
 
   /**
    * @return The maximum number of points in a mass list.
    */
   public int getMassListMaxNumPoints() {
-    if (massListMaxNumPoints == -1) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
-    }
-    return massListMaxNumPoints;
+    return requireMassListData().maxNumPoints();
   }
 
   /**
    * @return The total number of data points in all mobility scan-mass lists of this frame.
    */
   public int getMassListTotalNumPoints() {
-    if (massListIntensityValues == null) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
-    }
-    return massListIntensityValues.capacity();
+    return requireMassListData().getTotalNumPoints();
   }
 
   public void getMassListMzValues(int mobilityScanIndex, double[] dst, int offset) {
-    if (massListMzValues == null) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
-    }
-    assert getNumberOfMassListDatapoints(mobilityScanIndex) + offset <= dst.length;
-    massListMzValues.get(getMassListStorageOffset(mobilityScanIndex), dst, offset,
-        getNumberOfMassListDatapoints(mobilityScanIndex));
+    final MassListData data = requireMassListData();
+    assert data.getNumberOfDatapoints(mobilityScanIndex) + offset <= dst.length;
+    data.mzValues().get(data.storageOffsets().get(mobilityScanIndex), dst, offset,
+        data.getNumberOfDatapoints(mobilityScanIndex));
   }
 
   public void getAllMassListMzValues(double[] dst) {
-    if (massListMzValues == null) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
-    }
-    assert dst.length >= getMassListTotalNumPoints();
-    massListMzValues.get(0, dst, 0, getMassListTotalNumPoints());
+    final MassListData data = requireMassListData();
+    assert dst.length >= data.getTotalNumPoints();
+    data.mzValues().get(0, dst, 0, data.getTotalNumPoints());
   }
 
   public void getMassListIntensityValues(int mobilityScanIndex, double[] dst, int offset) {
-    if (massListIntensityValues == null) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
-    }
-    assert getNumberOfMassListDatapoints(mobilityScanIndex) + offset <= dst.length;
-    massListIntensityValues.get(getMassListStorageOffset(mobilityScanIndex), dst, offset,
-        getNumberOfMassListDatapoints(mobilityScanIndex));
+    final MassListData data = requireMassListData();
+    assert data.getNumberOfDatapoints(mobilityScanIndex) + offset <= dst.length;
+    data.intensityValues().get(data.storageOffsets().get(mobilityScanIndex), dst, offset,
+        data.getNumberOfDatapoints(mobilityScanIndex));
   }
 
   public void getAllMassListIntensityValues(double[] dst) {
-    if (massListIntensityValues == null) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
-    }
-    assert dst.length >= getMassListTotalNumPoints();
-    massListIntensityValues.get(0, dst, 0, getMassListTotalNumPoints());
+    final MassListData data = requireMassListData();
+    assert dst.length >= data.getTotalNumPoints();
+    data.intensityValues().get(0, dst, 0, data.getTotalNumPoints());
   }
 
   public double getMassListMzValue(int mobilityScanIndex, int index) {
-    if (massListMzValues == null) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
-    }
-    return massListMzValues.get(getMassListStorageOffset(mobilityScanIndex) + index);
+    final MassListData data = requireMassListData();
+    return data.mzValues().get(data.storageOffsets().get(mobilityScanIndex) + index);
   }
 
   public double getMassListIntensityValue(int mobilityScanIndex, int index) {
-    if (massListIntensityValues == null) {
-      throw new MissingMassListException(
-          "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
-          null);
+    final MassListData data = requireMassListData();
+    return data.intensityValues().get(data.storageOffsets().get(mobilityScanIndex) + index);
+  }
+
+  private record OnDemandMassDetection(@NotNull MassDetector massDetector,
+                                       boolean denormalizeMSnScans) {
+
+  }
+
+  /**
+   * Mass lists of all mobility scans of a frame
+   *
+   * @param storageOffsets  Per scan
+   * @param basePeakIndices Per scan
+   */
+  private record MassListData(@NotNull StoredDoubleValues mzValues,
+                              @NotNull StoredDoubleValues intensityValues,
+                              @NotNull IntBuffer storageOffsets,
+                              @NotNull IntBuffer basePeakIndices, int maxNumPoints) {
+
+    int getTotalNumPoints() {
+      return mzValues.size();
+    }
+
+    /**
+     * @return the heap size of the values, approximated by doubles and ints
+     */
+    long estimateBytes() {
+      return (long) getTotalNumPoints() * 2 * Double.BYTES
+             + (long) storageOffsets.capacity() * 2 * Integer.BYTES;
+    }
+
+    /**
+     * Compared by identity, used as key in {@link #decodedFrames}. The default record equals would
+     * compare the content of the buffers.
+     */
+    @Override
+    public boolean equals(Object o) {
+      return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+
+    int getNumberOfDatapoints(int index) {
+      if (index < storageOffsets.capacity() - 1) {
+        return storageOffsets.get(index + 1) - storageOffsets.get(index);
+      } else {
+        return mzValues.size() - storageOffsets.get(index);
+      }
     }
-    return massListIntensityValues.get(getMassListStorageOffset(mobilityScanIndex) + index);
   }
 }
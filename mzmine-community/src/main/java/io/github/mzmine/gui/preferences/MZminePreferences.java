@@ -25,6 +25,7 @@
 
 package io.github.mzmine.gui.preferences;
 
+import io.github.mzmine.datamodel.featuredata.impl.SpectralStoragePrecision;
 import io.github.mzmine.gui.chartbasics.chartthemes.ChartThemeParameters;
 import io.github.mzmine.gui.chartbasics.chartutils.paintscales.PaintScaleTransform;
 import io.github.mzmine.javafx.dialogs.DialogLoggerUtil;
@@ -36,6 +37,7 @@ import io.github.mzmine.parameters.dialogs.GroupedParameterSetupDialog;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
+import io.github.mzmine.parameters.parametertypes.DoubleParameter;
 import io.github.mzmine.parameters.parametertypes.FontSpecs;
 import io.github.mzmine.parameters.parametertypes.HiddenParameter;
 import io.github.mzmine.parameters.parametertypes.OptOutParameter;
@@ -167,6 +169,21 @@ public class MZminePreferences extends SimpleParameterSet {
       KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final ComboParameter<SpectralStoragePrecision> spectralStoragePrecision = new ComboParameter<>(
+      "Spectral data precision", String.format(
+      "Precision of m/z and intensity values of spectra and mass lists that are memory mapped to "
+          + "the temp directory. %s stores intensities as floats and m/z values with the precision "
+          + "below, which halves the size of the temporary files. %s keeps the full precision. Only "
+          + "applies to data imported or processed after the change.",
+      SpectralStoragePrecision.COMPACT, SpectralStoragePrecision.DOUBLE),
+      SpectralStoragePrecision.values(), SpectralStoragePrecision.DOUBLE);
+
+  public static final DoubleParameter mzStoragePrecision = new DoubleParameter(
+      "m/z storage precision (ppb)",
+      "Maximum relative error of memory mapped m/z values in parts per billion, if the spectral "
+          + "data precision is set to compact. Spectra with a wide m/z range relative to this "
+          + "precision are stored as doubles.", new DecimalFormat("0.#"), 10d, 0.1d, 1000d);
+
   /*public static final BooleanParameter applyTimsPressureCompensation = new BooleanParameter(
       "Use MALDI-TIMS pressure compensation", """
       Specifies if mobility values from Bruker timsTOF fleX MALDI raw data shall be recalibrated using a Bruker algorithm.
@@ -228,7 +245,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
   public MZminePreferences() {
     super(// start with performance
-        numOfThreads, memoryOption, tempDirectory, proxySettings,
+        numOfThreads, memoryOption, spectralStoragePrecision, mzStoragePrecision, tempDirectory,
+        proxySettings,
         /*applyTimsPressureCompensation,*/
         // visuals
         // number formats
@@ -267,7 +285,8 @@ public class MZminePreferences extends SimpleParameterSet {
     GroupedParameterSetupDialog dialog = new GroupedParameterSetupDialog(valueCheckRequired, this);
 
     // add groups
-    dialog.addParameterGroup("General", numOfThreads, memoryOption, tempDirectory, proxySettings
+    dialog.addParameterGroup("General", numOfThreads, memoryOption, spectralStoragePrecision,
+        mzStoragePrecision, tempDirectory, proxySettings
         /*, applyTimsPressureCompensation*/);
     dialog.addParameterGroup("Formats", mzFormat, rtFormat, mobilityFormat, ccsFormat,
         intensityFormat, ppmFormat, scoreFormat, unitFormat);
@@ -308,6 +327,8 @@ public class MZminePreferences extends SimpleParameterSet {
     final KeepInMemory keepInMemory = config.getPreferences()
         .getParameter(MZminePreferences.memoryOption).getValue();
     keepInMemory.enforceToMemoryMapping();
+    config.getPreferences().getValue(MZminePreferences.spectralStoragePrecision)
+        .enforce(config.getPreferences().getValue(MZminePreferences.mzStoragePrecision));
 
     final Themes theme = getValue(MZminePreferences.theme);
     if (previousTheme != null) {
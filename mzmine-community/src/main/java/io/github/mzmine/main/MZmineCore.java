@@ -30,6 +30,7 @@ import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.ImagingRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.gui.DesktopService;
 import io.github.mzmine.gui.HeadLessDesktop;
 import io.github.mzmine.gui.MZmineDesktop;
@@ -40,6 +41,8 @@ import io.github.mzmine.javafx.concurrent.threading.FxThread;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.modules.MZmineRunnableModule;
 import io.github.mzmine.modules.batchmode.BatchModeModule;
+import io.github.mzmine.modules.batchmode.timing.StepResourceProfiler;
+import io.github.mzmine.modules.batchmode.timing.StepResourceReport;
 import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTable;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.project.ProjectService;
@@ -241,6 +244,8 @@ public final class MZmineCore {
 
       // apply memory management option
       keepInMemory.enforceToMemoryMapping();
+      preferences.getValue(MZminePreferences.spectralStoragePrecision)
+          .enforce(preferences.getValue(MZminePreferences.mzStoragePrecision));
 
       // batch mode defined by command line argument
       File batchFile = argsParser.getBatchFile();
@@ -576,7 +581,24 @@ public final class MZmineCore {
     final MZmineProject currentProject = ProjectService.getProject();
     final Instant date = Instant.now();
     logger.finest(() -> "Module " + module.getName() + " called at " + date.toString());
+    // counts the rows and features on this thread, which is often the GUI thread
+    final boolean profile = StepResourceReport.isGuiProfilingEnabled();
+    final List<FeatureList> beforeFeatureLists = currentProject.getCurrentFeatureLists();
+    final StepResourceProfiler profiler = new StepResourceProfiler();
+    if (profile) {
+      profiler.start(beforeFeatureLists);
+    }
     module.runModule(currentProject, parameters, newTasks, date);
+    if (profile && !newTasks.isEmpty()) {
+      // same resource report as for batch steps, finished on the thread of the last task
+      final int numTasks = newTasks.size();
+      AllTasksFinishedListener.registerCallbacks(newTasks, false, _ -> {
+        List<FeatureList> after = new ArrayList<>(currentProject.getCurrentFeatureLists());
+        after.removeAll(beforeFeatureLists);
+        var output = after.isEmpty() ? currentProject.getCurrentFeatureLists() : after;
+        StepResourceReport.logUsage(profiler.finish(-1, module.getName(), numTasks, output));
+      }, null);
+    }
     TaskService.getController().addTasks(newTasks.toArray(new Task[0]));
 
     return newTasks;
@@ -32,14 +32,12 @@ import io.github.mzmine.modules.io.projectload.version_3_0.RawDataFileOpenHandle
 import io.github.mzmine.project.ProjectManager;
 import io.github.mzmine.project.ProjectService;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.MemoryMapStorageUtils;
 import io.github.mzmine.util.MemoryMapStorages;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.DirectoryNotEmptyException;
@@ -48,12 +46,9 @@ import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.io.FileUtils;
-import org.jetbrains.annotations.Nullable;
-import sun.misc.Unsafe;
 
 public class TmpFileCleanup implements Runnable {
 
-  private static Unsafe theUnsafe;
   private Logger logger = Logger.getLogger(this.getClass().getName());
 
   @Override
@@ -138,48 +133,9 @@ public class TmpFileCleanup implements Runnable {
       return;
     }
 
-    if (theUnsafe == null) {
-      theUnsafe = initUnsafe();
-      if (theUnsafe == null) {
-        return;
-      }
-    }
-
     for (final MemoryMapStorage storage : MemoryMapStorages.getStorageList()) {
-      try {
-        storage.discard(theUnsafe);
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+      MemoryMapStorageUtils.discard(storage);
     }
 
   }
-
-  /**
-   * Taken from https://stackoverflow.com/a/48821002
-   *
-   * @return Instance {@link Unsafe} or null.
-   * @author https://github.com/SteffenHeu
-   */
-  @Nullable
-  private synchronized Unsafe initUnsafe() {
-    try {
-      Class unsafeClass = Class.forName("sun.misc.Unsafe");
-//      unsafeClass = Class.forName("jdk.internal.misc.Unsafe");
-      Method clean = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
-      clean.setAccessible(true);
-      Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
-      theUnsafeField.setAccessible(true);
-      Object theUnsafe = theUnsafeField.get(null);
-
-      return (Unsafe) theUnsafe;
-
-    } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException |
-             NoSuchFieldException | ClassCastException e) {
-      // jdk.internal.misc.Unsafe doesn't yet have an invokeCleaner() method,
-      // but that method should be added if sun.misc.Unsafe is removed.
-      e.printStackTrace();
-    }
-    return null;
-  }
 }
@@ -32,6 +32,9 @@ import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.batchmode.change_outfiles.ChangeOutputFilesUtils;
+import io.github.mzmine.modules.batchmode.timing.StepResourceProfiler;
+import io.github.mzmine.modules.batchmode.timing.StepResourceReport;
+import io.github.mzmine.modules.batchmode.timing.StepResourceUsage;
 import io.github.mzmine.modules.batchmode.timing.StepTimeMeasurement;
 import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
 import io.github.mzmine.parameters.Parameter;
@@ -93,6 +96,7 @@ public class BatchTask extends AbstractTask {
   private File parentDir;
   private int currentDataset;
   private List<StepTimeMeasurement> stepTimes = new ArrayList<>();
+  private final List<StepResourceUsage> stepResources = new ArrayList<>();
 
   BatchTask(MZmineProject project, ParameterSet parameters, @NotNull Instant moduleCallDate) {
     this(project, parameters, moduleCallDate,
@@ -248,6 +252,24 @@ public class BatchTask extends AbstractTask {
     printBatchTimes(batchStart);
     Duration duration = Duration.between(batchStart, Instant.now());
     stepTimes.addFirst(new StepTimeMeasurement(0, getName(), duration));
+    writeResourceReport();
+  }
+
+  /**
+   * Writes the resources used by each step next to the first output file of the batch
+   */
+  private void writeResourceReport() {
+    if (stepResources.isEmpty()) {
+      return;
+    }
+    File outFile = ChangeOutputFilesUtils.findFirstOutputFile(queue);
+    if (outFile == null) {
+      logger.fine("No export step in batch, will not write the resource usage report");
+      return;
+    }
+    File baseFile = new File(outFile.getParentFile(),
+        FileAndPathUtil.eraseFormat(outFile.getName()) + "_batch");
+    StepResourceReport.writeReport(baseFile, stepResources);
   }
 
   private void printBatchTimes(final Instant batchStart) {
@@ -342,6 +364,10 @@ public class BatchTask extends AbstractTask {
               messages.toArray()));
     }
 
+    final StepResourceProfiler profiler = new StepResourceProfiler();
+    final List<FeatureList> inputFeatureLists = List.copyOf(createdFeatureLists);
+    profiler.start(inputFeatureLists);
+
     List<Task> currentStepTasks = new ArrayList<>();
     Instant moduleCallDate = Instant.now();
     logger.finest(() -> "Module " + method.getName() + " called at " + moduleCallDate.toString());
@@ -366,6 +392,7 @@ public class BatchTask extends AbstractTask {
       return;
     }
 
+    final int numTasks = currentStepTasks.size();
     // submit as ThreadPoolTask
     final TaskStatus status;
     // create ThreadPool
@@ -403,6 +430,12 @@ public class BatchTask extends AbstractTask {
 
     Duration duration = Duration.between(start, Instant.now());
     stepTimes.add(new StepTimeMeasurement(stepNumber, method.getName(), duration));
+
+    // modules that work in place do not create new feature lists
+    var outputFeatureLists = createdFeatureLists.isEmpty() ? inputFeatureLists : createdFeatureLists;
+    var resources = profiler.finish(stepNumber, method.getName(), numTasks, outputFeatureLists);
+    stepResources.add(resources);
+    StepResourceReport.logUsage(resources);
   }
 
   /**
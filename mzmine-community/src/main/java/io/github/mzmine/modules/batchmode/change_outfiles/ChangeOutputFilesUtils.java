@@ -109,4 +109,49 @@ public class ChangeOutputFilesUtils {
     }
     return 0;
   }
+
+  /**
+   * @return the first value of a {@link FileNameSuffixExportParameter} in all steps or null if
+   * there is no export step
+   */
+  @Nullable
+  public static File findFirstOutputFile(
+      @Nullable final List<MZmineProcessingStep<MZmineProcessingModule>> steps) {
+    if (steps == null) {
+      return null;
+    }
+    for (var step : steps) {
+      File file = findFirstOutputFile(step.getParameterSet());
+      if (file != null) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static File findFirstOutputFile(@Nullable final ParameterSet params) {
+    if (params == null) {
+      return null;
+    }
+    for (final Parameter<?> parameter : params.getParameters()) {
+      File file = findFirstOutputFile(parameter);
+      if (file != null) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static File findFirstOutputFile(final Parameter<?> parameter) {
+    return switch (parameter) {
+      case null -> null;
+      case FileNameSuffixExportParameter outParam -> outParam.getValue();
+      case EmbeddedParameterSet<?, ?> parent -> findFirstOutputFile(parent.getEmbeddedParameters());
+      case EmbeddedParameter<?, ?, ?> parent -> findFirstOutputFile(parent.getEmbeddedParameter());
+      case HiddenParameter<?> parent -> findFirstOutputFile(parent.getEmbeddedParameter());
+      default -> null;
+    };
+  }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.features.FeatureList;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Measures the resources used by a processing step between {@link #start(Collection)} and
+ * {@link #finish(int, String, int, Collection)}. Uses the JVM management beans, so all values are
+ * process wide. This includes the peak heap usage, which is reset for the whole JVM on
+ * {@link #start(Collection)}.
+ */
+public class StepResourceProfiler {
+
+  private static final Logger logger = Logger.getLogger(StepResourceProfiler.class.getName());
+
+  private long startNanos;
+  private long startCpuNanos;
+  private long startGcMillis;
+  private long startGcCount;
+  private long startStoredBytes;
+  private long rowsIn;
+  private long featuresIn;
+
+  /**
+   * @return total number of rows in all feature lists
+   */
+  public static long countRows(@NotNull Collection<? extends FeatureList> flists) {
+    return flists.stream().mapToLong(FeatureList::getNumberOfRows).sum();
+  }
+
+  /**
+   * @return total number of features in all feature lists
+   */
+  public static long countFeatures(@NotNull Collection<? extends FeatureList> flists) {
+    return flists.stream().mapToLong(flist -> flist.streamFeatures().count()).sum();
+  }
+
+  /**
+   * @return the process CPU time in nano seconds or -1 if not supported by the JVM
+   */
+  private static long getProcessCpuNanos() {
+    final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+      return sunOs.getProcessCpuTime();
+    }
+    return -1;
+  }
+
+  private static long getGcMillis() {
+    long sum = 0;
+    for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      sum += Math.max(0, gc.getCollectionTime());
+    }
+    return sum;
+  }
+
+  private static long getGcCount() {
+    long sum = 0;
+    for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      sum += Math.max(0, gc.getCollectionCount());
+    }
+    return sum;
+  }
+
+  private static List<MemoryPoolMXBean> getHeapPools() {
+    return ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isValid()).toList();
+  }
+
+  /**
+   * The sum of the peak usage of all heap pools. This is an upper bound as the pools may peak at
+   * different times.
+   */
+  private static long getPeakHeapBytes() {
+    long sum = 0;
+    for (final MemoryPoolMXBean pool : getHeapPools()) {
+      final MemoryUsage peak = pool.getPeakUsage();
+      if (peak != null) {
+        sum += peak.getUsed();
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Resets the peak usage of the heap pools of the whole JVM. The peak of a step therefore
+   * includes everything that ran in parallel, and steps that run in parallel, e.g., modules
+   * started from the GUI, reset each other's peaks.
+   */
+  private static void resetPeakHeap() {
+    for (final MemoryPoolMXBean pool : getHeapPools()) {
+      try {
+        pool.resetPeakUsage();
+      } catch (SecurityException e) {
+        logger.log(Level.FINE, "Cannot reset peak memory usage " + e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Start the measurement
+   *
+   * @param inputFeatureLists the feature lists that serve as input for this step. Used to count
+   *                          the input rows and features
+   */
+  public void start(@NotNull Collection<? extends FeatureList> inputFeatureLists) {
+    rowsIn = countRows(inputFeatureLists);
+    featuresIn = countFeatures(inputFeatureLists);
+    resetPeakHeap();
+    startStoredBytes = StorageUtils.getStoredBytes();
+    startGcMillis = getGcMillis();
+    startGcCount = getGcCount();
+    startCpuNanos = getProcessCpuNanos();
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * Finish the measurement that was started by {@link #start(Collection)}.
+   *
+   * @param stepNumber         the batch step number or -1
+   * @param name               the step name
+   * @param numTasks           number of tasks that were run in this step
+   * @param outputFeatureLists the feature lists that were created or changed by this step
+   * @return the resource usage
+   */
+  public StepResourceUsage finish(int stepNumber, @NotNull String name, int numTasks,
+      @NotNull Collection<? extends FeatureList> outputFeatureLists) {
+    final long wallMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+    final long cpuNanos = getProcessCpuNanos();
+    final long cpuMillis = cpuNanos < 0 || startCpuNanos < 0 ? -1
+        : (cpuNanos - startCpuNanos) / 1_000_000L;
+
+    return new StepResourceUsage(stepNumber, name, wallMillis, cpuMillis,
+        getGcMillis() - startGcMillis, getGcCount() - startGcCount, getPeakHeapBytes(), numTasks,
+        StorageUtils.getStoredBytes() - startStoredBytes, rowsIn, countRows(outputFeatureLists),
+        featuresIn, countFeatures(outputFeatureLists));
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.CsvWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Logs the {@link StepResourceUsage} of processing steps (batch and GUI) and writes the usages of a
+ * batch as json and csv reports.
+ */
+public class StepResourceReport {
+
+  public static final String JSON_SUFFIX = "_resources.json";
+  public static final String CSV_SUFFIX = "_resources.csv";
+
+  private static final Logger logger = Logger.getLogger(StepResourceReport.class.getName());
+
+  /**
+   * Logs the measurement of a finished step. Only batch runs keep their measurements to write a
+   * report, see {@link #writeReport(File, List)}.
+   */
+  public static void logUsage(@NotNull StepResourceUsage usage) {
+    logger.info(usage::toString);
+  }
+
+  /**
+   * Modules started from the GUI are only profiled if the log level of this class is FINE or
+   * finer. Otherwise, counting the rows and features of all feature lists would delay every module
+   * call on the calling thread.
+   */
+  public static boolean isGuiProfilingEnabled() {
+    return logger.isLoggable(Level.FINE);
+  }
+
+  /**
+   * Writes the usages to baseFile + {@link #JSON_SUFFIX} and baseFile + {@link #CSV_SUFFIX}.
+   *
+   * @param baseFile the file path and base name, a format is removed
+   * @return true if both files were written
+   */
+  public static boolean writeReport(@NotNull File baseFile,
+      @NotNull List<StepResourceUsage> usages) {
+    final File base = FileAndPathUtil.eraseFormat(baseFile);
+    final File json = new File(base.getParentFile(), base.getName() + JSON_SUFFIX);
+    final File csv = new File(base.getParentFile(), base.getName() + CSV_SUFFIX);
+    try {
+      FileAndPathUtil.createDirectory(base.getParentFile());
+      new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(json, usages);
+      CsvWriter.writeToFile(csv, usages, StepResourceUsage.class);
+      logger.info(STR."Wrote resource usage report to \{json.getAbsolutePath()}");
+      return true;
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot write resource usage report " + e.getMessage(), e);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.time.Duration;
+
+/**
+ * Resources used by a single processing step. Memory, GC and CPU values are measured for the whole
+ * process, so concurrently running tasks are included.
+ *
+ * @param stepNumber          the step number in the batch, starting at 0. -1 for GUI runs
+ * @param name                the module name
+ * @param wallTimeMillis      wall clock time
+ * @param cpuTimeMillis       process CPU time of all threads
+ * @param gcTimeMillis        accumulated time of all garbage collectors
+ * @param gcCount             number of garbage collections
+ * @param peakHeapBytes       peak heap usage during the step
+ * @param numTasks            number of tasks created by the module
+ * @param storageBytesWritten bytes written to the temporary memory map storage
+ * @param rowsIn              rows of the input feature lists
+ * @param rowsOut             rows of the output feature lists
+ * @param featuresIn          features of the input feature lists
+ * @param featuresOut         features of the output feature lists
+ */
+@JsonPropertyOrder({"stepNumber", "name", "wallTimeMillis", "cpuTimeMillis", "gcTimeMillis",
+    "gcCount", "peakHeapBytes", "numTasks", "storageBytesWritten", "rowsIn", "rowsOut",
+    "featuresIn", "featuresOut"})
+public record StepResourceUsage(int stepNumber, String name, long wallTimeMillis,
+                                long cpuTimeMillis, long gcTimeMillis, long gcCount,
+                                long peakHeapBytes, int numTasks, long storageBytesWritten,
+                                long rowsIn, long rowsOut, long featuresIn, long featuresOut) {
+
+  @JsonIgnore
+  public Duration wallTime() {
+    return Duration.ofMillis(wallTimeMillis);
+  }
+
+  @Override
+  public String toString() {
+    return STR."Step \{stepNumber + 1}: \{name} took \{wallTime()} (CPU \{Duration.ofMillis(
+        cpuTimeMillis)}, GC \{Duration.ofMillis(gcTimeMillis)}), peak heap \{peakHeapBytes
+        / 1_048_576} MB, \{numTasks} tasks, \{storageBytesWritten
+        / 1_048_576} MB temp storage, rows \{rowsIn} -> \{rowsOut}, features \{featuresIn} -> \{featuresOut}";
+  }
+}
@@ -53,7 +53,13 @@ public class PCAController extends FxController<PCAModel> implements SelectedRow
     PropertyUtils.onChange(this::waitAndUpdate, model.flistsProperty(), model.domainPcProperty(),
         model.rangePcProperty(), model.abundanceProperty(), model.metadataColumnProperty(),
         model.scalingFunctionProperty(), model.imputationFunctionProperty(),
-        model.sampleTypeFilterProperty());
+        model.sampleTypeFilterProperty(), model.svdMethodProperty(),
+        model.numComponentsProperty());
+  }
+
+  public void setSvdMethod(PCASvdMethod method, int numComponents) {
+    model.setNumComponents(numComponents);
+    model.setSvdMethod(method);
   }
 
   @Override
@@ -66,6 +66,14 @@ public class PCAModel {
       ImputationFunctions.OneFifthOfMinimum);
   private final ObjectProperty<SampleTypeFilter> sampleTypeFilter = new SimpleObjectProperty<>(
       SampleTypeFilter.sample());
+  private final ObjectProperty<@NotNull PCASvdMethod> svdMethod = new SimpleObjectProperty<>(
+      PCASvdMethod.FULL);
+  private final Property<Integer> numComponents = new SimpleIntegerProperty(10).asObject();
+
+  /**
+   * The pretreated data of the last update. Reused if only the displayed components change.
+   */
+  private volatile PCAPretreatedData pretreatedData;
 
 
   public ObservableList<Integer> getAvailablePCs() {
@@ -215,4 +223,36 @@ public class PCAModel {
   public void setSampleTypeFilter(@NotNull SampleTypeFilter filter) {
     sampleTypeFilter.set(filter);
   }
+
+  public @NotNull PCASvdMethod getSvdMethod() {
+    return svdMethod.get();
+  }
+
+  public void setSvdMethod(@NotNull PCASvdMethod svdMethod) {
+    this.svdMethod.set(svdMethod);
+  }
+
+  public ObjectProperty<@NotNull PCASvdMethod> svdMethodProperty() {
+    return svdMethod;
+  }
+
+  public Integer getNumComponents() {
+    return numComponents.getValue();
+  }
+
+  public void setNumComponents(Integer numComponents) {
+    this.numComponents.setValue(numComponents);
+  }
+
+  public Property<Integer> numComponentsProperty() {
+    return numComponents;
+  }
+
+  public PCAPretreatedData getPretreatedData() {
+    return pretreatedData;
+  }
+
+  public void setPretreatedData(PCAPretreatedData pretreatedData) {
+    this.pretreatedData = pretreatedData;
+  }
 }
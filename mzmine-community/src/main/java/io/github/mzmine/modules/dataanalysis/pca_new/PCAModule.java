@@ -52,6 +52,8 @@ public class PCAModule extends AbstractRunnableModule {
       @NotNull Instant moduleCallDate) {
 
     final PCATab tab = new PCATab();
+    tab.setSvdMethod(parameters.getValue(PCAParameters.svdMethod),
+        parameters.getValue(PCAParameters.numComponents));
     final ModularFeatureList flist = parameters.getParameter(PCAParameters.flist).getValue()
         .getMatchingFeatureLists()[0];
     tab.onFeatureListSelectionChanged(List.of(flist));
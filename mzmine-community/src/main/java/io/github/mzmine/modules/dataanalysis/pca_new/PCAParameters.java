@@ -27,6 +27,8 @@ package io.github.mzmine.modules.dataanalysis.pca_new;
 
 import io.github.mzmine.parameters.impl.IonMobilitySupport;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.ComboParameter;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
 import org.jetbrains.annotations.NotNull;
 
@@ -34,8 +36,16 @@ public class PCAParameters extends SimpleParameterSet {
 
   public static final FeatureListsParameter flist = new FeatureListsParameter(1, 1, true);
 
+  public static final ComboParameter<PCASvdMethod> svdMethod = new ComboParameter<>("SVD method",
+      "Full SVD computes all principal components. The randomized truncated SVD only computes the "
+      + "first components and is much faster for large feature lists.", PCASvdMethod.values(),
+      PCASvdMethod.FULL);
+
+  public static final IntegerParameter numComponents = new IntegerParameter(
+      "Number of components", "Number of components computed by the truncated SVD.", 10, 2, null);
+
   public PCAParameters() {
-    super(flist);
+    super(flist, svdMethod, numComponents);
   }
 
   @Override
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.pca_new;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.modules.dataanalysis.utils.imputation.ImputationFunctions;
+import io.github.mzmine.modules.dataanalysis.utils.scaling.ScalingFunctions;
+import io.github.mzmine.modules.visualization.projectmetadata.SampleTypeFilter;
+import java.util.List;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+
+/**
+ * The imputed, centered and scaled data matrix of a PCA. Rows are the samples (files) and columns
+ * are the features (rows). The values are stored column-major so that each feature is a contiguous
+ * range of {@link #data()}. Keeps the inputs to check if the matrix can be reused.
+ *
+ * @param data column-major values: value of file i and row j at data[j * files.size() + i]
+ */
+public record PCAPretreatedData(List<FeatureListRow> rows, List<RawDataFile> files,
+                                AbundanceMeasure abundance, ScalingFunctions scaling,
+                                ImputationFunctions imputation, SampleTypeFilter sampleTypeFilter,
+                                double[] data) {
+
+  public int numSamples() {
+    return files.size();
+  }
+
+  public int numFeatures() {
+    return rows.size();
+  }
+
+  /**
+   * @return true if this data was created from the same inputs
+   */
+  public boolean matches(List<FeatureListRow> rows, List<RawDataFile> files,
+      AbundanceMeasure abundance, ScalingFunctions scaling, ImputationFunctions imputation,
+      SampleTypeFilter sampleTypeFilter) {
+    return this.abundance == abundance && this.scaling == scaling
+           && this.imputation == imputation && this.sampleTypeFilter.equals(sampleTypeFilter)
+           && this.files.equals(files) && this.rows.equals(rows);
+  }
+
+  /**
+   * @return a copy of the data as a commons-math matrix
+   */
+  public RealMatrix toRealMatrix() {
+    final int n = numSamples();
+    final int m = numFeatures();
+    final RealMatrix matrix = new Array2DRowRealMatrix(n, m);
+    for (int col = 0; col < m; col++) {
+      for (int row = 0; row < n; row++) {
+        matrix.setEntry(row, col, data[col * n + row]);
+      }
+    }
+    return matrix;
+  }
+}
@@ -38,21 +38,30 @@ import org.jetbrains.annotations.NotNull;
  * transpose of V.
  * <p>
  * https://stats.stackexchange.com/questions/134282/relationship-between-svd-and-pca-how-to-use-svd-to-perform-pca
+ * <p>
+ * A truncated decomposition (see {@link RandomizedSVD}) only contains the first components.
  *
+ * @param u the principal components in columns
+ * @param s diagonal matrix of the singular values
+ * @param v the loadings in columns
  */
-public record PCAResult(SingularValueDecomposition svd) {
+public record PCAResult(RealMatrix u, RealMatrix s, RealMatrix v) {
+
+  public PCAResult(SingularValueDecomposition svd) {
+    this(svd.getU(), svd.getS(), svd.getV());
+  }
 
   /**
    * @param numComponents
    * @return Returns a sub-matrix the first n principal components of the decomposition.
    */
   public RealMatrix firstNComponents(int numComponents) {
-    return svd.getU().getSubMatrix(0, svd.getU().getRowDimension() - 1, 0, numComponents - 1);
+    return u.getSubMatrix(0, u.getRowDimension() - 1, 0, numComponents - 1);
   }
 
   public RealMatrix principalComponentsMatrix() {
     // the u matrix of an svd contains the principal components.
-    return svd.getU();
+    return u;
   }
 
   /**
@@ -63,8 +72,7 @@ public record PCAResult(SingularValueDecomposition svd) {
    */
   public RealMatrix projectDataToScores(int numComponents) {
     final RealMatrix firstNComponents = firstNComponents(numComponents);
-    final RealMatrix subMatrixS = svd.getS()
-        .getSubMatrix(0, numComponents - 1, 0, numComponents - 1);
+    final RealMatrix subMatrixS = s.getSubMatrix(0, numComponents - 1, 0, numComponents - 1);
     final RealMatrix projectedData = firstNComponents.multiply(subMatrixS);
     return projectedData;
   }
@@ -77,7 +85,7 @@ public record PCAResult(SingularValueDecomposition svd) {
    */
   public RealMatrix projectDataToScores(int domainColIndex, int rangeColIndex) {
     final RealMatrix pcMatrix = pcMatrix(domainColIndex, rangeColIndex);
-    final RealMatrix projected = pcMatrix.multiply(svd.getS().getSubMatrix(0, 1, 0, 1));
+    final RealMatrix projected = pcMatrix.multiply(s.getSubMatrix(0, 1, 0, 1));
     return projected;
   }
 
@@ -86,7 +94,7 @@ public record PCAResult(SingularValueDecomposition svd) {
    */
   @NotNull
   private RealMatrix pcMatrix(int domainColIndex, int rangeColIndex) {
-    final RealMatrix pcs = svd.getU();
+    final RealMatrix pcs = u;
     // the vectors are the respective components.
     final RealVector domainVector = pcs.getColumnVector(domainColIndex);
     final RealVector rangeVector = pcs.getColumnVector(rangeColIndex);
@@ -102,11 +110,14 @@ public record PCAResult(SingularValueDecomposition svd) {
    * loadings are the transpose of the v matrix.
    */
   public RealMatrix getLoadingsMatrix() {
-    final RealMatrix transpose = svd.getV().transpose();
+    final RealMatrix transpose = v.transpose();
     return transpose;
   }
 
+  /**
+   * @return the number of computed components
+   */
   public int componentCount() {
-    return principalComponentsMatrix().getRowDimension();
+    return principalComponentsMatrix().getColumnDimension();
   }
 }
@@ -44,6 +44,10 @@ public class PCATab extends MZmineTab {
     setContent(region);
   }
 
+  public void setSvdMethod(PCASvdMethod method, int numComponents) {
+    controller.setSvdMethod(method, numComponents);
+  }
+
   @Override
   public @NotNull Collection<? extends RawDataFile> getRawDataFiles() {
     return List.of();
@@ -35,9 +35,7 @@ import io.github.mzmine.gui.chartbasics.simplechart.datasets.DatasetAndRenderer;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.RunOption;
 import io.github.mzmine.gui.chartbasics.simplechart.renderers.ColoredXYShapeRenderer;
 import io.github.mzmine.javafx.mvci.FxUpdateTask;
-import io.github.mzmine.modules.dataanalysis.utils.imputation.ImputationFunction;
 import io.github.mzmine.modules.dataanalysis.utils.imputation.ImputationFunctions;
-import io.github.mzmine.modules.dataanalysis.utils.scaling.ScalingFunction;
 import io.github.mzmine.modules.dataanalysis.utils.scaling.ScalingFunctions;
 import io.github.mzmine.modules.visualization.projectmetadata.SampleTypeFilter;
 import io.github.mzmine.modules.visualization.projectmetadata.table.columns.MetadataColumn;
@@ -64,10 +62,15 @@ public class PCAUpdateTask extends FxUpdateTask<PCAModel> {
   private final List<DatasetAndRenderer> scoresDatasets = new ArrayList<>();
   private final List<DatasetAndRenderer> loadingsDatasets = new ArrayList<>();
   private final List<Integer> components = new ArrayList<>();
-  private final ImputationFunction imputer;
+  private final ImputationFunctions imputation;
 
-  private final ScalingFunction scaling;
+  private final ScalingFunctions scaling;
   private final SampleTypeFilter sampleTypeFilter;
+  private final PCASvdMethod svdMethod;
+  private final int numComponents;
+  private final PCAPretreatedData previousData;
+  private final PCARowsResult previousResult;
+  private PCAPretreatedData pretreatedData;
   private PCARowsResult pcaRowsResult;
 
   protected PCAUpdateTask(@NotNull String taskName, PCAModel model) {
@@ -80,12 +83,16 @@ public class PCAUpdateTask extends FxUpdateTask<PCAModel> {
     flists = model.getFlists();
     abundance = model.getAbundance();
 
-    final ScalingFunctions scalingFunction = model.getScalingFunction();
-    scaling = scalingFunction.getScalingFunction();
-
-    final ImputationFunctions imputationFunction = model.getImputationFunction();
-    imputer = imputationFunction.getImputer();
+    scaling = model.getScalingFunction();
+    imputation = model.getImputationFunction();
     sampleTypeFilter = model.getSampleTypeFilter();
+
+    svdMethod = model.getSvdMethod();
+    // compute at least the displayed components
+    numComponents = Math.max(Objects.requireNonNullElse(model.getNumComponents(), 2),
+        Math.max(domainPcIndex, rangePcIndex) + 1);
+    previousData = model.getPretreatedData();
+    previousResult = model.getPcaResult();
   }
 
   @Override
@@ -125,8 +132,21 @@ public class PCAUpdateTask extends FxUpdateTask<PCAModel> {
         ((r1, r2) -> annotationPrioSorter.compare(rowsMappedToBestAnnotation.get(r1),
             rowsMappedToBestAnnotation.get(r2)))).toList();
 
-    pcaRowsResult = PCAUtils.performPCAOnRows(rowsSortedByAnnotationPrio, abundance, scaling,
-        imputer, sampleTypeFilter);
+    if (previousData != null && previousData.matches(rowsSortedByAnnotationPrio,
+        PCAUtils.getFiles(rowsSortedByAnnotationPrio, sampleTypeFilter), abundance, scaling,
+        imputation, sampleTypeFilter)) {
+      // only the displayed components or the svd changed
+      pretreatedData = previousData;
+    } else {
+      pretreatedData = PCAUtils.createPretreatedData(rowsSortedByAnnotationPrio, abundance,
+          scaling, imputation, sampleTypeFilter);
+    }
+
+    if (pretreatedData == previousData && canReuseResult()) {
+      pcaRowsResult = previousResult;
+    } else {
+      pcaRowsResult = PCAUtils.performPCA(pretreatedData, svdMethod, numComponents);
+    }
     progressProvider.getAndIncrement();
 
     final PCAScoresProvider scores = new PCAScoresProvider(pcaRowsResult, "Scores", Color.RED,
@@ -142,16 +162,32 @@ public class PCAUpdateTask extends FxUpdateTask<PCAModel> {
     loadingsDatasets.add(new DatasetAndRenderer(loadingsDS, new ColoredXYShapeRenderer()));
     scoresDatasets.add(new DatasetAndRenderer(scoresDS, new ColoredXYShapeRenderer()));
 
-    for (int i = 1; i <= pcaRowsResult.pcaResult().principalComponentsMatrix().getRowDimension();
-        i++) {
+    for (int i = 1; i <= pcaRowsResult.pcaResult().componentCount(); i++) {
       components.add(i);
     }
   }
 
+  /**
+   * The previous result was computed on the same data. A full svd contains all components, a
+   * truncated svd needs the same number of components.
+   */
+  private boolean canReuseResult() {
+    if (previousResult == null) {
+      return false;
+    }
+    final int computed = previousResult.pcaResult().componentCount();
+    final int maxComponents = Math.min(pretreatedData.numSamples(), pretreatedData.numFeatures());
+    return switch (svdMethod) {
+      case FULL -> computed >= maxComponents;
+      case RANDOMIZED -> computed == Math.min(numComponents, maxComponents);
+    };
+  }
+
   @Override
   protected void updateGuiModel() {
     model.setScoresDatasets(scoresDatasets);
     model.setLoadingsDatasets(loadingsDatasets);
+    model.setPretreatedData(pretreatedData);
     model.setPcaResult(pcaRowsResult);
 
     if (model.getAvailablePCs().size() != components.size()) {
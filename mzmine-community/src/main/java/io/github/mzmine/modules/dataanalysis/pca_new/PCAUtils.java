@@ -30,7 +30,9 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.modules.dataanalysis.utils.StatisticUtils;
 import io.github.mzmine.modules.dataanalysis.utils.imputation.ImputationFunction;
+import io.github.mzmine.modules.dataanalysis.utils.imputation.ImputationFunctions;
 import io.github.mzmine.modules.dataanalysis.utils.scaling.ScalingFunction;
+import io.github.mzmine.modules.dataanalysis.utils.scaling.ScalingFunctions;
 import io.github.mzmine.modules.visualization.projectmetadata.SampleTypeFilter;
 import java.util.List;
 import java.util.logging.Logger;
@@ -102,4 +104,58 @@ public class PCAUtils {
     final PCAResult pcaResult = quickPCA(data, scalingFunction);
     return new PCARowsResult(pcaResult, rows, files);
   }
+
+  /**
+   * @return all files of the rows that match the sample type filter
+   */
+  public static List<RawDataFile> getFiles(List<FeatureListRow> rows,
+      SampleTypeFilter sampleTypeFilter) {
+    return rows.stream().flatMap(row -> row.getRawDataFiles().stream()).distinct()
+        .filter(sampleTypeFilter::matches).toList();
+  }
+
+  /**
+   * Creates the imputed, centered and scaled data matrix of the rows. The result can be reused for
+   * multiple decompositions, see {@link #performPCA(PCAPretreatedData, PCASvdMethod, int)}.
+   *
+   * @param rows the rows, columns of the data matrix
+   */
+  public static PCAPretreatedData createPretreatedData(List<FeatureListRow> rows,
+      AbundanceMeasure measure, ScalingFunctions scaling, ImputationFunctions imputation,
+      SampleTypeFilter sampleTypeFilter) {
+    final List<RawDataFile> files = getFiles(rows, sampleTypeFilter);
+    final RealMatrix data = StatisticUtils.createDatasetFromRows(rows, files, measure);
+    StatisticUtils.imputeMissingValues(data, true, imputation.getImputer());
+    logger.finest(() -> "Performing scaling and centering");
+    StatisticUtils.centerAndScale(data, scaling.getScalingFunction(), true);
+
+    // column-major copy
+    final int numFiles = files.size();
+    final double[] columnMajor = new double[numFiles * rows.size()];
+    for (int col = 0; col < rows.size(); col++) {
+      System.arraycopy(data.getColumn(col), 0, columnMajor, col * numFiles, numFiles);
+    }
+    return new PCAPretreatedData(rows, files, measure, scaling, imputation, sampleTypeFilter,
+        columnMajor);
+  }
+
+  /**
+   * @param numComponents the number of components computed by a truncated svd. The full svd
+   *                      computes all components.
+   */
+  public static PCARowsResult performPCA(PCAPretreatedData data, PCASvdMethod method,
+      int numComponents) {
+    final PCAResult result = switch (method) {
+      case FULL -> {
+        logger.finest(() -> "Performing singular value decomposition. This may take a while");
+        yield new PCAResult(new SingularValueDecomposition(data.toRealMatrix()));
+      }
+      case RANDOMIZED -> {
+        logger.finest(() -> "Performing randomized truncated singular value decomposition");
+        yield RandomizedSVD.compute(data.data(), data.numSamples(), data.numFeatures(),
+            numComponents);
+      }
+    };
+    return new PCARowsResult(result, data.rows(), data.files());
+  }
 }
@@ -99,6 +99,8 @@ public class PCAViewBuilder extends FxViewBuilder<PCAModel> {
     final HBox imputation = FxComboBox.createLabeledComboBox("Missing value imputation",
         FXCollections.observableArrayList(ImputationFunctions.values()),
         model.imputationFunctionProperty());
+    final HBox svd = FxComboBox.createLabeledComboBox("SVD",
+        FXCollections.observableArrayList(PCASvdMethod.values()), model.svdMethodProperty());
     final HBox domain = FxComboBox.createLabeledComboBox("Domain PC", model.getAvailablePCs(),
         model.domainPcProperty());
     final HBox range = FxComboBox.createLabeledComboBox("Range PC", model.getAvailablePCs(),
@@ -119,7 +121,8 @@ public class PCAViewBuilder extends FxViewBuilder<PCAModel> {
     final HBox sampleBox = FxLayout.newHBox(Insets.EMPTY, FxLabels.newLabel("Sample types"), sampleTypesBox);
 
     final TitledPane controls = new TitledPane("Controls",
-        new FlowPane(space, space, scaling, imputation, domain, range, coloring, abundance, sampleBox));
+        new FlowPane(space, space, scaling, imputation, svd, domain, range, coloring, abundance,
+            sampleBox));
     final Accordion accordion = new Accordion(controls);
     accordion.setExpandedPane(controls);
     pane.setBottom(accordion);
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.pca_new;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+
+/**
+ * Truncated singular value decomposition by a randomized range finder with power iterations
+ * (Halko, Martinsson, Tropp 2011). The data matrix A (n x m) is multiplied with a random gaussian
+ * sketch to find an orthonormal basis Q of its dominant range. Only the small matrix Q^T A is
+ * decomposed by a full SVD. All products with A run on primitive column-major arrays.
+ */
+public class RandomizedSVD {
+
+  static final int DEFAULT_OVERSAMPLING = 10;
+  static final int DEFAULT_POWER_ITERATIONS = 2;
+  // fixed seed for reproducible plots
+  private static final long SEED = 42L;
+
+  private RandomizedSVD() {
+  }
+
+  /**
+   * @param a             column-major data matrix
+   * @param n             number of rows (samples)
+   * @param m             number of columns (features)
+   * @param numComponents the number of components to compute
+   * @return the first numComponents components of the decomposition
+   */
+  public static PCAResult compute(double[] a, int n, int m, int numComponents) {
+    return compute(a, n, m, numComponents, DEFAULT_OVERSAMPLING, DEFAULT_POWER_ITERATIONS);
+  }
+
+  public static PCAResult compute(double[] a, int n, int m, int numComponents, int oversampling,
+      int powerIterations) {
+    final int l = Math.min(numComponents + oversampling, Math.min(n, m));
+    final int k = Math.min(numComponents, l);
+
+    final Random random = new Random(SEED);
+    final double[] omega = new double[m * l];
+    for (int i = 0; i < omega.length; i++) {
+      omega[i] = random.nextGaussian();
+    }
+
+    // range finder with power iterations to sharpen the singular value decay
+    double[] q = multiply(a, n, m, omega, l);
+    orthonormalize(q, n, l);
+    for (int i = 0; i < powerIterations; i++) {
+      final double[] z = multiplyTransposed(a, n, m, q, l);
+      orthonormalize(z, m, l);
+      q = multiply(a, n, m, z, l);
+      orthonormalize(q, n, l);
+    }
+
+    // B^T = A^T Q is m x l, its svd B^T = U' S V'^T gives A = (Q V') S U'^T
+    final double[] bt = multiplyTransposed(a, n, m, q, l);
+    final RealMatrix btMatrix = new Array2DRowRealMatrix(m, l);
+    for (int c = 0; c < l; c++) {
+      for (int j = 0; j < m; j++) {
+        btMatrix.setEntry(j, c, bt[c * m + j]);
+      }
+    }
+    final SingularValueDecomposition svd = new SingularValueDecomposition(btMatrix);
+    final RealMatrix smallV = svd.getV();
+
+    final RealMatrix u = new Array2DRowRealMatrix(n, k);
+    for (int c = 0; c < k; c++) {
+      for (int i = 0; i < n; i++) {
+        double sum = 0;
+        for (int r = 0; r < l; r++) {
+          sum += q[r * n + i] * smallV.getEntry(r, c);
+        }
+        u.setEntry(i, c, sum);
+      }
+    }
+    final double[] singularValues = svd.getSingularValues();
+    final double[] firstSingularValues = new double[k];
+    System.arraycopy(singularValues, 0, firstSingularValues, 0, k);
+    final RealMatrix s = MatrixUtils.createRealDiagonalMatrix(firstSingularValues);
+    final RealMatrix v = svd.getU().getSubMatrix(0, m - 1, 0, k - 1);
+    return new PCAResult(u, s, v);
+  }
+
+  /**
+   * @return A * X as column-major n x l matrix, X is a column-major m x l matrix
+   */
+  private static double[] multiply(double[] a, int n, int m, double[] x, int l) {
+    final double[] result = new double[n * l];
+    IntStream.range(0, l).parallel().forEach(c -> {
+      final int resultOffset = c * n;
+      final int xOffset = c * m;
+      for (int j = 0; j < m; j++) {
+        final double xValue = x[xOffset + j];
+        if (xValue == 0) {
+          continue;
+        }
+        final int aOffset = j * n;
+        for (int i = 0; i < n; i++) {
+          result[resultOffset + i] += a[aOffset + i] * xValue;
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return A^T * Y as column-major m x l matrix, Y is a column-major n x l matrix
+   */
+  private static double[] multiplyTransposed(double[] a, int n, int m, double[] y, int l) {
+    final double[] result = new double[m * l];
+    IntStream.range(0, m).parallel().forEach(j -> {
+      final int aOffset = j * n;
+      for (int c = 0; c < l; c++) {
+        final int yOffset = c * n;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+          sum += a[aOffset + i] * y[yOffset + i];
+        }
+        result[c * m + j] = sum;
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Modified Gram-Schmidt on the columns of a column-major rows x cols matrix. Columns that are
+   * linearly dependent on the previous columns are set to 0.
+   */
+  private static void orthonormalize(double[] matrix, int rows, int cols) {
+    for (int c = 0; c < cols; c++) {
+      final int offset = c * rows;
+      for (int p = 0; p < c; p++) {
+        final int pOffset = p * rows;
+        double dot = 0;
+        for (int i = 0; i < rows; i++) {
+          dot += matrix[pOffset + i] * matrix[offset + i];
+        }
+        for (int i = 0; i < rows; i++) {
+          matrix[offset + i] -= dot * matrix[pOffset + i];
+        }
+      }
+      double norm = 0;
+      for (int i = 0; i < rows; i++) {
+        norm += matrix[offset + i] * matrix[offset + i];
+      }
+      norm = Math.sqrt(norm);
+      final double factor = norm > 1E-12 ? 1d / norm : 0d;
+      for (int i = 0; i < rows; i++) {
+        matrix[offset + i] *= factor;
+      }
+    }
+  }
+}
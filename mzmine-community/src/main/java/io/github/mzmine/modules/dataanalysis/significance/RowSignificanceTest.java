@@ -26,7 +26,11 @@
 package io.github.mzmine.modules.dataanalysis.significance;
 
 import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.modules.dataanalysis.utils.StatisticUtils;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public interface RowSignificanceTest {
@@ -34,6 +38,26 @@ public interface RowSignificanceTest {
   /**
    * @return The result of this test or null of the test failed.
    */
-  @Nullable RowSignificanceTestResult test(FeatureListRow row, AbundanceMeasure abundanceMeasure);
+  default @Nullable RowSignificanceTestResult test(FeatureListRow row,
+      AbundanceMeasure abundanceMeasure) {
+    final List<double[]> groupAbundances = getGroupedFiles().stream()
+        .map(group -> StatisticUtils.extractAbundance(row, group, abundanceMeasure)).toList();
+    return test(row, groupAbundances);
+  }
+
+  /**
+   * Test on abundances that were already extracted, e.g., for all rows at once by
+   * {@link RowSignificanceTestEngine}.
+   *
+   * @param groupAbundances the abundances of this row for each group of
+   *                        {@link #getGroupedFiles()}. Missing values are excluded.
+   * @return The result of this test or null of the test failed.
+   */
+  @Nullable RowSignificanceTestResult test(FeatureListRow row, List<double[]> groupAbundances);
+
+  /**
+   * @return the files of each group that is compared by this test
+   */
+  @NotNull List<List<RawDataFile>> getGroupedFiles();
 
 }
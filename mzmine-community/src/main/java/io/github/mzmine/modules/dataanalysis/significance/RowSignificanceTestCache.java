@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.significance;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestEngine.RowSignificanceTestResults;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Results of {@link RowSignificanceTestEngine} for the rows of one feature list, keyed by test,
+ * grouping and abundance measure. The cache lives on the feature list, so it is released together
+ * with the list. Re-rendering a plot does not repeat the tests.
+ */
+public class RowSignificanceTestCache {
+
+  private static final int MAX_CACHED_RESULTS = 4;
+
+  private final Map<Key, RowSignificanceTestResults> cache = new LinkedHashMap<>(8, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, RowSignificanceTestResults> eldest) {
+      return size() > MAX_CACHED_RESULTS;
+    }
+  };
+
+  /**
+   * @param rowsModificationCount the current
+   *                              {@link ModularFeatureList#getRowsModificationCount()} of the
+   *                              feature list
+   * @return the cached results or null
+   */
+  public @Nullable RowSignificanceTestResults get(@NotNull RowSignificanceTest test,
+      @NotNull AbundanceMeasure measure, long rowsModificationCount) {
+    synchronized (cache) {
+      return cache.get(new Key(test, measure, test.getGroupedFiles(), rowsModificationCount));
+    }
+  }
+
+  /**
+   * @param rowsModificationCount the {@link ModularFeatureList#getRowsModificationCount()} before
+   *                              the rows were tested
+   */
+  public void put(@NotNull RowSignificanceTest test, @NotNull AbundanceMeasure measure,
+      long rowsModificationCount, @NotNull RowSignificanceTestResults results) {
+    synchronized (cache) {
+      cache.put(new Key(test, measure, test.getGroupedFiles(), rowsModificationCount), results);
+    }
+  }
+
+  /**
+   * The cache lives on one feature list, the modification count of its rows is part of the key,
+   * because rows may be added or removed from a feature list.
+   */
+  private record Key(RowSignificanceTest test, AbundanceMeasure measure,
+                     List<List<RawDataFile>> groupedFiles, long rowsModificationCount) {
+
+  }
+}
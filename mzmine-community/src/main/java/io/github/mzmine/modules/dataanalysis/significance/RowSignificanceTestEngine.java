@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.significance;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularDataModel;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataanalysis.utils.StatisticUtils;
+import io.github.mzmine.taskcontrol.progress.TotalFinishedItemsProgress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs a {@link RowSignificanceTest} on all rows of a feature list at once. The abundances of all
+ * rows are extracted into a primitive matrix first, the rows are then tested in parallel, and
+ * Benjamini-Hochberg q-values are added. Results are cached in the
+ * {@link RowSignificanceTestCache} of the feature list.
+ */
+public class RowSignificanceTestEngine {
+
+  private RowSignificanceTestEngine() {
+  }
+
+  /**
+   * Tests all rows of the feature list or returns the cached results of an equal test.
+   *
+   * @param progress   optional progress, incremented for every tested row
+   * @param isCanceled checked before every row. Results of a canceled run are incomplete and not
+   *                   cached.
+   */
+  public static @NotNull RowSignificanceTestResults test(@NotNull FeatureList flist,
+      @NotNull RowSignificanceTest test, @NotNull AbundanceMeasure measure,
+      @Nullable TotalFinishedItemsProgress progress, @NotNull BooleanSupplier isCanceled) {
+    if (!(flist instanceof ModularFeatureList mflist)) {
+      return test(List.copyOf(flist.getRows()), test, measure, progress, isCanceled);
+    }
+
+    // count before copying the rows, a concurrent change then only leads to a cache miss
+    final long rowsModificationCount = mflist.getRowsModificationCount();
+    final List<FeatureListRow> rows = List.copyOf(flist.getRows());
+    final RowSignificanceTestCache cache = mflist.getRowSignificanceTestCache();
+    final RowSignificanceTestResults cached = cache.get(test, measure, rowsModificationCount);
+    if (cached != null) {
+      if (progress != null) {
+        progress.addFinished(rows.size());
+      }
+      return cached;
+    }
+
+    final RowSignificanceTestResults results = test(rows, test, measure, progress, isCanceled);
+    if (!isCanceled.getAsBoolean()) {
+      cache.put(test, measure, rowsModificationCount, results);
+    }
+    return results;
+  }
+
+  /**
+   * Tests all rows without using the cache.
+   *
+   * @param isCanceled checked before every row, remaining rows are skipped once canceled
+   */
+  public static @NotNull RowSignificanceTestResults test(@NotNull List<FeatureListRow> rows,
+      @NotNull RowSignificanceTest test, @NotNull AbundanceMeasure measure,
+      @Nullable TotalFinishedItemsProgress progress, @NotNull BooleanSupplier isCanceled) {
+    final List<List<RawDataFile>> groups = test.getGroupedFiles();
+    final List<RawDataFile> files = groups.stream().flatMap(List::stream).distinct().toList();
+    final int numFiles = files.size();
+
+    final Map<RawDataFile, Integer> fileIndices = HashMap.newHashMap(numFiles);
+    for (int i = 0; i < numFiles; i++) {
+      fileIndices.put(files.get(i), i);
+    }
+    final int[][] groupColumns = groups.stream()
+        .map(group -> group.stream().mapToInt(fileIndices::get).toArray()).toArray(int[][]::new);
+
+    // rows x files, missing values are NaN
+    final double[] abundances = extractAbundances(rows, files, measure);
+
+    final RowSignificanceTestResult[] results = new RowSignificanceTestResult[rows.size()];
+    IntStream.range(0, rows.size()).parallel().forEach(rowIndex -> {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      final int offset = rowIndex * numFiles;
+      final List<double[]> groupAbundances = new ArrayList<>(groupColumns.length);
+      for (final int[] columns : groupColumns) {
+        groupAbundances.add(collectGroup(abundances, offset, columns));
+      }
+      results[rowIndex] = test.test(rows.get(rowIndex), groupAbundances);
+      if (progress != null) {
+        progress.getAndIncrement();
+      }
+    });
+
+    final List<RowSignificanceTestResult> nonNull = Arrays.stream(results)
+        .filter(Objects::nonNull).toList();
+    final double[] pValues = nonNull.stream().mapToDouble(RowSignificanceTestResult::pValue)
+        .toArray();
+    return new RowSignificanceTestResults(nonNull, StatisticUtils.benjaminiHochberg(pValues));
+  }
+
+  /**
+   * @return row major matrix of rows x files
+   */
+  private static double[] extractAbundances(List<FeatureListRow> rows, List<RawDataFile> files,
+      AbundanceMeasure measure) {
+    final int numFiles = files.size();
+    final double[] abundances = new double[rows.size() * numFiles];
+    IntStream.range(0, rows.size()).parallel().forEach(rowIndex -> {
+      final FeatureListRow row = rows.get(rowIndex);
+      final int offset = rowIndex * numFiles;
+      for (int fileIndex = 0; fileIndex < numFiles; fileIndex++) {
+        final Feature feature = row.getFeature(files.get(fileIndex));
+        abundances[offset + fileIndex] =
+            feature != null ? measure.getOrNaN((ModularDataModel) feature) : Double.NaN;
+      }
+    });
+    return abundances;
+  }
+
+  /**
+   * @return the non-missing values of the group columns in this row
+   */
+  private static double[] collectGroup(double[] abundances, int offset, int[] columns) {
+    final double[] values = new double[columns.length];
+    int n = 0;
+    for (final int column : columns) {
+      final double value = abundances[offset + column];
+      if (!Double.isNaN(value)) {
+        values[n++] = value;
+      }
+    }
+    return n == values.length ? values : Arrays.copyOf(values, n);
+  }
+
+  /**
+   * @param results the results of all rows that could be tested, in feature list row order
+   * @param qValues Benjamini-Hochberg adjusted p-values in the same order as the results
+   */
+  public record RowSignificanceTestResults(@NotNull List<RowSignificanceTestResult> results,
+                                           double @NotNull [] qValues) {
+
+    /**
+     * @return the q-value of each result, compared by identity
+     */
+    public @NotNull Map<RowSignificanceTestResult, Double> qValuesByResult() {
+      final Map<RowSignificanceTestResult, Double> map = new IdentityHashMap<>(results.size());
+      for (int i = 0; i < results.size(); i++) {
+        map.put(results.get(i), qValues[i]);
+      }
+      return map;
+    }
+  }
+}
@@ -31,13 +31,14 @@ import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.DataTypes;
 import io.github.mzmine.datamodel.features.types.numbers.stats.AnovaPValueType;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestEngine;
 import io.github.mzmine.modules.visualization.projectmetadata.MetadataColumnDoesNotExistException;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.progress.TotalFinishedItemsProgress;
 import java.time.Instant;
 import java.util.List;
-import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -49,13 +50,14 @@ public class AnovaTask extends AbstractTask {
   private final FeatureList flist;
   private final String groupingColumnName;
   private AnovaTest calc;
-  private int processed;
+  private final TotalFinishedItemsProgress progress;
 
   public AnovaTask(FeatureList flist, ParameterSet parameters, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
     this.flist = flist;
     this.parameters = parameters;
     this.groupingColumnName = this.parameters.getValue(AnovaParameters.groupingParameter);
+    progress = new TotalFinishedItemsProgress(flist.getNumberOfRows());
   }
 
   @Override
@@ -64,7 +66,7 @@ public class AnovaTask extends AbstractTask {
   }
 
   public double getFinishedPercentage() {
-    return (double) processed / flist.getNumberOfRows();
+    return progress.progress();
   }
 
   public void run() {
@@ -85,13 +87,12 @@ public class AnovaTask extends AbstractTask {
       return;
     }
 
-    final List<AnovaResult> anovaResults = flist.getRows().stream().map(row -> {
-      if (isCanceled()) {
-        return null;
-      }
-      processed++;
-      return calc.test(row, AbundanceMeasure.Height);
-    }).filter(Objects::nonNull).toList();
+    final List<AnovaResult> anovaResults = RowSignificanceTestEngine.test(flist, calc,
+            AbundanceMeasure.Height, progress, this::isCanceled).results().stream()
+        .map(AnovaResult.class::cast).toList();
+    if (isCanceled()) {
+      return;
+    }
 
     anovaResults.forEach(r -> r.row().set(AnovaPValueType.class, r.pValue()));
     flist.getAppliedMethods()
@@ -26,19 +26,19 @@
 package io.github.mzmine.modules.dataanalysis.significance.anova;
 
 import com.google.common.util.concurrent.AtomicDouble;
-import io.github.mzmine.datamodel.AbundanceMeasure;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTest;
-import io.github.mzmine.modules.dataanalysis.utils.StatisticUtils;
 import io.github.mzmine.modules.visualization.projectmetadata.MetadataColumnDoesNotExistException;
 import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTable;
 import io.github.mzmine.modules.visualization.projectmetadata.table.columns.MetadataColumn;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.logging.Logger;
 import org.apache.commons.math3.stat.inference.TestUtils;
+import org.jetbrains.annotations.NotNull;
 
 public class AnovaTest implements RowSignificanceTest {
 
@@ -65,10 +65,7 @@ public class AnovaTest implements RowSignificanceTest {
   }
 
   @Override
-  public AnovaResult test(FeatureListRow row, AbundanceMeasure abundanceMeasure) {
-    final List<double[]> intensityGroups = groupedFiles.stream()
-        .map(group -> StatisticUtils.extractAbundance(row, group, abundanceMeasure)).toList();
-
+  public AnovaResult test(FeatureListRow row, List<double[]> intensityGroups) {
     if (checkConditions(intensityGroups)) {
       final double pValue = TestUtils.oneWayAnovaPValue(intensityGroups);
       final double fValue = TestUtils.oneWayAnovaFValue(intensityGroups);
@@ -77,4 +74,23 @@ public class AnovaTest implements RowSignificanceTest {
 
     return null;
   }
+
+  @Override
+  public @NotNull List<List<RawDataFile>> getGroupedFiles() {
+    return groupedFiles;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    return o instanceof AnovaTest that && Objects.equals(groupingColumn, that.groupingColumn)
+           && Objects.equals(groupedFiles, that.groupedFiles);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(groupingColumn, groupedFiles);
+  }
 }
@@ -25,13 +25,11 @@
 
 package io.github.mzmine.modules.dataanalysis.significance.ttest;
 
-import io.github.mzmine.datamodel.AbundanceMeasure;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTest;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestResult;
-import io.github.mzmine.modules.dataanalysis.utils.StatisticUtils;
 import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTable;
 import io.github.mzmine.modules.visualization.projectmetadata.table.columns.MetadataColumn;
 import java.util.List;
@@ -63,11 +61,9 @@ public final class StudentTTest<T> implements RowSignificanceTest {
   }
 
   @Override
-  public RowSignificanceTestResult test(FeatureListRow row, AbundanceMeasure abundanceMeasure) {
-    final double[] groupAAbundance = StatisticUtils.extractAbundance(row, groupedFilesA,
-        abundanceMeasure);
-    final double[] groupBAbundance = StatisticUtils.extractAbundance(row, groupedFilesB,
-        abundanceMeasure);
+  public RowSignificanceTestResult test(FeatureListRow row, List<double[]> groupAbundances) {
+    final double[] groupAAbundance = groupAbundances.get(0);
+    final double[] groupBAbundance = groupAbundances.get(1);
 
     if (!checkConditions(groupAAbundance, groupBAbundance)) {
       return null;
@@ -79,6 +75,11 @@ public final class StudentTTest<T> implements RowSignificanceTest {
     return new TTestResult(row, column.getTitle(), p);
   }
 
+  @Override
+  public @NotNull List<List<RawDataFile>> getGroupedFiles() {
+    return List.of(groupedFilesA, groupedFilesB);
+  }
+
   private boolean checkConditions(double[] abundancesA, double[] abundancesB) {
     switch (samplingConfig) {
       case PAIRED -> {
@@ -34,9 +34,11 @@ import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestResult;
 import io.github.mzmine.modules.dataanalysis.utils.scaling.ScalingFunction;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 import org.apache.commons.math.util.MathUtils;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
@@ -72,6 +74,31 @@ public class StatisticUtils {
         Arrays.stream(ab1).average().getAsDouble() / Arrays.stream(abB).average().getAsDouble());
   }
 
+  /**
+   * Benjamini-Hochberg adjustment of p-values for the false discovery rate. NaN p-values are not
+   * counted as tests and stay NaN.
+   *
+   * @return the q-values in the same order as the p-values
+   */
+  public static double[] benjaminiHochberg(double[] pValues) {
+    final double[] qValues = new double[pValues.length];
+    Arrays.fill(qValues, Double.NaN);
+
+    final int[] order = IntStream.range(0, pValues.length).filter(i -> !Double.isNaN(pValues[i]))
+        .boxed().sorted(Comparator.comparingDouble(i -> pValues[i])).mapToInt(Integer::intValue)
+        .toArray();
+    final int m = order.length;
+
+    // step up from the largest p-value and keep the q-values monotonic
+    double minQ = 1d;
+    for (int rank = m; rank >= 1; rank--) {
+      final int index = order[rank - 1];
+      minQ = Math.min(minQ, pValues[index] * m / rank);
+      qValues[index] = minQ;
+    }
+    return qValues;
+  }
+
   /**
    * Performs mean centering on the data. Values may only be positive.
    */
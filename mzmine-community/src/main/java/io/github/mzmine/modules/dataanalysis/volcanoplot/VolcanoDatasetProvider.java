@@ -38,6 +38,7 @@ import io.github.mzmine.util.FeatureUtils;
 import java.awt.Color;
 import java.text.DecimalFormat;
 import java.util.List;
+import java.util.Map;
 import javafx.beans.property.Property;
 import org.jetbrains.annotations.Nullable;
 
@@ -46,14 +47,20 @@ public class VolcanoDatasetProvider extends SimpleXYProvider implements
 
   private final StudentTTest<?> test;
   private final List<RowSignificanceTestResult> results;
+  private final Map<RowSignificanceTestResult, Double> qValues;
 
   private final AbundanceMeasure abundanceMeasure;
 
+  /**
+   * @param qValues Benjamini-Hochberg adjusted p-values of the results, shown in the tooltip
+   */
   public VolcanoDatasetProvider(StudentTTest<?> test, List<RowSignificanceTestResult> results,
-      Color color, String key, AbundanceMeasure abundanceMeasure) {
+      Map<RowSignificanceTestResult, Double> qValues, Color color, String key,
+      AbundanceMeasure abundanceMeasure) {
     super(key, color, new DecimalFormat("0.0"), new DecimalFormat("0.0"));
     this.test = test;
     this.results = results;
+    this.qValues = qValues;
     this.abundanceMeasure = abundanceMeasure;
   }
 
@@ -70,10 +77,12 @@ public class VolcanoDatasetProvider extends SimpleXYProvider implements
     if (bestAnnotation != null) {
       name += STR.", \{bestAnnotation.getCompoundName()}";
     }
+    final double qValue = qValues.getOrDefault(result, Double.NaN);
     return String.format("""
         %s
         Fold change: %.3f
-        p-Value: %.3f""", name, Math.pow(2, getDomainValue(index)), result.pValue());
+        p-Value: %.3f
+        q-Value: %.3f""", name, Math.pow(2, getDomainValue(index)), result.pValue(), qValue);
   }
 
   @Override
@@ -28,7 +28,6 @@ package io.github.mzmine.modules.dataanalysis.volcanoplot;
 import io.github.mzmine.datamodel.AbundanceMeasure;
 import io.github.mzmine.datamodel.features.FeatureAnnotationPriority;
 import io.github.mzmine.datamodel.features.FeatureList;
-import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.datamodel.features.types.DataTypes;
 import io.github.mzmine.datamodel.features.types.annotations.MissingValueType;
@@ -39,6 +38,8 @@ import io.github.mzmine.gui.chartbasics.simplechart.renderers.ColoredXYShapeRend
 import io.github.mzmine.javafx.mvci.FxUpdateTask;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTest;
+import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestEngine;
+import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestEngine.RowSignificanceTestResults;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestResult;
 import io.github.mzmine.modules.dataanalysis.significance.ttest.StudentTTest;
 import io.github.mzmine.taskcontrol.progress.TotalFinishedItemsProgress;
@@ -90,16 +91,12 @@ class VolcanoPlotUpdateTask extends FxUpdateTask<VolcanoPlotModel> {
     if (!checkPreConditions()) {
       return;
     }
-    List<RowSignificanceTestResult> rowSignificanceTestResults = new ArrayList<>();
-    for (final FeatureListRow row : flist.getRows()) {
-      if (isCanceled()) {
-        return;
-      }
-      RowSignificanceTestResult result = test.test(row, abundanceMeasure);
-      if (result != null) {
-        rowSignificanceTestResults.add(result);
-      }
-      progress.getAndIncrement();
+    final RowSignificanceTestResults testResults = RowSignificanceTestEngine.test(flist, test,
+        abundanceMeasure, progress, this::isCanceled);
+    final List<RowSignificanceTestResult> rowSignificanceTestResults = testResults.results();
+    final Map<RowSignificanceTestResult, Double> qValues = testResults.qValuesByResult();
+    if (isCanceled()) {
+      return;
     }
 
     final Map<DataType<?>, List<RowSignificanceTestResult>> dataTypeMap = DataTypeUtils.groupByBestDataType(
@@ -125,7 +122,7 @@ class VolcanoPlotUpdateTask extends FxUpdateTask<VolcanoPlotModel> {
 
       final Color color = colors.getNextColorAWT();
       if (!significantRows.isEmpty()) {
-        var provider = new VolcanoDatasetProvider(ttest, significantRows, color,
+        var provider = new VolcanoDatasetProvider(ttest, significantRows, qValues, color,
             STR."\{type.equals(DataTypes.get(MissingValueType.class)) ? "unknown"
                 : type.getHeaderString()} (p < \{pValue})", abundanceMeasure);
         temporaryDatasets.add(
@@ -134,7 +131,7 @@ class VolcanoPlotUpdateTask extends FxUpdateTask<VolcanoPlotModel> {
       }
       // NOT significant
       if (!insignificantRows.isEmpty()) {
-        var provider = new VolcanoDatasetProvider(ttest, insignificantRows, color,
+        var provider = new VolcanoDatasetProvider(ttest, insignificantRows, qValues, color,
             STR."\{type.equals(DataTypes.get(MissingValueType.class)) ? "unknown"
                 : type.getHeaderString()} (p ≥ \{pValue})", abundanceMeasure);
         temporaryDatasets.add(
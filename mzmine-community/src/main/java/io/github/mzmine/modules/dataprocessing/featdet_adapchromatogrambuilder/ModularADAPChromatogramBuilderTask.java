@@ -40,6 +40,7 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.ScanDataType;
 import io.github.mzmine.datamodel.data_access.ScanDataAccess;
+import io.github.mzmine.datamodel.featuredata.impl.IonSeriesArena;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -64,6 +65,7 @@ import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.logging.Logger;
@@ -79,6 +81,8 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
   private final MZmineProject project;
   private final RawDataFile dataFile;
   private final ScanSelection scanSelection;
+  // scans to build chromatograms from instead of the scan selection, may be null
+  private final @Nullable List<? extends Scan> selectedScans;
   // User parameters
   private final String suffix;
   private final MZTolerance mzTolerance;
@@ -105,10 +109,28 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
       ParameterSet parameters, @Nullable MemoryMapStorage storage, @NotNull Instant moduleCallDate,
       Class<? extends MZmineModule> callingModule, @Nullable Integer minimumTotalScans,
       @Nullable Double minGroupIntensity) {
+    this(project, dataFile, parameters, storage, moduleCallDate, callingModule, minimumTotalScans,
+        minGroupIntensity, null);
+  }
+
+  /**
+   * @param callingModule     {@link ImageBuilderModule} or
+   *                          {@link ModularADAPChromatogramBuilderModule}
+   * @param minimumTotalScans min total scans is only used in imaging
+   * @param minGroupIntensity min group intensity is only used in chromatography
+   * @param selectedScans     scans sorted by retention time that are used instead of the scan
+   *                          selection parameter, e.g., the scans of one isolation window. Null to
+   *                          use the scan selection
+   */
+  public ModularADAPChromatogramBuilderTask(MZmineProject project, RawDataFile dataFile,
+      ParameterSet parameters, @Nullable MemoryMapStorage storage, @NotNull Instant moduleCallDate,
+      Class<? extends MZmineModule> callingModule, @Nullable Integer minimumTotalScans,
+      @Nullable Double minGroupIntensity, @Nullable List<? extends Scan> selectedScans) {
     super(storage, moduleCallDate);
     this.project = project;
     this.dataFile = dataFile;
     this.scanSelection = parameters.getValue(ADAPChromatogramBuilderParameters.scanSelection);
+    this.selectedScans = selectedScans;
 
     this.mzTolerance = parameters.getValue(ADAPChromatogramBuilderParameters.mzTolerance);
     this.minimumConsecutiveScans = parameters.getValue(
@@ -167,7 +189,8 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
 
     logger.info(() -> "Started chromatogram builder on " + dataFile);
 
-    Scan[] scans = scanSelection.getMatchingScans(dataFile);
+    Scan[] scans = selectedScans != null ? selectedScans.toArray(Scan[]::new)
+        : scanSelection.getMatchingScans(dataFile);
     int emptyScanNumber = 0;
 
     if (scans.length == 0) {
@@ -248,8 +271,9 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
 
     ExpandedDataPoint[] allMzValues = new ExpandedDataPoint[totalDps];
 
-    ScanDataAccess scanData = EfficientDataAccess.of(dataFile, ScanDataType.MASS_LIST,
-        scanSelection);
+    ScanDataAccess scanData = selectedScans != null ? EfficientDataAccess.of(dataFile,
+        ScanDataType.MASS_LIST, selectedScans)
+        : EfficientDataAccess.of(dataFile, ScanDataType.MASS_LIST, scanSelection);
 
     progress = 0;
     double progressStep = 0.1 / scanData.getNumberOfScans();
@@ -336,33 +360,36 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     DataTypeUtils.addDefaultChromatographicTypeColumns(newFeatureList);
 
     int newFeatureID = 1;
-    // add chromatograms that match criteria
-    for (ADAPChromatogram chromatogram : finalRangeMap.values()) {
-      if (isCanceled()) {
-        return;
-      }
-
-      progress += progressStep;
+    // append all chromatograms of this task to large memory mapped segments
+    try (var _ = IonSeriesArena.open(getMemoryMapStorage())) {
+      // add chromatograms that match criteria
+      for (ADAPChromatogram chromatogram : finalRangeMap.values()) {
+        if (isCanceled()) {
+          return;
+        }
 
-      // And remove chromatograms who dont have a certain number of continous points above the
-      // IntensityThresh2 level.
-      var dps = chromatogram.getNumberOfDataPoints();
-      if (dps >= minimumTotalScans && chromatogram.matchesMinContinuousDataPoints(scans,
-          minGroupIntensity, minimumConsecutiveScans, minHighestPoint)) {
-        // add zeros to edges
-        chromatogram.addNZeros(scans, 1, 1);
-
-        // add to list
-        ModularFeature modular = FeatureConvertors.ADAPChromatogramToModularFeature(newFeatureList,
-            dataFile, chromatogram, mzTolerance);
-        ModularFeatureListRow newRow = new ModularFeatureListRow(newFeatureList, newFeatureID,
-            modular);
-        newFeatureList.addRow(newRow);
-        // activate shape for this row
-        if (!isImaging) {
-          newRow.set(FeatureShapeType.class, true);
+        progress += progressStep;
+
+        // And remove chromatograms who dont have a certain number of continous points above the
+        // IntensityThresh2 level.
+        var dps = chromatogram.getNumberOfDataPoints();
+        if (dps >= minimumTotalScans && chromatogram.matchesMinContinuousDataPoints(scans,
+            minGroupIntensity, minimumConsecutiveScans, minHighestPoint)) {
+          // add zeros to edges
+          chromatogram.addNZeros(scans, 1, 1);
+
+          // add to list
+          ModularFeature modular = FeatureConvertors.ADAPChromatogramToModularFeature(
+              newFeatureList, dataFile, chromatogram, mzTolerance);
+          ModularFeatureListRow newRow = new ModularFeatureListRow(newFeatureList, newFeatureID,
+              modular);
+          newFeatureList.addRow(newRow);
+          // activate shape for this row
+          if (!isImaging) {
+            newRow.set(FeatureShapeType.class, true);
+          }
+          newFeatureID++;
         }
-        newFeatureID++;
       }
     }
 
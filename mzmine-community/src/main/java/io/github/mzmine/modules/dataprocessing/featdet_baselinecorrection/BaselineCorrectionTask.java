@@ -29,10 +29,9 @@ import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
-import io.github.mzmine.datamodel.data_access.FeatureDataAccess;
+import io.github.mzmine.datamodel.data_access.ParallelFeatureProcessor;
 import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
-import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
@@ -92,14 +91,16 @@ public class BaselineCorrectionTask extends AbstractSimpleTask {
     newFlist = FeatureListUtils.createCopy(originalFlist, suffix, getMemoryMapStorage());
 
     final RawDataFile rawDataFile = originalFlist.getRawDataFile(0);
-    final FeatureDataAccess access = EfficientDataAccess.of(originalFlist,
-        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, rawDataFile);
-
-    while (access.hasNextFeature()) {
-      final Feature feature = access.nextFeature();
-
-      final IonTimeSeries<? extends Scan> its = corrector.correctBaseline(access);
 
+    // correctors keep buffers, so every shard uses its own instance. Rows are added in order.
+    new ParallelFeatureProcessor<BaselineCorrector, IonTimeSeries<? extends Scan>>(originalFlist,
+        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, rawDataFile,
+        () -> corrector.newInstance(parameters, getMemoryMapStorage(), originalFlist),
+        (shardCorrector, access, _) -> {
+          final IonTimeSeries<? extends Scan> its = shardCorrector.correctBaseline(access);
+          finishedItems.getAndIncrement();
+          return its;
+        }, (feature, its) -> {
       final ModularFeatureListRow newRow = new ModularFeatureListRow(newFlist,
           (ModularFeatureListRow) feature.getRow(), false);
       final ModularFeature newFeature = new ModularFeature(newFlist, feature);
@@ -107,7 +108,10 @@ public class BaselineCorrectionTask extends AbstractSimpleTask {
       FeatureDataUtils.recalculateIonSeriesDependingTypes(newFeature);
       newRow.addFeature(rawDataFile, newFeature);
       newFlist.addRow(newRow);
-      finishedItems.getAndIncrement();
+    }, this).process();
+
+    if (isCanceled()) {
+      return;
     }
 
     handleOriginal.reflectNewFeatureListToProject(suffix, project, newFlist, originalFlist);
@@ -33,6 +33,7 @@ import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.FeatureDataAccess;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.IonSeriesArena;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.ModularFeature;
@@ -202,33 +203,36 @@ public class FeatureResolverTask extends AbstractTask {
 
     int c = 0;
 
-    while (access.hasNextFeature()) {
-      final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
-      final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
-          getMemoryMapStorage());
-
-      for (IonTimeSeries<? extends Scan> resolved : resolvedSeries) {
-        final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList,
-            peakId++);
-        final ModularFeature f = new ModularFeature(resolvedFeatureList,
-            originalFeature.getRawDataFile(), resolved, originalFeature.getFeatureStatus());
-
-        if (originalFeature.getMobilityUnit() != null) {
-          f.set(MobilityUnitType.class, originalFeature.getMobilityUnit());
-        }
-        if (originalFeature.get(ImageType.class) != null) {
-          f.set(ImageType.class, true);
-        }
-        if(originalFeature.get(MaldiSpotType.class) != null) {
-          f.set(MaldiSpotType.class, originalFeature.get(MaldiSpotType.class));
-        }
-        newRow.addFeature(originalFeature.getRawDataFile(), f);
-        resolvedFeatureList.addRow(newRow);
-        if (resolved.getSpectra().size() <= 3) {
-          c++;
+    // append all resolved series of this task to large memory mapped segments
+    try (var _ = IonSeriesArena.open(getMemoryMapStorage())) {
+      while (access.hasNextFeature()) {
+        final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
+        final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
+            getMemoryMapStorage());
+
+        for (IonTimeSeries<? extends Scan> resolved : resolvedSeries) {
+          final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList,
+              peakId++);
+          final ModularFeature f = new ModularFeature(resolvedFeatureList,
+              originalFeature.getRawDataFile(), resolved, originalFeature.getFeatureStatus());
+
+          if (originalFeature.getMobilityUnit() != null) {
+            f.set(MobilityUnitType.class, originalFeature.getMobilityUnit());
+          }
+          if (originalFeature.get(ImageType.class) != null) {
+            f.set(ImageType.class, true);
+          }
+          if(originalFeature.get(MaldiSpotType.class) != null) {
+            f.set(MaldiSpotType.class, originalFeature.get(MaldiSpotType.class));
+          }
+          newRow.addFeature(originalFeature.getRawDataFile(), f);
+          resolvedFeatureList.addRow(newRow);
+          if (resolved.getSpectra().size() <= 3) {
+            c++;
+          }
         }
+        processedRows++;
       }
-      processedRows++;
     }
     logger.info(c + "/" + resolvedFeatureList.getNumberOfRows()
         + " have less than 4 scans (frames for IMS data)");
@@ -52,6 +52,11 @@ public class ExtractMzRangesIonSeriesFunction extends AbstractTaskSubSupplier<Bu
       ExtractMzRangesIonSeriesFunction.class.getName());
   private final List<Range<Double>> mzRangesSorted;
   private final ScanDataAccess dataAccess;
+  private final RawDataFile dataFile;
+  private final ScanDataType scanDataType;
+  private final @NotNull List<? extends Scan> scans;
+  private @Nullable MzBinnedSignalIndex.Key indexKey;
+  private boolean useIndex = false;
   private MzMode mzMode = MzMode.DEFAULT;
   private IntensityMode intensityMode = IntensityMode.DEFAULT;
   private int processedScans, totalScans;
@@ -65,8 +70,11 @@ public class ExtractMzRangesIonSeriesFunction extends AbstractTaskSubSupplier<Bu
       @NotNull ScanDataType scanDataType, @Nullable Task parentTask) {
     super(parentTask);
 
-    dataAccess = EfficientDataAccess.of(dataFile, scanDataType, scanSelection);
+    scans = scanSelection.getMatchingScans(dataFile.getScans());
+    dataAccess = EfficientDataAccess.of(dataFile, scanDataType, scans);
     this.mzRangesSorted = mzRangesSorted;
+    this.dataFile = dataFile;
+    this.scanDataType = scanDataType;
     description = "Extracting %d ion series from data file %s".formatted(mzRangesSorted.size(),
         dataFile.getName());
   }
@@ -81,6 +89,9 @@ public class ExtractMzRangesIonSeriesFunction extends AbstractTaskSubSupplier<Bu
 
     dataAccess = EfficientDataAccess.of(dataFile, scanDataType, scans);
     this.mzRangesSorted = mzRangesSorted;
+    this.dataFile = dataFile;
+    this.scanDataType = scanDataType;
+    this.scans = scans;
   }
 
   public void setMzMode(final MzMode mzMode) {
@@ -91,6 +102,25 @@ public class ExtractMzRangesIonSeriesFunction extends AbstractTaskSubSupplier<Bu
     this.intensityMode = intensityMode;
   }
 
+  /**
+   * @param useIndex build a {@link MzBinnedSignalIndex} if none is cached for these scans. Useful
+   *                 if ion series are extracted repeatedly from the same scans, e.g., in
+   *                 visualizers. An already cached index is always used.
+   */
+  public void setUseIndex(final boolean useIndex) {
+    this.useIndex = useIndex;
+  }
+
+  /**
+   * The key is created once and reused for repeated calls of {@link #get()}
+   */
+  private @NotNull MzBinnedSignalIndex.Key getIndexKey() {
+    if (indexKey == null) {
+      indexKey = MzBinnedSignalIndex.Key.of(scans, scanDataType);
+    }
+    return indexKey;
+  }
+
   @Override
   public @NotNull String getTaskDescription() {
     return description;
@@ -116,6 +146,21 @@ public class ExtractMzRangesIonSeriesFunction extends AbstractTaskSubSupplier<Bu
     }
 
     totalScans = dataAccess.getNumberOfScans();
+
+    final MzBinnedSignalIndex index =
+        useIndex ? MzBinnedSignalIndex.getOrBuild(dataFile, getIndexKey(), scans, this::isCanceled)
+            : MzBinnedSignalIndex.getCached(dataFile, getIndexKey());
+    if (isCanceled()) {
+      return new BuildingIonSeries[0];
+    }
+    // null if the index was evicted in the meantime, then extract from the scans
+    final BuildingIonSeries[] indexed =
+        index == null ? null : index.extract(mzRangesSorted, mzMode, intensityMode);
+    if (indexed != null) {
+      processedScans = totalScans;
+      return isCanceled() ? new BuildingIonSeries[0] : indexed;
+    }
+
     // store data points for each range
     BuildingIonSeries[] chromatograms = new BuildingIonSeries[mzRangesSorted.size()];
     for (int i = 0; i < chromatograms.length; i++) {
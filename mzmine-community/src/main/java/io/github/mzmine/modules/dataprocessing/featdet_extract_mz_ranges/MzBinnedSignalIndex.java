@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_extract_mz_ranges;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.ScanDataType;
+import io.github.mzmine.datamodel.data_access.ScanDataAccess;
+import io.github.mzmine.datamodel.featuredata.impl.BuildingIonSeries;
+import io.github.mzmine.datamodel.featuredata.impl.BuildingIonSeries.IntensityMode;
+import io.github.mzmine.datamodel.featuredata.impl.BuildingIonSeries.MzMode;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.MemoryMapStorageUtils;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Inverted index of all signals of a scan selection, bucketed by m/z bins. The scans are split into
+ * consecutive blocks of about {@link #BLOCK_SIGNALS} signals. Within a block, the signals of a bin
+ * are ordered by scan index and m/z, so the signals of an m/z range are found by direct bucket
+ * lookup instead of a binary search in every scan. The index is built on first use, once per raw
+ * data file, scan selection and {@link ScanDataType}, and cached until the mass lists of its scans
+ * change, see {@link #clearCache(RawDataFile, Collection)}.
+ * <p>
+ * Each index writes to its own {@link MemoryMapStorage}, which is discarded when the index is
+ * evicted from the cache.
+ */
+public class MzBinnedSignalIndex {
+
+  public static final double DEFAULT_BIN_WIDTH = 0.01;
+  /**
+   * Number of signals that are sorted on the heap before they are written to the storage
+   */
+  static final int BLOCK_SIGNALS = 1 << 20;
+  private static final int MAX_CACHED_PER_FILE = 2;
+  private static final Logger logger = Logger.getLogger(MzBinnedSignalIndex.class.getName());
+
+  /**
+   * The values hold no reference to the raw data file or its scans, otherwise the weak keys would
+   * never be released.
+   */
+  private static final Map<RawDataFile, Map<Key, MzBinnedSignalIndex>> cache = Collections.synchronizedMap(
+      new WeakHashMap<>());
+  private final int numScans;
+  private final double binWidth;
+  private final List<Block> blocks;
+  private final @Nullable MemoryMapStorage storage;
+  /**
+   * extractions hold the read lock, so the storage is never discarded while it is read
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private boolean discarded = false;
+
+  private MzBinnedSignalIndex(int numScans, double binWidth, List<Block> blocks,
+      @Nullable MemoryMapStorage storage) {
+    this.numScans = numScans;
+    this.binWidth = binWidth;
+    this.blocks = blocks;
+    this.storage = storage;
+  }
+
+  /**
+   * @return the cached index or null if there is none for these scans
+   */
+  public static @Nullable MzBinnedSignalIndex getCached(@NotNull RawDataFile file,
+      @NotNull Key key) {
+    final Map<Key, MzBinnedSignalIndex> fileCache = cache.get(file);
+    return fileCache == null ? null : fileCache.get(key);
+  }
+
+  /**
+   * @return the cached index of these scans or a newly built one. Null if canceled.
+   */
+  public static @Nullable MzBinnedSignalIndex getOrBuild(@NotNull RawDataFile file,
+      @NotNull List<? extends Scan> scans, @NotNull ScanDataType scanDataType,
+      @NotNull BooleanSupplier isCanceled) {
+    return getOrBuild(file, Key.of(scans, scanDataType), scans, isCanceled);
+  }
+
+  /**
+   * @param key the key of the scans, see {@link Key#of(List, ScanDataType)}
+   * @return the cached index of these scans or a newly built one. Null if canceled.
+   */
+  public static @Nullable MzBinnedSignalIndex getOrBuild(@NotNull RawDataFile file,
+      @NotNull Key key, @NotNull List<? extends Scan> scans, @NotNull BooleanSupplier isCanceled) {
+    final Map<Key, MzBinnedSignalIndex> fileCache = cache.computeIfAbsent(file,
+        _ -> Collections.synchronizedMap(new LinkedHashMap<>(4, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, MzBinnedSignalIndex> eldest) {
+            if (size() > MAX_CACHED_PER_FILE) {
+              eldest.getValue().discard();
+              return true;
+            }
+            return false;
+          }
+        }));
+
+    final MzBinnedSignalIndex cached = fileCache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final MzBinnedSignalIndex index = build(file, scans, key.scanDataType(), DEFAULT_BIN_WIDTH,
+        MemoryMapStorage.forMassList(), isCanceled);
+    if (index == null) {
+      return null;
+    }
+    synchronized (fileCache) {
+      // another thread may have built the same index in the meantime
+      final MzBinnedSignalIndex other = fileCache.get(key);
+      if (other != null) {
+        index.discard();
+        return other;
+      }
+      fileCache.put(key, index);
+    }
+    return index;
+  }
+
+  /**
+   * Removes and discards all indices of this file. Needs to be called when the scan data changes,
+   * e.g., after mass detection.
+   */
+  public static void clearCache(@NotNull RawDataFile file) {
+    final Map<Key, MzBinnedSignalIndex> fileCache = cache.remove(file);
+    if (fileCache == null) {
+      return;
+    }
+    synchronized (fileCache) {
+      fileCache.values().forEach(MzBinnedSignalIndex::discard);
+      fileCache.clear();
+    }
+  }
+
+  /**
+   * Removes and discards the indices of this file that contain any of the changed scans. Needs to
+   * be called when the data of these scans changes, e.g., after mass detection. Indices of other
+   * scans, e.g., MS1 indices after an MS2 only mass detection, are kept.
+   */
+  public static void clearCache(@NotNull RawDataFile file,
+      @NotNull Collection<? extends Scan> changedScans) {
+    final Map<Key, MzBinnedSignalIndex> fileCache = cache.get(file);
+    if (fileCache == null || changedScans.isEmpty()) {
+      return;
+    }
+    final int[] changed = changedScans.stream().mapToInt(Scan::getScanNumber).sorted().toArray();
+    synchronized (fileCache) {
+      fileCache.entrySet().removeIf(entry -> {
+        if (!entry.getKey().containsAny(changed)) {
+          return false;
+        }
+        entry.getValue().discard();
+        return true;
+      });
+    }
+  }
+
+  /**
+   * Builds the index in a single pass over the scans. The signals of consecutive scans are
+   * collected into a block, which is sorted into its bins and written to the storage before the
+   * next block is read.
+   *
+   * @param storage the storage of this index, discarded together with the index. Null to keep the
+   *                index on the heap.
+   * @return the index or null if canceled
+   */
+  public static @Nullable MzBinnedSignalIndex build(@NotNull RawDataFile file,
+      @NotNull List<? extends Scan> scans, @NotNull ScanDataType scanDataType, double binWidth,
+      @Nullable MemoryMapStorage storage, @NotNull BooleanSupplier isCanceled) {
+    final ScanDataAccess access = EfficientDataAccess.of(file, scanDataType, scans);
+    final int maxDataPoints = switch (scanDataType) {
+      case MASS_LIST -> file.getMaxCentroidDataPoints();
+      case RAW -> file.getMaxRawDataPoints();
+    };
+    final BlockBuilder builder = new BlockBuilder(binWidth, storage,
+        Math.max(BLOCK_SIGNALS, maxDataPoints));
+    final List<Block> blocks = new ArrayList<>();
+
+    int scanIndex = 0;
+    while (access.nextScan() != null) {
+      if (isCanceled.getAsBoolean()) {
+        MemoryMapStorageUtils.discard(storage);
+        return null;
+      }
+      final int numDp = access.getNumberOfDataPoints();
+      if (builder.size() > 0 && !builder.hasCapacity(numDp)) {
+        blocks.add(builder.finishBlock());
+      }
+      for (int i = 0; i < numDp; i++) {
+        builder.add(scanIndex, access.getMzValue(i), access.getIntensityValue(i));
+      }
+      scanIndex++;
+    }
+    if (builder.size() > 0) {
+      blocks.add(builder.finishBlock());
+    }
+
+    logger.finest(
+        () -> "Indexed %d signals of %d scans in %d blocks of %s".formatted(builder.totalSignals,
+            scans.size(), blocks.size(), file.getName()));
+
+    return new MzBinnedSignalIndex(scans.size(), binWidth, List.copyOf(blocks), storage);
+  }
+
+  /**
+   * Discards the storage of this index. Waits for running extractions, later extractions return
+   * null.
+   */
+  private void discard() {
+    lock.writeLock().lock();
+    try {
+      if (discarded) {
+        return;
+      }
+      discarded = true;
+      MemoryMapStorageUtils.discard(storage);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Extracts the ion series of all m/z ranges in parallel. The result is the same as a pass over
+   * all scans, because the signals of each scan are still added in ascending m/z order.
+   *
+   * @return one series per range, in the order of the ranges. Null if this index was evicted from
+   * the cache in the meantime.
+   */
+  public @NotNull BuildingIonSeries @Nullable [] extract(@NotNull List<Range<Double>> mzRanges,
+      @NotNull MzMode mzMode, @NotNull IntensityMode intensityMode) {
+    lock.readLock().lock();
+    try {
+      if (discarded) {
+        return null;
+      }
+      return IntStream.range(0, mzRanges.size()).parallel()
+          .mapToObj(i -> extract(mzRanges.get(i), mzMode, intensityMode))
+          .toArray(BuildingIonSeries[]::new);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private @NotNull BuildingIonSeries extract(@NotNull Range<Double> mzRange,
+      @NotNull MzMode mzMode, @NotNull IntensityMode intensityMode) {
+    final BuildingIonSeries series = new BuildingIonSeries(numScans, mzMode, intensityMode);
+    final long lowerBin = (long) Math.floor(mzRange.lowerEndpoint() / binWidth);
+    final long upperBin = (long) Math.floor(mzRange.upperEndpoint() / binWidth);
+
+    for (final Block block : blocks) {
+      final int numBins = block.binOffsets().limit() - 1;
+      final int fromBin = (int) Math.max(0, lowerBin - block.firstBin());
+      final int toBin = (int) Math.min(numBins - 1, upperBin - block.firstBin());
+
+      for (int bin = fromBin; bin <= toBin; bin++) {
+        final int end = block.binOffsets().get(bin + 1);
+        for (int signal = block.binOffsets().get(bin); signal < end; signal++) {
+          final double mz = block.mzs().get(signal);
+          if (mzRange.contains(mz)) {
+            series.addValue(block.scanIndices().get(signal), mz,
+                block.intensities().get(signal));
+          }
+        }
+      }
+    }
+    return series;
+  }
+
+  public int getNumberOfScans() {
+    return numScans;
+  }
+
+  /**
+   * Signals of consecutive scans. Signals of bin i are in [binOffsets[i], binOffsets[i+1]).
+   */
+  private record Block(long firstBin, IntBuffer binOffsets, DoubleBuffer mzs,
+                       DoubleBuffer intensities, IntBuffer scanIndices) {
+
+  }
+
+  /**
+   * Collects the signals of a block and sorts them into their bins. The collecting arrays are
+   * reused for all blocks.
+   */
+  private static class BlockBuilder {
+
+    private final double binWidth;
+    private final @Nullable MemoryMapStorage storage;
+    private final double[] mzs;
+    private final double[] intensities;
+    private final int[] scanIndices;
+    private int size = 0;
+    private double minMz = Double.POSITIVE_INFINITY;
+    private double maxMz = Double.NEGATIVE_INFINITY;
+    private long totalSignals = 0;
+
+    private BlockBuilder(double binWidth, @Nullable MemoryMapStorage storage, int capacity) {
+      this.binWidth = binWidth;
+      this.storage = storage;
+      mzs = new double[capacity];
+      intensities = new double[capacity];
+      scanIndices = new int[capacity];
+    }
+
+    private boolean hasCapacity(int signals) {
+      return size + signals <= mzs.length;
+    }
+
+    private int size() {
+      return size;
+    }
+
+    private void add(int scanIndex, double mz, double intensity) {
+      mzs[size] = mz;
+      intensities[size] = intensity;
+      scanIndices[size] = scanIndex;
+      minMz = Math.min(minMz, mz);
+      maxMz = Math.max(maxMz, mz);
+      size++;
+    }
+
+    /**
+     * Counting sort of the signals into their bins. The sort is stable, so every bin stays sorted
+     * by scan and m/z.
+     */
+    private Block finishBlock() {
+      final long firstBin = (long) Math.floor(minMz / binWidth);
+      final int numBins = Math.toIntExact((long) Math.floor(maxMz / binWidth) - firstBin + 1);
+      final int[] binOffsets = new int[numBins + 1];
+      for (int i = 0; i < size; i++) {
+        binOffsets[toBin(mzs[i], firstBin) + 1]++;
+      }
+      for (int bin = 0; bin < numBins; bin++) {
+        binOffsets[bin + 1] += binOffsets[bin];
+      }
+
+      final double[] sortedMzs = new double[size];
+      final double[] sortedIntensities = new double[size];
+      final int[] sortedScanIndices = new int[size];
+      final int[] nextInBin = Arrays.copyOf(binOffsets, numBins);
+      for (int i = 0; i < size; i++) {
+        final int signal = nextInBin[toBin(mzs[i], firstBin)]++;
+        sortedMzs[signal] = mzs[i];
+        sortedIntensities[signal] = intensities[i];
+        sortedScanIndices[signal] = scanIndices[i];
+      }
+
+      final Block block = new Block(firstBin,
+          StorageUtils.storeValuesToIntBuffer(storage, binOffsets),
+          StorageUtils.storeValuesToDoubleBuffer(storage, sortedMzs),
+          StorageUtils.storeValuesToDoubleBuffer(storage, sortedIntensities),
+          StorageUtils.storeValuesToIntBuffer(storage, sortedScanIndices));
+
+      totalSignals += size;
+      size = 0;
+      minMz = Double.POSITIVE_INFINITY;
+      maxMz = Double.NEGATIVE_INFINITY;
+      return block;
+    }
+
+    private int toBin(double mz, long firstBin) {
+      return (int) ((long) Math.floor(mz / binWidth) - firstBin);
+    }
+  }
+
+  /**
+   * Identifies the scans of an index. Create it once with {@link #of(List, ScanDataType)} and reuse
+   * it for repeated lookups.
+   */
+  public static final class Key {
+
+    private final int[] scanNumbers;
+    private final ScanDataType scanDataType;
+    private final int hash;
+
+    private Key(int[] scanNumbers, ScanDataType scanDataType) {
+      this.scanNumbers = scanNumbers;
+      this.scanDataType = scanDataType;
+      hash = 31 * Arrays.hashCode(scanNumbers) + scanDataType.hashCode();
+    }
+
+    public static @NotNull Key of(@NotNull List<? extends Scan> scans,
+        @NotNull ScanDataType scanDataType) {
+      final int[] scanNumbers = new int[scans.size()];
+      for (int i = 0; i < scanNumbers.length; i++) {
+        scanNumbers[i] = scans.get(i).getScanNumber();
+      }
+      return new Key(scanNumbers, scanDataType);
+    }
+
+    public @NotNull ScanDataType scanDataType() {
+      return scanDataType;
+    }
+
+    /**
+     * @param sortedScanNumbers scan numbers sorted ascending
+     * @return true if any of the scan numbers is part of this key
+     */
+    boolean containsAny(int[] sortedScanNumbers) {
+      for (final int scanNumber : scanNumbers) {
+        if (Arrays.binarySearch(sortedScanNumbers, scanNumber) >= 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key key && hash == key.hash && scanDataType == key.scanDataType
+             && Arrays.equals(scanNumbers, key.scanNumbers);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_imsexpander;
+
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MobilityScan;
+
+/**
+ * The data points of all mobility scans of a frame, decoded once by the
+ * {@link ImsExpanderFrameReader} and shared (read only) between all {@link ImsExpanderSubTask}s.
+ *
+ * @param frameIndex    index of the frame in the selected frames of the feature list
+ * @param frame         the frame
+ * @param mobilityScans the mobility scans
+ * @param scanStarts    start index of each mobility scan in mzs and intensities. Length is the
+ *                      number of mobility scans + 1, the last value is the total number of data
+ *                      points
+ * @param mzs           m/z values of all mobility scans
+ * @param intensities   intensity values of all mobility scans
+ */
+record DecodedMobilityFrame(int frameIndex, Frame frame, MobilityScan[] mobilityScans,
+                            int[] scanStarts, double[] mzs, double[] intensities) {
+
+  /**
+   * Signals the end of the frame stream
+   */
+  static final DecodedMobilityFrame END = new DecodedMobilityFrame(-1, null, new MobilityScan[0],
+      new int[]{0}, new double[0], new double[0]);
+
+  int getNumberOfMobilityScans() {
+    return mobilityScans.length;
+  }
+
+  float getRetentionTime() {
+    return frame.getRetentionTime();
+  }
+}
@@ -30,7 +30,6 @@ import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.MobilityScan;
 import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
-import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
 import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.IonMobilogramTimeSeriesFactory;
@@ -72,21 +71,18 @@ public class ExpandingTrace {
   }
 
   /**
-   * Offers a data point to this trace.
+   * Offers a data point of a {@link DecodedMobilityFrame} to this trace.
    *
-   * @param access
-   * @param index
    * @return true if the data points is added to this trace.
    */
-  public boolean offerDataPoint(@NotNull MobilityScanDataAccess access, int index) {
-    if (!rtRange.contains(access.getRetentionTime()) || !mzRange.contains(
-        access.getMzValue(index))) {
+  public boolean offerDataPoint(@NotNull MobilityScan scan, float rt, double mz,
+      double intensity) {
+    if (!rtRange.contains(rt) || !mzRange.contains(mz)) {
       return false;
     }
 
     synchronized (dataPoints) {
-      return dataPoints.putIfAbsent(access.getCurrentMobilityScan(),
-          new SimpleDataPoint(access.getMzValue(index), access.getIntensityValue(index))) == null;
+      return dataPoints.putIfAbsent(scan, new SimpleDataPoint(mz, intensity)) == null;
     }
   }
 
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_imsexpander;
+
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the mobility scans of every frame exactly once and puts the decoded data into a bounded
+ * queue. The reader blocks if the queue is full until the consumer catches up (back-pressure).
+ * After the last frame or on error, {@link DecodedMobilityFrame#END} is put into the queue.
+ */
+class ImsExpanderFrameReader implements Runnable {
+
+  private static final Logger logger = Logger.getLogger(ImsExpanderFrameReader.class.getName());
+
+  private final MobilityScanDataAccess access;
+  private final int firstFrameIndex;
+  private final BlockingQueue<DecodedMobilityFrame> queue;
+  private volatile boolean canceled = false;
+  private volatile Exception exception;
+
+  /**
+   * @param access          access to the frames to read
+   * @param firstFrameIndex the index of the first frame in access in the selected frames of the
+   *                        feature list
+   * @param capacity        maximum number of decoded frames waiting for the consumer
+   */
+  ImsExpanderFrameReader(@NotNull final MobilityScanDataAccess access, final int firstFrameIndex,
+      final int capacity) {
+    this.access = access;
+    this.firstFrameIndex = firstFrameIndex;
+    queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  @Override
+  public void run() {
+    try {
+      for (int i = 0; i < access.getNumberOfScans() && !canceled; i++) {
+        final DecodedMobilityFrame decoded = decodeNextFrame(firstFrameIndex + i);
+        if (!put(decoded)) {
+          return;
+        }
+      }
+    } catch (Exception e) {
+      logger.log(Level.WARNING, e.getMessage(), e);
+      exception = e;
+    }
+    put(DecodedMobilityFrame.END);
+  }
+
+  private DecodedMobilityFrame decodeNextFrame(final int frameIndex) {
+    final Frame frame = access.nextFrame();
+    final List<MobilityScan> scans = new ArrayList<>(frame.getNumberOfMobilityScans());
+    final int[] scanStarts = new int[frame.getNumberOfMobilityScans() + 1];
+
+    // the data access already holds the data points of all mobility scans of this frame
+    // in one array, the offsets are incremented by nextMobilityScan
+    int numDp = 0;
+    while (access.hasNextMobilityScan()) {
+      scans.add(access.nextMobilityScan());
+      scanStarts[scans.size() - 1] = numDp;
+      numDp += access.getNumberOfDataPoints();
+    }
+    scanStarts[scans.size()] = numDp;
+
+    final double[] mzs = new double[numDp];
+    final double[] intensities = new double[numDp];
+    access.resetMobilityScan();
+    int dp = 0;
+    while (access.hasNextMobilityScan()) {
+      access.nextMobilityScan();
+      for (int i = 0; i < access.getNumberOfDataPoints(); i++, dp++) {
+        mzs[dp] = access.getMzValue(i);
+        intensities[dp] = access.getIntensityValue(i);
+      }
+    }
+
+    // scan selections may skip mobility scans
+    final int[] starts = scans.size() + 1 == scanStarts.length ? scanStarts
+        : Arrays.copyOf(scanStarts, scans.size() + 1);
+    return new DecodedMobilityFrame(frameIndex, frame, scans.toArray(MobilityScan[]::new), starts,
+        mzs, intensities);
+  }
+
+  /**
+   * @return false if canceled while waiting for space in the queue
+   */
+  private boolean put(DecodedMobilityFrame frame) {
+    try {
+      while (!queue.offer(frame, 100, TimeUnit.MILLISECONDS)) {
+        if (canceled) {
+          return false;
+        }
+      }
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Blocks until the next frame is available
+   *
+   * @return the next frame or {@link DecodedMobilityFrame#END}
+   */
+  @NotNull
+  DecodedMobilityFrame take() throws InterruptedException {
+    return queue.take();
+  }
+
+  /**
+   * Stops reading and releases queued frames
+   */
+  void cancel() {
+    canceled = true;
+    queue.clear();
+  }
+
+  /**
+   * @return the exception that stopped the reader or null
+   */
+  @Nullable
+  Exception getException() {
+    return exception;
+  }
+}
@@ -26,12 +26,9 @@
 package io.github.mzmine.modules.dataprocessing.featdet_imsexpander;
 
 import com.google.common.collect.Range;
-import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MobilityScan;
 import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
-import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
-import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.main.MZmineCore;
@@ -40,23 +37,26 @@ import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.RangeUtils;
-import io.github.mzmine.util.exceptions.MissingMassListException;
-import java.text.NumberFormat;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Expands a list of traces. The frames are read once by the {@link ImsExpanderFrameReader} and
+ * offered to all sub tasks with overlapping frame ranges via {@link #processFrame}. Running this
+ * task creates the new mobilogram time series from the collected data points.
+ */
 public class ImsExpanderSubTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(ImsExpanderSubTask.class.getName());
 
   protected final ParameterSet parameters;
-  private final List<Frame> frames;
+  private final int firstFrameIndex;
+  private final int lastFrameIndex;
   private final ModularFeatureList flist;
   private List<ExpandingTrace> expandingTraces;
 
@@ -72,13 +72,20 @@ public class ImsExpanderSubTask extends AbstractTask {
   private final IMSRawDataFile imsFile;
   private double createdRows = 0;
 
+  /**
+   * @param firstFrameIndex index of the first frame of the traces in the selected frames
+   * @param lastFrameIndex  index of the last frame of the traces in the selected frames
+   *                        (inclusive)
+   * @param expandingTraces the traces sorted by m/z
+   */
   public ImsExpanderSubTask(@Nullable final MemoryMapStorage storage,
-      @NotNull final ParameterSet parameters, @NotNull final List<Frame> frames,
+      @NotNull final ParameterSet parameters, final int firstFrameIndex, final int lastFrameIndex,
       @NotNull final ModularFeatureList flist, @NotNull final List<ExpandingTrace> expandingTraces,
       BinningMobilogramDataAccess mobilogramDataAccess, IMSRawDataFile imsFile) {
     super(storage, Instant.now()); // just a subtask, date irrelevant
     this.parameters = parameters;
-    this.frames = frames;
+    this.firstFrameIndex = firstFrameIndex;
+    this.lastFrameIndex = lastFrameIndex;
     this.flist = flist;
     this.expandingTraces = expandingTraces;
     this.useRawData = parameters.getParameter(ImsExpanderParameters.useRawData).getValue();
@@ -89,10 +96,9 @@ public class ImsExpanderSubTask extends AbstractTask {
         expandingTraces.get(expandingTraces.size() - 1).getMzRange().upperEndpoint())
         : Range.singleton(0d);
 
-    totalFrames = frames.size();
-    desc = flist.getName() + ": expanding traces for frame " + processedFrames.get() + "/"
-        + totalFrames + " m/z range: " + RangeUtils.formatRange(traceMzRange,
-        MZmineCore.getConfiguration().getMZFormat());
+    totalFrames = lastFrameIndex - firstFrameIndex + 1;
+    desc = flist.getName() + ": expanding traces in m/z range: " + RangeUtils.formatRange(
+        traceMzRange, MZmineCore.getConfiguration().getMZFormat());
     this.mobilogramDataAccess = mobilogramDataAccess;
     expandedTraces = new ArrayList<>(expandingTraces.size());
     this.imsFile = imsFile;
@@ -112,70 +118,76 @@ public class ImsExpanderSubTask extends AbstractTask {
         + createdRows / (double) expandingTraces.size() * 0.5;
   }
 
-  @Override
-  public void run() {
-    setStatus(TaskStatus.PROCESSING);
-    logger.finest("Initialising data access for file " + imsFile.getName());
-    final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
-        useRawData ? MobilityScanDataType.RAW : MobilityScanDataType.MASS_LIST, frames);
+  public int getFirstFrameIndex() {
+    return firstFrameIndex;
+  }
 
-    final NumberFormat mzFormat = MZmineCore.getConfiguration().getMZFormat();
+  public int getLastFrameIndex() {
+    return lastFrameIndex;
+  }
 
-    final int numTraces = expandingTraces.size();
-    try {
+  /**
+   * @return true if the frame is within the frame range of the traces of this task
+   */
+  public boolean containsFrame(final int frameIndex) {
+    return frameIndex >= firstFrameIndex && frameIndex <= lastFrameIndex;
+  }
 
-      for (int i = 0; i < access.getNumberOfScans(); i++) {
-        if (isCanceled()) {
-          // allow traces to be released
-          expandingTraces = null;
-          return;
+  /**
+   * Offers all data points of the frame to the traces of this task. May be called concurrently
+   * for different frames.
+   */
+  public void processFrame(@NotNull final DecodedMobilityFrame frame) {
+    final List<ExpandingTrace> traces = expandingTraces;
+    if (traces == null || isCanceled()) {
+      return;
+    }
+
+    final int numTraces = traces.size();
+    final float rt = frame.getRetentionTime();
+    final double[] mzs = frame.mzs();
+    final double[] intensities = frame.intensities();
+    final int[] scanStarts = frame.scanStarts();
+
+    for (int scanIndex = 0; scanIndex < frame.getNumberOfMobilityScans(); scanIndex++) {
+      final MobilityScan mobilityScan = frame.mobilityScans()[scanIndex];
+
+      int traceIndex = 0;
+      for (int dpIndex = scanStarts[scanIndex];
+          dpIndex < scanStarts[scanIndex + 1] && traceIndex < numTraces; dpIndex++) {
+        final double mz = mzs[dpIndex];
+        final double intensity = intensities[dpIndex];
+
+        if (useRawData && intensity < customNoiseLevel) {
+          continue;
         }
 
-        final Frame frame = access.nextFrame();
-
-        while (access.hasNextMobilityScan()) {
-          final MobilityScan mobilityScan = access.nextMobilityScan();
-
-          int traceIndex = 0;
-          for (int dpIndex = 0; dpIndex < access.getNumberOfDataPoints() && traceIndex < numTraces;
-              dpIndex++) {
-            final double mz = access.getMzValue(dpIndex);
-            final double intensity = access.getIntensityValue(dpIndex);
-
-            if (useRawData && intensity < customNoiseLevel) {
-              continue;
-            }
-
-            // while the trace upper mz smaller than the current mz, we increment the trace index
-            while (expandingTraces.get(traceIndex).getMzRange().upperEndpoint() < mz
-                && traceIndex < numTraces - 1) {
-              traceIndex++;
-            }
-            // if the current lower mz passed the current data point, we go to the next data point
-            if (expandingTraces.get(traceIndex).getMzRange().lowerEndpoint() > mz) {
-              continue;
-            }
-
-            // try to offer the current data point to the trace
-            while (expandingTraces.get(traceIndex).getMzRange().contains(mz)
-                && !expandingTraces.get(traceIndex).offerDataPoint(access, dpIndex)
-                && traceIndex < numTraces - 1) {
-              traceIndex++;
-            }
-          }
+        // while the trace upper mz smaller than the current mz, we increment the trace index
+        while (traces.get(traceIndex).getMzRange().upperEndpoint() < mz
+            && traceIndex < numTraces - 1) {
+          traceIndex++;
+        }
+        // if the current lower mz passed the current data point, we go to the next data point
+        if (traces.get(traceIndex).getMzRange().lowerEndpoint() > mz) {
+          continue;
         }
-        processedFrames.getAndIncrement();
 
-        desc = flist.getName() + ": expanding traces for frame " + processedFrames.get() + "/"
-            + totalFrames + " m/z range: " + RangeUtils.formatRange(traceMzRange, mzFormat);
+        // try to offer the current data point to the trace
+        while (traces.get(traceIndex).getMzRange().contains(mz) && !traces.get(traceIndex)
+            .offerDataPoint(mobilityScan, rt, mz, intensity) && traceIndex < numTraces - 1) {
+          traceIndex++;
+        }
       }
-    } catch (MissingMassListException e) {
-      // allow traces to be released
-      expandingTraces = null;
-      e.printStackTrace();
-      logger.log(Level.WARNING, e.getMessage(), e);
-      setErrorMessage(e.getMessage());
-      setStatus(TaskStatus.ERROR);
+    }
+    processedFrames.getAndIncrement();
+  }
+
+  @Override
+  public void run() {
+    setStatus(TaskStatus.PROCESSING);
+    if (expandingTraces == null) {
+      setStatus(TaskStatus.FINISHED);
+      return;
     }
 
     for (var expandingTrace : expandingTraces) {
@@ -200,13 +212,16 @@ public class ImsExpanderSubTask extends AbstractTask {
     // allow traces to be released
     expandingTraces = null;
 
-//    synchronized (newFlist) {
-//      newRows.forEach(newFlist::addRow);
-//    }
-
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * Release the traces without creating the new series, e.g., on error
+   */
+  public void releaseTraces() {
+    expandingTraces = null;
+  }
+
   @NotNull
   public List<ExpandedTrace> getExpandedTraces() {
     return expandedTraces;
@@ -32,6 +32,8 @@ import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
+import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
 import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.features.FeatureListRow;
@@ -68,6 +70,10 @@ public class ImsExpanderTask extends AbstractTask {
   private final int NUM_THREADS = MZmineCore.getConfiguration().getPreferences()
       .getParameter(MZminePreferences.numOfThreads).getValue();
   private static final String SUFFIX = " expanded";
+  /**
+   * Maximum number of decoded frames waiting to be processed
+   */
+  private static final int FRAME_QUEUE_CAPACITY = 8;
   protected final ParameterSet parameters;
   protected final ModularFeatureList flist;
   final List<AbstractTask> tasks = new ArrayList<>();
@@ -81,6 +87,8 @@ public class ImsExpanderTask extends AbstractTask {
   private String desc = "Mobility expanding.";
   private long totalRows = 1;
   private long createdRows = 0;
+  private int totalFrames = 1;
+  private int processedFrames = 0;
 
   public ImsExpanderTask(@Nullable final MemoryMapStorage storage,
       @NotNull final ParameterSet parameters, @NotNull final ModularFeatureList flist,
@@ -117,8 +125,8 @@ public class ImsExpanderTask extends AbstractTask {
       double finishedPercentage = task.getFinishedPercentage();
       sum += finishedPercentage;
     }
-    return 0.4 * sum / tasks.size() + 0.4 * (processedRows.get() / (double) totalRows)
-           + 0.2 * createdRows / (double) totalRows;
+    return 0.4 * processedFrames / (double) totalFrames + 0.2 * sum / tasks.size()
+           + 0.2 * (processedRows.get() / (double) totalRows) + 0.2 * createdRows / (double) totalRows;
   }
 
   @Override
@@ -173,6 +181,8 @@ public class ImsExpanderTask extends AbstractTask {
         (a, b) -> Float.compare(a.getRtRange().lowerEndpoint(), b.getRtRange().lowerEndpoint()));
     final List<List<ExpandingTrace>> subLists = Lists.partition(expandingTraces, tracesPerList);
 
+    int firstFrameIndex = Integer.MAX_VALUE;
+    int lastFrameIndex = -1;
     for (final List<ExpandingTrace> subList : subLists) {
       final Frame firstFrame = (Frame) subList.get(0).getRow().getBestFeature().getFeatureData()
           .getSpectrum(0);
@@ -183,8 +193,10 @@ public class ImsExpanderTask extends AbstractTask {
           .getFeatureData();
       final Frame lastFrame = (Frame) lastTraceData.getSpectrum(
           lastTraceData.getNumberOfValues() - 1);
-      final List<Frame> framesSubList = frames.subList(frames.indexOf(firstFrame),
-          frames.indexOf(lastFrame) + 1);
+      final int subListFirstFrame = frames.indexOf(firstFrame);
+      final int subListLastFrame = frames.indexOf(lastFrame);
+      firstFrameIndex = Math.min(firstFrameIndex, subListFirstFrame);
+      lastFrameIndex = Math.max(lastFrameIndex, subListLastFrame);
 
       final ArrayList<ExpandingTrace> traces = new ArrayList<>(subList);
       traces.sort(Comparator.comparingDouble(a -> a.getRow().getAverageMZ()));
@@ -192,10 +204,18 @@ public class ImsExpanderTask extends AbstractTask {
       final BinningMobilogramDataAccess mobilogramDataAccess = EfficientDataAccess.of(imsFile,
           binWidth);
       tasks.add(
-          new ImsExpanderSubTask(getMemoryMapStorage(), parameters, framesSubList, flist, traces,
-              mobilogramDataAccess, imsFile));
+          new ImsExpanderSubTask(getMemoryMapStorage(), parameters, subListFirstFrame,
+              subListLastFrame, flist, traces, mobilogramDataAccess, imsFile));
     }
 
+    // each frame is read once and offered to all sub tasks that cover this frame
+    if (!expandTracesSinglePass(imsFile, frames.subList(firstFrameIndex, lastFrameIndex + 1),
+        firstFrameIndex)) {
+      tasks.forEach(t -> ((ImsExpanderSubTask) t).releaseTraces());
+      return;
+    }
+
+    // create the new series in parallel, the sub tasks store the data as soon as they finish
     // might need a copy of task list -  we usually clear the tasks list to not hold on to memory
     ThreadPoolTask poolTask = ThreadPoolTask.createDefaultTaskManagerPool(getTaskDescription(),
         new ArrayList<>(tasks));
@@ -233,6 +253,79 @@ public class ImsExpanderTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * Reads all frames once on a separate reader thread and offers the decoded frames to all sub
+   * tasks with overlapping frame ranges. Multiple frames are processed in parallel, the bounded
+   * queue of the reader limits the number of decoded frames in memory.
+   *
+   * @param framesToRead    the frames covered by any sub task
+   * @param firstFrameIndex the index of the first frame in the selected frames of the feature
+   *                        list
+   * @return false on error or cancel
+   */
+  private boolean expandTracesSinglePass(@NotNull final IMSRawDataFile imsFile,
+      @NotNull final List<Frame> framesToRead, final int firstFrameIndex) {
+    final boolean useRawData = parameters.getValue(ImsExpanderParameters.useRawData);
+    final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
+        useRawData ? MobilityScanDataType.RAW : MobilityScanDataType.MASS_LIST, framesToRead);
+    totalFrames = Math.max(1, framesToRead.size());
+
+    final ImsExpanderFrameReader reader = new ImsExpanderFrameReader(access, firstFrameIndex,
+        FRAME_QUEUE_CAPACITY);
+    final Thread readerThread = new Thread(reader, "IMS expander frame reader " + flist.getName());
+    readerThread.setDaemon(true);
+    readerThread.start();
+
+    final List<ImsExpanderSubTask> subTasks = tasks.stream().map(ImsExpanderSubTask.class::cast)
+        .toList();
+    final List<DecodedMobilityFrame> batch = new ArrayList<>(NUM_THREADS);
+    try {
+      boolean finished = false;
+      while (!finished) {
+        if (isCanceled()) {
+          return false;
+        }
+
+        // process up to NUM_THREADS frames at once to use all threads for frames covered by a
+        // single sub task
+        batch.clear();
+        DecodedMobilityFrame frame = reader.take();
+        while (frame != DecodedMobilityFrame.END) {
+          batch.add(frame);
+          if (batch.size() >= NUM_THREADS) {
+            break;
+          }
+          frame = reader.take();
+        }
+        finished = frame == DecodedMobilityFrame.END;
+
+        batch.stream().<Runnable>mapMulti((decoded, consumer) -> {
+          for (ImsExpanderSubTask subTask : subTasks) {
+            if (subTask.containsFrame(decoded.frameIndex())) {
+              consumer.accept(() -> subTask.processFrame(decoded));
+            }
+          }
+        }).toList().parallelStream().forEach(Runnable::run);
+        processedFrames += batch.size();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      setStatus(TaskStatus.CANCELED);
+      return false;
+    } finally {
+      // stops the reader on cancel and on exceptions of the sub tasks, no-op if it finished
+      reader.cancel();
+    }
+
+    final Exception exception = reader.getException();
+    if (exception != null) {
+      setErrorMessage(exception.getMessage());
+      setStatus(TaskStatus.ERROR);
+      return false;
+    }
+    return true;
+  }
+
   @Override
   public TaskPriority getTaskPriority() {
     return TaskPriority.HIGH; // master task needs high priority, so it does not brick the task controller
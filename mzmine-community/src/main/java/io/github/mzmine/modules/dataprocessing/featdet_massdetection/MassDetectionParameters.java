@@ -74,10 +74,20 @@ public class MassDetectionParameters extends SimpleParameterSet {
       This reduces the intensity differences between spectra acquired with different injection times
       and reverts to "raw" intensities.""", false);
 
+  public static final BooleanParameter mobilityScansOnDemand = new BooleanParameter(
+      "Mobility scans on demand (IMS)", """
+      Detects the masses of the mobility scans of a frame only when they are accessed the first time
+      instead of storing the mass lists of all mobility scans. Only the most recently accessed frames
+      are kept in memory, up to 128 MB for all frames. Reduces the temporary storage for large IMS
+      files if later steps only access few mobility scans, but repeated access to many frames runs
+      the mass detection again.""",
+      false);
+
   private final Logger logger = Logger.getLogger(this.getClass().getName());
 
   public MassDetectionParameters() {
-    super(new Parameter[]{dataFiles, scanSelection, scanTypes, denormalizeMSnScans, massDetector},
+    super(new Parameter[]{dataFiles, scanSelection, scanTypes, denormalizeMSnScans,
+            mobilityScansOnDemand, massDetector},
         "https://mzmine.github.io/mzmine_documentation/module_docs/featdet_mass_detection/mass-detection.html");
   }
 
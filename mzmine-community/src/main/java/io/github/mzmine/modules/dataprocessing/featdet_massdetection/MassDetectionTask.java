@@ -32,6 +32,7 @@ import io.github.mzmine.datamodel.data_access.ScanDataAccess;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.impl.SimpleFrame;
 import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.modules.dataprocessing.featdet_extract_mz_ranges.MzBinnedSignalIndex;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.taskcontrol.AbstractTask;
@@ -39,6 +40,8 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.scans.ScanUtils;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -50,6 +53,7 @@ public class MassDetectionTask extends AbstractTask {
   private final ScanSelection scanSelection;
   private final SelectedScanTypes scanTypes;
   private final Boolean denormalizeMSnScans;
+  private final boolean mobilityScansOnDemand;
   private final ParameterSet parameters;
   private final MassDetector detector;
   private int processedScans = 0, totalScans = 0;
@@ -66,6 +70,7 @@ public class MassDetectionTask extends AbstractTask {
     this.scanSelection = parameters.getValue(MassDetectionParameters.scanSelection);
     this.scanTypes = parameters.getValue(MassDetectionParameters.scanTypes);
     denormalizeMSnScans = parameters.getValue(MassDetectionParameters.denormalizeMSnScans);
+    mobilityScansOnDemand = parameters.getValue(MassDetectionParameters.mobilityScansOnDemand);
 
     this.parameters = parameters;
 
@@ -98,6 +103,8 @@ public class MassDetectionTask extends AbstractTask {
           scanSelection);
       totalScans = data.getNumberOfScans();
 
+      // scans with new mass lists
+      final List<Scan> detectedScans = new ArrayList<>();
       // all scans
       while (data.hasNextScan()) {
         if (isCanceled()) {
@@ -123,19 +130,27 @@ public class MassDetectionTask extends AbstractTask {
 
           // add mass list to scans and frames
           scan.addMassList(new SimpleMassList(getMemoryMapStorage(), mzPeaks[0], mzPeaks[1]));
+          detectedScans.add(scan);
         }
 
         if (scan instanceof SimpleFrame frame && (scanTypes == SelectedScanTypes.MOBLITY_SCANS
                                                   || scanTypes == SelectedScanTypes.SCANS)) {
           // for ion mobility, detect subscans, too
-          frame.getMobilityScanStorage()
-              .generateAndAddMobilityScanMassLists(getMemoryMapStorage(), detector,
-                  denormalizeMSnScans);
+          if (mobilityScansOnDemand) {
+            frame.getMobilityScanStorage().setMassListsOnDemand(detector, denormalizeMSnScans);
+          } else {
+            frame.getMobilityScanStorage()
+                .generateAndAddMobilityScanMassLists(getMemoryMapStorage(), detector,
+                    denormalizeMSnScans);
+          }
         }
 
         processedScans++;
       }
 
+      // signal indices of the old mass lists are outdated, the index is rebuilt on first use
+      MzBinnedSignalIndex.clearCache(dataFile, detectedScans);
+
       dataFile.getAppliedMethods().add(
           new SimpleFeatureListAppliedMethod(MassDetectionModule.class, parameters,
               getModuleCallDate()));
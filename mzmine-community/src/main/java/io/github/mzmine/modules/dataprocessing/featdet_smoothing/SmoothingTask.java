@@ -32,13 +32,14 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.FeatureDataType;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilogramAccessType;
-import io.github.mzmine.datamodel.data_access.FeatureDataAccess;
 import io.github.mzmine.datamodel.data_access.MobilogramDataAccess;
+import io.github.mzmine.datamodel.data_access.ParallelFeatureProcessor;
 import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.featuredata.IntensitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.IonSeriesArena;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilitySeries;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
@@ -121,19 +122,21 @@ public class SmoothingTask extends AbstractTask {
       return;
     }
 
-    // include zeros
-    final FeatureDataAccess dataAccess = EfficientDataAccess.of(smoothedList,
-        FeatureDataType.INCLUDE_ZEROS);
-
-    while (dataAccess.hasNextFeature()) {
-      final ModularFeature feature = (ModularFeature) dataAccess.nextFeature();
-
-      final IonTimeSeries<? extends Scan> smoothedSeries = smoother.smoothFeature(
-          getMemoryMapStorage(), dataAccess, feature, zht);
-      feature.set(io.github.mzmine.datamodel.features.types.FeatureDataType.class, smoothedSeries);
-      FeatureDataUtils.recalculateIonSeriesDependingTypes(feature);
-
-      processedFeatures.getAndIncrement();
+    // include zeros. Smoothers are stateless and shared by all shards, smoothed series are set in
+    // row order. All smoothed series are appended to the arena segments of this task
+    try (var _ = IonSeriesArena.open(getMemoryMapStorage())) {
+      new ParallelFeatureProcessor<SmoothingAlgorithm, IonTimeSeries<? extends Scan>>(smoothedList,
+          FeatureDataType.INCLUDE_ZEROS, null, () -> smoother, (shardSmoother, access, feature) -> {
+        final IonTimeSeries<? extends Scan> smoothedSeries = shardSmoother.smoothFeature(
+            getMemoryMapStorage(), access, feature, zht);
+        processedFeatures.getAndIncrement();
+        return smoothedSeries;
+      }, (feature, smoothedSeries) -> {
+        final ModularFeature modularFeature = (ModularFeature) feature;
+        modularFeature.set(io.github.mzmine.datamodel.features.types.FeatureDataType.class,
+            smoothedSeries);
+        FeatureDataUtils.recalculateIonSeriesDependingTypes(modularFeature);
+      }, this).process();
     }
 
     if (isCanceled()) {
@@ -59,12 +59,17 @@ import io.github.mzmine.util.CSVParsingUtils;
 import io.github.mzmine.util.CSVParsingUtils.CompoundDbLoadResult;
 import io.github.mzmine.util.MathUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.collections.BinarySearch;
 import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -82,6 +87,10 @@ class TargetedFeatureDetectionModuleTask extends AbstractTask {
   private final List<Scan> matchingScans;
   private final IonNetworkLibrary ionLibrary;
 
+  /**
+   * Targets are processed in parallel blocks of this size, sorted by RT start
+   */
+  private static final int GAPS_PER_BLOCK = 128;
   private final Logger logger = Logger.getLogger(this.getClass().getName());
 
   private final MZmineProject project;
@@ -92,13 +101,13 @@ class TargetedFeatureDetectionModuleTask extends AbstractTask {
   private final MobilityTolerance mobTol;
   private final double intTolerance;
   private final ParameterSet parameters;
-  private final int totalScans;
+  private int totalScans;
   private final File featureListFile;
   private final String fieldSeparator;
   private final int finishedLines = 0;
   private final int minDataPoints = 5;
   private FeatureList processedFeatureList;
-  private int processedScans;
+  private final AtomicInteger processedScans = new AtomicInteger(0);
   private int ID = 1;
 
   TargetedFeatureDetectionModuleTask(MZmineProject project, ParameterSet parameters,
@@ -301,22 +310,19 @@ class TargetedFeatureDetectionModuleTask extends AbstractTask {
   }
 
   private boolean processImsFile(List<? extends Gap> gaps, IMSRawDataFile imsFile) {
-    final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
-        MobilityScanDataType.MASS_LIST,
-        (List<Frame>) processedFeatureList.getSeletedScans(imsFile));
-    List<ImsGap> imsGaps = (List<ImsGap>) gaps;
-
-    while (access.hasNextFrame()) {
-      if (isCanceled()) {
-        return false;
-      }
-
-      final Frame frame = access.nextFrame();
-      for (ImsGap gap : imsGaps) {
+    final List<Frame> frames = (List<Frame>) processedFeatureList.getSeletedScans(imsFile);
+    final List<GapBlock<ImsGap, Frame>> blocks = createBlocks((List<ImsGap>) gaps, frames);
+    totalScans = blocks.stream().mapToInt(block -> block.scans().size()).sum();
+    final boolean finished = blocks.parallelStream().allMatch(block -> {
+      final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
+          MobilityScanDataType.MASS_LIST, block.scans());
+      return sweep(block, () -> access.hasNextFrame() ? access.nextFrame() : null, (gap, _) -> {
         access.resetMobilityScan();
         gap.offerNextScan(access);
-      }
-      processedScans++;
+      }, this::isCanceled, processedScans::incrementAndGet);
+    });
+    if (!finished) {
+      return false;
     }
 
     for (Gap gap : gaps) {
@@ -329,22 +335,16 @@ class TargetedFeatureDetectionModuleTask extends AbstractTask {
   }
 
   private boolean processLcmsFile(List<Gap> gaps) {
-    final ScanDataAccess access = EfficientDataAccess.of(dataFile, ScanDataType.MASS_LIST,
-        matchingScans);
-
-    while (access.hasNextScan()) {
-      access.nextScan();
-      // Canceled?
-      if (isCanceled()) {
-        return false;
-      }
-
-      // Feed this scan to all gaps
-      for (Gap gap : gaps) {
-        gap.offerNextScan(access);
-      }
-
-      processedScans++;
+    final List<GapBlock<Gap, Scan>> blocks = createBlocks(gaps, matchingScans);
+    totalScans = blocks.stream().mapToInt(block -> block.scans().size()).sum();
+    final boolean finished = blocks.parallelStream().allMatch(block -> {
+      final ScanDataAccess access = EfficientDataAccess.of(dataFile, ScanDataType.MASS_LIST,
+          block.scans());
+      return sweep(block, () -> access.hasNextScan() ? access.nextScan() : null,
+          (gap, _) -> gap.offerNextScan(access), this::isCanceled, processedScans::incrementAndGet);
+    });
+    if (!finished) {
+      return false;
     }
 
     for (Gap gap : gaps) {
@@ -357,14 +357,89 @@ class TargetedFeatureDetectionModuleTask extends AbstractTask {
     return true;
   }
 
+  /**
+   * Splits the gaps sorted by RT start into blocks. Each block only covers the scans of its RT span,
+   * so blocks can be processed in parallel with separate data access.
+   *
+   * @param scans sorted by retention time
+   */
+  static <G extends Gap, S extends Scan> List<GapBlock<G, S>> createBlocks(List<G> gaps,
+      List<S> scans) {
+    final List<G> sortedGaps = gaps.stream()
+        .sorted(Comparator.comparingDouble(gap -> gap.getRtRange().lowerEndpoint())).toList();
+    final float[] rts = new float[scans.size()];
+    for (int i = 0; i < rts.length; i++) {
+      rts[i] = scans.get(i).getRetentionTime();
+    }
+
+    final List<GapBlock<G, S>> blocks = new ArrayList<>();
+    for (int from = 0; from < sortedGaps.size(); from += GAPS_PER_BLOCK) {
+      final List<G> blockGaps = sortedGaps.subList(from,
+          Math.min(from + GAPS_PER_BLOCK, sortedGaps.size()));
+      final float start = blockGaps.getFirst().getRtRange().lowerEndpoint();
+      final float end = (float) blockGaps.stream()
+          .mapToDouble(gap -> gap.getRtRange().upperEndpoint()).max().orElse(start);
+
+      final int firstScan = BinarySearch.lowerBound(rts, start);
+      final int lastScan = BinarySearch.lowerBound(rts, Math.nextUp(end));
+      if (firstScan < lastScan) {
+        blocks.add(new GapBlock<>(blockGaps, scans.subList(firstScan, lastScan)));
+      }
+    }
+    return blocks;
+  }
+
+  /**
+   * Offers each scan only to the gaps whose RT range contains it. Gaps enter the active window when
+   * the scan RT reaches their RT start and leave it after their RT end.
+   *
+   * @param nextScan      supplies the scans of the block in order or null after the last scan
+   * @param scanProcessed called after each scan
+   * @return false if the task was canceled
+   */
+  static <G extends Gap, S extends Scan> boolean sweep(GapBlock<G, S> block,
+      Supplier<Scan> nextScan, BiConsumer<G, Scan> offer, BooleanSupplier isCanceled,
+      Runnable scanProcessed) {
+    final List<G> gaps = block.gaps();
+    final List<G> active = new ArrayList<>();
+    int nextGap = 0;
+
+    Scan scan;
+    while ((scan = nextScan.get()) != null) {
+      if (isCanceled.getAsBoolean()) {
+        return false;
+      }
+      final float rt = scan.getRetentionTime();
+      while (nextGap < gaps.size() && gaps.get(nextGap).getRtRange().lowerEndpoint() <= rt) {
+        active.add(gaps.get(nextGap++));
+      }
+      active.removeIf(gap -> gap.getRtRange().upperEndpoint() < rt);
+
+      for (G gap : active) {
+        if (gap.getRtRange().contains(rt)) {
+          offer.accept(gap, scan);
+        }
+      }
+      scanProcessed.run();
+    }
+    return true;
+  }
+
   public double getFinishedPercentage() {
     if (totalScans == 0) {
       return 0;
     }
-    return (double) processedScans / (double) totalScans;
+    return (double) processedScans.get() / (double) totalScans;
   }
 
   public String getTaskDescription() {
     return "Targeted feature detection " + this.dataFile;
   }
+
+  /**
+   * Gaps sorted by RT start and the scans of their combined RT span
+   */
+  record GapBlock<G extends Gap, S extends Scan>(List<G> gaps, List<S> scans) {
+
+  }
 }
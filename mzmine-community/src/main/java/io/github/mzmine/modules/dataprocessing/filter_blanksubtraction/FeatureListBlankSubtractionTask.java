@@ -26,9 +26,9 @@
 package io.github.mzmine.modules.dataprocessing.filter_blanksubtraction;
 
 import io.github.mzmine.datamodel.AbundanceMeasure;
-import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
@@ -46,11 +46,12 @@ import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.MemoryMapStorage;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -60,6 +61,7 @@ import org.jetbrains.annotations.Nullable;
 public class FeatureListBlankSubtractionTask extends AbstractTask {
 
   private static Logger logger = Logger.getLogger(FeatureListBlankSubtractionTask.class.getName());
+  private static final int ROWS_PER_BLOCK = 256;
   private final int totalRows;
   private final int minBlankDetections;
   private final String suffix;
@@ -175,48 +177,37 @@ public class FeatureListBlankSubtractionTask extends AbstractTask {
         f -> backgroundAlignedFeaturesList.setSelectedScans(f,
             originalFeatureList.getSeletedScans(f)));
 
-    final List<FeatureListRow> notBackgroundAlignedFeaturesListRows = new ArrayList<>();
-    final List<FeatureListRow> backgroundAlignedFeaturesListRows = new ArrayList<>();
-    for (FeatureListRow originalRow : originalFeatureList.getRows()) {
-
-      final List<Feature> notBackgroundFeaturesOfCurrentRow = new ArrayList<>();
-      final List<Feature> backgroundFeaturesOfCurrentRow = new ArrayList<>();
-
-      // check the featureRow in the blank samples
-      int foundInNBlanks = 0;
-      for (RawDataFile blankRaw : blankRaws) {
-        if (originalRow.hasFeature(blankRaw)) {
-          // save blank detections to a blank-list
-          final Feature blankFeature = originalRow.getFeature(blankRaw);
-          backgroundFeaturesOfCurrentRow.add(blankFeature);
-          ++foundInNBlanks;
-        }
+    // classify the features of all rows in parallel, then create the rows in order
+    final List<FeatureListRow> originalRows = originalFeatureList.getRows();
+    final RawDataFile[] blanks = blankRaws.toArray(RawDataFile[]::new);
+    final RawDataFile[] samples = nonBlankRaws.toArray(RawDataFile[]::new);
+    final RowClassification[] classifications = new RowClassification[originalRows.size()];
+    final int numBlocks = (originalRows.size() + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+    IntStream.range(0, numBlocks).parallel().forEach(block -> {
+      // scratch arrays of this block
+      final double[] blankAbundances = new double[blanks.length];
+      final double[] sampleAbundances = new double[samples.length];
+      final Feature[] sampleFeatures = new Feature[samples.length];
+      final int end = Math.min(originalRows.size(), (block + 1) * ROWS_PER_BLOCK);
+      for (int i = block * ROWS_PER_BLOCK; i < end && !isCanceled(); i++) {
+        classifications[i] = classifyRow(originalRows.get(i), blanks, samples, blankAbundances,
+            sampleAbundances, sampleFeatures);
+        processedRows.getAndIncrement();
       }
+    });
+    if (isCanceled()) {
+      return;
+    }
 
-      double blankAbundance = -1;
-      int foundInSamplesAsBackground = 0;
-      if (notBackgroundFeaturesOfCurrentRow.size() < minBlankDetections || checkFoldChange) {
-        blankAbundance =
-            checkFoldChange ? getBlankAbundance(originalRow, blankRaws, quantType, ratioType) : 1d;
-        // copy features from non-blank files.
-        for (RawDataFile file : nonBlankRaws) {
-          final Feature nonBlankFeature = originalRow.getFeature(file);
-          // check if there's actually a feature
-          if (nonBlankFeature != null
-              && nonBlankFeature.getFeatureStatus() != FeatureStatus.UNKNOWN) {
-            // check if feature is more abundant than the blank samples
-            double featureAbundance = getFeatureQuantifier(nonBlankFeature, quantType);
-            if (!checkFoldChange || featureAbundance / blankAbundance >= foldChange) {
-              // the feature is a true feature and not a background
-              notBackgroundFeaturesOfCurrentRow.add(nonBlankFeature);
-            } else {
-              // the feature is indistinguishable from the blanks
-              backgroundFeaturesOfCurrentRow.add(nonBlankFeature);
-              foundInSamplesAsBackground++;
-            }
-          }
-        }
-      }
+    final List<FeatureListRow> notBackgroundAlignedFeaturesListRows = new ArrayList<>();
+    final List<FeatureListRow> backgroundAlignedFeaturesListRows = new ArrayList<>();
+    for (int i = 0; i < originalRows.size(); i++) {
+      final FeatureListRow originalRow = originalRows.get(i);
+      final RowClassification classification = classifications[i];
+      final List<Feature> notBackgroundFeaturesOfCurrentRow = classification.notBackground();
+      final List<Feature> backgroundFeaturesOfCurrentRow = classification.background();
+      final int foundInNBlanks = classification.foundInNBlanks();
+      final double blankAbundance = classification.blankAbundance();
 
       // filtered features
       if (notBackgroundFeaturesOfCurrentRow.size() > 0) {
@@ -277,14 +268,18 @@ public class FeatureListBlankSubtractionTask extends AbstractTask {
 
         backgroundAlignedFeaturesListRows.add(featureListRow);
       }
-
-      processedRows.getAndIncrement();
     }
 
     // Main feature list
     // create the filtered list so that the next step can use it
     notBackgroundAlignedFeaturesListRows.sort(FeatureListRowSorter.DEFAULT_RT);
     notBackgroundAlignedFeaturesListRows.forEach(notBackgroundAlignedFeaturesList::addRow);
+    // the kept series would keep the memory mapped segments of all background features alive
+    // once the original list is removed
+    if (!createDeletedFeatureList) {
+      FeatureDataUtils.compactFeatureDataIfSparse(notBackgroundAlignedFeaturesList,
+          originalFeatureList.getMemoryMapStorage(), originalRows.size());
+    }
 
     notBackgroundAlignedFeaturesList.getAppliedMethods()
         .addAll(originalFeatureList.getAppliedMethods());
@@ -311,6 +306,68 @@ public class FeatureListBlankSubtractionTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * Splits the features of a row into features above the blank level and background features.
+   * Abundances are collected into primitive arrays first, so that the blank level and the fold
+   * change are computed on arrays.
+   *
+   * @param blankAbundances  scratch array with one value per blank file
+   * @param sampleAbundances scratch array with one value per sample file
+   * @param sampleFeatures   scratch array with one value per sample file
+   */
+  private RowClassification classifyRow(FeatureListRow row, RawDataFile[] blanks,
+      RawDataFile[] samples, double[] blankAbundances, double[] sampleAbundances,
+      Feature[] sampleFeatures) {
+    final List<Feature> notBackground = new ArrayList<>();
+    final List<Feature> background = new ArrayList<>();
+
+    // check the featureRow in the blank samples
+    int foundInNBlanks = 0;
+    for (RawDataFile blankRaw : blanks) {
+      final Feature blankFeature = row.getFeature(blankRaw);
+      if (blankFeature != null) {
+        // save blank detections to a blank-list
+        background.add(blankFeature);
+        if (checkFoldChange) {
+          blankAbundances[foundInNBlanks] = getFeatureQuantifier(blankFeature, quantType);
+        }
+        ++foundInNBlanks;
+      }
+    }
+
+    double blankAbundance = -1;
+    // notBackground is still empty, so samples are checked if blank detections are required
+    if (minBlankDetections > 0 || checkFoldChange) {
+      blankAbundance =
+          checkFoldChange ? getBlankAbundance(blankAbundances, foundInNBlanks, ratioType) : 1d;
+
+      int numSampleFeatures = 0;
+      for (RawDataFile file : samples) {
+        final Feature nonBlankFeature = row.getFeature(file);
+        // check if there's actually a feature
+        if (nonBlankFeature != null) {
+          sampleFeatures[numSampleFeatures] = nonBlankFeature;
+          sampleAbundances[numSampleFeatures] = getFeatureQuantifier(nonBlankFeature, quantType);
+          numSampleFeatures++;
+        }
+      }
+
+      // check if features are more abundant than the blank samples
+      for (int i = 0; i < numSampleFeatures; i++) {
+        if (!checkFoldChange || sampleAbundances[i] / blankAbundance >= foldChange) {
+          // the feature is a true feature and not a background
+          notBackground.add(sampleFeatures[i]);
+        } else {
+          // the feature is indistinguishable from the blanks
+          background.add(sampleFeatures[i]);
+        }
+      }
+      Arrays.fill(sampleFeatures, 0, numSampleFeatures, null);
+    }
+
+    return new RowClassification(notBackground, background, blankAbundance, foundInNBlanks);
+  }
+
   private double getFeatureQuantifier(Feature f, AbundanceMeasure quantType) {
     if (quantType == AbundanceMeasure.Height) {
       return f.getHeight();
@@ -320,27 +377,21 @@ public class FeatureListBlankSubtractionTask extends AbstractTask {
     throw new RuntimeException("Unknown parameter");
   }
 
-  private double getBlankAbundance(FeatureListRow row, Collection<RawDataFile> blankRaws,
-      AbundanceMeasure quantType, RatioType ratioType) {
+  /**
+   * @param abundances blank abundances of the detected features
+   * @param num        number of detected features in the blank files
+   */
+  private double getBlankAbundance(double[] abundances, int num, RatioType ratioType) {
     double intensity = 0d;
-    int numDetections = 0;
-
-    for (RawDataFile file : blankRaws) {
-      final Feature f = row.getFeature(file);
-      if (f != null && f.getFeatureStatus() != FeatureStatus.UNKNOWN) {
-        double quant = getFeatureQuantifier(f, quantType);
-
-        if (ratioType == RatioType.AVERAGE) {
-          intensity += quant;
-          numDetections++;
-        } else if (ratioType == RatioType.MAXIMUM) {
-          intensity = Math.max(quant, intensity);
-        }
+    for (int i = 0; i < num; i++) {
+      if (ratioType == RatioType.AVERAGE) {
+        intensity += abundances[i];
+      } else if (ratioType == RatioType.MAXIMUM) {
+        intensity = Math.max(abundances[i], intensity);
       }
     }
 
-    return ratioType == RatioType.AVERAGE && numDetections != 0 ? intensity / numDetections
-        : intensity;
+    return ratioType == RatioType.AVERAGE && num != 0 ? intensity / num : intensity;
   }
 
   private boolean checkBlankSelection(FeatureList aligned, List<RawDataFile> blankRaws) {
@@ -369,6 +420,15 @@ public class FeatureListBlankSubtractionTask extends AbstractTask {
     return true;
   }
 
+  /**
+   * Features of a row above the blank level and background features in the order of blank files
+   * and then sample files.
+   */
+  private record RowClassification(List<Feature> notBackground, List<Feature> background,
+                                   double blankAbundance, int foundInNBlanks) {
+
+  }
+
   enum RatioType {
     AVERAGE, MAXIMUM
   }
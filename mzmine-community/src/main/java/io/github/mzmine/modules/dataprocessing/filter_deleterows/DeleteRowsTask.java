@@ -36,6 +36,7 @@ import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.mzio.users.user.CurrentUserService;
 import java.time.Instant;
+import java.util.HashSet;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -63,7 +64,8 @@ public class DeleteRowsTask extends AbstractFeatureListTask {
   @Override
   protected void process() {
     final List<FeatureListRow> rows = FeatureListUtils.idStringToRows(flist, rowIdStr);
-    rows.forEach(flist::removeRow);
+    // remove all rows in one pass instead of searching the list for each row
+    flist.getRows().removeAll(new HashSet<>(rows));
   }
 
   @Override
@@ -31,6 +31,7 @@ import com.google.common.collect.TreeRangeMap;
 import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassList;
 import io.github.mzmine.datamodel.MergedMassSpectrum;
 import io.github.mzmine.datamodel.MergedMassSpectrum.MergingType;
 import io.github.mzmine.datamodel.MobilityScan;
@@ -38,13 +39,11 @@ import io.github.mzmine.datamodel.PseudoSpectrum;
 import io.github.mzmine.datamodel.PseudoSpectrumType;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
-import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
-import io.github.mzmine.datamodel.data_access.EfficientDataAccess.ScanDataType;
-import io.github.mzmine.datamodel.data_access.ScanDataAccess;
 import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
@@ -63,18 +62,21 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.project.impl.MZmineProjectImpl;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.taskcontrol.impl.FinishedTask;
 import io.github.mzmine.util.ArrayUtils;
 import io.github.mzmine.util.IonMobilityUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.collections.BinarySearch;
 import io.github.mzmine.util.scans.SpectraMerging;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -94,13 +96,9 @@ public class DiaMs2CorrTask extends AbstractTask {
 
   private final ParameterSet parameters;
   private final ParameterSet adapParameters;
-  //  private final ParameterSet smoothingParameters;
-//  private final ParameterSet resolverParameters;
   private final int numRows;
-  private final int numSubTasks = 2;
-  private AbstractTask adapTask = null;
-  private int currentTaksIndex = 1;
-  private int currentRow = 0;
+  private final AtomicInteger currentRow = new AtomicInteger(0);
+  private volatile AbstractTask adapTask = null;
 
   private String description = "";
 
@@ -136,14 +134,14 @@ public class DiaMs2CorrTask extends AbstractTask {
 
   @Override
   public String getTaskDescription() {
+    final AbstractTask adap = adapTask;
     return "DIA MS2 for feature list: " + flist.getName() + " " + (
-        adapTask != null && !adapTask.isFinished() ? adapTask.getTaskDescription() : description);
+        adap != null && !adap.isFinished() ? adap.getTaskDescription() : description);
   }
 
   @Override
   public double getFinishedPercentage() {
-    return (adapTask != null ? adapTask.getFinishedPercentage() * 0.5 : 0)
-           + (currentRow / (double) numRows) * 0.5d;
+    return numRows == 0 ? 0 : currentRow.get() / (double) numRows;
   }
 
   @Override
@@ -153,11 +151,12 @@ public class DiaMs2CorrTask extends AbstractTask {
     if (flist.getNumberOfRawDataFiles() != 1) {
       setErrorMessage("Cannot build DIA MS2 for feature lists with more than one raw data file.");
       setStatus(TaskStatus.ERROR);
+      return;
     }
 
     final RawDataFile file = flist.getRawDataFile(0);
     final List<Scan> ms2Scans = List.of(ms2ScanSelection.getMatchingScans(file));
-    if(ms2Scans.isEmpty()) {
+    if (ms2Scans.isEmpty()) {
       flist.getAppliedMethods().add(
           new SimpleFeatureListAppliedMethod(DiaMs2CorrModule.class, parameters,
               getModuleCallDate()));
@@ -165,197 +164,340 @@ public class DiaMs2CorrTask extends AbstractTask {
       return;
     }
 
-    final ScanDataAccess access = EfficientDataAccess.of(file, ScanDataType.MASS_LIST,
-        ms2ScanSelection);
+    for (Scan scan : ms2Scans) {
+      if (scan.getMassList() == null) {
+        setErrorMessage("Scan #" + scan.getScanNumber() + " from " + file.getName()
+                        + " does not have a mass list. Please run \"Raw data methods\" -> "
+                        + "\"Mass detection\"");
+        setStatus(TaskStatus.ERROR);
+        return;
+      }
+    }
 
-    // build chromatograms
-    final MZmineProject dummyProject = new MZmineProjectImpl();
-    var ms2Flist = buildChromatograms(dummyProject, file);
+    // ms1 shapes are extracted once, ms2 chromatograms are only built per isolation window
+    description = "Extracting MS1 feature shapes";
+    final List<RowShape> shapes = flist.getRows().parallelStream()
+        .map(row -> extractRowShape(row, file)).filter(Objects::nonNull).toList();
+    // rows without a shape to correlate are done
+    currentRow.addAndGet(numRows - shapes.size());
 
-    if(ms2Flist == null) {
-      flist.getAppliedMethods().add(
-          new SimpleFeatureListAppliedMethod(DiaMs2CorrModule.class, parameters,
-              getModuleCallDate()));
-      setStatus(TaskStatus.FINISHED);
+    final List<IsolationWindowScans> windows = groupByIsolationWindow(ms2Scans);
+    final List<List<RowShape>> rowsPerWindow = assignRowsToWindows(windows, shapes);
+
+    // only the chromatograms of one window are kept in memory at a time
+    for (int w = 0; w < windows.size(); w++) {
+      if (isCanceled()) {
+        return;
+      }
+      description = "Correlating MS2 chromatograms of isolation window %d/%d".formatted(w + 1,
+          windows.size());
+      processIsolationWindow(file, windows.get(w), rowsPerWindow.get(w));
+    }
+    if (isCanceled()) {
+      return;
+    }
+
+    flist.getAppliedMethods().add(
+        new SimpleFeatureListAppliedMethod(DiaMs2CorrModule.class, parameters,
+            getModuleCallDate()));
+    setStatus(TaskStatus.FINISHED);
+  }
+
+  /**
+   * Groups the ms2 scans by their isolation window. DIA methods cycle through the windows, so the
+   * scans of each window remain sorted by rt.
+   */
+  private List<IsolationWindowScans> groupByIsolationWindow(List<Scan> ms2Scans) {
+    final Map<Range<Double>, List<Scan>> scansPerWindow = new LinkedHashMap<>();
+    for (Scan scan : ms2Scans) {
+      scansPerWindow.computeIfAbsent(getIsolationWindow(scan), _ -> new ArrayList<>()).add(scan);
+    }
+
+    // windows that change from scan to scan cannot be traced, use all scans as one window instead
+    if (scansPerWindow.size() > 1 && ms2Scans.size() / scansPerWindow.size() < minCorrPoints) {
+      logger.fine(() -> "Found %d isolation windows for %d MS2 scans, tracing all scans together"
+          .formatted(scansPerWindow.size(), ms2Scans.size()));
+      return List.of(IsolationWindowScans.of(null, ms2Scans));
+    }
+
+    return scansPerWindow.entrySet().stream()
+        .map(e -> IsolationWindowScans.of(e.getKey(), e.getValue())).toList();
+  }
+
+  /**
+   * @return the isolation window or null if the scan covers all precursors (e.g., all ion
+   * fragmentation or frames, which change the isolation window along the mobility dimension)
+   */
+  @Nullable
+  private static Range<Double> getIsolationWindow(Scan scan) {
+    if (scan instanceof Frame || scan.getMsMsInfo() == null) {
+      return null;
+    }
+    return scan.getMsMsInfo().getIsolationWindow();
+  }
+
+  /**
+   * Every row is assigned to the isolation window that contains its m/z, the closest window center
+   * wins for overlapping windows. Rows outside of all windows are done.
+   *
+   * @return the rows of each window in the same order as the windows
+   */
+  private List<List<RowShape>> assignRowsToWindows(List<IsolationWindowScans> windows,
+      List<RowShape> shapes) {
+    final List<List<RowShape>> rowsPerWindow = new ArrayList<>(windows.size());
+    for (int i = 0; i < windows.size(); i++) {
+      rowsPerWindow.add(new ArrayList<>());
+    }
+
+    for (RowShape shape : shapes) {
+      int best = -1;
+      double bestDistance = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < windows.size(); i++) {
+        final IsolationWindowScans window = windows.get(i);
+        if (!window.contains(shape.mz())) {
+          continue;
+        }
+        final double distance = window.distanceToCenter(shape.mz());
+        if (best == -1 || distance < bestDistance) {
+          best = i;
+          bestDistance = distance;
+        }
+      }
+      if (best == -1) {
+        currentRow.incrementAndGet();
+      } else {
+        rowsPerWindow.get(best).add(shape);
+      }
+    }
+    return rowsPerWindow;
+  }
+
+  /**
+   * Builds the ms2 chromatograms of this isolation window and correlates them with all rows of the
+   * window. The chromatograms are discarded afterwards.
+   */
+  private void processIsolationWindow(RawDataFile file, IsolationWindowScans window,
+      List<RowShape> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+
+    final RangeMap<Double, IonTimeSeries<?>> ms2Eics = buildChromatograms(file, window.scans());
+    if (ms2Eics == null) {
+      currentRow.addAndGet(rows.size());
       return;
     }
 
+    // the chromatograms are only read, so the rows are independent
+    rows.parallelStream().forEach(shape -> {
+      if (isCanceled()) {
+        return;
+      }
+      processRow(shape, file, window, ms2Eics);
+      currentRow.incrementAndGet();
+    });
+  }
+
+  /**
+   * Builds the ms2 chromatograms of these scans with the chromatogram builder. The chromatograms
+   * are kept in memory, they are only used by this task.
+   *
+   * @return the chromatograms in non overlapping m/z ranges, the most intense chromatograms first,
+   * or null if no chromatograms were found
+   */
+  @Nullable
+  private RangeMap<Double, IonTimeSeries<?>> buildChromatograms(RawDataFile file,
+      List<Scan> scans) {
+    // currently the consecutive scans are used
+    final MZmineProject dummyProject = new MZmineProjectImpl();
+    final ModularADAPChromatogramBuilderTask task = new ModularADAPChromatogramBuilderTask(
+        dummyProject, file, adapParameters, null, getModuleCallDate(), DiaMs2CorrModule.class,
+        null, adapParameters.getValue(ADAPChromatogramBuilderParameters.minGroupIntensity),
+        scans);
+    adapTask = task;
+    if (isCanceled()) {
+      return null;
+    }
+    task.run();
+
+    if (dummyProject.getCurrentFeatureLists().isEmpty()) {
+      logger.warning("Cannot find ms2 feature list.");
+      return null;
+    }
+    final FeatureList ms2Flist = dummyProject.getCurrentFeatureLists().get(0);
+
     // store feature data in TreeRangeMap, to query by m/z in ms2 spectra
     final RangeMap<Double, IonTimeSeries<?>> ms2Eics = TreeRangeMap.create();
     ms2Flist.getRows().stream().map(row -> row.getFeature(file)).filter(Objects::nonNull)
         .sorted(Comparator.comparingDouble(Feature::getHeight).reversed()).forEach(
-            feature -> ms2Eics.put(
-                SpectraMerging.createNewNonOverlappingRange(ms2Eics, feature.getRawDataPointsMZRange()),
-                feature.getFeatureData()));
-    var size = ms2Eics.asMapOfRanges().size();
-    assert ms2Flist.getNumberOfRows() == size;
-
-    // go through all features and find ms2s
-    for (FeatureListRow row : flist.getRows()) {
-      currentRow++;
-      description = "Processing row " + currentRow + "/" + numRows;
-      if (isCanceled()) {
-        return;
-      }
+            feature -> ms2Eics.put(SpectraMerging.createNewNonOverlappingRange(ms2Eics,
+                feature.getRawDataPointsMZRange()), feature.getFeatureData()));
+    return ms2Eics;
+  }
 
-      final Feature feature = row.getFeature(file);
-      if (feature == null || feature.getFeatureStatus() != FeatureStatus.DETECTED
-          || feature.getHeight() < minMs1Intensity) {
-        continue;
-      }
+  /**
+   * @return the ms1 shape of this row for the correlation or null if the row does not qualify
+   */
+  @Nullable
+  private RowShape extractRowShape(FeatureListRow row, RawDataFile file) {
+    final Feature feature = row.getFeature(file);
+    if (feature == null || feature.getFeatureStatus() != FeatureStatus.DETECTED
+        || feature.getHeight() < minMs1Intensity) {
+      return null;
+    }
 
-      MergedMassSpectrum mergedMobilityScan = null; // for IMS
-      final IonTimeSeries<? extends Scan> featureEIC = feature.getFeatureData();
-      final double[][] shape = extractPointsAroundMaximum(
-          feature.getHeight() * correlationThreshold, featureEIC, feature.getRepresentativeScan());
-      if (shape == null || shape[0].length < minCorrPoints) {
-        continue;
-      }
-      final double[] ms1Rts = shape[0];
-      final double[] ms1Intensities = shape[1];
-
-      // fwhm sometimes does funny stuff, so we restrict it to the overlap of fwhm + rt range
-      final Range<Float> rtRange = Range.closed((float) ms1Rts[0],
-          (float) ArrayUtils.lastElement(ms1Rts));
-      final List<Scan> ms2sInRtRange = ms2Scans.stream()
-          .filter(scan -> rtRange.contains(scan.getRetentionTime())).toList();
-      final Scan closestMs2 = getClosestMs2(feature.getRT(), ms2sInRtRange);
-      if (closestMs2 == null || ms2sInRtRange.isEmpty() || ms2sInRtRange.size() < minCorrPoints) {
-        logger.fine(() -> "Could not find enough ms2s in rtRange " + rtRange);
+    final double[][] shape = extractPointsAroundMaximum(
+        feature.getHeight() * correlationThreshold, feature.getFeatureData(),
+        feature.getRepresentativeScan());
+    if (shape == null || shape[0].length < minCorrPoints) {
+      return null;
+    }
+    return new RowShape(feature, row.getAverageMZ(), shape[0], shape[1]);
+  }
+
+  /**
+   * Correlates the ms1 feature shape of this row with the eligible ms2 chromatograms and sets the
+   * pseudo ms2 spectrum.
+   */
+  private void processRow(RowShape shape, RawDataFile file, IsolationWindowScans window,
+      RangeMap<Double, IonTimeSeries<?>> ms2Eics) {
+    final Feature feature = shape.feature();
+    MergedMassSpectrum mergedMobilityScan = null; // for IMS
+    final IonTimeSeries<? extends Scan> featureEIC = feature.getFeatureData();
+    final double[] ms1Rts = shape.rts();
+    final double[] ms1Intensities = shape.intensities();
+
+    // fwhm sometimes does funny stuff, so we restrict it to the overlap of fwhm + rt range
+    final Range<Float> rtRange = Range.closed(shape.start(), shape.end());
+    final List<Scan> ms2sInRtRange = window.scans()
+        .subList(BinarySearch.lowerBound(window.rts(), rtRange.lowerEndpoint()),
+            BinarySearch.lowerBound(window.rts(), Math.nextUp(rtRange.upperEndpoint())));
+    final Scan closestMs2 = getClosestMs2(feature.getRT(), ms2sInRtRange);
+    if (closestMs2 == null || ms2sInRtRange.isEmpty() || ms2sInRtRange.size() < minCorrPoints) {
+      logger.fine(() -> "Could not find enough ms2s in rtRange " + rtRange);
+      return;
+    }
+
+    // find m/zs in the closest ms2 scan and get their EICs
+    final MassList massList = closestMs2.getMassList();
+    if (massList == null) {
+      return;
+    }
+
+    final List<IonTimeSeries<?>> eligibleEICs = new ArrayList<>();
+    for (int i = 0; i < massList.getNumberOfDataPoints(); i++) {
+      if (minMs2Intensity > massList.getIntensityValue(i)) {
         continue;
       }
 
-      // find m/zs in the closest ms2 scan and get their EICs
-      if (!access.jumpToScan(closestMs2)) {
-        continue;
+      final double mz = massList.getMzValue(i);
+      final IonTimeSeries<?> series = ms2Eics.get(mz);
+      if (series != null) {
+        eligibleEICs.add(series);
       }
+    }
 
-      final List<IonTimeSeries<?>> eligibleEICs = new ArrayList<>();
-      for (int i = 0; i < access.getNumberOfDataPoints(); i++) {
-        if (minMs2Intensity > access.getIntensityValue(i)) {
-          continue;
-        }
+    if (eligibleEICs.isEmpty()) {
+      return;
+    }
 
-        final double mz = access.getMzValue(i);
-        final IonTimeSeries<?> series = ms2Eics.get(mz);
-        if (series != null) {
-          eligibleEICs.add(series);
-        }
+    // for ims data, later check if we can find the mz in the closest ms2 frame with the same mobility
+    final MobilityScan bestMobilityScan = IonMobilityUtils.getBestMobilityScan(feature);
+    if (bestMobilityScan != null && closestMs2 instanceof Frame) {
+      final Range<Float> mobilityRange = IonMobilityUtils.getMobilityFWHM(
+          ((IonMobilogramTimeSeries) featureEIC).getSummedMobilogram());
+      final List<MobilityScan> mobilityScans = ms2sInRtRange.stream()
+          .flatMap(s -> ((Frame) s).getMobilityScans().stream())
+          .filter(m -> mobilityRange.contains((float) m.getMobility())).toList();
+      if (!mobilityScans.isEmpty()) {
+        mergedMobilityScan = SpectraMerging.mergeSpectra(mobilityScans, mzTolerance,
+            MergingType.ALL_ENERGIES, null);
+      } else {
+        return; // if we have ims data, and there are no mobility scans to be merged, something is fishy.
       }
+    }
 
-      if (eligibleEICs.isEmpty()) {
-        continue;
+    DoubleArrayList ms2Mzs = new DoubleArrayList();
+    DoubleArrayList ms2Intensities = new DoubleArrayList();
+    for (IonTimeSeries<?> eic : eligibleEICs) {
+      final int num = eic.getNumberOfValues();
+      final double[] intensities = new double[num];
+      final double[] rts = new double[num];
+      for (int i = 0; i < num; i++) {
+        intensities[i] = eic.getIntensity(i);
+        rts[i] = eic.getRetentionTime(i);
       }
 
-      // for ims data, later check if we can find the mz in the closest ms2 frame with the same mobility
-      final MobilityScan bestMobilityScan = IonMobilityUtils.getBestMobilityScan(feature);
-      if (bestMobilityScan != null && closestMs2 instanceof Frame) {
-        final Range<Float> mobilityRange = IonMobilityUtils.getMobilityFWHM(
-            ((IonMobilogramTimeSeries) featureEIC).getSummedMobilogram());
-        final List<MobilityScan> mobilityScans = ms2Scans.stream()
-            .filter(s -> rtRange.contains(s.getRetentionTime()))
-            .flatMap(s -> ((Frame) s).getMobilityScans().stream())
-            .filter(m -> mobilityRange.contains((float) m.getMobility())).toList();
-        if (!mobilityScans.isEmpty()) {
-          mergedMobilityScan = SpectraMerging.mergeSpectra(mobilityScans, mzTolerance,
-              MergingType.ALL_ENERGIES, null);
-        } else {
-          continue; // if we have ims data, and there are no mobility scans to be merged, something is fishy.
-        }
+      final CorrelationData correlationData = DIA.corrFeatureShape(ms1Rts, ms1Intensities, rts,
+          intensities, minCorrPoints, 2, minMs2Intensity / 3);
+      if (correlationData == null || !correlationData.isValid()
+          || correlationData.getPearsonR() <= 0 || correlationData.getPearsonR() <= minPearson) {
+        continue;
       }
 
-      DoubleArrayList ms2Mzs = new DoubleArrayList();
-      DoubleArrayList ms2Intensities = new DoubleArrayList();
-      for (IonTimeSeries<?> eic : eligibleEICs) {
-        final int num = eic.getNumberOfValues();
-        final double[] intensities = new double[num];
-        final double[] rts = new double[num];
-        for (int i = 0; i < num; i++) {
-          intensities[i] = eic.getIntensity(i);
-          rts[i] = eic.getRetentionTime(i);
-        }
-
-        final CorrelationData correlationData = DIA.corrFeatureShape(ms1Rts, ms1Intensities, rts,
-            intensities, minCorrPoints, 2, minMs2Intensity / 3);
-        if (correlationData != null && correlationData.isValid()
-            && correlationData.getPearsonR() > 0 && correlationData.getPearsonR() > minPearson) {
-          int startIndex = -1;
-          int endIndex = -1;
-          double maxIntensity = Double.NEGATIVE_INFINITY;
-
-          final List<Scan> spectra = (List<Scan>) eic.getSpectra();
-          for (int j = 0; j < spectra.size(); j++) {
-            Scan spectrum = spectra.get(j);
-            if (startIndex == -1 && rtRange.contains(spectrum.getRetentionTime())) {
-              startIndex = j;
-            }
-            if (startIndex != -1 && eic.getIntensity(j) > maxIntensity) {
-              maxIntensity = eic.getIntensity(j);
-            }
-            if (startIndex != -1 && !rtRange.contains(spectrum.getRetentionTime())) {
-              endIndex = j - 1;
-              break;
-            }
-          }
-          // no value in ms1 feature rt range
-          if (startIndex == -1) {
-            continue;
-          }
-          // all values in ms1 feature rt range
-          if (endIndex == -1) {
-            endIndex = eic.getNumberOfValues() - 1;
-          }
+      int startIndex = -1;
+      int endIndex = -1;
+      double maxIntensity = Double.NEGATIVE_INFINITY;
 
-          final double mz = FeatureDataUtils.calculateCenterMz(eic,
-              FeatureDataUtils.DEFAULT_CENTER_FUNCTION, startIndex, endIndex);
-
-          // for IMS measurements, the ion must be present in the MS2 mobility scans in the during
-          // the feature's rt window and within the mobility scans of the feature's mobility window.
-          // we could also look at mobility shape and correlate that, but it would probably take a
-          // lot of optimisation and/or too long to compute
-          if (mergedMobilityScan != null && mergedMobilityScan.getNumberOfDataPoints() > 1) {
-            boolean mzFound = false;
-            final double upper = mzTolerance.getToleranceRange(mz).upperEndpoint();
-            for (int i = 0; i < mergedMobilityScan.getNumberOfDataPoints(); i++) {
-              if (mzTolerance.checkWithinTolerance(mz, mergedMobilityScan.getMzValue(i))) {
-                mzFound = true;
-                break;
-              } else if (mergedMobilityScan.getMzValue(i) > upper) {
-                break;
-              }
-            }
-            if (!mzFound) {
-              continue; // dont add this mz
-            }
-          }
-          ms2Mzs.add(mz);
-          ms2Intensities.add(maxIntensity);
+      final List<? extends Scan> spectra = eic.getSpectra();
+      for (int j = 0; j < spectra.size(); j++) {
+        Scan spectrum = spectra.get(j);
+        if (startIndex == -1 && rtRange.contains(spectrum.getRetentionTime())) {
+          startIndex = j;
+        }
+        if (startIndex != -1 && eic.getIntensity(j) > maxIntensity) {
+          maxIntensity = eic.getIntensity(j);
+        }
+        if (startIndex != -1 && !rtRange.contains(spectrum.getRetentionTime())) {
+          endIndex = j - 1;
+          break;
         }
       }
-
-      if (ms2Mzs.isEmpty()) {
+      // no value in ms1 feature rt range
+      if (startIndex == -1) {
         continue;
       }
+      // all values in ms1 feature rt range
+      if (endIndex == -1) {
+        endIndex = eic.getNumberOfValues() - 1;
+      }
 
-      /*MergedMsMsSpectrum ms2 = new SimpleMergedMsMsSpectrum(getMemoryMapStorage(),
-          ms2Mzs.toDoubleArray(), ms2Intensities.toDoubleArray(), closestMs2.getMsMsInfo(),
-          closestMs2.getMSLevel(),
-          mergedMobilityScan != null ? mergedMobilityScan.getSourceSpectra() : ms2sInRtRange,
-          IntensityMergingType.MAXIMUM, FeatureDataUtils.DEFAULT_CENTER_FUNCTION,
-          mergedMobilityScan != null ? MsMsMergeType.IMS_DIA : MsMsMergeType.DIA);*/
-
-      PseudoSpectrum ms2 = new SimplePseudoSpectrum(file, 2, feature.getRT(), null,
-          ms2Mzs.toDoubleArray(), ms2Intensities.toDoubleArray(),
-          feature.getRepresentativeScan().getPolarity(),
-          String.format("Pseudo MS2 (R >= %.2f)", minPearson), PseudoSpectrumType.LC_DIA);
+      final double mz = FeatureDataUtils.calculateCenterMz(eic,
+          FeatureDataUtils.DEFAULT_CENTER_FUNCTION, startIndex, endIndex);
+
+      // for IMS measurements, the ion must be present in the MS2 mobility scans in the during
+      // the feature's rt window and within the mobility scans of the feature's mobility window.
+      // we could also look at mobility shape and correlate that, but it would probably take a
+      // lot of optimisation and/or too long to compute
+      if (mergedMobilityScan != null && mergedMobilityScan.getNumberOfDataPoints() > 1) {
+        boolean mzFound = false;
+        final double upper = mzTolerance.getToleranceRange(mz).upperEndpoint();
+        for (int i = 0; i < mergedMobilityScan.getNumberOfDataPoints(); i++) {
+          if (mzTolerance.checkWithinTolerance(mz, mergedMobilityScan.getMzValue(i))) {
+            mzFound = true;
+            break;
+          } else if (mergedMobilityScan.getMzValue(i) > upper) {
+            break;
+          }
+        }
+        if (!mzFound) {
+          continue; // dont add this mz
+        }
+      }
+      ms2Mzs.add(mz);
+      ms2Intensities.add(maxIntensity);
+    }
 
-      feature.setAllMS2FragmentScans(new ArrayList<>(List.of(ms2)));
+    if (ms2Mzs.isEmpty()) {
+      return;
     }
 
-    flist.getAppliedMethods().add(
-        new SimpleFeatureListAppliedMethod(DiaMs2CorrModule.class, parameters,
-            getModuleCallDate()));
-    setStatus(TaskStatus.FINISHED);
+    PseudoSpectrum ms2 = new SimplePseudoSpectrum(file, 2, feature.getRT(), null,
+        ms2Mzs.toDoubleArray(), ms2Intensities.toDoubleArray(),
+        feature.getRepresentativeScan().getPolarity(),
+        String.format("Pseudo MS2 (R >= %.2f)", minPearson), PseudoSpectrumType.LC_DIA);
+
+    feature.setAllMS2FragmentScans(new ArrayList<>(List.of(ms2)));
   }
 
   private Scan getClosestMs2(float rt, List<Scan> ms2sInRtRange) {
@@ -371,26 +513,6 @@ public class DiaMs2CorrTask extends AbstractTask {
     return closestMs2;
   }
 
-  private ModularFeatureList buildChromatograms(MZmineProject dummyProject, RawDataFile file) {
-    // currently the consecutive scans are used
-    adapTask = ModularADAPChromatogramBuilderTask.forChromatography(dummyProject, file,adapParameters,
-        getMemoryMapStorage(), getModuleCallDate(), DiaMs2CorrModule.class);
-
-    adapTask.run();
-    adapTask = new FinishedTask(adapTask);
-    currentTaksIndex++;
-
-    if (dummyProject.getCurrentFeatureLists().isEmpty()) {
-      logger.warning("Cannot find ms2 feature list.");
-      return null;
-    }
-    var ms2Flist = dummyProject.getCurrentFeatureLists().get(0);
-//    final FeatureListAppliedMethod removed = file.getAppliedMethods()
-//        .remove(file.getAppliedMethods().size() - 1);
-//    assert removed.getModule().getClass().equals(ModularADAPChromatogramBuilderModule.class);
-    return (ModularFeatureList) ms2Flist;
-  }
-
   /**
    * Extracts a given number of data points around a maximum. The number of detected points is
    * automatically limited to the bounds of the chromatogram.
@@ -442,11 +564,52 @@ public class DiaMs2CorrTask extends AbstractTask {
     return new double[][]{rts, intensities};
   }
 
+  /**
+   * The ms1 shape of a row, points around the maximum above the correlation threshold.
+   */
+  private record RowShape(Feature feature, double mz, double[] rts, double[] intensities) {
+
+    float start() {
+      return (float) rts[0];
+    }
+
+    float end() {
+      return (float) ArrayUtils.lastElement(rts);
+    }
+  }
+
+  /**
+   * The ms2 scans of one isolation window sorted by rt.
+   *
+   * @param isolationWindow the window or null if the scans cover all precursors
+   */
+  private record IsolationWindowScans(@Nullable Range<Double> isolationWindow, List<Scan> scans,
+                                      float[] rts) {
+
+    static IsolationWindowScans of(@Nullable Range<Double> isolationWindow, List<Scan> scans) {
+      final float[] rts = new float[scans.size()];
+      for (int i = 0; i < rts.length; i++) {
+        rts[i] = scans.get(i).getRetentionTime();
+      }
+      return new IsolationWindowScans(isolationWindow, scans, rts);
+    }
+
+    boolean contains(double mz) {
+      return isolationWindow == null || isolationWindow.contains(mz);
+    }
+
+    double distanceToCenter(double mz) {
+      return isolationWindow == null ? Double.MAX_VALUE : Math.abs(
+          (isolationWindow.lowerEndpoint() + isolationWindow.upperEndpoint()) / 2 - mz);
+    }
+  }
+
   @Override
   public void cancel() {
     super.cancel();
-    if (adapTask != null) {
-      adapTask.cancel();
+    final AbstractTask adap = adapTask;
+    if (adap != null) {
+      adap.cancel();
     }
   }
 }
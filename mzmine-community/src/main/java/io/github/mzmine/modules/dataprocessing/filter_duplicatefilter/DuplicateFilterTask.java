@@ -33,6 +33,7 @@ import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
@@ -54,12 +55,18 @@ import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
+import io.github.mzmine.util.collections.BinarySearch;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -78,7 +85,7 @@ public class DuplicateFilterTask extends AbstractTask {
   private final ParameterSet parameters;
   private FeatureList filteredPeakList;
   // Counters.
-  private int processedRows;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
   private int totalRows;
 
   public DuplicateFilterTask(final MZmineProject project, final FeatureList list,
@@ -92,7 +99,6 @@ public class DuplicateFilterTask extends AbstractTask {
     peakList = list;
     filteredPeakList = null;
     totalRows = 0;
-    processedRows = 0;
   }
 
   @Override
@@ -104,7 +110,7 @@ public class DuplicateFilterTask extends AbstractTask {
   @Override
   public double getFinishedPercentage() {
 
-    return totalRows == 0 ? 0.0 : (double) processedRows / (double) totalRows;
+    return totalRows == 0 ? 0.0 : processedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -135,7 +141,8 @@ public class DuplicateFilterTask extends AbstractTask {
                 () -> new MobilityTolerance(Float.MAX_VALUE)), // use huge tolerance otherwise
             parameters.getParameter(DuplicateFilterParameters.requireSameIdentification).getValue(),
             parameters.getParameter(DuplicateFilterParameters.filterMode).getValue(),
-            originalFeatureListOption == OriginalFeatureListOption.PROCESS_IN_PLACE);
+            originalFeatureListOption == OriginalFeatureListOption.PROCESS_IN_PLACE,
+            originalFeatureListOption != OriginalFeatureListOption.KEEP);
 
         if (!isCanceled()) {
           final String suffix = parameters.getValue(RowsFilterParameters.SUFFIX);
@@ -164,12 +171,14 @@ public class DuplicateFilterTask extends AbstractTask {
    * @param rtTolerance         RT tolerance.
    * @param requireSameId       must duplicate peaks have the same identities?
    * @param processOriginalList
+   * @param compactFeatureData  compact the feature data of the kept rows, if the original list is
+   *                            not kept
    * @return the filtered feature list.
    */
   private FeatureList filterDuplicatePeakListRows(final FeatureList origPeakList,
       final String suffix, final MZTolerance mzTolerance, final RTTolerance rtTolerance,
       final MobilityTolerance mobilityTolerance, final boolean requireSameId, FilterMode mode,
-      Boolean processOriginalList) {
+      Boolean processOriginalList, boolean compactFeatureData) {
     // Create the new feature list.
     final ModularFeatureList newPeakList;
     if (processOriginalList) {
@@ -185,7 +194,7 @@ public class DuplicateFilterTask extends AbstractTask {
 
     // filter by average mz and rt
     totalRows = rowCount;
-    processedRows = 0;
+    processedRows.set(0);
     // sort rows
     final int removedDuplicates = switch (mode) {
       case OLD_AVERAGE ->
@@ -203,6 +212,11 @@ public class DuplicateFilterTask extends AbstractTask {
     if (!isCanceled()) {
       // remove all null rows
       removeDuplicatesFromList(newPeakList, peakListRows);
+      if (compactFeatureData) {
+        // kept series still reference the memory mapped segments of all removed rows
+        FeatureDataUtils.compactFeatureDataIfSparse(newPeakList,
+            ((ModularFeatureList) origPeakList).getMemoryMapStorage(), rowCount);
+      }
 
       // Add task description to peakList
       newPeakList.addDescriptionOfAppliedTask(
@@ -227,48 +241,74 @@ public class DuplicateFilterTask extends AbstractTask {
     flist.setRows(filteredRows);
   }
 
+  /**
+   * Removes all rows that are within tolerances of a row with a larger area. Candidates are only
+   * searched in the m/z tolerance window of each row through an m/z sorted index. Duplicate pairs
+   * are found in parallel and the rows are then removed in the order of decreasing area, so the
+   * result is the same as for comparing all rows with all later rows.
+   */
   private int applyOldAverageFilter(MZTolerance mzTolerance, RTTolerance rtTolerance,
       MobilityTolerance mobilityTolerance, boolean requireSameId,
       ModularFeatureListRow[] peakListRows, int rowCount) {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.Area, SortingDirection.Descending));
 
-    // Loop through all feature list rows
-    int removedDuplicates = 0;
-    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
+    // index of rows sorted by m/z
+    final double[] mzs = new double[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      mzs[i] = peakListRows[i].getAverageMZ();
+    }
+    final int[] mzOrder = IntStream.range(0, rowCount).toArray();
+    IntArrays.parallelQuickSort(mzOrder, (a, b) -> Double.compare(mzs[a], mzs[b]));
+    final double[] sortedMzs = new double[rowCount];
+    for (int k = 0; k < rowCount; k++) {
+      sortedMzs[k] = mzs[mzOrder[k]];
+    }
+
+    // duplicates with lower area for each row
+    final int[][] duplicates = new int[rowCount][];
+    IntStream.range(0, rowCount).parallel().forEach(firstRowIndex -> {
       if (isCanceled()) {
-        return -1;
+        return;
       }
-
       final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
+      final Range<Double> mzRange = mzTolerance.getToleranceRange(mzs[firstRowIndex]);
+      final IntArrayList found = new IntArrayList();
+      for (int k = BinarySearch.lowerBound(sortedMzs, mzRange.lowerEndpoint());
+          k < rowCount && sortedMzs[k] <= mzRange.upperEndpoint(); k++) {
+        final int secondRowIndex = mzOrder[k];
+        if (secondRowIndex <= firstRowIndex) {
+          continue;
+        }
+        final FeatureListRow secondRow = peakListRows[secondRowIndex];
+        // Duplicate peaks?
+        if (checkSameAverageRTMZ(firstRow, secondRow, mzTolerance, rtTolerance) && checkMobility(
+            firstRow, secondRow, mobilityTolerance) && (!requireSameId
+            || FeatureUtils.compareIdentities(firstRow, secondRow))) {
+          found.add(secondRowIndex);
+        }
+      }
+      duplicates[firstRowIndex] = found.isEmpty() ? null : found.toIntArray();
+      processedRows.incrementAndGet();
+    });
 
-      if (firstRow != null) {
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
-
-          final FeatureListRow secondRow = peakListRows[secondRowIndex];
-          if (secondRow != null) {
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            final boolean sameMZRT = checkSameAverageRTMZ(firstRow, secondRow, mzTolerance,
-                rtTolerance);
-
-            final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
+    if (isCanceled()) {
+      return -1;
+    }
 
-            // Duplicate peaks?
-            if (sameID && sameMZRT && sameMobility) {
-              // second row deleted
-              removedDuplicates++;
-              peakListRows[secondRowIndex] = null;
-            }
-          }
+    // rows are only removed by remaining rows with a larger area
+    int removedDuplicates = 0;
+    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
+      if (peakListRows[firstRowIndex] == null || duplicates[firstRowIndex] == null) {
+        continue;
+      }
+      for (int secondRowIndex : duplicates[firstRowIndex]) {
+        if (peakListRows[secondRowIndex] != null) {
+          // second row deleted
+          removedDuplicates++;
+          peakListRows[secondRowIndex] = null;
         }
       }
-      processedRows++;
     }
     return removedDuplicates;
   }
@@ -281,64 +321,19 @@ public class DuplicateFilterTask extends AbstractTask {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
 
-    // Loop through all feature list rows
-    int n = 0;
-    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
-      if (isCanceled()) {
-        return -1;
-      }
-
-      final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
-
-      if (firstRow != null) {
-
-        final double averageMZ1 = firstRow.getAverageMZ();
-        final Range<Double> mzRange = mzTolerance.getToleranceRange(averageMZ1);
-        double lowerMZ = mzRange.lowerEndpoint();
-        double upperMZ = mzRange.upperEndpoint();
-
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
-
-          final FeatureListRow secondRow = peakListRows[secondRowIndex];
-          if (secondRow != null) {
-            // check mz first to stop loop
-            final double averageMZ2 = secondRow.getAverageMZ();
-            if (averageMZ2 < lowerMZ) {
-              continue;
-            }
-            if (averageMZ2 > upperMZ) {
-              break;
-            }
-
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            final boolean sameRT = rtTolerance.checkWithinTolerance(firstRow.getAverageRT(),
-                secondRow.getAverageRT());
-
-            final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
-
-            // Duplicate peaks?
-            if (sameID && sameRT && sameMobility) {
-              // create consensus row in new filter
-              // copy all detected features of row2 into row1
-              // to exchange gap-filled against detected
-              // features
-              createConsensusFirstRow(newPeakList, rawFiles, firstRow, secondRow);
-              // second row deleted
-              n++;
-              peakListRows[secondRowIndex] = null;
-            }
-          }
-        }
-      }
-      processedRows++;
+    final double[] lowerMzs = new double[rowCount];
+    final double[] upperMzs = new double[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      final Range<Double> mzRange = mzTolerance.getToleranceRange(
+          peakListRows[i].getAverageMZ());
+      lowerMzs[i] = mzRange.lowerEndpoint();
+      upperMzs[i] = mzRange.upperEndpoint();
     }
-    return n;
+
+    return mergeDuplicates(newPeakList, peakListRows, rowCount, rawFiles, lowerMzs, upperMzs,
+        requireSameId, (firstRow, secondRow) -> rtTolerance.checkWithinTolerance(
+            firstRow.getAverageRT(), secondRow.getAverageRT()) && checkMobility(firstRow,
+            secondRow, mobilityTolerance));
   }
 
   /**
@@ -353,6 +348,71 @@ public class DuplicateFilterTask extends AbstractTask {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
 
+    final double[] lowerMzs = new double[rowCount];
+    final double[] upperMzs = new double[rowCount];
+    for (int r = 0; r < rowCount; r++) {
+      final List<ModularFeature> firstFeatures = peakListRows[r].getFeatures();
+      double minMZ = Double.MAX_VALUE;
+      double maxMZ = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < firstFeatures.size(); i++) {
+        Double mz = firstFeatures.get(i).getMZ();
+        if (mz == null) {
+          continue;
+        }
+        if (mz < minMZ) {
+          minMZ = mz;
+        }
+        if (mz > maxMZ) {
+          maxMZ = mz;
+        }
+      }
+      lowerMzs[r] = mzTolerance.getToleranceRange(minMZ).lowerEndpoint();
+      upperMzs[r] = mzTolerance.getToleranceRange(maxMZ).upperEndpoint();
+    }
+
+    return mergeDuplicates(newPeakList, peakListRows, rowCount, rawFiles, lowerMzs, upperMzs,
+        requireSameId, (firstRow, secondRow) ->
+            checkSameSingleFeatureRTMZ(rawFiles, firstRow, secondRow, mzTolerance, rtTolerance)
+                && checkMobility(firstRow, secondRow, mobilityTolerance));
+  }
+
+  /**
+   * Merges all later rows within the m/z bounds of a row into this row, if they share the identity
+   * and match the duplicate check. Rows are only changed while they are merged into, so the m/z
+   * bounds and identities of all later rows are still the original values. This is used to compare
+   * identities in parallel beforehand, the merging itself is done in order, because merged rows
+   * change their average values.
+   *
+   * @param rowsByMz    rows sorted by m/z, duplicates are set to null
+   * @param lowerMzs    the lower m/z bound of each row
+   * @param upperMzs    the upper m/z bound of each row
+   * @param isDuplicate checks the current rows after the m/z and identity check
+   * @return the number of duplicates or -1 if canceled
+   */
+  private int mergeDuplicates(ModularFeatureList newPeakList, ModularFeatureListRow[] rowsByMz,
+      int rowCount, RawDataFile[] rawFiles, double[] lowerMzs, double[] upperMzs,
+      boolean requireSameId, BiPredicate<FeatureListRow, FeatureListRow> isDuplicate) {
+    // identities of all following rows up to the first row above the upper m/z bound. The search
+    // only continues past this row if it was merged before
+    final boolean[][] sameIds = requireSameId ? new boolean[rowCount][] : null;
+    if (sameIds != null) {
+      IntStream.range(0, rowCount).parallel().forEach(firstRowIndex -> {
+        if (isCanceled()) {
+          return;
+        }
+        final FeatureListRow firstRow = rowsByMz[firstRowIndex];
+        int end = firstRowIndex + 1;
+        while (end < rowCount && rowsByMz[end].getAverageMZ() <= upperMzs[firstRowIndex]) {
+          end++;
+        }
+        final boolean[] sameId = new boolean[end - firstRowIndex - 1];
+        for (int c = 0; c < sameId.length; c++) {
+          sameId[c] = FeatureUtils.compareIdentities(firstRow, rowsByMz[firstRowIndex + 1 + c]);
+        }
+        sameIds[firstRowIndex] = sameId;
+      });
+    }
+
     // Loop through all feature list rows
     int n = 0;
     for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
@@ -360,55 +420,29 @@ public class DuplicateFilterTask extends AbstractTask {
         return -1;
       }
 
-      final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
+      final ModularFeatureListRow firstRow = rowsByMz[firstRowIndex];
 
       if (firstRow != null) {
-
-        final List<ModularFeature> firstFeatures = firstRow.getFeatures();
-        double minMZ = Double.MAX_VALUE;
-        double maxMZ = Double.NEGATIVE_INFINITY;
-        for (int i = 0; i < firstFeatures.size(); i++) {
-          Double mz = firstFeatures.get(i).getMZ();
-          if (mz == null) {
-            continue;
-          }
-          if (mz < minMZ) {
-            minMZ = mz;
-          }
-          if (mz > maxMZ) {
-            maxMZ = mz;
-          }
-        }
-        double lowerMZ = mzTolerance.getToleranceRange(minMZ).lowerEndpoint();
-        double upperMZ = mzTolerance.getToleranceRange(maxMZ).upperEndpoint();
-
         for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
-
-          final FeatureListRow secondRow = peakListRows[secondRowIndex];
+          final FeatureListRow secondRow = rowsByMz[secondRowIndex];
           if (secondRow != null) {
             // check mz first to stop loop
             final double averageMZ2 = secondRow.getAverageMZ();
-            if (averageMZ2 < lowerMZ) {
+            if (averageMZ2 < lowerMzs[firstRowIndex]) {
               continue;
             }
-            if (averageMZ2 > upperMZ) {
+            if (averageMZ2 > upperMzs[firstRowIndex]) {
               break;
             }
 
             // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            final boolean sameRT = checkSameSingleFeatureRTMZ(rawFiles, firstRow, secondRow,
-                mzTolerance, rtTolerance);
-
-            final boolean sameMobility = checkMobility(firstRow, secondRow, mobilityTolerance);
+            if (sameIds != null && !sameId(sameIds[firstRowIndex], firstRowIndex, firstRow,
+                secondRowIndex, secondRow)) {
+              continue;
+            }
 
             // Duplicate peaks?
-            if (sameID && sameRT && sameMobility) {
+            if (isDuplicate.test(firstRow, secondRow)) {
               // create consensus row in new filter
               // copy all detected features of row2 into row1
               // to exchange gap-filled against detected
@@ -416,16 +450,25 @@ public class DuplicateFilterTask extends AbstractTask {
               createConsensusFirstRow(newPeakList, rawFiles, firstRow, secondRow);
               // second row deleted
               n++;
-              peakListRows[secondRowIndex] = null;
+              rowsByMz[secondRowIndex] = null;
             }
           }
         }
       }
-      processedRows++;
+      processedRows.incrementAndGet();
     }
     return n;
   }
 
+  /**
+   * @param sameId identities compared beforehand for the rows following the first row
+   */
+  private static boolean sameId(boolean[] sameId, int firstRowIndex, FeatureListRow firstRow,
+      int secondRowIndex, FeatureListRow secondRow) {
+    final int c = secondRowIndex - firstRowIndex - 1;
+    return c < sameId.length ? sameId[c] : FeatureUtils.compareIdentities(firstRow, secondRow);
+  }
+
   /**
    * Turns firstRow to consensus row. With all features with highest FeatureStatus:
    * DETECTED>ESTIMATED>UNKNOWN Or the highest feature when comparing two ESTIMATED features
@@ -31,6 +31,7 @@ import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
@@ -44,6 +45,11 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.RangeUtils;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -113,7 +119,8 @@ public class FeatureFilterTask extends AbstractTask {
           FeatureFilterParameters.AUTO_REMOVE).getValue();
 
       // Filter the feature list
-      filteredPeakList = filterPeakList((ModularFeatureList) origPeakList);
+      filteredPeakList = filterPeakList((ModularFeatureList) origPeakList,
+          handleOriginal == OriginalFeatureListOption.REMOVE);
 
       if (!isCanceled()) {
         handleOriginal.reflectNewFeatureListToProject(
@@ -135,15 +142,14 @@ public class FeatureFilterTask extends AbstractTask {
   /**
    * Filter the feature list.
    *
-   * @param peakList feature list to filter.
-   * @return a new feature list with entries of the original feature list that pass the filtering.
+   * @param peakList     feature list to filter.
+   * @param transferRows move the rows to the new list instead of copying them, if the original
+   *                     list is removed afterwards
+   * @return a new feature list with entries of the original feature list that pass the filtering
+   * or null if the task was canceled.
    */
-  private ModularFeatureList filterPeakList(final ModularFeatureList peakList) {
-
-    // Make a copy of the peakList
-    final ModularFeatureList newPeakList = peakList.createCopy(
-        peakList.getName() + ' ' + parameters.getParameter(RowsFilterParameters.SUFFIX).getValue(),
-        getMemoryMapStorage(), false);
+  private ModularFeatureList filterPeakList(final ModularFeatureList peakList,
+      final boolean transferRows) {
 
     // Get parameters - which filters are active
     final boolean filterByDuration = parameters.getParameter(FeatureFilterParameters.PEAK_DURATION)
@@ -181,10 +187,12 @@ public class FeatureFilterTask extends AbstractTask {
         parameters.getParameter(FeatureFilterParameters.PEAK_ASYMMETRYFACTOR).getEmbeddedParameter()
             .getValue());
 
-    // Loop through all rows in feature list
-    final ModularFeatureListRow[] rows = newPeakList.getRows()
-        .toArray(ModularFeatureListRow[]::new);
-    final RawDataFile[] rawdatafiles = newPeakList.getRawDataFiles().toArray(new RawDataFile[0]);
+    // Loop through all rows in feature list. The original rows are only evaluated, the features
+    // are removed after all rows were filtered, so that a canceled task leaves the list untouched
+    final ModularFeatureListRow[] rows = peakList.getRows().toArray(ModularFeatureListRow[]::new);
+    final RawDataFile[] rawdatafiles = peakList.getRawDataFiles().toArray(new RawDataFile[0]);
+    // kept rows and the raw data files of their removed features
+    final Map<ModularFeatureListRow, List<RawDataFile>> keptRows = new LinkedHashMap<>();
     int totalRawDataFiles = rawdatafiles.length;
     boolean[] keepPeak = new boolean[totalRawDataFiles];
     totalRows = rows.length;
@@ -242,16 +250,49 @@ public class FeatureFilterTask extends AbstractTask {
       }
       // empty row?
       boolean isEmpty = Booleans.asList(keepPeak).stream().noneMatch(keep -> keep);
-      if (isEmpty) {
-        newPeakList.removeRow(row);
-      } else {
+      if (!isEmpty) {
+        final List<RawDataFile> removedFeatures = new ArrayList<>();
         for (int i = 0; i < rawdatafiles.length; i++) {
           if (!keepPeak[i]) {
-            row.removeFeature(rawdatafiles[i]);
+            removedFeatures.add(rawdatafiles[i]);
           }
         }
+        keptRows.put(row, removedFeatures);
+      }
+    }
+    if (isCanceled()) {
+      return null;
+    }
+
+    // Take over the kept rows if the original list is removed anyway or make a copy
+    final String title =
+        peakList.getName() + ' ' + parameters.getParameter(RowsFilterParameters.SUFFIX).getValue();
+    final ModularFeatureList newPeakList;
+    if (transferRows) {
+      newPeakList = peakList.createTransferredCopy(title, getMemoryMapStorage(),
+          keptRows.keySet());
+      keptRows.forEach((row, removedFeatures) -> removedFeatures.forEach(row::removeFeature));
+    } else {
+      newPeakList = peakList.createCopy(title, getMemoryMapStorage(), false);
+      // the copied rows keep their ids
+      final Map<Integer, List<RawDataFile>> removedFeaturesById = new HashMap<>();
+      keptRows.forEach((row, removedFeatures) -> removedFeaturesById.put(row.getID(),
+          removedFeatures));
+      for (ModularFeatureListRow row : newPeakList.getRows()
+          .toArray(ModularFeatureListRow[]::new)) {
+        final List<RawDataFile> removedFeatures = removedFeaturesById.get(row.getID());
+        if (removedFeatures == null) {
+          newPeakList.removeRow(row);
+        } else {
+          removedFeatures.forEach(row::removeFeature);
+        }
       }
     }
+    if (transferRows) {
+      // kept series still reference the memory mapped segments of all removed rows
+      FeatureDataUtils.compactFeatureDataIfSparse(newPeakList, peakList.getMemoryMapStorage(),
+          rows.length);
+    }
 
     newPeakList.getAppliedMethods().add(
         new SimpleFeatureListAppliedMethod(FeatureFilterModule.class, parameters,
@@ -61,7 +61,10 @@ import io.github.mzmine.util.collections.BinarySearch.DefaultTo;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -162,127 +165,95 @@ class IsotopeFinderTask extends AbstractTask {
     int detected = 0;
 
     try {
-      // find for all rows the isotope pattern
-      for (FeatureListRow row : featureList.getRows()) {
-        if (isCanceled()) {
-          return;
-        }
+      // group rows by their representative scan and sweep all scans once in order
+      final List<? extends Scan> selectedScans = Objects.requireNonNull(
+          featureList.getSeletedScans(raw));
+      final Map<Scan, Integer> scanIndexMap = new HashMap<>(selectedScans.size());
+      for (int i = 0; i < selectedScans.size(); i++) {
+        scanIndexMap.put(selectedScans.get(i), i);
+      }
 
+      final List<ScanFeature> scanFeatures = new ArrayList<>();
+      final List<ScanFeature> mobilityScanFeatures = new ArrayList<>();
+      for (FeatureListRow row : featureList.getRows()) {
         // start at max intensity signal
-        Feature feature = row.getFeature(raw);
-        Scan scan = feature.getRepresentativeScan();
+        final Feature feature = row.getFeature(raw);
+        final Scan scan = feature.getRepresentativeScan();
+        final Integer scanIndex = scan != null ? scanIndexMap.get(scan) : null;
         // no MS1 scan available
-        if (scan == null) {
+        if (scanIndex == null) {
+          processedRows++;
           continue;
         }
 
-        double mz = feature.getMZ();
-        scan = findBestScanOrMobilityScan(scans, mobScans, feature);
-
-        // find candidate isotope pattern in max scan
-        // for each charge state to determine best charge
-        // merge afterward to get one isotope patten with all possible isotopes
-        int maxFoundIsotopes = 0;
-        int bestCharge = 0;
-        IsotopePattern pattern = null;
-
-        for (int i = 0; i < isotopeMaxCharge; i++) {
-          // charge is zero indexed but always starts at 1 -> max charge
-          final int charge = i + 1;
-          final DoubleArrayList currentChargeDiffs = isoMzDiffsForCharge[i];
-          final double currentMaxDiff = maxIsoMzDiff[i];
-          final SimpleDataPoint featureDp = new SimpleDataPoint(mz, feature.getHeight());
-          List<DataPoint> candidates = IsotopesUtils.findIsotopesInScan(currentChargeDiffs,
-              currentMaxDiff, isoMzTolerance, scan, featureDp);
-
-          if (scan instanceof MobilityScan && !candidates.isEmpty()) {
-            candidates = normalizeImsIntensities(candidates, scan, featureDp);
-          }
+        final MobilityScan mobilityScan =
+            mobScans != null && feature.getMobility() != null
+                ? IonMobilityUtils.getBestMobilityScan(feature) : null;
+        final Integer frameIndex =
+            mobilityScan != null ? scanIndexMap.get(mobilityScan.getFrame()) : null;
+        if (frameIndex != null) {
+          mobilityScanFeatures.add(new ScanFeature(frameIndex, mobilityScan, feature));
+        } else {
+          scanFeatures.add(new ScanFeature(scanIndex, null, feature));
+        }
+      }
+      scanFeatures.sort(ScanFeature.SCAN_ORDER);
+      mobilityScanFeatures.sort(ScanFeature.SCAN_ORDER);
 
-          if (candidates.size() > 1) { // feature itself is always in cadidates
-            IsotopePattern newPattern = new SimpleIsotopePattern(candidates.toArray(new DataPoint[0]),
-                charge, IsotopePatternStatus.DETECTED, IsotopeFinderModule.MODULE_NAME);
-            if (pattern == null) {
-              pattern = newPattern;
-            } else if (pattern instanceof SimpleIsotopePattern) {
-              // combine 2 isotope pattern
-              pattern = new MultiChargeStateIsotopePattern(pattern, newPattern);
-            } else if (pattern instanceof MultiChargeStateIsotopePattern multi) {
-              // add next patterns
-              multi.addPattern(newPattern);
-            } else {
-              throw new IllegalStateException("Isotope pattern type is not handled.");
-            }
-
-            if (candidates.size() > maxFoundIsotopes) {
-              maxFoundIsotopes = candidates.size();
-              // charge is zero indexed but always starts at 1 -> max charge
-              bestCharge = charge;
-            }
-          }
+      // single pass over the mass lists of all scans with features
+      int currentScanIndex = -1;
+      for (ScanFeature scanFeature : scanFeatures) {
+        if (isCanceled()) {
+          return;
         }
-        if (pattern == null) {
-          // no pattern found
-          continue;
+        if (scanFeature.scanIndex() != currentScanIndex) {
+          currentScanIndex = scanFeature.scanIndex();
+          scans.jumpToIndex(currentScanIndex);
+        }
+        if (findIsotopePattern(scanFeature.feature(), scans, isoMzDiffsForCharge,
+            maxIsoMzDiff)) {
+          detected++;
         }
+        processedRows++;
+      }
 
-        if (scanRange == ScanRange.SINGLE_MOST_INTENSE) {
-          // add isotope pattern and charge
-          feature.setIsotopePattern(pattern);
-          feature.setCharge(bestCharge);
-          //Final CCS Calculation
-          RawDataFile data = feature.getRawDataFile();
-          Float mobility = feature.getMobility();
-          MobilityType mobilityType = feature.getMobilityUnit();
-          if (data instanceof IMSRawDataFile imsfile) {
-            if (CCSUtils.hasValidMobilityType(imsfile) && mobility != null && bestCharge > 0 && mobilityType != null) {
-              Float ccs = CCSUtils.calcCCS(mz, mobility, mobilityType, bestCharge, imsfile);
-              if (ccs != null) {
-                feature.setCCS(ccs);
-              }
-            }
-          }//end
+      // single pass over the frames and their mobility scans
+      currentScanIndex = -1;
+      MobilityScan currentMobilityScan = null;
+      for (ScanFeature scanFeature : mobilityScanFeatures) {
+        if (isCanceled()) {
+          return;
+        }
+        if (scanFeature.scanIndex() != currentScanIndex) {
+          currentScanIndex = scanFeature.scanIndex();
+          mobScans.jumpToFrameIndex(currentScanIndex);
+          currentMobilityScan = null;
+        }
+        final MobilityScan mobilityScan = scanFeature.mobilityScan();
+        final int mobilityScanNumber = mobilityScan.getMobilityScanNumber();
+        while ((currentMobilityScan == null
+                || currentMobilityScan.getMobilityScanNumber() < mobilityScanNumber)
+               && mobScans.hasNextMobilityScan()) {
+          currentMobilityScan = mobScans.nextMobilityScan();
+        }
+        if (!Objects.equals(currentMobilityScan, mobilityScan)) {
+          // the sweep did not reach this scan, e.g., different frame order in the data access
+          currentMobilityScan = mobScans.jumpToMobilityScan(mobilityScan);
+          if (!Objects.equals(currentMobilityScan, mobilityScan)) {
+            logger.fine(() -> "Cannot access mobility scan " + mobilityScan);
+            currentScanIndex = -1;
+            processedRows++;
+            continue;
+          }
+        }
+        if (findIsotopePattern(scanFeature.feature(), mobScans, isoMzDiffsForCharge,
+            maxIsoMzDiff)) {
           detected++;
-        } else {
-          // find pattern in FWHM
-          //      Float fwhmDiff = feature.getFWHM();
-          //      if (fwhmDiff != null) {
-          //        fwhmDiff /= 2f;
-          //
-          //        if (candidates.size() > 1) {
-          //          int next = 1;
-          //          while (scanIndex + next < totalScans || scanIndex - next >= 0) {
-          //            if (scanIndex + next < totalScans) {
-          //              scans.jumpToIndex(scanIndex + next);
-          //              if (checkRetentionTime(scans.getCurrentScan(), maxRT, fwhmDiff)) {
-          //                checkCandidatesInScan(scans, candidates);
-          //              }
-          //            }
-          //            if (scanIndex - next >= 0) {
-          //              scans.jumpToIndex(scanIndex - next);
-          //              if (checkRetentionTime(scans.getCurrentScan(), maxRT, fwhmDiff)) {
-          //                checkCandidatesInScan(scans, candidates);
-          //              }
-          //            }
-          //            next++;
-          //          }
-          //        }
-          //        // all scans in FWHMN checked... add isotope pattern
-          //        if (candidates.size() > 1) {
-          //          feature.setIsotopePattern(new SimpleIsotopePattern(
-          //              candidates.stream().map(d -> new SimpleDataPoint(d.getMZ(), d.getIntensity()))
-          //                  .toArray(DataPoint[]::new), IsotopePatternStatus.DETECTED, "Pattern finder"));
-          //          detected++;
-          //        }
-          //      } else {
-          //        // missing FWHM
-          //        missingValues++;
-          //      }
         }
         processedRows++;
       }
     } catch (Exception ex) {
-      logger.log(Level.WARNING, "Error in isotope finder "+ ex.getMessage(), ex);
+      logger.log(Level.WARNING, "Error in isotope finder " + ex.getMessage(), ex);
       setStatus(TaskStatus.ERROR);
       return;
     }
@@ -303,6 +274,120 @@ class IsotopeFinderTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * Finds the isotope pattern of a feature in the scan or mobility scan that is currently loaded in
+   * the data access.
+   *
+   * @param scan the data access set to the best scan or mobility scan of this feature
+   * @return true if an isotope pattern was detected and set to the feature
+   */
+  private boolean findIsotopePattern(Feature feature, Scan scan,
+      DoubleArrayList[] isoMzDiffsForCharge, double[] maxIsoMzDiff) {
+    double mz = feature.getMZ();
+
+    // find candidate isotope pattern in max scan
+    // for each charge state to determine best charge
+    // merge afterward to get one isotope patten with all possible isotopes
+    int maxFoundIsotopes = 0;
+    int bestCharge = 0;
+    IsotopePattern pattern = null;
+
+    for (int i = 0; i < isotopeMaxCharge; i++) {
+      // charge is zero indexed but always starts at 1 -> max charge
+      final int charge = i + 1;
+      final DoubleArrayList currentChargeDiffs = isoMzDiffsForCharge[i];
+      final double currentMaxDiff = maxIsoMzDiff[i];
+      final SimpleDataPoint featureDp = new SimpleDataPoint(mz, feature.getHeight());
+      List<DataPoint> candidates = IsotopesUtils.findIsotopesInScan(currentChargeDiffs,
+          currentMaxDiff, isoMzTolerance, scan, featureDp);
+
+      if (scan instanceof MobilityScan && !candidates.isEmpty()) {
+        candidates = normalizeImsIntensities(candidates, scan, featureDp);
+      }
+
+      if (candidates.size() > 1) { // feature itself is always in cadidates
+        IsotopePattern newPattern = new SimpleIsotopePattern(candidates.toArray(new DataPoint[0]),
+            charge, IsotopePatternStatus.DETECTED, IsotopeFinderModule.MODULE_NAME);
+        if (pattern == null) {
+          pattern = newPattern;
+        } else if (pattern instanceof SimpleIsotopePattern) {
+          // combine 2 isotope pattern
+          pattern = new MultiChargeStateIsotopePattern(pattern, newPattern);
+        } else if (pattern instanceof MultiChargeStateIsotopePattern multi) {
+          // add next patterns
+          multi.addPattern(newPattern);
+        } else {
+          throw new IllegalStateException("Isotope pattern type is not handled.");
+        }
+
+        if (candidates.size() > maxFoundIsotopes) {
+          maxFoundIsotopes = candidates.size();
+          // charge is zero indexed but always starts at 1 -> max charge
+          bestCharge = charge;
+        }
+      }
+    }
+    if (pattern == null) {
+      // no pattern found
+      return false;
+    }
+
+    if (scanRange == ScanRange.SINGLE_MOST_INTENSE) {
+      // add isotope pattern and charge
+      feature.setIsotopePattern(pattern);
+      feature.setCharge(bestCharge);
+      //Final CCS Calculation
+      RawDataFile data = feature.getRawDataFile();
+      Float mobility = feature.getMobility();
+      MobilityType mobilityType = feature.getMobilityUnit();
+      if (data instanceof IMSRawDataFile imsfile) {
+        if (CCSUtils.hasValidMobilityType(imsfile) && mobility != null && bestCharge > 0 && mobilityType != null) {
+          Float ccs = CCSUtils.calcCCS(mz, mobility, mobilityType, bestCharge, imsfile);
+          if (ccs != null) {
+            feature.setCCS(ccs);
+          }
+        }
+      }//end
+      return true;
+    } else {
+      // find pattern in FWHM
+      //      Float fwhmDiff = feature.getFWHM();
+      //      if (fwhmDiff != null) {
+      //        fwhmDiff /= 2f;
+      //
+      //        if (candidates.size() > 1) {
+      //          int next = 1;
+      //          while (scanIndex + next < totalScans || scanIndex - next >= 0) {
+      //            if (scanIndex + next < totalScans) {
+      //              scans.jumpToIndex(scanIndex + next);
+      //              if (checkRetentionTime(scans.getCurrentScan(), maxRT, fwhmDiff)) {
+      //                checkCandidatesInScan(scans, candidates);
+      //              }
+      //            }
+      //            if (scanIndex - next >= 0) {
+      //              scans.jumpToIndex(scanIndex - next);
+      //              if (checkRetentionTime(scans.getCurrentScan(), maxRT, fwhmDiff)) {
+      //                checkCandidatesInScan(scans, candidates);
+      //              }
+      //            }
+      //            next++;
+      //          }
+      //        }
+      //        // all scans in FWHMN checked... add isotope pattern
+      //        if (candidates.size() > 1) {
+      //          feature.setIsotopePattern(new SimpleIsotopePattern(
+      //              candidates.stream().map(d -> new SimpleDataPoint(d.getMZ(), d.getIntensity()))
+      //                  .toArray(DataPoint[]::new), IsotopePatternStatus.DETECTED, "Pattern finder"));
+      //          detected++;
+      //        }
+      //      } else {
+      //        // missing FWHM
+      //        missingValues++;
+      //      }
+    }
+    return false;
+  }
+
   private List<DataPoint> normalizeImsIntensities(List<DataPoint> candidates, Scan scan,
       SimpleDataPoint featureDp) {
     final int i = scan.binarySearch(featureDp.getMZ(), DefaultTo.CLOSEST_VALUE);
@@ -327,26 +412,6 @@ class IsotopeFinderTask extends AbstractTask {
     return newCandidates;
   }
 
-  @NotNull
-  private Scan findBestScanOrMobilityScan(ScanDataAccess scans, MobilityScanDataAccess mobScans,
-      Feature feature) {
-
-    final Scan maxScan = feature.getRepresentativeScan();
-    final int scanIndex = scans.indexOf(maxScan);
-    scans.jumpToIndex(scanIndex);
-
-    final boolean mobility = feature.getMobility() != null;
-    MobilityScan mobilityScan = null;
-    if (mobility && mobScans != null) {
-      final MobilityScan bestMobilityScan = IonMobilityUtils.getBestMobilityScan(feature);
-      if (bestMobilityScan != null) {
-        mobilityScan = mobScans.jumpToMobilityScan(bestMobilityScan);
-      }
-    }
-
-    return mobilityScan != null ? mobScans : scans;
-  }
-
   @Nullable
   private MobilityScanDataAccess initMobilityScanDataAccess(RawDataFile raw) {
     return
@@ -381,4 +446,18 @@ class IsotopeFinderTask extends AbstractTask {
   private boolean checkRetentionTime(Scan scan, float maxRT, Float fwhmDiff) {
     return scan != null && Math.abs(scan.getRetentionTime() - maxRT) <= fwhmDiff;
   }
+
+  /**
+   * A feature with the index of its representative scan or frame in the selected scans
+   *
+   * @param scanIndex    index of the scan or frame in the selected scans
+   * @param mobilityScan the best mobility scan or null
+   */
+  private record ScanFeature(int scanIndex, @Nullable MobilityScan mobilityScan,
+                             @NotNull Feature feature) {
+
+    private static final Comparator<ScanFeature> SCAN_ORDER = Comparator.comparingInt(
+        ScanFeature::scanIndex).thenComparingInt(
+        sf -> sf.mobilityScan() != null ? sf.mobilityScan().getMobilityScanNumber() : -1);
+  }
 }
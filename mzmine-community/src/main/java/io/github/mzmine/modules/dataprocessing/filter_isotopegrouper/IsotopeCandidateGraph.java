@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_isotopegrouper;
+
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import io.github.mzmine.util.collections.BinarySearch;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Candidate isotope signals of all rows, precomputed in parallel on primitive arrays. Row indices
+ * refer to the rows sorted by ascending m/z. For every row, charge and side of the pattern the
+ * candidates of the n-th isotope are found by binary search. Rows connected by candidate edges are
+ * joined by a union-find into independent components.
+ */
+class IsotopeCandidateGraph {
+
+  private static final int LOWER_SIDE = 0;
+  private static final int UPPER_SIDE = 1;
+
+  private final List<FeatureListRow> rows;
+  private final double[] mzs;
+  private final float[] rts;
+  private final float[] mobilities;
+  /**
+   * candidates[row][(charge - 1) * 2 + side][n - 1] = rows within tolerance of the n-th isotope
+   */
+  private final int[][][][] candidates;
+
+  /**
+   * @param mobilityTolerance null to disable the mobility check
+   */
+  IsotopeCandidateGraph(@NotNull List<FeatureListRow> rows, double isotopeDistance,
+      int maximumCharge, boolean monotonicShape, @NotNull MZTolerance mzTolerance,
+      @NotNull RTTolerance rtTolerance, @Nullable MobilityTolerance mobilityTolerance) {
+    this.rows = rows.stream().sorted(Comparator.comparingDouble(FeatureListRow::getAverageMZ))
+        .toList();
+    final int numRows = this.rows.size();
+    mzs = new double[numRows];
+    rts = new float[numRows];
+    mobilities = new float[numRows];
+    for (int i = 0; i < numRows; i++) {
+      final FeatureListRow row = this.rows.get(i);
+      mzs[i] = row.getAverageMZ();
+      rts[i] = row.getAverageRT();
+      final Float mobility = row.getAverageMobility();
+      mobilities[i] = mobility != null ? mobility : Float.NaN;
+    }
+
+    candidates = new int[numRows][maximumCharge * 2][][];
+    IntStream.range(0, numRows).parallel().forEach(row -> {
+      final double absoluteMzTolerance = mzTolerance.getMzToleranceForMass(mzs[row]);
+      for (int charge = 1; charge <= maximumCharge; charge++) {
+        final int[][] lower = monotonicShape ? new int[0][]
+            : findCandidates(row, charge, -1, isotopeDistance, absoluteMzTolerance, rtTolerance,
+                mobilityTolerance);
+        final int[][] upper = findCandidates(row, charge, 1, isotopeDistance, absoluteMzTolerance,
+            rtTolerance, mobilityTolerance);
+        candidates[row][(charge - 1) * 2 + LOWER_SIDE] = lower;
+        candidates[row][(charge - 1) * 2 + UPPER_SIDE] = upper;
+      }
+    });
+  }
+
+  /**
+   * @return candidates of the 1st, 2nd, ... isotope on one side until the first isotope without
+   * candidates
+   */
+  private int[][] findCandidates(int row, int charge, int direction, double isotopeDistance,
+      double absoluteMzTolerance, RTTolerance rtTolerance,
+      @Nullable MobilityTolerance mobilityTolerance) {
+    final List<int[]> isotopes = new ArrayList<>();
+    final double mainMz = mzs[row];
+    // the exact check below decides, the slack only guards the binary search against rounding
+    final double slack = absoluteMzTolerance + Math.ulp(mainMz) * 16;
+
+    for (int n = 1; ; n++) {
+      final double shift = isotopeDistance * direction * n / charge;
+      final double expectedMz = mainMz + shift;
+      int i = BinarySearch.lowerBound(mzs, expectedMz - slack);
+
+      final IntArrayList found = new IntArrayList();
+      for (; i < mzs.length && mzs[i] <= expectedMz + slack; i++) {
+        if (i == row || Math.abs(mzs[i] - shift - mainMz) > absoluteMzTolerance
+            || !rtTolerance.checkWithinTolerance(rts[i], rts[row]) || !checkMobility(row, i,
+            mobilityTolerance)) {
+          continue;
+        }
+        found.add(i);
+      }
+
+      if (found.isEmpty()) {
+        return isotopes.toArray(int[][]::new);
+      }
+      isotopes.add(found.toIntArray());
+    }
+  }
+
+  private boolean checkMobility(int main, int candidate,
+      @Nullable MobilityTolerance mobilityTolerance) {
+    return mobilityTolerance == null || Float.isNaN(mobilities[main]) || Float.isNaN(
+        mobilities[candidate]) || mobilityTolerance.checkWithinTolerance(mobilities[main],
+        mobilities[candidate]);
+  }
+
+  /**
+   * Rows in different components never share candidates, so each component can be grouped
+   * independently.
+   *
+   * @param order the processing order of all row indices, e.g., by descending height
+   * @return components with their row indices in processing order, ordered by their first row
+   */
+  List<int[]> components(int[] order) {
+    final int[] parents = IntStream.range(0, rows.size()).toArray();
+    for (int row = 0; row < candidates.length; row++) {
+      for (final int[][] side : candidates[row]) {
+        for (final int[] isotope : side) {
+          for (final int candidate : isotope) {
+            union(parents, row, candidate);
+          }
+        }
+      }
+    }
+
+    final int[] componentIndex = new int[rows.size()];
+    Arrays.fill(componentIndex, -1);
+    final List<IntArrayList> components = new ArrayList<>();
+    for (final int row : order) {
+      final int root = find(parents, row);
+      if (componentIndex[root] == -1) {
+        componentIndex[root] = components.size();
+        components.add(new IntArrayList());
+      }
+      components.get(componentIndex[root]).add(row);
+    }
+    return components.stream().map(IntArrayList::toIntArray).toList();
+  }
+
+  private static int find(int[] parents, int i) {
+    while (parents[i] != i) {
+      parents[i] = parents[parents[i]];
+      i = parents[i];
+    }
+    return i;
+  }
+
+  private static void union(int[] parents, int a, int b) {
+    final int rootA = find(parents, a);
+    final int rootB = find(parents, b);
+    if (rootA != rootB) {
+      parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+    }
+  }
+
+  /**
+   * @return candidates of the 1st, 2nd, ... isotope of the row on the lower (direction -1) or upper
+   * (direction 1) side
+   */
+  int[][] getCandidates(int row, int charge, int direction) {
+    return candidates[row][(charge - 1) * 2 + (direction < 0 ? LOWER_SIDE : UPPER_SIDE)];
+  }
+
+  /**
+   * @return rows sorted by ascending m/z, the index space of this graph
+   */
+  List<FeatureListRow> getRows() {
+    return rows;
+  }
+}
@@ -31,7 +31,6 @@ import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
-import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.datamodel.impl.SimpleIsotopePattern;
@@ -48,12 +47,16 @@ import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -86,7 +89,8 @@ class IsotopeGrouperTask extends AbstractTask {
   private final ParameterSet parameters;
   private final OriginalFeatureListOption handleOriginal;
   // peaks counter
-  private int processedRows, totalRows;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
+  private int totalRows;
 
   /**
    *
@@ -126,7 +130,7 @@ class IsotopeGrouperTask extends AbstractTask {
     if (totalRows == 0) {
       return 0.0f;
     }
-    return (double) processedRows / (double) totalRows;
+    return (double) processedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -150,78 +154,110 @@ class IsotopeGrouperTask extends AbstractTask {
     };
     //    DataTypeUtils.copyTypes(featureList, deisotopedFeatureList, true, true);
 
-    // Collect all selected charge states
-    int[] charges = new int[maximumCharge];
-    for (int i = 0; i < maximumCharge; i++) {
-      charges[i] = i + 1;
-    }
-
     final FeatureListRowSorter rowsHeightSorter = new FeatureListRowSorter(SortingProperty.Height,
         SortingDirection.Descending);
-    final FeatureListRowSorter rowsMzSorter = new FeatureListRowSorter(SortingProperty.MZ,
-        SortingDirection.Ascending);
 
-    // Sort peaks by descending height
-    List<FeatureListRow> rowsSortedByHeight = new ArrayList<>(deisotopedFeatureList.getRows());
-    rowsSortedByHeight.sort(rowsHeightSorter);
+    totalRows = deisotopedFeatureList.getNumberOfRows();
 
-    // use a second sorted list to limit the number of comparisons
-    List<FeatureListRow> rowsSortedByMz = new ArrayList<>(deisotopedFeatureList.getRows());
-    rowsSortedByMz.sort(rowsMzSorter);
+    // candidates of all rows in parallel, rows are indexed by ascending m/z
+    final IsotopeCandidateGraph graph = new IsotopeCandidateGraph(deisotopedFeatureList.getRows(),
+        isotopeDistance, maximumCharge, monotonicShape, mzTolerance, rtTolerance,
+        useMobilityTolerance ? mobilityTolerance : null);
+    final List<FeatureListRow> rowsByMz = graph.getRows();
 
-    // Loop through all peaks
-    totalRows = rowsSortedByHeight.size();
+    // process the most intense rows first
+    final Map<FeatureListRow, Integer> mzIndices = new IdentityHashMap<>(rowsByMz.size());
+    for (int i = 0; i < rowsByMz.size(); i++) {
+      mzIndices.put(rowsByMz.get(i), i);
+    }
+    final int[] heightOrder = rowsByMz.stream().sorted(rowsHeightSorter).mapToInt(mzIndices::get)
+        .toArray();
 
-    // list of final rows (size is usually similar)
-    List<FeatureListRow> finalRows = new ArrayList<>((int) (totalRows * 0.9));
+    // the greedy grouping within one component does not depend on other components
+    final boolean[] removed = new boolean[rowsByMz.size()];
+    final List<FeatureListRow> finalRows = graph.components(heightOrder).parallelStream()
+        .map(component -> groupComponent(graph, component, removed)).flatMap(List::stream)
+        .collect(Collectors.toCollection(ArrayList::new));
 
-    while (!rowsSortedByHeight.isEmpty()) {
+    if (isCanceled()) {
+      return;
+    }
 
-      if (isCanceled()) {
-        return;
-      }
+    // Add task description to peakList
+    deisotopedFeatureList.addDescriptionOfAppliedTask(
+        new SimpleFeatureListAppliedMethod(IsotopeGrouperModule.MODULE_NAME,
+            IsotopeGrouperModule.class, parameters, getModuleCallDate()));
+
+    // sort by RT
+    finalRows.sort(FeatureListRowSorter.DEFAULT_RT);
+
+    // replace rows in list
+    deisotopedFeatureList.setRows(finalRows);
+
+    // Remove the original peakList if requested, or add, or work in place
+    handleOriginal.reflectNewFeatureListToProject(suffix, project, deisotopedFeatureList,
+        featureList);
+
+    logger.info("Finished isotopic peak grouper on " + featureList);
+    setStatus(TaskStatus.FINISHED);
+  }
 
-      ModularFeatureListRow mostIntenseRow = (ModularFeatureListRow) rowsSortedByHeight.remove(0);
+  /**
+   * Groups the rows of one component. The most intense remaining row is the main row, the charge
+   * state with most fitted isotopes wins, and all fitted rows are removed.
+   *
+   * @param component row indices of the graph in descending height order
+   * @param removed   rows that were already processed or grouped as isotopes
+   * @return the remaining rows of this component
+   */
+  private List<FeatureListRow> groupComponent(IsotopeCandidateGraph graph, int[] component,
+      boolean[] removed) {
+    final List<FeatureListRow> rowsByMz = graph.getRows();
+    final List<FeatureListRow> finalRows = new ArrayList<>();
+    final FeatureListRowSorter rowsHeightSorter = new FeatureListRowSorter(SortingProperty.Height,
+        SortingDirection.Descending);
+    final FeatureListRowSorter rowsMzSorter = new FeatureListRowSorter(SortingProperty.MZ,
+        SortingDirection.Ascending);
 
-      // Check if peak was already deleted
-      if (mostIntenseRow == null) {
-        processedRows++;
+    for (final int main : component) {
+      if (isCanceled()) {
+        return finalRows;
+      }
+      if (removed[main]) {
         continue;
       }
-      // find index in mz sorted list
-      int indexMzSorted = Collections.binarySearch(rowsSortedByMz, mostIntenseRow, rowsMzSorter);
-      rowsSortedByMz.remove(indexMzSorted);
+      removed[main] = true;
 
       // Check which charge state fits best around this peak
       int bestFitCharge = 0;
-      int bestFitScore = -1;
-      List<FeatureListRow> bestFitRows = null;
-      for (int charge : charges) {
-
-        List<FeatureListRow> fittedRows = new ArrayList<>();
-        fittedRows.add(mostIntenseRow);
-        // use rows sorted by mz
-        fitPattern(fittedRows, mostIntenseRow, charge, rowsSortedByMz, indexMzSorted);
-
-        int score = fittedRows.size();
-        if ((score > bestFitScore) || ((score == bestFitScore) && (bestFitCharge > charge))) {
-          bestFitScore = score;
+      IntArrayList bestFit = null;
+      for (int charge = 1; charge <= maximumCharge; charge++) {
+        final IntArrayList fitted = new IntArrayList();
+        fitted.add(main);
+        // Search for peaks before and after the start peak
+        fitHalfPattern(graph.getCandidates(main, charge, -1), removed, fitted);
+        fitHalfPattern(graph.getCandidates(main, charge, 1), removed, fitted);
+
+        if (bestFit == null || fitted.size() > bestFit.size()) {
           bestFitCharge = charge;
-          bestFitRows = fittedRows;
+          bestFit = fitted;
         }
-
       }
 
-      assert bestFitRows != null;
-
+      final FeatureListRow mostIntenseRow = rowsByMz.get(main);
       // Verify the number of detected isotopes. If there is only one
       // isotope, we skip this left the original peak in the feature list.
-      if (bestFitRows.size() == 1) {
+      if (bestFit.size() == 1) {
         finalRows.add(mostIntenseRow);
-        processedRows++;
+        processedRows.incrementAndGet();
         continue;
       }
 
+      final List<FeatureListRow> bestFitRows = new ArrayList<>(bestFit.size());
+      for (int i = 0; i < bestFit.size(); i++) {
+        bestFitRows.add(rowsByMz.get(bestFit.getInt(i)));
+      }
+
       // Convert the peak pattern to array
       final DataPoint[] isotopes = bestFitRows.stream()
           .map(r -> new SimpleDataPoint(r.getAverageMZ(), r.getMaxHeight()))
@@ -253,10 +289,10 @@ class IsotopeGrouperTask extends AbstractTask {
       }
 
       // Remove all peaks already assigned to isotope pattern
-      // first is already removed
+      for (int i = 0; i < bestFit.size(); i++) {
+        removed[bestFit.getInt(i)] = true;
+      }
       bestFitRows.remove(0);
-      rowsSortedByHeight.removeAll(bestFitRows);
-      rowsSortedByMz.removeAll(bestFitRows);
 
       // in case user wants to keep all features with MS2 - eventhough they were flagged as isotopes
       // this can be useful for complex datasets
@@ -270,141 +306,34 @@ class IsotopeGrouperTask extends AbstractTask {
       }
 
       // Update completion rate
-      processedRows += bestFitRows.size();
+      processedRows.addAndGet(bestFitRows.size() + 1);
     }
-
-    // Add task description to peakList
-    deisotopedFeatureList.addDescriptionOfAppliedTask(
-        new SimpleFeatureListAppliedMethod(IsotopeGrouperModule.MODULE_NAME,
-            IsotopeGrouperModule.class, parameters, getModuleCallDate()));
-
-    // sort by RT
-    finalRows.sort(FeatureListRowSorter.DEFAULT_RT);
-
-    // replace rows in list
-    deisotopedFeatureList.setRows(finalRows);
-
-    // Remove the original peakList if requested, or add, or work in place
-    handleOriginal.reflectNewFeatureListToProject(suffix, project, deisotopedFeatureList,
-        featureList);
-
-    logger.info("Finished isotopic peak grouper on " + featureList);
-    setStatus(TaskStatus.FINISHED);
+    return finalRows;
   }
 
   /**
-   * Fits isotope pattern around one peak.
+   * Fits one half of the pattern. Adds all remaining candidates of the 1st, 2nd, ... isotope until
+   * one isotope has no remaining candidate.
    *
-   * @param row            Pattern is fitted around this peak
-   * @param charge         Charge state of the fitted pattern
-   * @param rowsSortedByMz rows sorted by mz
-   * @param startRowIndex  index to start with in mz sorted list
+   * @param isotopeCandidates candidates of the n-th isotope on one side of the main row
+   * @param fittedRows        all matching rows will be added to this list
    */
-  private void fitPattern(List<FeatureListRow> fittedRows, ModularFeatureListRow row, int charge,
-      List<FeatureListRow> rowsSortedByMz, int startRowIndex) {
-
-    if (charge == 0) {
-      return;
-    }
-
-    // Search for peaks before the start peak
-    if (!monotonicShape) {
-      fitHalfPattern(row, charge, -1, fittedRows, rowsSortedByMz, startRowIndex);
-    }
-
-    // Search for peaks after the start peak
-    fitHalfPattern(row, charge, 1, fittedRows, rowsSortedByMz, startRowIndex);
-  }
-
-  /**
-   * Helper method for fitPattern. Fits only one half of the pattern.
-   *
-   * @param row            Pattern is fitted around this peak
-   * @param charge         Charge state of the fitted pattern
-   * @param direction      Defines which half to fit: -1=fit to peaks before start M/Z, +1=fit to
-   *                       peaks after start M/Z
-   * @param fittedRows     All matching peaks will be added to this set
-   * @param rowsSortedByMz rows sorted by mz
-   * @param startRowIndex  index to start with in mz sorted list
-   */
-  private void fitHalfPattern(ModularFeatureListRow row, int charge, int direction,
-      List<FeatureListRow> fittedRows, List<FeatureListRow> rowsSortedByMz, int startRowIndex) {
-
-    // Use M/Z and RT of the strongest peak of the pattern (row)
-    double mainMZ = row.getAverageMZ();
-    float mainRT = row.getAverageRT();
-    Float mainMobility = row.getAverageMobility();
-
-    final double absoluteMzTolerance = mzTolerance.getMzToleranceForMass(mainMZ);
-
-    // Variable n is the number of peak we are currently searching. 1=first
-    // peak before/after start peak, 2=peak before/after previous, 3=...
-    boolean followingPeakFound;
-    int n = 1;
-    do {
-      // start at start row index in mz sorted list
-      int ind = startRowIndex;
-
-      // Assume we don't find match for n:th peak in the pattern (which
-      // will end the loop)
-      followingPeakFound = false;
-
-      // Loop through all peaks, and collect candidates for the n:th peak
-      // in the pattern
-      List<FeatureListRow> goodCandidates = new ArrayList<>();
-      for (; ind < rowsSortedByMz.size() && ind >= 0; ind += direction) {
-
-        ModularFeatureListRow candidatePeak = (ModularFeatureListRow) rowsSortedByMz.get(ind);
-
-        if (candidatePeak == null) {
-          continue;
-        }
-
-        // Get properties of the candidate peak
-        double candidatePeakMZ = candidatePeak.getAverageMZ();
-
-        // Does this peak fill all requirements of a candidate?
-        // - within tolerances from the expected location (M/Z and RT)
-        // - not already a fitted peak (only necessary to avoid
-        // conflicts when parameters are set too wide)
-        double isotopeMZ = candidatePeakMZ - isotopeDistance * direction * n / charge;
-        double deltaMZ = isotopeMZ - mainMZ;
-
-        // break the loop if deltaMZ reaches out of the maximum allowed mz tolerance (one sided check)
-        if (deltaMZ * direction > absoluteMzTolerance) {
-          break;
-        }
-
-        // check if in range
-        if (Math.abs(deltaMZ) <= absoluteMzTolerance && rtTolerance.checkWithinTolerance(
-            candidatePeak.getAverageRT(), mainRT)) {
-          if (!useMobilityTolerance || mainMobility == null || checkCandidateMobility(mainMobility,
-              candidatePeak)) {
-            goodCandidates.add(candidatePeak);
-          }
-
-        }
-
-      }
-
+  private static void fitHalfPattern(int[][] isotopeCandidates, boolean[] removed,
+      IntArrayList fittedRows) {
+    for (final int[] candidates : isotopeCandidates) {
       // Add all good candidates to the isotope pattern (note: in MZmine
       // 2.3 and older, only the highest candidate was added)
-      if (!goodCandidates.isEmpty()) {
-
-        fittedRows.addAll(goodCandidates);
-
-        // n:th peak was found, so let's move on to n+1
-        n++;
-        followingPeakFound = true;
+      boolean followingPeakFound = false;
+      for (final int candidate : candidates) {
+        if (!removed[candidate]) {
+          fittedRows.add(candidate);
+          followingPeakFound = true;
+        }
       }
-
-    } while (followingPeakFound);
-  }
-
-  private boolean checkCandidateMobility(Float mainMobility, FeatureListRow row) {
-    Float candidateMobility = row.getAverageMobility();
-    return candidateMobility == null || mobilityTolerance.checkWithinTolerance(mainMobility,
-        candidateMobility);
+      if (!followingPeakFound) {
+        return;
+      }
+    }
   }
 
 }
@@ -28,6 +28,7 @@ import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.IsotopePattern;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
@@ -52,6 +53,7 @@ import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.RangeUtils;
 import io.github.mzmine.util.collections.BinarySearch.DefaultTo;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -236,7 +238,8 @@ public class RowsFilterTask extends AbstractTask {
 
         // Filter the feature list.
         filteredFeatureList = filterFeatureListRows(origFeatureList,
-            originalFeatureListOption == OriginalFeatureListOption.PROCESS_IN_PLACE);
+            originalFeatureListOption == OriginalFeatureListOption.PROCESS_IN_PLACE,
+            originalFeatureListOption == OriginalFeatureListOption.REMOVE);
 
         if (!isCanceled()) {
           final String suffix = parameters.getValue(RowsFilterParameters.SUFFIX);
@@ -259,10 +262,14 @@ public class RowsFilterTask extends AbstractTask {
    *
    * @param featureList          feature list to filter.
    * @param processInCurrentList use the current list and filter it
+   * @param transferRows         move the rows to the new list instead of copying them, if the
+   *                             original list is removed afterwards
    * @return a new feature list with rows of the original feature list that pass the filtering.
    */
   private FeatureList filterFeatureListRows(final FeatureList featureList,
-      boolean processInCurrentList) {
+      boolean processInCurrentList, boolean transferRows) {
+
+    final int numRowsBefore = featureList.getNumberOfRows();
 
     // Create new feature list.
 
@@ -297,6 +304,7 @@ public class RowsFilterTask extends AbstractTask {
     // Filter rows.
     totalRows = featureList.getNumberOfRows();
     processedRows = 0;
+    final List<FeatureListRow> keptRows = new ArrayList<>();
     final ListIterator<FeatureListRow> iterator = featureList.getRows().listIterator();
     while (iterator.hasNext()) {
       if (isCanceled()) {
@@ -322,6 +330,9 @@ public class RowsFilterTask extends AbstractTask {
         } else {
           iterator.remove();
         }
+      } else if (keepRow && transferRows) {
+        // original list is removed - no need to copy rows and features
+        keptRows.add(row);
       } else if (keepRow) {
         rowsCount++;
         FeatureListRow resetRow = new ModularFeatureListRow(newFeatureList,
@@ -332,6 +343,22 @@ public class RowsFilterTask extends AbstractTask {
       processedRows++;
     }
 
+    if (!keptRows.isEmpty()) {
+      newFeatureList.transferRows((ModularFeatureList) featureList, keptRows);
+      if (renumber) {
+        for (FeatureListRow row : keptRows) {
+          rowsCount++;
+          row.set(IDType.class, rowsCount);
+        }
+      }
+    }
+
+    if (processInCurrentList || transferRows) {
+      // kept series still reference the memory mapped segments of all removed rows
+      FeatureDataUtils.compactFeatureDataIfSparse(newFeatureList,
+          ((ModularFeatureList) featureList).getMemoryMapStorage(), numRowsBefore);
+    }
+
     return newFeatureList;
   }
 
@@ -268,4 +268,11 @@ public class Gap {
   public FeatureListRow getFeatureListRow() {
     return featureListRow;
   }
+
+  /**
+   * @return scans outside of this range are ignored by {@link #offerNextScan(Scan)}
+   */
+  public Range<Float> getRtRange() {
+    return rtRange;
+  }
 }
@@ -44,18 +44,15 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.maths.Combinatorics;
 import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
-import it.unimi.dsi.fastutil.Pair;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -82,6 +79,7 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
 
   private final SimilarityMeasure similarityMeasure;
   private final double minR;
+  private final ImageSimilarityKernel kernel;
 
   public ImageCorrelateGroupingTask(final ParameterSet parameterSet,
       final ModularFeatureList featureList, @NotNull Instant moduleCallDate) {
@@ -115,6 +113,9 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
     }
     similarityMeasure = parameters.getValue(ImageCorrelateGroupingParameters.MEASURE);
     minR = parameters.getValue(ImageCorrelateGroupingParameters.MIN_R);
+    kernel = new ImageSimilarityKernel(noiseLevel, minimumNumberOfCorrelatedPixels,
+        useMedianFilter, medianFilter, useQuantileThreshold, quantileThreshold, useHotspotRemoval,
+        hotspotRemovalThreshold, similarityMeasure);
   }
 
   @Override
@@ -177,25 +178,21 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
     logger.log(Level.INFO,
         () -> MessageFormat.format("Checking image similarity on {0} rows", numRows));
 
-    // try map multi for all pairs
-    long comparedPairs = IntStream.range(0, numRows - 1).boxed()
-        .<Pair<FeatureListRow, FeatureListRow>>mapMulti((i, consumer) -> {
-          if (isCanceled()) {
-            return;
-          }
-          FeatureListRow a = filteredRows.get(i);
-          for (int j = i + 1; j < numRows; j++) {
-            FeatureListRow b = filteredRows.get(j);
-            consumer.accept(Pair.of(a, b));
-          }
-        }).parallel().mapToLong(pair -> {
-          // need to map to ensure thread is waiting for completion
-          checkR2RAllFeaturesImageSimilarity(mapFeatureData, pair.left(), pair.right(),
-              mapSimilarity);
-          // count comparisons
-          processedPairs.incrementAndGet();
-          return 1;
-        }).sum();
+    // all pairs in parallel, one set of scratch buffers for all pairs of row i
+    long comparedPairs = IntStream.range(0, numRows - 1).parallel().mapToLong(i -> {
+      if (isCanceled()) {
+        return 0;
+      }
+      final ImageSimilarityKernel.Scratch scratch = new ImageSimilarityKernel.Scratch();
+      FeatureListRow a = filteredRows.get(i);
+      for (int j = i + 1; j < numRows; j++) {
+        FeatureListRow b = filteredRows.get(j);
+        checkR2RAllFeaturesImageSimilarity(mapFeatureData, a, b, mapSimilarity, scratch);
+      }
+      // count comparisons
+      processedPairs.addAndGet(numRows - i - 1);
+      return numRows - i - 1;
+    }).sum();
 
     logger.info(
         "Image correlation: Performed %d pairwise comparisons of rows.".formatted(comparedPairs));
@@ -223,7 +220,7 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
           double[] intensities = ((FeatureFullDataAccess) featureDataAccess).getIntensityValues()
               .clone();
           return intensities.length > 0 ? new ImageCorrelateGroupingTask.FilteredRowData(row,
-              intensities) : null;
+              kernel.prepare(intensities)) : null;
         }
       }
     } else {
@@ -234,19 +231,20 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
 
 
   //Intensities have to be sorted by scan number
-  private record FilteredRowData(FeatureListRow row, double[] intensities) {
+  private record FilteredRowData(FeatureListRow row, ImageSimilarityKernel.PixelData pixels) {
 
   }
 
   private void checkR2RAllFeaturesImageSimilarity(Map<Feature, FilteredRowData> mapFeatureData,
-      FeatureListRow a, FeatureListRow b, final R2RMap<RowsRelationship> mapSimilarity) {
+      FeatureListRow a, FeatureListRow b, final R2RMap<RowsRelationship> mapSimilarity,
+      final ImageSimilarityKernel.Scratch scratch) {
 
     R2RSimpleSimilarityList imageSimilarities = new R2RSimpleSimilarityList(a, b,
         Type.MS1_FEATURE_CORR);
     for (Feature fa : a.getFeatures()) {
       double similarity = 0;
-      double[] intensitiesA = mapFeatureData.get(fa).intensities;
-      if (intensitiesA != null) {
+      FilteredRowData dataA = mapFeatureData.get(fa);
+      if (dataA != null) {
 
         RawDataFile dataFile = fa.getRawDataFile();
         Feature fb = b.getFeature(dataFile);
@@ -254,9 +252,9 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
           continue;
         }
 
-        double[] intensitiesB = mapFeatureData.get(fb).intensities;
-        if (intensitiesB != null) {
-          similarity = calculateSimilarity(intensitiesA, intensitiesB);
+        FilteredRowData dataB = mapFeatureData.get(fb);
+        if (dataB != null) {
+          similarity = kernel.calculateSimilarity(dataA.pixels(), dataB.pixels(), scratch);
         }
       }
       // always add value also 0 if no correlation
@@ -266,90 +264,4 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
       mapSimilarity.add(a, b, imageSimilarities);
     }
   }
-
-  private double calculateSimilarity(final double[] intensitiesA, final double[] intensitiesB) {
-    List<IntensityPair> intensityPairs = new ArrayList<>();
-
-    // Remove signals below noise level and create intensity pairs
-    for (int i = 0; i < intensitiesA.length; i++) {
-      if (intensitiesA[i] >= noiseLevel && intensitiesB[i] >= noiseLevel) {
-        intensityPairs.add(new IntensityPair(intensitiesA[i], intensitiesB[i]));
-      }
-    }
-
-    List<IntensityPair> filteredIntensityPairs;
-    if (useMedianFilter && intensitiesA.length >= minimumNumberOfCorrelatedPixels) {
-      filteredIntensityPairs = applyMedianFilter(intensityPairs, medianFilter);
-    } else {
-      filteredIntensityPairs = intensityPairs;
-    }
-
-    if (useQuantileThreshold && filteredIntensityPairs.size() >= minimumNumberOfCorrelatedPixels) {
-      double quantileThresholdA = calculateQuantile(
-          filteredIntensityPairs.stream().map(IntensityPair::intensityA)
-              .collect(Collectors.toList()), quantileThreshold);
-      double quantileThresholdB = calculateQuantile(
-          filteredIntensityPairs.stream().map(IntensityPair::intensityB)
-              .collect(Collectors.toList()), quantileThreshold);
-      filteredIntensityPairs.removeIf(
-          pair -> pair.intensityA() < quantileThresholdA || pair.intensityB() < quantileThresholdB);
-    }
-
-    if (useHotspotRemoval && filteredIntensityPairs.size() >= minimumNumberOfCorrelatedPixels) {
-      double hotSpotThresholdA = calculateQuantile(
-          filteredIntensityPairs.stream().map(IntensityPair::intensityA)
-              .collect(Collectors.toList()), hotspotRemovalThreshold);
-      double hotSpotThresholdB = calculateQuantile(
-          filteredIntensityPairs.stream().map(IntensityPair::intensityB)
-              .collect(Collectors.toList()), hotspotRemovalThreshold);
-      filteredIntensityPairs.removeIf(
-          pair -> pair.intensityA() > hotSpotThresholdA || pair.intensityB() > hotSpotThresholdB);
-    }
-
-    if (filteredIntensityPairs.size() >= minimumNumberOfCorrelatedPixels) {
-      double[][] correlationDataInput = new double[filteredIntensityPairs.size()][2];
-      for (int i = 0; i < filteredIntensityPairs.size(); i++) {
-        correlationDataInput[i][0] = filteredIntensityPairs.get(i).intensityA;
-        correlationDataInput[i][1] = filteredIntensityPairs.get(i).intensityB;
-      }
-
-      return similarityMeasure.calc(correlationDataInput);
-    }
-    return 0;
-  }
-
-  private List<IntensityPair> applyMedianFilter(List<IntensityPair> intensityPairs,
-      int windowSize) {
-    List<IntensityPair> result = new ArrayList<>();
-    int halfWindowSize = windowSize / 2;
-    for (int i = 0; i < intensityPairs.size(); i++) {
-      int start = Math.max(0, i - halfWindowSize);
-      int end = Math.min(intensityPairs.size() - 1, i + halfWindowSize);
-      List<IntensityPair> subarray = intensityPairs.subList(start, end + 1);
-      double medianA = calculateMedian(
-          subarray.stream().mapToDouble(IntensityPair::intensityA).toArray());
-      double medianB = calculateMedian(
-          subarray.stream().mapToDouble(IntensityPair::intensityB).toArray());
-      result.add(new IntensityPair(medianA, medianB));
-    }
-
-    return result;
-  }
-
-  private double calculateMedian(double[] values) {
-    Arrays.sort(values);
-    int middle = values.length / 2;
-    return values.length % 2 == 0 ? (values[middle - 1] + values[middle]) / 2.0 : values[middle];
-  }
-
-  private double calculateQuantile(List<Double> values, double quantile) {
-    double[] array = values.stream().mapToDouble(Double::doubleValue).toArray();
-    Arrays.sort(array);
-    int index = (int) Math.ceil(quantile * array.length) - 1;
-    return array[index];
-  }
-
-  private record IntensityPair(double intensityA, double intensityB) {
-
-  }
 }
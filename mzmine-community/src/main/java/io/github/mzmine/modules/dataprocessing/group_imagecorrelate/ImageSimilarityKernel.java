@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_imagecorrelate;
+
+import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Primitive array kernel for the image similarity of two features. Pixels below the noise level are
+ * removed, optionally followed by a median filter, a quantile threshold, and a hotspot removal on
+ * the remaining pixel pairs. All steps work on the buffers of a {@link Scratch} that is reused for
+ * all pairs of one thread.
+ */
+class ImageSimilarityKernel {
+
+  /**
+   * Features with fewer pixels above the noise level store the indices of these pixels to skip all
+   * other pixels
+   */
+  private static final double MAX_SPARSE_DENSITY = 0.5;
+
+  private final double noiseLevel;
+  private final int minimumNumberOfCorrelatedPixels;
+  private final boolean useMedianFilter;
+  private final int medianFilter;
+  private final boolean useQuantileThreshold;
+  private final double quantileThreshold;
+  private final boolean useHotspotRemoval;
+  private final double hotspotRemovalThreshold;
+  private final SimilarityMeasure similarityMeasure;
+
+  ImageSimilarityKernel(double noiseLevel, int minimumNumberOfCorrelatedPixels,
+      boolean useMedianFilter, int medianFilter, boolean useQuantileThreshold,
+      double quantileThreshold, boolean useHotspotRemoval, double hotspotRemovalThreshold,
+      @NotNull SimilarityMeasure similarityMeasure) {
+    this.noiseLevel = noiseLevel;
+    this.minimumNumberOfCorrelatedPixels = minimumNumberOfCorrelatedPixels;
+    this.useMedianFilter = useMedianFilter;
+    this.medianFilter = medianFilter;
+    this.useQuantileThreshold = useQuantileThreshold;
+    this.quantileThreshold = quantileThreshold;
+    this.useHotspotRemoval = useHotspotRemoval;
+    this.hotspotRemovalThreshold = hotspotRemovalThreshold;
+    this.similarityMeasure = similarityMeasure;
+  }
+
+  /**
+   * Precomputes the pixels above the noise level of one feature image.
+   *
+   * @param intensities intensities of all pixels sorted by scan number
+   */
+  @NotNull
+  PixelData prepare(@NotNull double[] intensities) {
+    int aboveNoise = 0;
+    for (double intensity : intensities) {
+      if (intensity >= noiseLevel) {
+        aboveNoise++;
+      }
+    }
+    if (aboveNoise > intensities.length * MAX_SPARSE_DENSITY) {
+      return new PixelData(intensities, null, aboveNoise);
+    }
+
+    final int[] pixels = new int[aboveNoise];
+    for (int i = 0, p = 0; i < intensities.length; i++) {
+      if (intensities[i] >= noiseLevel) {
+        pixels[p++] = i;
+      }
+    }
+    return new PixelData(intensities, pixels, aboveNoise);
+  }
+
+  /**
+   * @param scratch buffers of the current thread
+   * @return the similarity of both images or 0 if fewer pixels than the minimum remain
+   */
+  double calculateSimilarity(@NotNull PixelData a, @NotNull PixelData b,
+      @NotNull Scratch scratch) {
+    // cannot reach the minimum of pixels
+    if (Math.min(a.numAboveNoise(), b.numAboveNoise()) < minimumNumberOfCorrelatedPixels) {
+      return 0;
+    }
+    final int numPixels = a.intensities().length;
+    scratch.ensureCapacity(Math.min(a.numAboveNoise(), b.numAboveNoise()));
+
+    int n = collectPixelsAboveNoise(a, b, scratch.a, scratch.b);
+
+    if (useMedianFilter && numPixels >= minimumNumberOfCorrelatedPixels) {
+      applyMedianFilter(scratch.a, scratch.b, n, medianFilter, scratch);
+    }
+
+    if (useQuantileThreshold && n >= minimumNumberOfCorrelatedPixels) {
+      final double thresholdA = calculateQuantile(scratch.a, n, quantileThreshold, scratch.sorted);
+      final double thresholdB = calculateQuantile(scratch.b, n, quantileThreshold, scratch.sorted);
+      int kept = 0;
+      for (int i = 0; i < n; i++) {
+        if (scratch.a[i] >= thresholdA && scratch.b[i] >= thresholdB) {
+          scratch.a[kept] = scratch.a[i];
+          scratch.b[kept] = scratch.b[i];
+          kept++;
+        }
+      }
+      n = kept;
+    }
+
+    if (useHotspotRemoval && n >= minimumNumberOfCorrelatedPixels) {
+      final double thresholdA = calculateQuantile(scratch.a, n, hotspotRemovalThreshold,
+          scratch.sorted);
+      final double thresholdB = calculateQuantile(scratch.b, n, hotspotRemovalThreshold,
+          scratch.sorted);
+      int kept = 0;
+      for (int i = 0; i < n; i++) {
+        if (scratch.a[i] <= thresholdA && scratch.b[i] <= thresholdB) {
+          scratch.a[kept] = scratch.a[i];
+          scratch.b[kept] = scratch.b[i];
+          kept++;
+        }
+      }
+      n = kept;
+    }
+
+    if (n >= minimumNumberOfCorrelatedPixels) {
+      return similarity(scratch.a, scratch.b, n);
+    }
+    return 0;
+  }
+
+  /**
+   * Collects all pixels where both intensities are above the noise level
+   *
+   * @return number of pixels in dstA and dstB
+   */
+  private int collectPixelsAboveNoise(PixelData a, PixelData b, double[] dstA, double[] dstB) {
+    final double[] intensitiesA = a.intensities();
+    final double[] intensitiesB = b.intensities();
+    final int[] pixelsA = a.pixels();
+    final int[] pixelsB = b.pixels();
+    int n = 0;
+    if (pixelsA != null && pixelsB != null) {
+      // intersection of sorted pixel indices
+      int ia = 0;
+      int ib = 0;
+      while (ia < pixelsA.length && ib < pixelsB.length) {
+        final int pa = pixelsA[ia];
+        final int pb = pixelsB[ib];
+        if (pa == pb) {
+          dstA[n] = intensitiesA[pa];
+          dstB[n] = intensitiesB[pb];
+          n++;
+          ia++;
+          ib++;
+        } else if (pa < pb) {
+          ia++;
+        } else {
+          ib++;
+        }
+      }
+    } else if (pixelsA != null || pixelsB != null) {
+      final boolean sparseA = pixelsA != null;
+      final int[] pixels = sparseA ? pixelsA : pixelsB;
+      final double[] other = sparseA ? intensitiesB : intensitiesA;
+      for (int pixel : pixels) {
+        if (other[pixel] >= noiseLevel) {
+          dstA[n] = intensitiesA[pixel];
+          dstB[n] = intensitiesB[pixel];
+          n++;
+        }
+      }
+    } else {
+      for (int i = 0; i < intensitiesA.length; i++) {
+        if (intensitiesA[i] >= noiseLevel && intensitiesB[i] >= noiseLevel) {
+          dstA[n] = intensitiesA[i];
+          dstB[n] = intensitiesB[i];
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Median filter over a sliding window, the result is written back to a and b
+   */
+  private void applyMedianFilter(double[] a, double[] b, int n, int windowSize, Scratch scratch) {
+    final int halfWindowSize = windowSize / 2;
+    final double[] window = scratch.window(2 * halfWindowSize + 1);
+    final double[] resultA = scratch.medianA;
+    final double[] resultB = scratch.medianB;
+    for (int i = 0; i < n; i++) {
+      final int start = Math.max(0, i - halfWindowSize);
+      final int end = Math.min(n - 1, i + halfWindowSize);
+      resultA[i] = calculateMedian(a, start, end + 1, window);
+      resultB[i] = calculateMedian(b, start, end + 1, window);
+    }
+    System.arraycopy(resultA, 0, a, 0, n);
+    System.arraycopy(resultB, 0, b, 0, n);
+  }
+
+  private static double calculateMedian(double[] values, int from, int to, double[] window) {
+    final int length = to - from;
+    System.arraycopy(values, from, window, 0, length);
+    Arrays.sort(window, 0, length);
+    final int middle = length / 2;
+    return length % 2 == 0 ? (window[middle - 1] + window[middle]) / 2.0 : window[middle];
+  }
+
+  private static double calculateQuantile(double[] values, int n, double quantile,
+      double[] sorted) {
+    System.arraycopy(values, 0, sorted, 0, n);
+    Arrays.sort(sorted, 0, n);
+    final int index = Math.max(0, (int) Math.ceil(quantile * n) - 1);
+    return sorted[index];
+  }
+
+  /**
+   * Pearson and cosine similarity are calculated on the primitive arrays. All other measures copy
+   * the values into the data structure of {@link SimilarityMeasure}.
+   */
+  private double similarity(double[] a, double[] b, int n) {
+    return switch (similarityMeasure) {
+      case PEARSON -> pearson(a, b, n);
+      case COSINE_SIM -> cosine(a, b, n);
+      default -> {
+        final double[][] data = new double[n][2];
+        for (int i = 0; i < n; i++) {
+          data[i][0] = a[i];
+          data[i][1] = b[i];
+        }
+        yield similarityMeasure.calc(data);
+      }
+    };
+  }
+
+  private static double pearson(double[] a, double[] b, int n) {
+    if (n < 2) {
+      return 0;
+    }
+    double meanA = 0;
+    double meanB = 0;
+    for (int i = 0; i < n; i++) {
+      meanA += a[i];
+      meanB += b[i];
+    }
+    meanA /= n;
+    meanB /= n;
+
+    double covariance = 0;
+    double varianceA = 0;
+    double varianceB = 0;
+    for (int i = 0; i < n; i++) {
+      final double da = a[i] - meanA;
+      final double db = b[i] - meanB;
+      covariance += da * db;
+      varianceA += da * da;
+      varianceB += db * db;
+    }
+    return covariance / Math.sqrt(varianceA * varianceB);
+  }
+
+  private static double cosine(double[] a, double[] b, int n) {
+    double dot = 0;
+    double normA = 0;
+    double normB = 0;
+    for (int i = 0; i < n; i++) {
+      dot += a[i] * b[i];
+      normA += a[i] * a[i];
+      normB += b[i] * b[i];
+    }
+    return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+  }
+
+  /**
+   * Image of one feature
+   *
+   * @param intensities   intensities of all pixels sorted by scan number
+   * @param pixels        sorted indices of pixels above the noise level or null for dense images
+   * @param numAboveNoise number of pixels above the noise level
+   */
+  record PixelData(@NotNull double[] intensities, @Nullable int[] pixels, int numAboveNoise) {
+
+  }
+
+  /**
+   * Reusable buffers. Not thread safe, use one instance per thread.
+   */
+  static class Scratch {
+
+    private double[] a = new double[0];
+    private double[] b = new double[0];
+    private double[] medianA = new double[0];
+    private double[] medianB = new double[0];
+    private double[] sorted = new double[0];
+    private double[] window = new double[0];
+
+    private void ensureCapacity(int capacity) {
+      if (a.length < capacity) {
+        a = new double[capacity];
+        b = new double[capacity];
+        medianA = new double[capacity];
+        medianB = new double[capacity];
+        sorted = new double[capacity];
+      }
+    }
+
+    private double[] window(int size) {
+      if (window.length < size) {
+        window = new double[size];
+      }
+      return window;
+    }
+  }
+}
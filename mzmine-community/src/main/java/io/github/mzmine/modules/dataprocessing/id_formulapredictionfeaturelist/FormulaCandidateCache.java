@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_formulapredictionfeaturelist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.StreamSupport;
+import org.jetbrains.annotations.NotNull;
+import org.openscience.cdk.formula.MolecularFormulaGenerator;
+import org.openscience.cdk.formula.MolecularFormulaRange;
+import org.openscience.cdk.interfaces.IIsotope;
+import org.openscience.cdk.interfaces.IMolecularFormula;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+/**
+ * Caches the candidate formulas of the {@link MolecularFormulaGenerator} in neutral mass bins of a
+ * fixed relative width, so that the bins follow ppm tolerances over the whole mass range. Rows
+ * with similar neutral masses (adducts, isotopologues, duplicates) share the same bins
+ * so that the expensive enumeration runs only once. Thread safe, each bin is enumerated by the
+ * first thread that requests it while other threads wait for the result.
+ * <p>
+ * Cached formulas are shared between rows and must not be changed. Clone before ionization.
+ */
+class FormulaCandidateCache {
+
+  /**
+   * Formulas lighter than this are not cached
+   */
+  private static final double MIN_MASS = 1d;
+
+  /**
+   * width of the bins on a logarithmic mass scale
+   */
+  private final double logBinWidth;
+  private final int maxBins;
+  private final Map<BinKey, CompletableFuture<CandidateBin>> bins = new ConcurrentHashMap<>();
+  private final Queue<BinKey> insertionOrder = new ConcurrentLinkedQueue<>();
+  private final Set<MolecularFormulaGenerator> activeGenerators = ConcurrentHashMap.newKeySet();
+  private volatile boolean canceled = false;
+
+  /**
+   * @param binPpm  relative width of the mass bins in ppm. Should be in the range of the relative
+   *                mass tolerance window
+   * @param maxBins maximum number of bins kept in memory. The oldest bins are removed first
+   */
+  FormulaCandidateCache(final double binPpm, final int maxBins) {
+    if (binPpm <= 0) {
+      throw new IllegalArgumentException("Bin width needs to be > 0 ppm but was " + binPpm);
+    }
+    this.logBinWidth = Math.log1p(binPpm * 1E-6);
+    this.maxBins = maxBins;
+  }
+
+  /**
+   * @return a key that describes the element constraints
+   */
+  @NotNull
+  static String createElementsKey(@NotNull final MolecularFormulaRange elements) {
+    return StreamSupport.stream(elements.isotopes().spliterator(), false)
+        .sorted(Comparator.comparing(IIsotope::getSymbol)
+            .thenComparing(iso -> iso.getMassNumber() == null ? 0 : iso.getMassNumber()))
+        .map(iso -> STR."\{iso.getMassNumber() == null ? "" : iso.getMassNumber()}\{iso.getSymbol()}[\{elements.getIsotopeCountMin(
+            iso)}-\{elements.getIsotopeCountMax(iso)}]").reduce("", String::concat);
+  }
+
+  /**
+   * All candidate formulas with an exact mass within minMass and maxMass (inclusive) that match
+   * the element constraints. Sorted by exact mass.
+   *
+   * @param elementsKey the key from {@link #createElementsKey(MolecularFormulaRange)}
+   * @return list of shared formulas or an incomplete list if the cache was canceled
+   */
+  @NotNull
+  List<IMolecularFormula> getCandidates(final double minMass, final double maxMass,
+      @NotNull final MolecularFormulaRange elements, @NotNull final String elementsKey) {
+    final List<IMolecularFormula> result = new ArrayList<>();
+    if (maxMass < MIN_MASS) {
+      return result;
+    }
+    final long firstBin = toBin(Math.max(minMass, MIN_MASS));
+    final long lastBin = toBin(maxMass);
+    for (long bin = firstBin; bin <= lastBin && !canceled; bin++) {
+      final CandidateBin candidates = getBin(new BinKey(elementsKey, bin), elements);
+
+      int index = Arrays.binarySearch(candidates.masses(), minMass);
+      if (index < 0) {
+        index = -(index + 1);
+      } else {
+        // find first of equal masses
+        while (index > 0 && candidates.masses()[index - 1] >= minMass) {
+          index--;
+        }
+      }
+      for (; index < candidates.masses().length && candidates.masses()[index] <= maxMass;
+          index++) {
+        result.add(candidates.formulas()[index]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Cancels all running formula generators. Candidates requested after this call may be
+   * incomplete.
+   */
+  void cancel() {
+    canceled = true;
+    activeGenerators.forEach(MolecularFormulaGenerator::cancel);
+  }
+
+  int size() {
+    return bins.size();
+  }
+
+  private long toBin(final double mass) {
+    return (long) Math.floor(Math.log(mass) / logBinWidth);
+  }
+
+  @NotNull
+  private CandidateBin getBin(@NotNull final BinKey key,
+      @NotNull final MolecularFormulaRange elements) {
+    final CompletableFuture<CandidateBin> existing = bins.get(key);
+    if (existing != null) {
+      return existing.join();
+    }
+
+    final CompletableFuture<CandidateBin> future = new CompletableFuture<>();
+    final CompletableFuture<CandidateBin> other = bins.putIfAbsent(key, future);
+    if (other != null) {
+      return other.join();
+    }
+
+    try {
+      future.complete(enumerate(key.bin(), elements));
+    } catch (RuntimeException ex) {
+      bins.remove(key);
+      future.completeExceptionally(ex);
+      throw ex;
+    }
+
+    insertionOrder.add(key);
+    while (insertionOrder.size() > maxBins) {
+      final BinKey oldest = insertionOrder.poll();
+      if (oldest != null) {
+        bins.remove(oldest);
+      }
+    }
+    return future.join();
+  }
+
+  /**
+   * Enumerates all formulas of a bin. Only formulas with a mass that falls into this bin are kept
+   * to avoid duplicates on the bin borders.
+   */
+  @NotNull
+  private CandidateBin enumerate(final long bin, @NotNull final MolecularFormulaRange elements) {
+    // slightly wider than the bin, formulas are assigned by toBin
+    final double lower = Math.exp(bin * logBinWidth) * (1 - 1E-12);
+    final double upper = Math.exp((bin + 1) * logBinWidth) * (1 + 1E-12);
+
+    final MolecularFormulaGenerator generator = new MolecularFormulaGenerator(
+        SilentChemObjectBuilder.getInstance(), lower, upper, elements);
+    activeGenerators.add(generator);
+    if (canceled) {
+      generator.cancel();
+    }
+
+    final List<MassFormula> formulas = new ArrayList<>();
+    try {
+      IMolecularFormula formula;
+      while ((formula = generator.getNextFormula()) != null) {
+        final double mass = MolecularFormulaManipulator.getTotalExactMass(formula);
+        if (toBin(mass) == bin) {
+          formulas.add(new MassFormula(mass, formula));
+        }
+      }
+    } finally {
+      activeGenerators.remove(generator);
+    }
+
+    formulas.sort(Comparator.comparingDouble(MassFormula::mass));
+    final double[] masses = new double[formulas.size()];
+    final IMolecularFormula[] sorted = new IMolecularFormula[formulas.size()];
+    for (int i = 0; i < masses.length; i++) {
+      masses[i] = formulas.get(i).mass();
+      sorted[i] = formulas.get(i).formula();
+    }
+    return new CandidateBin(masses, sorted);
+  }
+
+  private record BinKey(String elements, long bin) {
+
+  }
+
+  private record MassFormula(double mass, IMolecularFormula formula) {
+
+  }
+
+  private record CandidateBin(double[] masses, IMolecularFormula[] formulas) {
+
+  }
+}
@@ -34,7 +34,6 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.DataTypes;
-import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataprocessing.id_formula_sort.FormulaSortParameters;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.ResultFormula;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.elements.ElementalHeuristicChecker;
@@ -54,15 +53,14 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FormulaUtils;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
-import org.openscience.cdk.formula.MolecularFormulaGenerator;
 import org.openscience.cdk.formula.MolecularFormulaRange;
-import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.interfaces.IMolecularFormula;
-import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
 public class FormulaPredictionFeatureListTask extends AbstractTask {
 
@@ -84,10 +82,14 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
   private float sortPPMFactor;
   private float sortMSMSFactor;
   private float sortIsotopeFactor;
-  private MolecularFormulaGenerator generator;
+  /**
+   * Maximum number of mass bins in the formula cache
+   */
+  private static final int MAX_CACHED_BINS = 256;
+  private final AtomicInteger finishedRows = new AtomicInteger(0);
+  private FormulaCandidateCache formulaCache;
   private String message;
-  private int totalRows, finishedRows;
-  private List<ResultFormula> resultingFormulas;
+  private int totalRows;
   private Range<Double> rdbeRange;
   private Boolean rdbeIsInteger;
   private Boolean checkHCRatio;
@@ -182,7 +184,7 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
     if (totalRows == 0) {
       return 0.0;
     }
-    return (double) finishedRows / (double) totalRows;
+    return (double) finishedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -195,81 +197,89 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
 
     setStatus(TaskStatus.PROCESSING);
 
-    totalRows = featureList.getNumberOfRows();
-
     featureList.addRowType(DataTypes.get(
         io.github.mzmine.datamodel.features.types.annotations.formula.FormulaListType.class));
 
-    for (FeatureListRow row : featureList.getRows()) {
+    // sorted by mass so that parallel chunks of rows share the cached formula bins
+    final List<FeatureListRow> rows = featureList.getRows().stream()
+        .filter(row -> row.getPeakIdentities().isEmpty())
+        .sorted(Comparator.comparingDouble(this::getSearchedMass)).toList();
+    totalRows = rows.size();
+    if (rows.isEmpty()) {
+      finish();
+      return;
+    }
 
-      if (row.getPeakIdentities().size() > 0) {
-        continue;
+    // relative bin width of the smallest relative tolerance window, which is at the highest mass
+    final double maxMass = Math.max(getSearchedMass(rows.getLast()), 1d);
+    final Range<Double> smallestWindow = mzTolerance.getToleranceRange(maxMass);
+    final double binPpm = Math.max(
+        (smallestWindow.upperEndpoint() - smallestWindow.lowerEndpoint()) / maxMass * 1E6, 0.1);
+    formulaCache = new FormulaCandidateCache(binPpm, MAX_CACHED_BINS);
+    message = "Formula prediction for " + totalRows + " rows in " + featureList.getName();
+    final String elementsKey = FormulaCandidateCache.createElementsKey(elementCounts);
+
+    rows.parallelStream().forEach(row -> {
+      if (isCanceled() || getStatus() == TaskStatus.ERROR) {
+        return;
       }
-      this.resultingFormulas = new ArrayList<>();
+      predictFormulas(row, elementsKey);
+      finishedRows.incrementAndGet();
+    });
 
-      double searchedMass =
-          (row.getAverageMZ() - ionType.getAddedMass()) * Math.abs(ionType.getCharge());
+    if (isCanceled() || getStatus() == TaskStatus.ERROR) {
+      return;
+    }
 
-      message = "Formula prediction for " + MZmineCore.getConfiguration().getMZFormat()
-          .format(searchedMass);
+    finish();
+  }
 
-      Range<Double> massRange = mzTolerance.getToleranceRange(searchedMass);
+  private void finish() {
+    featureList.getAppliedMethods().add(
+        new SimpleFeatureListAppliedMethod(FormulaPredictionFeatureListModule.class, parameters,
+            getModuleCallDate()));
 
-      IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
-      generator = new MolecularFormulaGenerator(builder, massRange.lowerEndpoint(),
-          massRange.upperEndpoint(), elementCounts);
+    logger.finest("Finished formula search for all the features");
 
-      IMolecularFormula cdkFormula;
+    setStatus(TaskStatus.FINISHED);
+  }
 
-      // create a map to store ResultFormula and relative mass deviation
-      // for sorting
-      while ((cdkFormula = generator.getNextFormula()) != null) {
-        // Mass is ok, so test other constraints
-        ResultFormula molf = checkConstraints(cdkFormula, row, searchedMass);
+  private double getSearchedMass(FeatureListRow row) {
+    return (row.getAverageMZ() - ionType.getAddedMass()) * Math.abs(ionType.getCharge());
+  }
 
-        if (isCanceled() || getStatus().equals(TaskStatus.ERROR)) {
-          return;
-        }
+  private void predictFormulas(final FeatureListRow row, final String elementsKey) {
+    final double searchedMass = getSearchedMass(row);
 
-        if (molf != null) {
-          resultingFormulas.add(molf);
-        }
-      }
+    final Range<Double> massRange = mzTolerance.getToleranceRange(searchedMass);
+    final List<IMolecularFormula> candidates = formulaCache.getCandidates(
+        massRange.lowerEndpoint(), massRange.upperEndpoint(), elementCounts, elementsKey);
 
-      if (isCanceled()) {
-        return;
-      }
+    final List<ResultFormula> resultingFormulas = new ArrayList<>();
+    for (IMolecularFormula cdkFormula : candidates) {
+      // Mass is ok, so test other constraints
+      ResultFormula molf = checkConstraints(cdkFormula, row, searchedMass);
 
-      // Add the new formula entry top results
-      if (!resultingFormulas.isEmpty()) {
-        FormulaUtils.sortFormulaList(resultingFormulas, sortPPMFactor, sortIsotopeFactor,
-            sortMSMSFactor);
-        row.setFormulas(resultingFormulas.subList(0,
-            Math.min(resultingFormulas.size(), maxBestFormulasPerFeature)));
+      if (isCanceled() || getStatus().equals(TaskStatus.ERROR)) {
+        return;
       }
 
-      if (isCanceled()) {
-        return;
+      if (molf != null) {
+        resultingFormulas.add(molf);
       }
-      finishedRows++;
     }
 
-    if (isCanceled()) {
-      return;
+    // Add the new formula entry top results
+    if (!resultingFormulas.isEmpty()) {
+      FormulaUtils.sortFormulaList(resultingFormulas, sortPPMFactor, sortIsotopeFactor,
+          sortMSMSFactor);
+      row.setFormulas(resultingFormulas.subList(0,
+          Math.min(resultingFormulas.size(), maxBestFormulasPerFeature)));
     }
-
-    featureList.getAppliedMethods().add(
-        new SimpleFeatureListAppliedMethod(FormulaPredictionFeatureListModule.class, parameters,
-            getModuleCallDate()));
-
-    logger.finest("Finished formula search for all the features");
-
-    setStatus(TaskStatus.FINISHED);
-
   }
 
   /**
-   * @param cdkFormula
+   * @param cdkFormula shared formula of the cache, only cloned for results
    * @return null if molecular formula does not match requirements
    */
   private ResultFormula checkConstraints(IMolecularFormula cdkFormula, FeatureListRow peakListRow,
@@ -346,18 +356,18 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
     }
 
     // Create a new formula entry
-    return new ResultFormula(cdkFormula, predictedIsotopePattern, isotopeScore, msmsScore,
-        msmsAnnotations, searchedMass);
+    return new ResultFormula(FormulaUtils.cloneFormula(cdkFormula), predictedIsotopePattern,
+        isotopeScore, msmsScore, msmsAnnotations, searchedMass);
   }
 
   @Override
   public void cancel() {
     super.cancel();
 
-    // We need to cancel the formula generator, because searching for next
+    // We need to cancel the formula generators, because searching for next
     // candidate formula may take a looong time
-    if (generator != null) {
-      generator.cancel();
+    if (formulaCache != null) {
+      formulaCache.cancel();
     }
 
   }
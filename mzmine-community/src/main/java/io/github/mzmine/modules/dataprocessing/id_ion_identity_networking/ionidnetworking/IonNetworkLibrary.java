@@ -31,6 +31,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.correlation.RowGroup;
 import io.github.mzmine.datamodel.identities.iontype.IonIdentity;
 import io.github.mzmine.datamodel.identities.iontype.IonModification;
 import io.github.mzmine.datamodel.identities.iontype.IonModificationType;
@@ -39,8 +40,13 @@ import io.github.mzmine.datamodel.identities.iontype.IonType;
 import io.github.mzmine.parameters.parametertypes.ionidentity.IonLibraryParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -169,30 +175,10 @@ public class IonNetworkLibrary {
         // do not check if MOL = MOL and MOL>1
         // only one can be modified
         // check charge state if absCharge is not -1 or 0 (no charge detected)
-        if (checkMolCount(adduct, adduct2) //
-            && checkMaxMod(adduct, adduct2) //
-            && checkChargeStates(adduct, adduct2, z1, z2) //
-            && checkMultiChargeDifference(adduct, adduct2) //
-            && checkSameAdducts(adduct, adduct2)) {
+        if (checkChargeStates(adduct, adduct2, z1, z2) && checkIonTypePair(adduct, adduct2)) {
           // checks each raw file - only true if all m/z are in range
           if (checkAdduct(featureList, row1, row2, adduct, adduct2, mode, minHeight)) {
-            // is a2 a modification of a1? (same adducts - different mods
-            if (adduct2.isModificationOf(adduct)) {
-              IonType mod = adduct2.subtractMods(adduct);
-              IonType undefined = new IonType(
-                  IonModification.getUndefinedforCharge(adduct.getCharge()));
-              list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, undefined, row1, mod));
-            } else if (adduct.isModificationOf(adduct2)) {
-              IonType mod = adduct.subtractMods(adduct2);
-              IonType undefined = new IonType(
-                  IonModification.getUndefinedforCharge(adduct2.getCharge()));
-              list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, mod, row2, undefined));
-            } else {
-              // Add adduct identity and notify GUI.
-              // only if not already present
-              list.add(
-                  IonIdentity.addAdductIdentityToRow(mzTolerance, row1, adduct, row2, adduct2));
-            }
+            list.add(addIdentities(row1, row2, adduct, adduct2));
           }
         }
       }
@@ -202,6 +188,185 @@ public class IonNetworkLibrary {
   }
 
 
+  /**
+   * Finds all adduct pairs between the correlated rows of a group. Equal to calling
+   * {@link #findAdducts(FeatureList, FeatureListRow, FeatureListRow, CheckMode, double)} for each
+   * correlated row pair in the group but each row m/z is only projected once to the neutral masses
+   * of all IonTypes. These neutral masses are sorted and pairs of equal neutral mass are found by a
+   * tolerance sweep. Only the candidate pairs are checked by the exact adduct check.
+   *
+   * @param compared counts the compared row pairs
+   * @return the number of row pairs with at least one adduct pair
+   */
+  public long findAdductsInGroup(final FeatureList featureList, final RowGroup group,
+      final CheckMode mode, final double minHeight, final AtomicInteger compared) {
+    final NeutralMassProjection projection = projectNeutralMasses(featureList, group, mode,
+        minHeight);
+    final int n = projection.size();
+    final double[] low = projection.low();
+    final double[] high = projection.high();
+    final int[] rowIndex = projection.rowIndex();
+    final int[] ionIndex = projection.ionIndex();
+
+    // the lowest mass that is still within tolerance of the low mass of each entry (monotonic)
+    final double[] reachLow = new double[n];
+    for (int i = 0; i < n; i++) {
+      reachLow[i] = mzTolerance.getToleranceRange(low[i]).lowerEndpoint();
+    }
+
+    // candidate ion type pairs for each row pair (i < k)
+    final Map<Long, List<int[]>> candidates = new HashMap<>();
+    for (int a = 0; a < n; a++) {
+      for (int b = a + 1; b < n && reachLow[b] <= high[a]; b++) {
+        final int ra = rowIndex[a];
+        final int rb = rowIndex[b];
+        if (ra == rb) {
+          continue;
+        }
+        final int i = Math.min(ra, rb);
+        final int k = Math.max(ra, rb);
+        if (!group.isCorrelated(i, k)) {
+          continue;
+        }
+        final int[] ions = ra < rb ? new int[]{ionIndex[a], ionIndex[b]}
+            : new int[]{ionIndex[b], ionIndex[a]};
+        candidates.computeIfAbsent(((long) i << 32) | k, _ -> new ArrayList<>()).add(ions);
+      }
+    }
+
+    // keep the same order as the pairwise search
+    final List<Long> rowPairs = new ArrayList<>(candidates.keySet());
+    rowPairs.sort(null);
+    long annotations = 0;
+    for (long rowPair : rowPairs) {
+      compared.incrementAndGet();
+      final FeatureListRow row1 = group.get((int) (rowPair >>> 32));
+      final FeatureListRow row2 = group.get((int) rowPair);
+      final List<int[]> ionPairs = candidates.get(rowPair);
+      ionPairs.sort(
+          Comparator.<int[]>comparingInt(ions -> ions[0]).thenComparingInt(ions -> ions[1]));
+
+      boolean annotated = false;
+      for (int[] ions : ionPairs) {
+        final IonType adduct = allAdducts.get(ions[0]);
+        final IonType adduct2 = allAdducts.get(ions[1]);
+        if (!adduct.equals(adduct2) && checkIonTypePair(adduct, adduct2) //
+            && checkAdduct(featureList, row1, row2, adduct, adduct2, mode, minHeight)) {
+          addIdentities(row1, row2, adduct, adduct2);
+          annotated = true;
+        }
+      }
+      if (annotated) {
+        annotations++;
+      }
+    }
+    return annotations;
+  }
+
+  /**
+   * Projects the m/z of each row in the group to the neutral masses of all IonTypes that fit to the
+   * row charge state. For the feature check modes, the neutral mass range spans all features above
+   * minHeight because {@link IonType#getMass(double)} increases with m/z.
+   *
+   * @return the projection sorted by the low neutral mass
+   */
+  private NeutralMassProjection projectNeutralMasses(final FeatureList featureList,
+      final RowGroup group, final CheckMode mode, final double minHeight) {
+    final int numIons = allAdducts.size();
+    final int capacity = group.size() * numIons;
+    double[] low = new double[capacity];
+    double[] high = new double[capacity];
+    int[] rowIndex = new int[capacity];
+    int[] ionIndex = new int[capacity];
+
+    int n = 0;
+    for (int r = 0; r < group.size(); r++) {
+      final FeatureListRow row = group.get(r);
+      double minMz;
+      double maxMz;
+      if (mode == CheckMode.AVGERAGE) {
+        minMz = maxMz = row.getAverageMZ();
+      } else {
+        minMz = Double.POSITIVE_INFINITY;
+        maxMz = Double.NEGATIVE_INFINITY;
+        for (RawDataFile raw : featureList.getRawDataFiles()) {
+          final Feature f = row.getFeature(raw);
+          if (f != null && f.getHeight() >= minHeight) {
+            minMz = Math.min(minMz, f.getMZ());
+            maxMz = Math.max(maxMz, f.getMZ());
+          }
+        }
+        if (minMz > maxMz) {
+          // no feature to compare
+          continue;
+        }
+      }
+
+      final int z = Math.abs(row.getRowCharge());
+      for (int t = 0; t < numIons; t++) {
+        final IonType ion = allAdducts.get(t);
+        if (z != 0 && ion.getAbsCharge() != z) {
+          continue;
+        }
+        low[n] = ion.getMass(minMz);
+        high[n] = ion.getMass(maxMz);
+        rowIndex[n] = r;
+        ionIndex[n] = t;
+        n++;
+      }
+    }
+
+    final double[] unsortedLow = low;
+    final int[] order = IntStream.range(0, n).boxed()
+        .sorted(Comparator.comparingDouble(i -> unsortedLow[i])).mapToInt(Integer::intValue)
+        .toArray();
+    final NeutralMassProjection sorted = new NeutralMassProjection(new double[n], new double[n],
+        new int[n], new int[n]);
+    for (int i = 0; i < n; i++) {
+      final int o = order[i];
+      sorted.low()[i] = low[o];
+      sorted.high()[i] = high[o];
+      sorted.rowIndex()[i] = rowIndex[o];
+      sorted.ionIndex()[i] = ionIndex[o];
+    }
+    return sorted;
+  }
+
+  /**
+   * Adds the identities to both rows. If one ion type is a modification of the other, the
+   * modification is added as an in-source modification of the undefined adduct.
+   *
+   * @return the identities for [row1, row2]
+   */
+  private IonIdentity[] addIdentities(final FeatureListRow row1, final FeatureListRow row2,
+      final IonType adduct, final IonType adduct2) {
+    // is a2 a modification of a1? (same adducts - different mods
+    if (adduct2.isModificationOf(adduct)) {
+      IonType mod = adduct2.subtractMods(adduct);
+      IonType undefined = new IonType(IonModification.getUndefinedforCharge(adduct.getCharge()));
+      return IonIdentity.addAdductIdentityToRow(mzTolerance, row1, undefined, row1, mod);
+    } else if (adduct.isModificationOf(adduct2)) {
+      IonType mod = adduct.subtractMods(adduct2);
+      IonType undefined = new IonType(IonModification.getUndefinedforCharge(adduct2.getCharge()));
+      return IonIdentity.addAdductIdentityToRow(mzTolerance, row1, mod, row2, undefined);
+    } else {
+      // Add adduct identity and notify GUI.
+      // only if not already present
+      return IonIdentity.addAdductIdentityToRow(mzTolerance, row1, adduct, row2, adduct2);
+    }
+  }
+
+  /**
+   * Do not check if MOL = MOL and MOL>1. Only one can be modified. No overlap in adducts and
+   * modifications. Independent of the rows.
+   */
+  private boolean checkIonTypePair(final IonType adduct, final IonType adduct2) {
+    return checkMolCount(adduct, adduct2) //
+           && checkMaxMod(adduct, adduct2) //
+           && checkMultiChargeDifference(adduct, adduct2) //
+           && checkSameAdducts(adduct, adduct2);
+  }
+
   /**
    * Searches for an IonType for row that matches in network
    *
@@ -419,4 +584,19 @@ public class IonNetworkLibrary {
     return maxCharge;
   }
 
+  /**
+   * Neutral mass ranges of row and IonType combinations
+   *
+   * @param low      lowest neutral mass
+   * @param high     highest neutral mass
+   * @param rowIndex index of the row in the group
+   * @param ionIndex index of the IonType in {@link #getAllAdducts()}
+   */
+  private record NeutralMassProjection(double[] low, double[] high, int[] rowIndex,
+                                       int[] ionIndex) {
+
+    int size() {
+      return low.length;
+    }
+  }
 }
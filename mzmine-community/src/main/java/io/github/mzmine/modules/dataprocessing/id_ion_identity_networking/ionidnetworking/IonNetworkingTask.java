@@ -33,7 +33,6 @@ import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.correlation.RowGroup;
 import io.github.mzmine.datamodel.features.types.annotations.iin.IonIdentityListType;
-import io.github.mzmine.datamodel.identities.iontype.IonIdentity;
 import io.github.mzmine.datamodel.identities.iontype.IonNetworkLogic;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkLibrary.CheckMode;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.refinement.IonNetworkRefinementParameters;
@@ -171,30 +170,14 @@ public class IonNetworkingTask extends AbstractTask {
   }
 
   /**
-   * Annotates all rows in a group
+   * Annotates all rows in a group. Uses a neutral mass sweep over all rows and ion types of the
+   * group instead of checking all ion type combinations for each correlated row pair.
    *
    * @param g
    * @param compared
    */
   private long annotateGroup(RowGroup g, AtomicInteger compared) {
-    long annotations = 0;
-    for (int i = 0; i < g.size() - 1; i++) {
-      // check against existing networks
-      for (int k = i + 1; k < g.size(); k++) {
-        // only if row i and k are correlated
-        if (g.isCorrelated(i, k)) {
-          compared.incrementAndGet();
-          // check for adducts in library
-          List<IonIdentity[]> id = library.findAdducts(featureList, g.get(i), g.get(k),
-              adductCheckMode, minHeight);
-          if (!id.isEmpty()) {
-            annotations++;
-          }
-        }
-      }
-      // finished.incrementAndGet();
-    }
-    return annotations;
+    return library.findAdductsInGroup(featureList, g, adductCheckMode, minHeight, compared);
   }
 
 
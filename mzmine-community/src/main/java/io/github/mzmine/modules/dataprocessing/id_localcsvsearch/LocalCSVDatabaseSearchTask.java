@@ -64,12 +64,13 @@ import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.CSVParsingUtils;
 import io.github.mzmine.util.FeatureListRowSorter;
-import io.github.mzmine.util.FeatureListUtils;
+import io.github.mzmine.util.collections.BinarySearch;
 import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -79,13 +80,16 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
-import javafx.collections.transformation.SortedList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class LocalCSVDatabaseSearchTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(LocalCSVDatabaseSearchTask.class.getName());
+  /**
+   * Number of m/z sorted compounds that are swept against the rows by one thread
+   */
+  private static final int SWEEP_BLOCK_SIZE = 2048;
 
   // all data types that we need
   private final FormulaType formulaType = DataTypes.get(FormulaType.class);
@@ -244,42 +248,21 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
         }
       }
 
-      // extract rows and sort by mz for binary search
-      var mzSortedRows = Arrays.stream(featureLists)
-          .map(flist -> flist.getRows().sorted(FeatureListRowSorter.MZ_ASCENDING)).toList();
-
-      for (String[] currentLine : databaseValues) {
-        if (finishedLines == 0) {
-          finishedLines++;
-          continue; // skip header
-        }
-        if (isCanceled()) {
-          return;
-        }
-        try {
-          // check already once for all raw data files
-          if (filterSamples && !matchSample(allRawDataFiles, currentLine[sampleColIndex])) {
-            // sample mismatch for this line
-            continue;
-          }
-
-          processOneLine(mzSortedRows, currentLine, lineIds, commentFields);
-        } catch (Exception e) {
-          logger.log(Level.FINE, "Exception while processing csv line " + finishedLines, e);
-        }
-        finishedLines++;
+      // parse all lines and expand adducts first, then match all feature lists in one sweep
+      final SortedCompounds compounds = parseSortedCompounds(lineIds, commentFields);
+      if (isCanceled()) {
+        return;
       }
 
-      for (final SortedList<FeatureListRow> flist : mzSortedRows) {
-        for (final FeatureListRow row : flist) {
-          var matches = row.getCompoundAnnotations().stream().sorted()
-              .collect(Collectors.toCollection(ArrayList::new));
-          if (matches.isEmpty()) {
-            continue;
-          }
-          row.setCompoundAnnotations(matches);
-        }
+      IntStream indexStream = IntStream.range(0, featureLists.length);
+      if (featureLists.length > 1000) {
+        indexStream = indexStream.parallel();
+      }
+      indexStream.forEach(i -> matchFeatureList(featureLists[i], compounds));
+      if (isCanceled()) {
+        return;
       }
+
       if (isotopePatternMatcherParameters != null) {
         for (FeatureList flist : featureLists) {
           refineAnnotationsByIsotopes(flist);
@@ -341,61 +324,160 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
   }
 
   /**
-   * @param mzSortedRows     rows per feature list sorted by mz
-   * @param values           csv values to be parsed into annotation
+   * Parses all csv lines into annotations, expands the adducts and sorts them by m/z into primitive
+   * arrays. Lines that do not match any sample (if active) or have no precursor m/z are skipped.
+   *
    * @param linesWithIndices columns
    * @param commentFields    comment fields that are put together into the comment
    */
-  @SuppressWarnings("ResultOfMethodCallIgnored")
-  private void processOneLine(final List<SortedList<FeatureListRow>> mzSortedRows,
-      @NotNull String[] values, @NotNull List<ImportType> linesWithIndices,
+  @NotNull
+  private SortedCompounds parseSortedCompounds(@NotNull List<ImportType> linesWithIndices,
       @NotNull final List<ImportType> commentFields) {
+    final List<CompoundDBAnnotation> annotations = new ArrayList<>();
+    final List<String> samples = new ArrayList<>();
 
-    final List<CompoundDBAnnotation> annotations = getCompoundDBAnnotations(values,
-        linesWithIndices, commentFields);
+    for (String[] currentLine : databaseValues) {
+      if (finishedLines == 0) {
+        finishedLines++;
+        continue; // skip header
+      }
+      if (isCanceled()) {
+        break;
+      }
+      try {
+        // check already once for all raw data files
+        final String sample = filterSamples ? currentLine[sampleColIndex] : null;
+        if (sample != null && !matchSample(allRawDataFiles, sample)) {
+          // sample mismatch for this line
+          finishedLines++;
+          continue;
+        }
 
-    IntStream indexStream = IntStream.range(0, featureLists.length);
-    if (featureLists.length > 1000) {
-      indexStream.parallel();
-    }
-    // not all feature lists have all samples
-    indexStream.forEach(i -> {
-      var rawFiles = featureLists[i].getRawDataFiles();
-      //  if active, check sample name contains id - this time for the feature list
-      if (!filterSamples || matchSample(rawFiles, values[sampleColIndex])) {
-        var sortedRows = mzSortedRows.get(i);
-
-        for (CompoundDBAnnotation annotation : annotations) {
-          List<FeatureListRow> candidates = binarySearchCandidates(sortedRows, annotation);
-
-          for (FeatureListRow row : candidates) {
-            checkMatchAndAnnotate(annotation, row, mzTolerance, rtTolerance, mobTolerance,
-                ccsTolerance);
+        for (CompoundDBAnnotation annotation : getCompoundDBAnnotations(currentLine,
+            linesWithIndices, commentFields)) {
+          if (annotation.getPrecursorMZ() != null) {
+            annotations.add(annotation);
+            samples.add(sample);
           }
         }
+      } catch (Exception e) {
+        logger.log(Level.FINE, "Exception while processing csv line " + finishedLines, e);
+      }
+      finishedLines++;
+    }
+
+    final int[] order = IntStream.range(0, annotations.size()).boxed()
+        .sorted(Comparator.comparingDouble(i -> annotations.get(i).getPrecursorMZ()))
+        .mapToInt(Integer::intValue).toArray();
+
+    final double[] mzs = new double[order.length];
+    final CompoundDBAnnotation[] sortedAnnotations = new CompoundDBAnnotation[order.length];
+    final String[] sortedSamples = new String[order.length];
+    for (int i = 0; i < order.length; i++) {
+      sortedAnnotations[i] = annotations.get(order[i]);
+      sortedSamples[i] = samples.get(order[i]);
+      mzs[i] = sortedAnnotations[i].getPrecursorMZ();
+    }
+    return new SortedCompounds(mzs, sortedAnnotations, sortedSamples);
+  }
+
+  /**
+   * Matches all compounds against the rows of one feature list. Both sides are sorted by m/z and
+   * matched by a merge sweep over blocks of compounds in parallel. RT, mobility and CCS are checked
+   * for each m/z candidate pair. All matches of a row are sorted once and set to the row.
+   */
+  private void matchFeatureList(@NotNull final FeatureList flist,
+      @NotNull final SortedCompounds compounds) {
+    final FeatureListRow[] rows = flist.stream().sorted(FeatureListRowSorter.MZ_ASCENDING)
+        .toArray(FeatureListRow[]::new);
+    final double[] rowMzs = new double[rows.length];
+    for (int i = 0; i < rows.length; i++) {
+      rowMzs[i] = rows[i].getAverageMZ();
+    }
+
+    // not all feature lists have all samples - check each distinct sample only once
+    final Map<String, Boolean> sampleMatches = new HashMap<>();
+    if (filterSamples) {
+      final List<RawDataFile> rawFiles = flist.getRawDataFiles();
+      for (String sample : compounds.samples()) {
+        if (sample != null) {
+          sampleMatches.computeIfAbsent(sample, s -> matchSample(rawFiles, s));
+        }
       }
+    }
+
+    final int numCompounds = compounds.mzs().length;
+    final int numBlocks = (numCompounds + SWEEP_BLOCK_SIZE - 1) / SWEEP_BLOCK_SIZE;
+    // keep block order so that the results are independent of the thread scheduling
+    final List<List<RowMatch>> blockMatches = IntStream.range(0, numBlocks).parallel()
+        .mapToObj(block -> sweepBlock(block * SWEEP_BLOCK_SIZE,
+            Math.min(numCompounds, (block + 1) * SWEEP_BLOCK_SIZE), compounds, rows, rowMzs,
+            sampleMatches)).toList();
+
+    final Map<Integer, List<CompoundDBAnnotation>> matchesByRow = new HashMap<>();
+    for (List<RowMatch> matches : blockMatches) {
+      for (RowMatch match : matches) {
+        matchesByRow.computeIfAbsent(match.rowIndex(), _ -> new ArrayList<>())
+            .add(match.annotation());
+      }
+    }
+
+    matchesByRow.forEach((rowIndex, newMatches) -> {
+      final FeatureListRow row = rows[rowIndex];
+      final List<CompoundDBAnnotation> matches = new ArrayList<>(row.getCompoundAnnotations());
+      matches.addAll(newMatches);
+      matches.sort(null);
+      row.setCompoundAnnotations(matches);
     });
   }
 
+  /**
+   * Two-pointer merge sweep of the compounds in [fromCompound, toCompound) against the m/z sorted
+   * rows. The lower and upper bounds of the tolerance windows increase with the compound m/z, so
+   * the first row pointer never moves backwards.
+   *
+   * @return list of matches as clones of the compound annotation
+   */
   @NotNull
-  private List<FeatureListRow> binarySearchCandidates(final SortedList<FeatureListRow> mzSortedRows,
-      final CompoundDBAnnotation annotation) {
-    // ranges are build with prechecks - so if there is no mobility use Range.all() to deactivate the filter
-    Double mz = annotation.getPrecursorMZ();
-    assert mz != null;
-    final Float rt = annotation.getRT();
-    final Float mobility = annotation.getMobility();
-    var mzRange = mzTolerance.getToleranceRange(mz);
-    Range<Float> rtRange =
-        rtTolerance != null && rt != null ? rtTolerance.getToleranceRange(rt) : Range.all();
-    Range<Float> mobilityRange =
-        mobTolerance != null && mobility != null ? mobTolerance.getToleranceRange(mobility)
-            : Range.all();
-
-    // get all canditates with binary search
-    // CCS is still missing here but will be tested later
-    return FeatureListUtils.getCandidatesWithinRanges(mzRange, rtRange, mobilityRange, mzSortedRows,
-        true);
+  private List<RowMatch> sweepBlock(final int fromCompound, final int toCompound,
+      @NotNull final SortedCompounds compounds, @NotNull final FeatureListRow[] rows,
+      @NotNull final double[] rowMzs, @NotNull final Map<String, Boolean> sampleMatches) {
+    final List<RowMatch> matches = new ArrayList<>();
+    if (fromCompound >= toCompound || rows.length == 0) {
+      return matches;
+    }
+
+    final double[] mzs = compounds.mzs();
+    int firstRow = BinarySearch.lowerBound(rowMzs,
+        mzTolerance.getToleranceRange(mzs[fromCompound]).lowerEndpoint());
+
+    for (int c = fromCompound; c < toCompound && firstRow < rows.length; c++) {
+      if (isCanceled()) {
+        return matches;
+      }
+      final String sample = compounds.samples()[c];
+      if (sample != null && !sampleMatches.getOrDefault(sample, false)) {
+        continue;
+      }
+
+      final Range<Double> mzRange = mzTolerance.getToleranceRange(mzs[c]);
+      final double lower = mzRange.lowerEndpoint();
+      final double upper = mzRange.upperEndpoint();
+      while (firstRow < rows.length && rowMzs[firstRow] < lower) {
+        firstRow++;
+      }
+
+      final CompoundDBAnnotation annotation = compounds.annotations()[c];
+      for (int r = firstRow; r < rows.length && rowMzs[r] <= upper; r++) {
+        // checks m/z, RT, mobility, and CCS
+        final CompoundDBAnnotation clone = annotation.checkMatchAndCalculateDeviation(rows[r],
+            mzTolerance, rtTolerance, mobTolerance, ccsTolerance);
+        if (clone != null) {
+          matches.add(new RowMatch(r, clone));
+        }
+      }
+    }
+    return matches;
   }
 
   @NotNull
@@ -415,17 +497,6 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
     return annotations;
   }
 
-  private void checkMatchAndAnnotate(CompoundDBAnnotation annotation, FeatureListRow row,
-      MZTolerance mzTolerance, RTTolerance rtTolerance, MobilityTolerance mobTolerance,
-      Double percCcsTolerance) {
-
-    final CompoundDBAnnotation clone = annotation.checkMatchAndCalculateDeviation(row, mzTolerance,
-        rtTolerance, mobTolerance, percCcsTolerance);
-    if (clone != null) {
-      row.addCompoundAnnotation(clone);
-    }
-  }
-
   @NotNull
   private CompoundDBAnnotation getCompoundFromLine(@NotNull String[] values,
       @NotNull List<ImportType> linesWithIndices, @NotNull final List<ImportType> commentFields) {
@@ -505,4 +576,20 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
       r.run();
     }
   }
+
+  /**
+   * Compounds sorted by precursor m/z
+   *
+   * @param mzs         sorted precursor m/z values
+   * @param annotations annotations in the same order
+   * @param samples     the sample name of the csv line or null if samples are not filtered
+   */
+  private record SortedCompounds(double[] mzs, CompoundDBAnnotation[] annotations,
+                                 String[] samples) {
+
+  }
+
+  private record RowMatch(int rowIndex, CompoundDBAnnotation annotation) {
+
+  }
 }
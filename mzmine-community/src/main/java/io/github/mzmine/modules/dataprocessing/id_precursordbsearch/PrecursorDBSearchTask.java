@@ -25,18 +25,20 @@
 
 package io.github.mzmine.modules.dataprocessing.id_precursordbsearch;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
-import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.project.ProjectService;
 import io.github.mzmine.util.spectraldb.entry.PrecursorDBFeatureIdentity;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryPrecursorIndex;
 import io.github.mzmine.util.spectraldb.parser.AutoLibraryParser;
 import io.github.mzmine.util.spectraldb.parser.LibraryEntryProcessor;
 import io.github.mzmine.util.spectraldb.parser.UnsupportedFormatException;
@@ -51,7 +53,9 @@ import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Search for possible precursor m/z . All rows average m/z against local spectral libraries
+ * Search for possible precursor m/z . All rows average m/z against local spectral libraries. The
+ * library entries are indexed by precursor m/z so that each row is a range query, rows are
+ * searched in parallel.
  *
  * @author
  */
@@ -67,9 +71,10 @@ class PrecursorDBSearchTask extends AbstractTask {
   private final boolean useRT;
   private final RTTolerance rtTol;
 
-  private List<AbstractTask> tasks;
-  private int totalTasks;
   private final AtomicInteger matches = new AtomicInteger(0);
+  private final AtomicInteger processedRows = new AtomicInteger(0);
+  private int totalRows;
+  private String description;
 
   public PrecursorDBSearchTask(FeatureList peakList, ParameterSet parameters,
       @NotNull Instant moduleCallDate) {
@@ -82,6 +87,7 @@ class PrecursorDBSearchTask extends AbstractTask {
     rtTol = !useRT ? null
         : parameters.getParameter(PrecursorDBSearchParameters.rtTolerance).getEmbeddedParameter()
             .getValue();
+    description = "Loading library " + dataBaseFile.getAbsolutePath();
   }
 
   /**
@@ -89,10 +95,10 @@ class PrecursorDBSearchTask extends AbstractTask {
    */
   @Override
   public double getFinishedPercentage() {
-    if (totalTasks == 0 || tasks == null) {
+    if (totalRows == 0) {
       return 0;
     }
-    return ((double) totalTasks - tasks.size()) / totalTasks;
+    return processedRows.get() / (double) totalRows;
   }
 
   /**
@@ -100,8 +106,7 @@ class PrecursorDBSearchTask extends AbstractTask {
    */
   @Override
   public String getTaskDescription() {
-    return "Identifiy possible precursor  m/z in " + peakList + " using database "
-        + dataBaseFile.getAbsolutePath();
+    return description;
   }
 
   /**
@@ -110,41 +115,39 @@ class PrecursorDBSearchTask extends AbstractTask {
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
-    int count = 0;
     try {
-      tasks = parseFile(dataBaseFile);
-      totalTasks = tasks.size();
-      if (!tasks.isEmpty()) {
-        // wait for the tasks to finish
-        while (!isCanceled() && !tasks.isEmpty()) {
-          for (int i = 0; i < tasks.size(); i++) {
-            if (tasks.get(i).isFinished() || tasks.get(i).isCanceled()) {
-              tasks.remove(i);
-              i--;
-            }
-          }
-          // wait for all sub tasks to finish
-          try {
-            Thread.sleep(100);
-          } catch (Exception e) {
-            cancel();
-          }
-        }
-        // cancelled
-        if (isCanceled()) {
-          tasks.forEach(AbstractTask::cancel);
-        }
-      } else {
+      final SpectralLibraryPrecursorIndex index = getPrecursorIndex(dataBaseFile);
+      if (isCanceled()) {
+        return;
+      }
+      if (index.size() == 0) {
         setStatus(TaskStatus.ERROR);
         setErrorMessage("DB file was empty - or error while parsing " + dataBaseFile);
+        return;
       }
+
+      description = "Identifiy possible precursor  m/z in " + peakList + " using database "
+                    + dataBaseFile.getAbsolutePath();
+      final List<FeatureListRow> rows = peakList.getRows();
+      totalRows = rows.size();
+      rows.parallelStream().forEach(row -> {
+        if (isCanceled()) {
+          return;
+        }
+        searchRow(index, row);
+        processedRows.incrementAndGet();
+      });
     } catch (Exception e) {
       logger.log(Level.SEVERE, "Could not read file " + dataBaseFile, e);
       setStatus(TaskStatus.ERROR);
       setErrorMessage(e.toString());
+      return;
+    }
+    if (isCanceled()) {
+      return;
     }
     logger.info("Added " + matches.get() + " matches to possible precursors in library: "
-        + dataBaseFile.getAbsolutePath());
+                + dataBaseFile.getAbsolutePath());
 
     // Add task description to peakList
     peakList.addDescriptionOfAppliedTask(new SimpleFeatureListAppliedMethod(
@@ -154,85 +157,45 @@ class PrecursorDBSearchTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  private void searchRow(final SpectralLibraryPrecursorIndex index, final FeatureListRow row) {
+    final Range<Double> mzRange = mzTol.getToleranceRange(row.getAverageMZ());
+    // entries without rt are still used
+    final Float rowRT = row.getAverageRT();
+    final Range<Float> rtRange =
+        useRT && rtTol != null && rowRT != null ? rtTol.getToleranceRange(rowRT) : null;
+
+    index.forEachInRange(mzRange, rtRange, null, db -> {
+      // add identity
+      row.addFeatureIdentity(new PrecursorDBFeatureIdentity(db, PrecursorDBSearchModule.MODULE_NAME),
+          false);
+      matches.getAndIncrement();
+    });
+  }
+
   /**
-   * Load all library entries from data base file
-   *
-   * @param dataBaseFile
-   * @return
+   * Reuses the index of the library if it was already imported into the project, otherwise loads
+   * all library entries from the data base file
    */
-  private List<AbstractTask> parseFile(File dataBaseFile)
+  private SpectralLibraryPrecursorIndex getPrecursorIndex(File dataBaseFile)
       throws UnsupportedFormatException, IOException {
-    //
-    List<AbstractTask> tasks = new ArrayList<>();
-    AutoLibraryParser parser = new AutoLibraryParser(100, new LibraryEntryProcessor() {
+    for (final SpectralLibrary library : ProjectService.getProject()
+        .getCurrentSpectralLibraries()) {
+      if (library.getPath().equals(dataBaseFile)) {
+        return library.getPrecursorIndex();
+      }
+    }
+
+    final List<SpectralLibraryEntry> entries = new ArrayList<>();
+    AutoLibraryParser parser = new AutoLibraryParser(1000, new LibraryEntryProcessor() {
       @Override
       public void processNextEntries(List<SpectralLibraryEntry> list, int alreadyProcessed) {
-
-        AbstractTask task = new AbstractTask(null, Instant.now()) {
-          private final int total = peakList.getNumberOfRows();
-          private int done = 0;
-
-          @Override
-          public void run() {
-            for (FeatureListRow row : peakList.getRows()) {
-              if (this.isCanceled()) {
-                break;
-              }
-              for (SpectralLibraryEntry db : list) {
-                if (this.isCanceled()) {
-                  break;
-                }
-
-                if (checkRT(row, (Float) db.getField(DBEntryField.RT).orElse(null)) && checkMZ(row,
-                    db.getPrecursorMZ())) {
-                  // add identity
-                  row.addFeatureIdentity(
-                      new PrecursorDBFeatureIdentity(db, PrecursorDBSearchModule.MODULE_NAME),
-                      false);
-                  matches.getAndIncrement();
-                }
-              }
-              done++;
-            }
-
-            if (!this.isCanceled()) {
-              setStatus(TaskStatus.FINISHED);
-            }
-          }
-
-          @Override
-          public String getTaskDescription() {
-            return "Checking for precursors: " + alreadyProcessed + 1 + " - " + alreadyProcessed
-                + list.size();
-          }
-
-          @Override
-          public double getFinishedPercentage() {
-            if (total == 0) {
-              return 0;
-            }
-            return done / (double) total;
-          }
-        };
-
-        // start last task
-        MZmineCore.getTaskController().addTask(task);
-        tasks.add(task);
+        synchronized (entries) {
+          entries.addAll(list);
+        }
       }
     });
 
-    // return tasks
     parser.parse(this, dataBaseFile, null);
-    return tasks;
+    return SpectralLibraryPrecursorIndex.of(entries);
   }
-
-  protected boolean checkMZ(FeatureListRow row, Double mz) {
-    return mz != null && mzTol.checkWithinTolerance(row.getAverageMZ(), mz);
-  }
-
-  protected boolean checkRT(FeatureListRow row, Float rt) {
-    // if no rt is in the library still use
-    return !useRT || rtTol == null || rtTol.checkWithinTolerance(row.getAverageRT(), rt);
-  }
-
 }
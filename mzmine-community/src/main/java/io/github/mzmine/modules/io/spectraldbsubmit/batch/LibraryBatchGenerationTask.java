@@ -230,7 +230,7 @@ public class LibraryBatchGenerationTask extends AbstractTask {
     // handle chimerics
     final var chimericMap = handleChimericsAndFilterScansIfSelected(row, scans);
 
-    scans = selectMergeAndFilterScans(scans);
+    scans = selectMergeAndFilterScans(row, scans);
     // export
     exportAllMatches(writer, row, scans, matches, chimericMap);
   }
@@ -238,14 +238,15 @@ public class LibraryBatchGenerationTask extends AbstractTask {
   /**
    * Selects scans from the list, merges them if active, and filters for MS2 if selected
    *
+   * @param row   the row of the scans, merged spectra are cached for this row
    * @param scans input list of scans usually from a row
    * @return list of selected scans
    */
-  private List<Scan> selectMergeAndFilterScans(List<Scan> scans) {
+  private List<Scan> selectMergeAndFilterScans(final FeatureListRow row, List<Scan> scans) {
     if (enableMsnMerge) {
       // merge spectra, find best spectrum for each MSn node in the tree and each energy
       // filter after merging scans to also generate PSEUDO MS2 from MSn spectra
-      scans = selection.getAllFragmentSpectra(scans);
+      scans = selection.getAllFragmentSpectra(row, scans);
     } else {
       // filter scans if selection is only MS2
       if (postMergingMsLevelFilter.isFilter()) {
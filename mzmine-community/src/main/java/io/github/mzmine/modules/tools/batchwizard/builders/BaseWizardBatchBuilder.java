@@ -925,6 +925,7 @@ public abstract class BaseWizardBatchBuilder extends WizardBatchBuilder {
         .map(w -> w instanceof WorkflowDiaWizardParameters).orElse(false);
     boolean denormalize = massDetectorOption.getValueType() == FACTOR_OF_LOWEST_SIGNAL && !isDia;
     param.setParameter(MassDetectionParameters.denormalizeMSnScans, denormalize);
+    param.setParameter(MassDetectionParameters.mobilityScansOnDemand, false);
 
     param.setParameter(MassDetectionParameters.dataFiles,
         new RawDataFilesSelection(RawDataFilesSelectionType.BATCH_LAST_FILES));
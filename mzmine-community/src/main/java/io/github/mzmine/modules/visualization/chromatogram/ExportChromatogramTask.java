@@ -117,12 +117,13 @@ public class ExportChromatogramTask extends AbstractTask {
       writer.newLine();
 
       // Write the data points.
-      final int itemCount = dataSet.getItemCount(0);
+      // all scans, not only the displayed ones
+      final int itemCount = dataSet.getNumberOfScans();
       progressMax = itemCount;
       for (int i = 0; i < itemCount; i++) {
 
         // Write (x, y) data point row.
-        writer.write(dataSet.getX(0, i) + "," + dataSet.getY(0, i));
+        writer.write(dataSet.getRetentionTime(i) + "," + dataSet.getIntensity(i));
         writer.newLine();
 
         progress = i + 1;
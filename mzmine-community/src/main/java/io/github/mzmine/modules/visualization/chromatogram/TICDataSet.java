@@ -27,7 +27,6 @@ package io.github.mzmine.modules.visualization.chromatogram;
 
 import com.google.common.collect.Range;
 import com.google.common.primitives.Ints;
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.Feature;
@@ -37,7 +36,6 @@ import io.github.mzmine.javafx.concurrent.threading.FxThread;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.scans.ScanUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -47,6 +45,7 @@ import java.util.logging.Logger;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import org.jetbrains.annotations.Nullable;
 import org.jfree.chart.axis.NumberAxis;
 
 /**
@@ -77,6 +76,14 @@ public class TICDataSet extends AbstractTaskXYZDataset {
   private double intensityMax;
   private TICVisualizerTab window;
   private String customSeriesKey = null;
+  private volatile TICPyramid pyramid;
+  private volatile boolean useScanNumberAsRt = false;
+  // indices of the displayed scans or null to display all scans
+  private volatile int @Nullable [] visibleIndices;
+  // last requested visible range, applied once the values are calculated
+  private double visibleRtMin = Double.NaN;
+  private double visibleRtMax = Double.NaN;
+  private int visibleMaxBins;
 
   /**
    * Create the data set.
@@ -207,25 +214,73 @@ public class TICDataSet extends AbstractTaskXYZDataset {
   @Override
   public Number getZ(final int series, final int item) {
 
-    return basePeakMZValues[item];
+    return basePeakMZValues[toScanIndex(item)];
   }
 
   @Override
   public int getItemCount(final int series) {
-
-    return processedScans;
+    final int[] visible = visibleIndices;
+    return visible == null ? processedScans : visible.length;
   }
 
   @Override
   public Number getX(final int series, final int item) {
 
-    return rtValues[item];
+    return rtValues[toScanIndex(item)];
   }
 
   @Override
   public Number getY(final int series, final int item) {
 
-    return intensityValues[item];
+    return intensityValues[toScanIndex(item)];
+  }
+
+  /**
+   * @return index of the scan displayed as this item
+   */
+  private int toScanIndex(final int item) {
+    final int[] visible = visibleIndices;
+    return visible == null ? item : visible[item];
+  }
+
+  /**
+   * @return the number of calculated scans, independent of the displayed items
+   */
+  public int getNumberOfScans() {
+    return processedScans;
+  }
+
+  public double getRetentionTime(final int scanIndex) {
+    return rtValues[scanIndex];
+  }
+
+  public double getIntensity(final int scanIndex) {
+    return intensityValues[scanIndex];
+  }
+
+  /**
+   * Displays the scans of the envelope of the visible retention time range at the resolution of
+   * the plot instead of all scans. Ranges with only a few scans are displayed completely. Needs to
+   * be called on the FX thread.
+   *
+   * @param rtMin   lower bound of the visible range
+   * @param rtMax   upper bound of the visible range
+   * @param maxBins the maximum number of bins, usually the width of the plot in pixels
+   */
+  public void updateVisibleRange(final double rtMin, final double rtMax, final int maxBins) {
+    visibleRtMin = rtMin;
+    visibleRtMax = rtMax;
+    visibleMaxBins = maxBins;
+    final TICPyramid pyramid = this.pyramid;
+    if (pyramid == null || useScanNumberAsRt) {
+      return;
+    }
+
+    final int[] indices = pyramid.getEnvelopeIndices(rtMin, rtMax, maxBins);
+    if (!Arrays.equals(indices, visibleIndices)) {
+      visibleIndices = indices;
+      fireDatasetChanged();
+    }
   }
 
   /**
@@ -238,10 +293,11 @@ public class TICDataSet extends AbstractTaskXYZDataset {
   public int getIndex(final double retentionTime, final double intensity) {
 
     int index = -1;
-    for (int i = 0; index < 0 && i < processedScans; i++) {
-
-      if (Math.abs(retentionTime - rtValues[i]) < EPSILON
-          && Math.abs(intensity - intensityValues[i]) < EPSILON) {
+    final int itemCount = getItemCount(0);
+    for (int i = 0; index < 0 && i < itemCount; i++) {
+      final int scanIndex = toScanIndex(i);
+      if (Math.abs(retentionTime - rtValues[scanIndex]) < EPSILON
+          && Math.abs(intensity - intensityValues[scanIndex]) < EPSILON) {
 
         index = i;
       }
@@ -251,7 +307,7 @@ public class TICDataSet extends AbstractTaskXYZDataset {
   }
 
   public Scan getScan(final int item) {
-    return scans.get(item);
+    return scans.get(toScanIndex(item));
   }
 
   public RawDataFile getDataFile() {
@@ -266,16 +322,18 @@ public class TICDataSet extends AbstractTaskXYZDataset {
    */
   public boolean isLocalMaximum(final int item) {
 
+    // local maximum of all scans, not only the displayed ones
+    final int index = toScanIndex(item);
     final boolean isLocalMaximum;
-    if (item <= 0 || item >= processedScans - 1) {
+    if (index <= 0 || index >= processedScans - 1) {
 
       isLocalMaximum = false;
 
     } else {
 
-      final double intensity = intensityValues[item];
+      final double intensity = intensityValues[index];
       isLocalMaximum =
-          intensityValues[item - 1] <= intensity && intensity >= intensityValues[item + 1];
+          intensityValues[index - 1] <= intensity && intensity >= intensityValues[index + 1];
     }
 
     return isLocalMaximum;
@@ -353,66 +411,44 @@ public class TICDataSet extends AbstractTaskXYZDataset {
       return;
     }
     // fix for imZML files without a retention time in their scans -> crashes TIC Plot
-    boolean useScanNumberAsRt = Double.compare(scans.get(0).getRetentionTime(),
+    useScanNumberAsRt = Double.compare(scans.get(0).getRetentionTime(),
         scans.get(scans.size() - 1).getRetentionTime()) == 0;
     if (useScanNumberAsRt && window != null) {
       final NumberAxis axis = (NumberAxis) window.getTICPlot().getXYPlot().getDomainAxis();
       FxThread.runLater(() -> axis.setLabel("Scan number"));
     }
 
-    // Process each scan.
-    for (int index = 0; status != TaskStatus.CANCELED && index < totalScans; index++) {
-
-      // Current scan.
-      final Scan scan = scans.get(index);
-
-      // Determine base peak value.
-      DataPoint basePeak = ScanUtils.findBasePeak(scan, mzRange);
-      Double basePeakIntensity = null;
-
-      if (basePeak != null) {
-        basePeakMZValues[index] = basePeak.getMZ();
-        basePeakIntensity = basePeak.getIntensity();
-      }
-
-      // Determine peak intensity.
-      double intensity = 0.0;
-      if (plotType == TICPlotType.TIC) {
-
-        // Total ion count.
-        if (scan.getDataPointMZRange() != null) {
-          intensity = mzRange.encloses(scan.getDataPointMZRange()) ? scan.getTIC() : ScanUtils.calculateTIC(scan, mzRange);
-        }
-
-      } else if (plotType == TICPlotType.BASEPEAK && basePeakIntensity != null) {
-
-        intensity = basePeakIntensity;
-      }
-
-      intensityValues[index] = intensity;
-      rtValues[index] = useScanNumberAsRt ? scan.getScanNumber() : scan.getRetentionTime();
-
-      // Update min and max.
-      if (index == 0) {
-
-        intensityMin = intensity;
-        intensityMax = intensity;
-
-      } else {
-
-        intensityMin = Math.min(intensity, intensityMin);
-        intensityMax = Math.max(intensity, intensityMax);
-      }
+    // intensities of all scans, cached per raw data file
+    final TICPyramid pyramid = TICPyramid.getOrCompute(dataFile, scans, mzRange, plotType,
+        () -> status == TaskStatus.CANCELED);
+    if (pyramid == null || status == TaskStatus.CANCELED) {
+      return;
+    }
 
-      processedScans++;
+    for (int index = 0; index < totalScans; index++) {
+      basePeakMZValues[index] = pyramid.getBasePeakMz(index);
+      intensityValues[index] = pyramid.getIntensity(index);
+      rtValues[index] =
+          useScanNumberAsRt ? scans.get(index).getScanNumber() : pyramid.getRetentionTime(index);
     }
+    intensityMin = pyramid.getMinIntensity();
+    intensityMax = pyramid.getMaxIntensity();
+    this.pyramid = pyramid;
+    processedScans = totalScans;
   }
 
   /**
    * Notify data set listener (on the EDT).
    */
   private void refresh() {
-    Platform.runLater(() -> fireDatasetChanged());
+    Platform.runLater(() -> {
+      final TICPyramid pyramid = this.pyramid;
+      if (pyramid != null && !useScanNumberAsRt && !Double.isNaN(visibleRtMin)) {
+        // reduce to the range that was requested while the values were calculated
+        visibleIndices = pyramid.getEnvelopeIndices(visibleRtMin, visibleRtMax, visibleMaxBins);
+      }
+      fireDatasetChanged();
+    });
   }
 
   public void setCustomSeriesKey(String customSeriesKey) {
@@ -36,6 +36,8 @@ import io.github.mzmine.gui.chartbasics.gestures.ChartGesture.Event;
 import io.github.mzmine.gui.chartbasics.gestures.ChartGesture.GestureButton;
 import io.github.mzmine.gui.chartbasics.gestures.ChartGestureHandler;
 import io.github.mzmine.gui.chartbasics.gui.javafx.EChartViewer;
+import io.github.mzmine.gui.chartbasics.gui.wrapper.ChartViewWrapper;
+import io.github.mzmine.gui.chartbasics.listener.AxisRangeChangedListener;
 import io.github.mzmine.gui.chartbasics.listener.ZoomHistory;
 import io.github.mzmine.main.MZmineCore;
 import java.awt.Color;
@@ -56,6 +58,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.event.ChartProgressEvent;
 import org.jfree.chart.labels.XYItemLabelGenerator;
 import org.jfree.chart.labels.XYToolTipGenerator;
@@ -67,6 +70,7 @@ import org.jfree.chart.renderer.xy.XYItemRenderer;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import org.jfree.chart.title.LegendTitle;
 import org.jfree.chart.title.TextTitle;
+import org.jfree.data.Range;
 import org.jfree.data.xy.XYDataset;
 
 /**
@@ -180,6 +184,18 @@ public class TICPlot extends EChartViewer implements LabelColorMatch {
     xAxis.setNumberFormatOverride(MZmineCore.getConfiguration().getRTFormat());
     xAxis.setUpperMargin(AXIS_MARGINS);
     xAxis.setLowerMargin(AXIS_MARGINS);
+    // display the chromatograms at the resolution of the visible range
+    xAxis.addChangeListener(new AxisRangeChangedListener(null) {
+      @Override
+      public void axisRangeChanged(@Nullable ChartViewWrapper chart, ValueAxis axis, Range lastR,
+          Range newR) {
+        for (int i = 0; i < JFreeChartUtils.getDatasetCountNullable(plot); i++) {
+          if (plot.getDataset(i) instanceof TICDataSet dataSet) {
+            updateVisibleRange(dataSet, newR);
+          }
+        }
+      }
+    });
 
     // Set the y-axis (intensity) properties.
     final NumberAxis yAxis = (NumberAxis) plot.getRangeAxis();
@@ -403,7 +419,17 @@ public class TICPlot extends EChartViewer implements LabelColorMatch {
                                          + "' does not have a compatible plotType. Expected '"
                                          + this.getPlotType().toString() + "'");
     }
-    return addDataSetAndRenderer(dataSet, renderer);
+    final int index = addDataSetAndRenderer(dataSet, renderer);
+    updateVisibleRange(dataSet, plot.getDomainAxis().getRange());
+    return index;
+  }
+
+  /**
+   * Reduces the displayed scans of the data set to the resolution of this plot
+   */
+  private void updateVisibleRange(TICDataSet dataSet, Range range) {
+    final int width = (int) (getWidth() > 0 ? getWidth() : getPrefWidth());
+    dataSet.updateVisibleRange(range.getLowerBound(), range.getUpperBound(), Math.max(width, 1));
   }
 
   /**
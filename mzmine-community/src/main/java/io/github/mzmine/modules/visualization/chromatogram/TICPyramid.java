@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.chromatogram;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.scans.ScanUtils;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * TIC or base peak chromatogram of a scan selection with a multi-resolution pyramid of the scans
+ * with the minimum and maximum intensity. Level 0 holds one value per scan, every following level
+ * combines {@link #BIN_WIDTH} bins of the previous level. Pyramids are kept on the heap and cached
+ * per file, so re-opening, zooming or switching back to a previous m/z range does not iterate the
+ * scans again.
+ */
+public class TICPyramid {
+
+  public static final int BIN_WIDTH = 4;
+  private static final int MAX_CACHED_PER_FILE = 8;
+
+  /**
+   * The values hold no reference to the raw data file or its scans, otherwise the weak keys would
+   * never be released.
+   */
+  private static final Map<RawDataFile, Map<Key, TICPyramid>> cache = Collections.synchronizedMap(
+      new WeakHashMap<>());
+
+  private final double[] retentionTimes;
+  private final double[] intensities;
+  private final double[] basePeakMzs;
+  private final List<Level> levels;
+
+  private TICPyramid(double[] retentionTimes, double[] intensities, double[] basePeakMzs,
+      List<Level> levels) {
+    this.retentionTimes = retentionTimes;
+    this.intensities = intensities;
+    this.basePeakMzs = basePeakMzs;
+    this.levels = levels;
+  }
+
+  /**
+   * @param isCanceled stops the calculation
+   * @return the cached pyramid of these scans, a newly computed one or null if the calculation was
+   * canceled
+   */
+  public static @Nullable TICPyramid getOrCompute(@NotNull RawDataFile file,
+      @NotNull List<Scan> scans, @NotNull Range<Double> mzRange, @NotNull TICPlotType plotType,
+      @NotNull BooleanSupplier isCanceled) {
+    final IntArrayList scanNumbers = new IntArrayList(scans.size());
+    scans.forEach(scan -> scanNumbers.add(scan.getScanNumber()));
+    final Key key = new Key(scanNumbers, mzRange, plotType);
+
+    final Map<Key, TICPyramid> fileCache = cache.computeIfAbsent(file,
+        _ -> Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, TICPyramid> eldest) {
+            return size() > MAX_CACHED_PER_FILE;
+          }
+        }));
+
+    final TICPyramid cached = fileCache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final TICPyramid pyramid = compute(scans, mzRange, plotType, isCanceled);
+    if (pyramid != null) {
+      fileCache.put(key, pyramid);
+    }
+    return pyramid;
+  }
+
+  /**
+   * Calculates the intensities of all scans in parallel and builds the pyramid levels.
+   *
+   * @param isCanceled stops the calculation
+   * @return the pyramid or null if the calculation was canceled
+   */
+  public static @Nullable TICPyramid compute(@NotNull List<Scan> scans,
+      @NotNull Range<Double> mzRange, @NotNull TICPlotType plotType,
+      @NotNull BooleanSupplier isCanceled) {
+    final int numScans = scans.size();
+    final double[] rts = new double[numScans];
+    final double[] intensities = new double[numScans];
+    final double[] basePeakMzs = new double[numScans];
+
+    IntStream.range(0, numScans).parallel().forEach(index -> {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      final Scan scan = scans.get(index);
+      rts[index] = scan.getRetentionTime();
+
+      final DataPoint basePeak = ScanUtils.findBasePeak(scan, mzRange);
+      if (basePeak != null) {
+        basePeakMzs[index] = basePeak.getMZ();
+      }
+
+      intensities[index] = switch (plotType) {
+        case TIC -> {
+          final Range<Double> scanMzRange = scan.getDataPointMZRange();
+          if (scanMzRange == null) {
+            yield 0d;
+          }
+          yield mzRange.encloses(scanMzRange) ? scan.getTIC()
+              : ScanUtils.calculateTIC(scan, mzRange);
+        }
+        case BASEPEAK -> basePeak != null ? basePeak.getIntensity() : 0d;
+      };
+    });
+    if (isCanceled.getAsBoolean()) {
+      return null;
+    }
+
+    final List<Level> levels = new ArrayList<>();
+    int[] min = IntStream.range(0, numScans).toArray();
+    int[] max = min;
+    int binWidth = 1;
+    while (min.length > 1) {
+      final int numBins = (min.length + BIN_WIDTH - 1) / BIN_WIDTH;
+      final int[] nextMin = new int[numBins];
+      final int[] nextMax = new int[numBins];
+      for (int bin = 0; bin < numBins; bin++) {
+        final int from = bin * BIN_WIDTH;
+        final int to = Math.min(from + BIN_WIDTH, min.length);
+        int binMin = min[from];
+        int binMax = max[from];
+        for (int i = from + 1; i < to; i++) {
+          if (intensities[min[i]] < intensities[binMin]) {
+            binMin = min[i];
+          }
+          if (intensities[max[i]] > intensities[binMax]) {
+            binMax = max[i];
+          }
+        }
+        nextMin[bin] = binMin;
+        nextMax[bin] = binMax;
+      }
+      min = nextMin;
+      max = nextMax;
+      binWidth *= BIN_WIDTH;
+      levels.add(new Level(binWidth, min, max));
+    }
+
+    return new TICPyramid(rts, intensities, basePeakMzs, levels);
+  }
+
+  public int getNumberOfScans() {
+    return retentionTimes.length;
+  }
+
+  public double getRetentionTime(int index) {
+    return retentionTimes[index];
+  }
+
+  public double getIntensity(int index) {
+    return intensities[index];
+  }
+
+  /**
+   * @return the m/z of the base peak within the m/z range or 0 if there was no signal
+   */
+  public double getBasePeakMz(int index) {
+    return basePeakMzs[index];
+  }
+
+  public double getMinIntensity() {
+    return intensities.length == 0 ? 0d
+        : levels.isEmpty() ? intensities[0] : intensities[levels.getLast().min[0]];
+  }
+
+  public double getMaxIntensity() {
+    return intensities.length == 0 ? 0d
+        : levels.isEmpty() ? intensities[0] : intensities[levels.getLast().max[0]];
+  }
+
+  /**
+   * Reduces the scans within the retention time range to the scans with the minimum and maximum
+   * intensity of at most maxBins bins (or the next coarser level of the pyramid, if the range does
+   * not align with the bins). The first and last scan of the range and their outer neighbors are
+   * always included, so that lines continue to the edges and the data bounds do not change.
+   *
+   * @param rtMin   lower bound of the retention time range, e.g., of the current axis
+   * @param rtMax   upper bound of the retention time range
+   * @param maxBins the maximum number of bins, e.g., the width of the plot in pixels
+   * @return sorted indices of the scans in the envelope or null if all scans in the range are
+   * needed to display them at this resolution
+   */
+  public int @Nullable [] getEnvelopeIndices(double rtMin, double rtMax, int maxBins) {
+    final int from = BinarySearch.lowerBound(retentionTimes, rtMin);
+    final int to = BinarySearch.lowerBound(retentionTimes, Math.nextUp(rtMax));
+    // two scans per bin
+    if (to - from <= 2 * maxBins || levels.isEmpty()) {
+      return null;
+    }
+
+    Level level = levels.getFirst();
+    for (final Level next : levels) {
+      level = next;
+      if (to / next.binWidth - from / next.binWidth < maxBins) {
+        break;
+      }
+    }
+
+    final int firstBin = from / level.binWidth;
+    final int lastBin = (to - 1) / level.binWidth;
+    final IntArrayList indices = new IntArrayList(2 * (lastBin - firstBin + 1) + 4);
+    // all scans of the first and last bin are within the range or outer neighbors
+    addIfValid(indices, from - 1);
+    addIfValid(indices, from);
+    for (int bin = firstBin; bin <= lastBin; bin++) {
+      final int min = level.min[bin];
+      final int max = level.max[bin];
+      // keep the rt order within the bin
+      addIfValid(indices, Math.min(min, max));
+      addIfValid(indices, Math.max(min, max));
+    }
+    addIfValid(indices, to - 1);
+    addIfValid(indices, to);
+
+    final int[] sorted = indices.toIntArray();
+    Arrays.sort(sorted);
+    return IntStream.of(sorted).distinct().toArray();
+  }
+
+  private void addIfValid(IntArrayList indices, int index) {
+    if (index >= 0 && index < retentionTimes.length) {
+      indices.add(index);
+    }
+  }
+
+  private record Key(IntArrayList scanNumbers, Range<Double> mzRange, TICPlotType plotType) {
+
+  }
+
+  /**
+   * @param min index of the scan with the minimum intensity for each bin
+   * @param max index of the scan with the maximum intensity for each bin
+   */
+  private record Level(int binWidth, int[] min, int[] max) {
+
+  }
+}
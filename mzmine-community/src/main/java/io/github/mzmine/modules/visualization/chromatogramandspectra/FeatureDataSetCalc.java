@@ -143,6 +143,8 @@ public class FeatureDataSetCalc extends AbstractTask {
         scanDataType, this);
     extractFunction.setMzMode(mzMode);
     extractFunction.setIntensityMode(intensityMode);
+    // the same scans are extracted again when the selection changes
+    extractFunction.setUseIndex(true);
 
     BuildingIonSeries[] ionSeries = extractFunction.get();
 
@@ -118,4 +118,17 @@ public class SampleTypeFilter {
   public boolean isEmpty() {
     return types.isEmpty();
   }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    return o instanceof SampleTypeFilter that && types.equals(that.types);
+  }
+
+  @Override
+  public int hashCode() {
+    return types.hashCode();
+  }
 }
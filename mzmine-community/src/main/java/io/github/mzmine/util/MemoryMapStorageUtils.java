@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.Nullable;
+import sun.misc.Unsafe;
+
+/**
+ * Releases the memory mapped files of a {@link MemoryMapStorage} before it is garbage collected.
+ */
+public class MemoryMapStorageUtils {
+
+  private static final Logger logger = Logger.getLogger(MemoryMapStorageUtils.class.getName());
+
+  private static Unsafe theUnsafe;
+  private static boolean unsafeUnavailable = false;
+
+  private MemoryMapStorageUtils() {
+  }
+
+  /**
+   * Unmaps and deletes the files of this storage. The storage must not be accessed afterwards.
+   *
+   * @return true if the storage was discarded
+   */
+  public static boolean discard(@Nullable MemoryMapStorage storage) {
+    if (storage == null) {
+      return false;
+    }
+    final Unsafe unsafe = getUnsafe();
+    if (unsafe == null) {
+      return false;
+    }
+    try {
+      storage.discard(unsafe);
+      return true;
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot discard memory map storage. " + e.getMessage(), e);
+      return false;
+    }
+  }
+
+  /**
+   * Taken from https://stackoverflow.com/a/48821002
+   *
+   * @return Instance {@link Unsafe} or null.
+   * @author https://github.com/SteffenHeu
+   */
+  @Nullable
+  public static synchronized Unsafe getUnsafe() {
+    if (theUnsafe != null || unsafeUnavailable) {
+      return theUnsafe;
+    }
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method clean = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      clean.setAccessible(true);
+      Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafeField.setAccessible(true);
+      theUnsafe = (Unsafe) theUnsafeField.get(null);
+    } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException |
+             NoSuchFieldException | ClassCastException e) {
+      // jdk.internal.misc.Unsafe doesn't yet have an invokeCleaner() method,
+      // but that method should be added if sun.misc.Unsafe is removed.
+      unsafeUnavailable = true;
+      logger.log(Level.WARNING, "Cannot access Unsafe to discard storage. " + e.getMessage(), e);
+    }
+    return theUnsafe;
+  }
+}
@@ -31,9 +31,11 @@ import io.github.mzmine.datamodel.PrecursorIonTree;
 import io.github.mzmine.datamodel.PrecursorIonTreeNode;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.parameters.parametertypes.combowithinput.MsLevelFilter;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.scans.MergedFragmentScanCache.Settings;
 import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -72,7 +74,36 @@ public record FragmentScanSelection(@NotNull MZTolerance mzTol, boolean mergeSep
   }
 
   public List<Scan> getAllFragmentSpectra(final FeatureListRow row) {
-    return getAllFragmentSpectra(row.getAllFragmentScans());
+    return getAllFragmentSpectra(row, row.getAllFragmentScans());
+  }
+
+  /**
+   * Same as {@link #getAllFragmentSpectra(List)} but the result is cached in the feature list of
+   * the row for the settings of this selection. Other tasks and visualizers merging the same row
+   * with the same settings reuse the merged spectra as long as the input scans did not change.
+   *
+   * @param row   the row of the scans
+   * @param scans prefiltered list of scans of this row
+   * @return list of merged and single scans
+   */
+  public @NotNull List<Scan> getAllFragmentSpectra(final FeatureListRow row,
+      final List<Scan> scans) {
+    if (scans.size() <= 1) {
+      return scans;
+    }
+    if (!(row.getFeatureList() instanceof ModularFeatureList flist)) {
+      return getAllFragmentSpectra(scans);
+    }
+
+    final List<Scan> merged = flist.getMergedFragmentScanCache()
+        .getOrCompute(row, getCacheSettings(), scans, () -> getAllFragmentSpectra(scans));
+    // make sure its mutable
+    return new ArrayList<>(merged);
+  }
+
+  private Settings getCacheSettings() {
+    return new Settings(mzTol, mergeSeparateEnergies, inputSpectra, intensityMergeType,
+        msLevelFilter, storage);
   }
 
   /**
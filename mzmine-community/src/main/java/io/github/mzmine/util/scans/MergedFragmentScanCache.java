@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.parameters.parametertypes.combowithinput.MsLevelFilter;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.scans.FragmentScanSelection.IncludeInputSpectra;
+import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of the merged fragment spectra of the rows of one feature list. Library matching, library
+ * generation and the visualizers often merge the same rows with the same settings, so the results
+ * are keyed by the row ID and the merging settings. An entry is only reused if the input scans are
+ * still the same instances, so changing the fragment scans of a row invalidates its entries.
+ * <p>
+ * The number of entries is limited and the merged spectra are only softly referenced, so the cache
+ * never keeps spectra alive under memory pressure.
+ */
+public class MergedFragmentScanCache {
+
+  private static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+  private final Map<Key, SoftReference<Entry>> cache;
+
+  public MergedFragmentScanCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * @param maxEntries the least recently used entries are removed above this size
+   */
+  public MergedFragmentScanCache(final int maxEntries) {
+    cache = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<Entry>> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @param row       the row the scans belong to
+   * @param settings  the merging settings
+   * @param scans     the input scans
+   * @param computeFn computes the merged spectra if there is no valid entry
+   * @return the cached or newly computed list of merged and single spectra
+   */
+  public @NotNull List<Scan> getOrCompute(@NotNull FeatureListRow row, @NotNull Settings settings,
+      @NotNull List<Scan> scans, @NotNull Supplier<List<Scan>> computeFn) {
+    final Key key = new Key(row.getID(), settings);
+    final SoftReference<Entry> reference;
+    synchronized (cache) {
+      reference = cache.get(key);
+    }
+    final Entry cached = reference == null ? null : reference.get();
+    if (cached != null && cached.isValidFor(scans)) {
+      return cached.merged();
+    }
+
+    // copy the input, the list of the row may be changed afterwards
+    final List<Scan> inputScans = List.copyOf(scans);
+    final List<Scan> merged = List.copyOf(computeFn.get());
+    synchronized (cache) {
+      cache.put(key, new SoftReference<>(new Entry(inputScans, merged)));
+    }
+    return merged;
+  }
+
+  /**
+   * Removes all entries
+   */
+  public void clear() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * @return the number of entries, including entries that were already released
+   */
+  public int size() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  /**
+   * All settings of a {@link FragmentScanSelection} that change the merged spectra. The storage is
+   * part of the settings, so that selections without storage never receive memory mapped spectra.
+   */
+  public record Settings(@NotNull MZTolerance mzTol, boolean mergeSeparateEnergies,
+                         @NotNull IncludeInputSpectra inputSpectra,
+                         @NotNull IntensityMergingType intensityMergeType,
+                         @NotNull MsLevelFilter msLevelFilter,
+                         @Nullable MemoryMapStorage storage) {
+
+  }
+
+  private record Key(int rowId, @NotNull Settings settings) {
+
+  }
+
+  private record Entry(@NotNull List<Scan> inputScans, @NotNull List<Scan> merged) {
+
+    /**
+     * @return true if the scans are the same instances in the same order
+     */
+    boolean isValidFor(@NotNull List<Scan> scans) {
+      if (scans.size() != inputScans.size()) {
+        return false;
+      }
+      for (int i = 0; i < scans.size(); i++) {
+        if (scans.get(i) != inputScans.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
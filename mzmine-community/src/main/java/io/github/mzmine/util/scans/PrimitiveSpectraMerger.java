@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.maths.CenterFunction;
+import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.Collection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Merges spectra on primitive arrays. All signals are concatenated and sorted once by m/z, the
+ * merge ranges are tracked by the m/z sorted positions they cover. Signals are assigned in the
+ * same order and with the same range rules as the former {@link com.google.common.collect.RangeMap}
+ * implementation, which SpectraMergingTest keeps as reference: the most intense signal opens
+ * a range of its m/z tolerance that is cut at existing ranges, less intense signals within a range
+ * are merged into it and only the most intense signal of each spectrum is kept per range.
+ */
+final class PrimitiveSpectraMerger {
+
+  private final double[] mzs;
+  private final double[] intensities;
+  private final int[] spectrumIndices;
+  private final int numSignals;
+
+  // signals in m/z order and the range covering each m/z sorted position
+  private final double[] sortedMzs;
+  private final int[] coveringRange;
+
+  // a range is stored as lower and upper cut, a cut above the value excludes the value for lower
+  // cuts and includes it for upper cuts
+  private final double[] lowerValues;
+  private final boolean[] lowerAbove;
+  private final double[] upperValues;
+  private final boolean[] upperAbove;
+  private final boolean[] removed;
+  private int numRanges = 0;
+
+  // signals of a range as linked list in assignment order
+  private final int[] firstSignal;
+  private final int[] lastSignal;
+  private final int[] nextSignal;
+
+  private PrimitiveSpectraMerger(final double[] mzs, final double[] intensities,
+      final int[] spectrumIndices, final int numSignals) {
+    this.mzs = mzs;
+    this.intensities = intensities;
+    this.spectrumIndices = spectrumIndices;
+    this.numSignals = numSignals;
+
+    sortedMzs = new double[numSignals];
+    coveringRange = new int[numSignals];
+    lowerValues = new double[numSignals];
+    lowerAbove = new boolean[numSignals];
+    upperValues = new double[numSignals];
+    upperAbove = new boolean[numSignals];
+    removed = new boolean[numSignals];
+    firstSignal = new int[numSignals];
+    lastSignal = new int[numSignals];
+    nextSignal = new int[numSignals];
+  }
+
+  /**
+   * Same parameters and result as
+   * {@link SpectraMerging#calculatedMergedMzsAndIntensities(Collection, MZTolerance,
+   * IntensityMergingType, CenterFunction, Double, Double, Integer)}
+   */
+  static <T extends MassSpectrum> double[][] merge(@NotNull final Collection<T> source,
+      @NotNull final MZTolerance tolerance,
+      @NotNull final IntensityMergingType intensityMergingType,
+      @NotNull final CenterFunction mzCenterFunction, @Nullable final Double inputNoiseLevel,
+      @Nullable final Double outputNoiseLevel, @Nullable final Integer minNumPeaks) {
+    int totalDp = 0;
+    int maxDp = 0;
+    for (T spectrum : source) {
+      totalDp += spectrum.getNumberOfDataPoints();
+      maxDp = Math.max(maxDp, spectrum.getNumberOfDataPoints());
+    }
+
+    final double[] mzs = new double[totalDp];
+    final double[] intensities = new double[totalDp];
+    final int[] spectrumIndices = new int[totalDp];
+    final double[] rawMzs = new double[maxDp];
+    final double[] rawIntensities = new double[maxDp];
+
+    int numSignals = 0;
+    int index = 0;
+    for (T spectrum : source) {
+      // some spectra return their own arrays instead of writing into the buffer
+      final double[] spectrumMzs = spectrum.getMzValues(rawMzs);
+      final double[] spectrumIntensities = spectrum.getIntensityValues(rawIntensities);
+
+      for (int i = 0; i < spectrum.getNumberOfDataPoints(); i++) {
+        if (inputNoiseLevel == null || spectrumIntensities[i] > inputNoiseLevel) {
+          mzs[numSignals] = spectrumMzs[i];
+          intensities[numSignals] = spectrumIntensities[i];
+          spectrumIndices[numSignals] = index;
+          numSignals++;
+        }
+      }
+      index++;
+    }
+
+    final PrimitiveSpectraMerger merger = new PrimitiveSpectraMerger(mzs, intensities,
+        spectrumIndices, numSignals);
+    merger.assignSignals(tolerance);
+    return merger.calculateMerged(intensityMergingType, mzCenterFunction, outputNoiseLevel,
+        minNumPeaks);
+  }
+
+  private void assignSignals(@NotNull final MZTolerance tolerance) {
+    final int[] byMz = new int[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      byMz[i] = i;
+    }
+    IntArrays.quickSort(byMz, (a, b) -> Double.compare(mzs[a], mzs[b]));
+    final int[] sortedPosition = new int[numSignals];
+    for (int pos = 0; pos < numSignals; pos++) {
+      sortedMzs[pos] = mzs[byMz[pos]];
+      sortedPosition[byMz[pos]] = pos;
+    }
+    Arrays.fill(coveringRange, -1);
+
+    // descending intensity, then descending m/z like the DataPointSorter, then input order
+    final int[] byIntensity = byMz;
+    IntArrays.quickSort(byIntensity, (a, b) -> {
+      int result = Double.compare(intensities[b], intensities[a]);
+      if (result == 0) {
+        result = Double.compare(mzs[b], mzs[a]);
+      }
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+
+    for (final int signal : byIntensity) {
+      int range = coveringRange[sortedPosition[signal]];
+      if (range == -1) {
+        range = addRange(tolerance, mzs[signal]);
+        if (range == -1) {
+          // empty range, the signal is dropped
+          continue;
+        }
+      }
+
+      nextSignal[signal] = -1;
+      if (firstSignal[range] == -1) {
+        firstSignal[range] = signal;
+      } else {
+        nextSignal[lastSignal[range]] = signal;
+      }
+      lastSignal[range] = signal;
+    }
+  }
+
+  /**
+   * Creates a new range from the tolerance range of the m/z, cut at existing ranges so no ranges
+   * overlap. Existing ranges within the new range are removed.
+   *
+   * @return the index of the range or -1 if the range is empty
+   */
+  private int addRange(@NotNull final MZTolerance tolerance, final double mz) {
+    final double absTolerance = tolerance.getMzToleranceForMass(mz);
+    double lower = mz - absTolerance;
+    double upper = mz + absTolerance;
+    boolean lowerIsAbove = false;
+    boolean upperIsAbove = true;
+
+    while (true) {
+      final int lowerRange = findRange(
+          lowerIsAbove ? lower + SpectraMerging.EPSILON : lower);
+      final int upperRange = findRange(
+          upperIsAbove ? upper : upper - SpectraMerging.EPSILON);
+
+      final boolean cutLower = lowerRange != -1 && intersects(lowerRange, lower, lowerIsAbove,
+          upper, upperIsAbove);
+      final boolean cutUpper = upperRange != -1 && intersects(upperRange, lower, lowerIsAbove,
+          upper, upperIsAbove);
+      if (!cutLower && !cutUpper) {
+        break;
+      }
+      if (cutLower) {
+        lower = upperValues[lowerRange];
+        lowerIsAbove = true;
+      }
+      if (cutUpper) {
+        upper = lowerValues[upperRange];
+        upperIsAbove = false;
+      }
+    }
+
+    if (compareCuts(lower, lowerIsAbove, upper, upperIsAbove) >= 0) {
+      return -1;
+    }
+
+    final int range = numRanges++;
+    lowerValues[range] = lower;
+    lowerAbove[range] = lowerIsAbove;
+    upperValues[range] = upper;
+    upperAbove[range] = upperIsAbove;
+    firstSignal[range] = -1;
+
+    int pos = lowerIsAbove ? firstPositionAbove(lower) : firstPositionAtOrAbove(lower);
+    for (; pos < numSignals && isBelowUpper(range, sortedMzs[pos]); pos++) {
+      if (coveringRange[pos] != -1) {
+        removed[coveringRange[pos]] = true;
+      }
+      coveringRange[pos] = range;
+    }
+    return range;
+  }
+
+  /**
+   * A range that contains the value covers one of the signals next to the value, because every
+   * range contains the signal it was created for.
+   *
+   * @return the range containing the value or -1
+   */
+  private int findRange(final double value) {
+    final int pos = firstPositionAtOrAbove(value);
+    if (pos > 0 && coveringRange[pos - 1] != -1 && contains(coveringRange[pos - 1], value)) {
+      return coveringRange[pos - 1];
+    }
+    if (pos < numSignals && coveringRange[pos] != -1 && contains(coveringRange[pos], value)) {
+      return coveringRange[pos];
+    }
+    return -1;
+  }
+
+  private boolean contains(final int range, final double value) {
+    final boolean aboveLower =
+        lowerAbove[range] ? lowerValues[range] < value : lowerValues[range] <= value;
+    return aboveLower && isBelowUpper(range, value);
+  }
+
+  private boolean isBelowUpper(final int range, final double value) {
+    return upperAbove[range] ? value <= upperValues[range] : value < upperValues[range];
+  }
+
+  private boolean intersects(final int range, final double lower, final boolean lowerIsAbove,
+      final double upper, final boolean upperIsAbove) {
+    final boolean maxLowerIsRange =
+        compareCuts(lowerValues[range], lowerAbove[range], lower, lowerIsAbove) > 0;
+    final boolean minUpperIsRange =
+        compareCuts(upperValues[range], upperAbove[range], upper, upperIsAbove) < 0;
+    return compareCuts(maxLowerIsRange ? lowerValues[range] : lower,
+        maxLowerIsRange ? lowerAbove[range] : lowerIsAbove,
+        minUpperIsRange ? upperValues[range] : upper,
+        minUpperIsRange ? upperAbove[range] : upperIsAbove) < 0;
+  }
+
+  private static int compareCuts(final double value1, final boolean above1, final double value2,
+      final boolean above2) {
+    final int result = Double.compare(value1, value2);
+    return result != 0 ? result : Boolean.compare(above1, above2);
+  }
+
+  private int firstPositionAtOrAbove(final double value) {
+    int low = 0;
+    int high = numSignals;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sortedMzs[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private int firstPositionAbove(final double value) {
+    int low = 0;
+    int high = numSignals;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sortedMzs[mid] <= value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private double[][] calculateMerged(@NotNull final IntensityMergingType intensityMergingType,
+      @NotNull final CenterFunction mzCenterFunction, @Nullable final Double outputNoiseLevel,
+      @Nullable final Integer minNumPeaks) {
+    // ranges in m/z order
+    final int[] ranges = new int[numRanges];
+    int numMerged = 0;
+    for (int range = 0; range < numRanges; range++) {
+      if (!removed[range]) {
+        ranges[numMerged++] = range;
+      }
+    }
+    IntArrays.quickSort(ranges, 0, numMerged,
+        (a, b) -> compareCuts(lowerValues[a], lowerAbove[a], lowerValues[b], lowerAbove[b]));
+
+    final double[] newMzs = new double[numMerged];
+    final double[] newIntensities = new double[numMerged];
+    int numValues = 0;
+
+    final int[] rangeSignals = new int[numSignals];
+    final int[] assignmentOrder = new int[numSignals];
+    for (int r = 0; r < numMerged; r++) {
+      int numRangeSignals = 0;
+      for (int signal = firstSignal[ranges[r]]; signal != -1; signal = nextSignal[signal]) {
+        assignmentOrder[signal] = numRangeSignals;
+        rangeSignals[numRangeSignals++] = signal;
+      }
+      // by spectrum, only the first assigned signal of a spectrum is kept
+      IntArrays.quickSort(rangeSignals, 0, numRangeSignals, (a, b) -> {
+        final int result = Integer.compare(spectrumIndices[a], spectrumIndices[b]);
+        return result != 0 ? result : Integer.compare(assignmentOrder[a], assignmentOrder[b]);
+      });
+      int numUnique = 0;
+      for (int i = 0; i < numRangeSignals; i++) {
+        if (numUnique == 0 || spectrumIndices[rangeSignals[i]] != spectrumIndices[rangeSignals[
+            numUnique - 1]]) {
+          rangeSignals[numUnique++] = rangeSignals[i];
+        }
+      }
+
+      if (minNumPeaks != null && numUnique < minNumPeaks) {
+        continue;
+      }
+
+      final double[] mzs = new double[numUnique];
+      final double[] intensities = new double[numUnique];
+      for (int i = 0; i < numUnique; i++) {
+        mzs[i] = this.mzs[rangeSignals[i]];
+        intensities[i] = this.intensities[rangeSignals[i]];
+      }
+
+      final double newMz = mzCenterFunction.calcCenter(mzs, intensities);
+      final double newIntensity = switch (intensityMergingType) {
+        case SUMMED -> Arrays.stream(intensities).sum();
+        case MAXIMUM -> Arrays.stream(intensities).max().orElse(0d);
+        case AVERAGE -> Arrays.stream(intensities).average().orElse(0d);
+      };
+
+      if (outputNoiseLevel == null || newIntensity > outputNoiseLevel) {
+        newMzs[numValues] = newMz;
+        newIntensities[numValues] = newIntensity;
+        numValues++;
+      }
+    }
+
+    return new double[][]{Arrays.copyOf(newMzs, numValues),
+        Arrays.copyOf(newIntensities, numValues)};
+  }
+}
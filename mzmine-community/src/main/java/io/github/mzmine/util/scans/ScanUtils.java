@@ -341,10 +341,20 @@ public class ScanUtils {
    * @return the total ion count of the scan within the mass range.
    */
   public static double calculateTIC(Scan scan, Range<Double> mzRange) {
+    final int startIndex = scan.binarySearch(mzRange.lowerEndpoint(), DefaultTo.GREATER_EQUALS);
+    if (startIndex == -1) {
+      return 0d;
+    }
 
     double tic = 0.0;
-    for (final DataPoint dataPoint : selectDataPointsByMass(extractDataPoints(scan), mzRange)) {
-      tic += dataPoint.getIntensity();
+    for (int i = startIndex; i < scan.getNumberOfDataPoints(); i++) {
+      final double mz = scan.getMzValue(i);
+      if (mz > mzRange.upperEndpoint()) {
+        break;
+      }
+      if (mzRange.contains(mz)) {
+        tic += scan.getIntensityValue(i);
+      }
     }
     return tic;
   }
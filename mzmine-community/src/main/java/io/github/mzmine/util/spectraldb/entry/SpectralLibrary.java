@@ -54,6 +54,9 @@ public class SpectralLibrary {
   @Nullable
   private final MemoryMapStorage storage;
   private final ObservableSet<DataType> types = FXCollections.observableSet(new LinkedHashSet<>());
+  // lazily created and reset on change
+  @Nullable
+  private volatile SpectralLibraryPrecursorIndex precursorIndex;
 
   public SpectralLibrary(@Nullable MemoryMapStorage storage, @NotNull File path) {
     this(storage, path.getName(), path);
@@ -73,7 +76,31 @@ public class SpectralLibrary {
 
   public void addEntry(SpectralLibraryEntry entry) {
     entry.setLibrary(this);
-    entries.add(entry);
+    // same lock as the index creation, so an index never misses an added entry
+    synchronized (entries) {
+      entries.add(entry);
+      precursorIndex = null;
+    }
+  }
+
+  /**
+   * The precursor index is created on first access and reused until entries are added.
+   *
+   * @return index of all entries sorted by precursor m/z
+   */
+  @NotNull
+  public SpectralLibraryPrecursorIndex getPrecursorIndex() {
+    SpectralLibraryPrecursorIndex index = precursorIndex;
+    if (index == null) {
+      synchronized (entries) {
+        index = precursorIndex;
+        if (index == null) {
+          index = SpectralLibraryPrecursorIndex.of(entries);
+          precursorIndex = index;
+        }
+      }
+    }
+    return index;
   }
 
   public void addEntries(Collection<SpectralLibraryEntry> entries) {
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.util.collections.BinarySearch;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index of library entries sorted by precursor m/z. The retention time and CCS of each entry are
+ * kept in primitive columns (NaN if missing) so that a lookup is a binary search for the m/z range
+ * followed by a linear filter. Entries without precursor m/z are not indexed. Immutable and thread
+ * safe.
+ */
+public class SpectralLibraryPrecursorIndex {
+
+  private final SpectralLibraryEntry[] entries;
+  private final double[] mzs;
+  private final float[] rts;
+  private final float[] ccs;
+
+  private SpectralLibraryPrecursorIndex(final SpectralLibraryEntry[] entries, final double[] mzs,
+      final float[] rts, final float[] ccs) {
+    this.entries = entries;
+    this.mzs = mzs;
+    this.rts = rts;
+    this.ccs = ccs;
+  }
+
+  /**
+   * Creates a new index for all entries with a precursor m/z
+   */
+  @NotNull
+  public static SpectralLibraryPrecursorIndex of(
+      @NotNull final Collection<? extends SpectralLibraryEntry> libraryEntries) {
+    record IndexedEntry(double mz, SpectralLibraryEntry entry) {
+
+    }
+
+    final IndexedEntry[] sorted = libraryEntries.stream().<IndexedEntry>mapMulti((entry, c) -> {
+      final Double mz = entry.getPrecursorMZ();
+      if (mz != null) {
+        c.accept(new IndexedEntry(mz, entry));
+      }
+    }).sorted(Comparator.comparingDouble(IndexedEntry::mz)).toArray(IndexedEntry[]::new);
+
+    final SpectralLibraryEntry[] entries = new SpectralLibraryEntry[sorted.length];
+    final double[] mzs = new double[sorted.length];
+    final float[] rts = new float[sorted.length];
+    final float[] ccs = new float[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      final SpectralLibraryEntry entry = sorted[i].entry();
+      entries[i] = entry;
+      mzs[i] = sorted[i].mz();
+      rts[i] = entry.getAsFloat(DBEntryField.RT).orElse(Float.NaN);
+      ccs[i] = entry.getAsFloat(DBEntryField.CCS).orElse(Float.NaN);
+    }
+    return new SpectralLibraryPrecursorIndex(entries, mzs, rts, ccs);
+  }
+
+  /**
+   * @return the number of indexed entries
+   */
+  public int size() {
+    return entries.length;
+  }
+
+  /**
+   * Calls the consumer for all entries within the ranges. Entries without RT or CCS value are
+   * accepted by the respective filter.
+   *
+   * @param mzRange  precursor m/z range (closed)
+   * @param rtRange  retention time range or null to skip the RT filter
+   * @param ccsRange CCS range or null to skip the CCS filter
+   */
+  public void forEachInRange(@NotNull final Range<Double> mzRange,
+      @Nullable final Range<Float> rtRange, @Nullable final Range<Float> ccsRange,
+      @NotNull final Consumer<SpectralLibraryEntry> consumer) {
+    final double upper = mzRange.upperEndpoint();
+    for (int i = BinarySearch.lowerBound(mzs, mzRange.lowerEndpoint());
+        i < mzs.length && mzs[i] <= upper; i++) {
+      if (rtRange != null && !Float.isNaN(rts[i]) && !rtRange.contains(rts[i])) {
+        continue;
+      }
+      if (ccsRange != null && !Float.isNaN(ccs[i]) && !ccsRange.contains(ccs[i])) {
+        continue;
+      }
+      consumer.accept(entries[i]);
+    }
+  }
+
+  /**
+   * @return all entries within the ranges, see
+   * {@link #forEachInRange(Range, Range, Range, Consumer)}
+   */
+  @NotNull
+  public List<SpectralLibraryEntry> findInRange(@NotNull final Range<Double> mzRange,
+      @Nullable final Range<Float> rtRange, @Nullable final Range<Float> ccsRange) {
+    final List<SpectralLibraryEntry> result = new ArrayList<>();
+    forEachInRange(mzRange, rtRange, ccsRange, result::add);
+    return result;
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package datamodel;
+
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.featuredata.impl.SpectralStoragePrecision;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the temp file footprint and accuracy of {@link SpectralStoragePrecision#COMPACT} with
+ * lossless double storage.
+ */
+public class CompactSpectralStorageTest {
+
+  private static final Logger logger = Logger.getLogger(
+      CompactSpectralStorageTest.class.getName());
+
+  private static final int NUM_SPECTRA = 200;
+  private static final int NUM_POINTS = 2_000;
+
+  @AfterEach
+  void resetPrecision() {
+    SpectralStoragePrecision.DOUBLE.enforce(10);
+  }
+
+  private static double[][] createSpectra(long seed, double minMz, double maxMz) {
+    return createSpectra(seed, minMz, maxMz, true);
+  }
+
+  /**
+   * @param floatIntensities round intensities to float like recorded by instruments. Processed
+   *                         intensities, e.g., denormalized by the injection time, use doubles.
+   */
+  private static double[][] createSpectra(long seed, double minMz, double maxMz,
+      boolean floatIntensities) {
+    final Random random = new Random(seed);
+    final double[][] spectra = new double[NUM_SPECTRA * 2][];
+    for (int s = 0; s < NUM_SPECTRA; s++) {
+      final double[] mzs = new double[NUM_POINTS];
+      final double[] intensities = new double[NUM_POINTS];
+      for (int i = 0; i < NUM_POINTS; i++) {
+        mzs[i] = minMz + random.nextDouble() * (maxMz - minMz);
+        final double intensity = random.nextDouble() * 1E6;
+        intensities[i] = floatIntensities ? (float) intensity : intensity;
+      }
+      Arrays.sort(mzs);
+      spectra[s * 2] = mzs;
+      spectra[s * 2 + 1] = intensities;
+    }
+    return spectra;
+  }
+
+  private static MassSpectrum[] store(MemoryMapStorage storage, double[][] spectra) {
+    final MassSpectrum[] stored = new MassSpectrum[NUM_SPECTRA];
+    for (int s = 0; s < NUM_SPECTRA; s++) {
+      stored[s] = new SimpleMassList(storage, spectra[s * 2], spectra[s * 2 + 1]);
+    }
+    return stored;
+  }
+
+  @Test
+  void testCompactStorageSavesBytesWithinPpb() {
+    final double ppb = 10;
+    final double[][] spectra = createSpectra(42, 60, 1500);
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+
+    SpectralStoragePrecision.DOUBLE.enforce(ppb);
+    long before = StorageUtils.getStoredBytes();
+    long start = System.nanoTime();
+    final MassSpectrum[] lossless = store(storage, spectra);
+    final long doubleNanos = System.nanoTime() - start;
+    final long doubleBytes = StorageUtils.getStoredBytes() - before;
+
+    SpectralStoragePrecision.COMPACT.enforce(ppb);
+    before = StorageUtils.getStoredBytes();
+    start = System.nanoTime();
+    final MassSpectrum[] compact = store(storage, spectra);
+    final long compactNanos = System.nanoTime() - start;
+    final long compactBytes = StorageUtils.getStoredBytes() - before;
+
+    logger.info(
+        "Stored %d spectra: double %d bytes in %d ms, compact %d bytes in %d ms".formatted(
+            NUM_SPECTRA, doubleBytes, doubleNanos / 1_000_000, compactBytes,
+            compactNanos / 1_000_000));
+
+    Assertions.assertEquals((long) NUM_SPECTRA * NUM_POINTS * 2 * Double.BYTES, doubleBytes);
+    Assertions.assertEquals(doubleBytes / 2, compactBytes);
+
+    double maxError = 0;
+    for (int s = 0; s < NUM_SPECTRA; s++) {
+      final double[] mzs = compact[s].getMzValues(new double[0]);
+      final double[] intensities = compact[s].getIntensityValues(new double[0]);
+      Assertions.assertEquals(NUM_POINTS, compact[s].getNumberOfDataPoints());
+      Assertions.assertEquals(lossless[s].getBasePeakIndex(), compact[s].getBasePeakIndex());
+      for (int i = 0; i < NUM_POINTS; i++) {
+        final double original = lossless[s].getMzValue(i);
+        final double error = Math.abs(mzs[i] - original) / original * 1E9;
+        maxError = Math.max(maxError, error);
+        Assertions.assertEquals(mzs[i], compact[s].getMzValue(i));
+        Assertions.assertEquals(lossless[s].getIntensityValue(i), intensities[i]);
+        Assertions.assertEquals(lossless[s].getIntensityValue(i), compact[s].getIntensityValue(i));
+      }
+    }
+    logger.info("Maximum m/z error %.3f ppb".formatted(maxError));
+    Assertions.assertTrue(maxError <= ppb / 2 + 1E-6, "m/z error exceeds precision: " + maxError);
+  }
+
+  /**
+   * Fragment spectra start at low m/z. The relative m/z error must not depend on the lowest m/z and
+   * the spectra must not fall back to doubles.
+   */
+  @Test
+  void testLowMzFragmentSpectraWithinPpb() {
+    final double ppb = 10;
+    final double[][] spectra = createSpectra(11, 15, 1000, false);
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+
+    SpectralStoragePrecision.COMPACT.enforce(ppb);
+    final long before = StorageUtils.getStoredBytes();
+    final MassSpectrum[] compact = store(storage, spectra);
+    final long bytes = StorageUtils.getStoredBytes() - before;
+
+    // m/z as 32 bit steps, intensities as floats
+    Assertions.assertEquals((long) NUM_SPECTRA * NUM_POINTS * (Integer.BYTES + Float.BYTES), bytes);
+
+    double maxMzError = 0;
+    double maxIntensityError = 0;
+    for (int s = 0; s < NUM_SPECTRA; s++) {
+      final double[] mzs = spectra[s * 2];
+      final double[] intensities = spectra[s * 2 + 1];
+      for (int i = 0; i < NUM_POINTS; i++) {
+        maxMzError = Math.max(maxMzError,
+            Math.abs(compact[s].getMzValue(i) - mzs[i]) / mzs[i] * 1E9);
+        maxIntensityError = Math.max(maxIntensityError,
+            Math.abs(compact[s].getIntensityValue(i) - intensities[i]) / intensities[i]);
+      }
+    }
+    logger.info("Maximum m/z error %.3f ppb, relative intensity error %.2e".formatted(maxMzError,
+        maxIntensityError));
+    Assertions.assertTrue(maxMzError <= ppb / 2 + 1E-6,
+        "m/z error exceeds precision: " + maxMzError);
+    // float precision
+    Assertions.assertTrue(maxIntensityError <= 0x1p-24, "intensity error: " + maxIntensityError);
+  }
+
+  @Test
+  void testWideMzRangeFallsBackToDoubles() {
+    final double[][] spectra = createSpectra(7, 1, 5000);
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+
+    // a ratio of 5000 in 0.5 ppb steps does not fit 32 bit
+    SpectralStoragePrecision.COMPACT.enforce(0.5);
+    final long before = StorageUtils.getStoredBytes();
+    final MassSpectrum[] compact = store(storage, spectra);
+    final long bytes = StorageUtils.getStoredBytes() - before;
+
+    // m/z as doubles, intensities as floats
+    Assertions.assertEquals((long) NUM_SPECTRA * NUM_POINTS * (Double.BYTES + Float.BYTES), bytes);
+    for (int s = 0; s < NUM_SPECTRA; s++) {
+      Assertions.assertArrayEquals(spectra[s * 2], compact[s].getMzValues(new double[0]));
+    }
+  }
+
+  @Test
+  void testInMemoryDataStaysLossless() {
+    final double[][] spectra = createSpectra(3, 60, 1500);
+    SpectralStoragePrecision.COMPACT.enforce(10);
+    final MassSpectrum[] inMemory = store(null, spectra);
+    for (int s = 0; s < NUM_SPECTRA; s++) {
+      Assertions.assertArrayEquals(spectra[s * 2], inMemory[s].getMzValues(new double[0]));
+    }
+  }
+}
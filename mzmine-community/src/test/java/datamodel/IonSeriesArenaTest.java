@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package datamodel;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.IonSeriesArena;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class IonSeriesArenaTest {
+
+  @Test
+  void testArenaSlicesKeepValues() {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    final Random random = new Random(42);
+    final List<double[]> values = new ArrayList<>();
+    final List<DoubleBuffer> stored = new ArrayList<>();
+
+    Assertions.assertFalse(IonSeriesArena.hasArenaData(storage));
+    // nested arenas of the same storage
+    try (var _ = IonSeriesArena.open(storage); var _ = IonSeriesArena.open(storage)) {
+      for (int i = 0; i < 20_000; i++) {
+        final double[] series = new double[random.nextInt(300)];
+        for (int j = 0; j < series.length; j++) {
+          series[j] = random.nextDouble() * 1000;
+        }
+        values.add(series);
+        stored.add(StorageUtils.storeValuesToDoubleBuffer(storage, series));
+      }
+    }
+    Assertions.assertTrue(IonSeriesArena.hasArenaData(storage));
+    Assertions.assertFalse(IonSeriesArena.hasArenaData(MemoryMapStorage.create()));
+
+    // slices stay valid after the arena was closed
+    for (int i = 0; i < values.size(); i++) {
+      final DoubleBuffer buffer = stored.get(i);
+      final double[] expected = values.get(i);
+      Assertions.assertEquals(expected.length, buffer.limit());
+      if (expected.length > 0) {
+        Assertions.assertTrue(buffer.isReadOnly());
+      }
+      final double[] actual = new double[expected.length];
+      buffer.get(0, actual);
+      Assertions.assertArrayEquals(expected, actual);
+    }
+  }
+
+  @Test
+  void testArenaIsBoundToThread() throws Exception {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    Assertions.assertNull(IonSeriesArena.current());
+    try (var arena = IonSeriesArena.open(storage)) {
+      Assertions.assertSame(arena, IonSeriesArena.current());
+      // other threads using the same storage do not write to the arena
+      final ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        Assertions.assertNull(executor.submit(IonSeriesArena::current).get());
+        Assertions.assertSame(arena, executor.submit(
+            () -> IonSeriesArena.callWith(arena, IonSeriesArena::current)).get());
+        Assertions.assertNull(executor.submit(IonSeriesArena::current).get());
+      } finally {
+        executor.shutdown();
+      }
+    }
+    Assertions.assertNull(IonSeriesArena.current());
+  }
+
+  @Test
+  void testCompactSparseFeatureList() {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    final RawDataFile file = new RawDataFileImpl("testfile", null, storage, Color.BLACK);
+    final List<Scan> scans = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      final Scan scan = new SimpleScan(file, i, 1, 0.1f * i, null, new double[0], new double[0],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1d));
+      scans.add(scan);
+      Assertions.assertDoesNotThrow(() -> file.addScan(scan));
+    }
+
+    final ModularFeatureList flist = new ModularFeatureList("flist", storage, file);
+    final List<double[]> intensities = new ArrayList<>();
+    try (var _ = IonSeriesArena.open(storage)) {
+      for (int i = 0; i < 10; i++) {
+        final double[] mzs = new double[10];
+        final double[] values = new double[10];
+        for (int j = 0; j < values.length; j++) {
+          mzs[j] = 100d + i;
+          values[j] = (i + 1) * (j + 1);
+        }
+        intensities.add(values);
+        final SimpleIonTimeSeries series = new SimpleIonTimeSeries(storage, mzs, values,
+            scans.subList(i, i + 10));
+        flist.addRow(new ModularFeatureListRow(flist, i + 1,
+            new ModularFeature(flist, file, series, FeatureStatus.DETECTED)));
+      }
+    }
+
+    // half of the rows kept, not sparse
+    Assertions.assertFalse(FeatureDataUtils.compactFeatureDataIfSparse(flist, storage, 10));
+    // no arena data
+    Assertions.assertFalse(
+        FeatureDataUtils.compactFeatureDataIfSparse(flist, MemoryMapStorage.create(), 100));
+
+    for (FeatureListRow row : List.copyOf(flist.getRows())) {
+      if (row.getID() != 3 && row.getID() != 7) {
+        flist.removeRow(row);
+      }
+    }
+    final List<IonTimeSeries<? extends Scan>> before = flist.streamFeatures()
+        .<IonTimeSeries<? extends Scan>>map(Feature::getFeatureData).toList();
+    Assertions.assertTrue(FeatureDataUtils.compactFeatureDataIfSparse(flist, storage, 10));
+
+    final List<ModularFeature> features = flist.streamFeatures().toList();
+    Assertions.assertEquals(2, features.size());
+    for (int i = 0; i < features.size(); i++) {
+      final IonTimeSeries<? extends Scan> compacted = features.get(i).getFeatureData();
+      // copied to new segments with the same values
+      Assertions.assertNotSame(before.get(i), compacted);
+      Assertions.assertEquals(before.get(i), compacted);
+      final int id = features.get(i).getRow().getID();
+      Assertions.assertArrayEquals(intensities.get(id - 1),
+          compacted.getIntensityValues(new double[compacted.getNumberOfValues()]));
+      Assertions.assertEquals(scans.subList(id - 1, id + 9), compacted.getSpectra());
+    }
+  }
+
+  @Test
+  void testArenaSegmentsAreStoredBytes() {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    final long before = StorageUtils.getStoredBytes();
+    try (var _ = IonSeriesArena.open(storage)) {
+      StorageUtils.storeValuesToDoubleBuffer(storage, new double[100]);
+      StorageUtils.storeValuesToDoubleBuffer(storage, new double[100]);
+    }
+    // one segment of 64 MB, the values in the segment are not counted again
+    Assertions.assertEquals(64L << 20, StorageUtils.getStoredBytes() - before);
+  }
+
+  @Test
+  void testNoArenaInRam() {
+    Assertions.assertNull(IonSeriesArena.open(null));
+    final double[] values = {1d, 2d};
+    // wrapped as before
+    Assertions.assertSame(values, StorageUtils.storeValuesToDoubleBuffer(null, values).array());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package datamodel;
+
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+public class ModularFeatureListTransferTest {
+
+  private RawDataFile raw;
+  private ModularFeatureList flist;
+
+  @BeforeEach
+  void setUp() {
+    raw = Mockito.mock(RawDataFile.class);
+    flist = new ModularFeatureList("List", null, raw);
+    for (int i = 1; i <= 5; i++) {
+      ModularFeature f = new ModularFeature(flist);
+      f.set(RawFileType.class, raw);
+      f.set(MZType.class, 100d * i);
+      f.set(RTType.class, (float) i);
+      f.set(DetectionType.class, FeatureStatus.DETECTED);
+      flist.addRow(new ModularFeatureListRow(flist, i, f));
+    }
+  }
+
+  @Test
+  void testTransferredCopyMovesRows() {
+    final List<FeatureListRow> kept = List.of(flist.getRow(1), flist.getRow(3));
+    final ModularFeatureList transferred = flist.createTransferredCopy("Transferred", null, kept);
+
+    Assertions.assertEquals(2, transferred.getNumberOfRows());
+    for (int i = 0; i < kept.size(); i++) {
+      // same instances, no deep copy
+      final FeatureListRow row = transferred.getRow(i);
+      Assertions.assertSame(kept.get(i), row);
+      Assertions.assertSame(transferred, row.getFeatureList());
+      Assertions.assertSame(transferred, row.getFeature(raw).getFeatureList());
+    }
+    Assertions.assertTrue(transferred.getRowTypes().containsAll(flist.getRowTypes()));
+    Assertions.assertTrue(transferred.getFeatureTypes().containsAll(flist.getFeatureTypes()));
+  }
+
+  @Test
+  void testTransferAllRows() {
+    final List<FeatureListRow> rows = List.copyOf(flist.getRows());
+    final ModularFeatureList transferred = flist.createTransferredCopy("Transferred", null);
+
+    Assertions.assertEquals(rows, transferred.getRows());
+    Assertions.assertEquals(flist.getRawDataFiles(), transferred.getRawDataFiles());
+  }
+
+  @Test
+  void testTransferRequiresSameDataFiles() {
+    final ModularFeatureList other = new ModularFeatureList("Other", null,
+        Mockito.mock(RawDataFile.class));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> other.transferRows(flist, flist.getRows()));
+    Assertions.assertEquals(0, other.getNumberOfRows());
+    Assertions.assertSame(flist, flist.getRow(0).getFeatureList());
+  }
+}
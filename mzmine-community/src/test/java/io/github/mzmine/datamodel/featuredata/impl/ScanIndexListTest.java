@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.featuredata.impl;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ScanIndexListTest {
+
+  private RawDataFile file;
+  private List<Scan> ms1Scans;
+
+  /**
+   * DDA like file, every 10th scan is an MS1 scan
+   */
+  @BeforeEach
+  void setUp() throws IOException {
+    file = new RawDataFileImpl("test", null, null);
+    for (int i = 0; i < 100_000; i++) {
+      file.addScan(new SimpleScan(file, i, i % 10 == 0 ? 1 : 2, i * 0.001f, null,
+          new double[]{100d}, new double[]{1d}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE,
+          "", Range.closed(0d, 1000d)));
+    }
+    ms1Scans = file.getScans().stream().filter(scan -> scan.getMSLevel() == 1).toList();
+  }
+
+  @Test
+  void consecutiveSelectedScansNeedNoOffsets() {
+    final List<Scan> scans = ms1Scans.subList(100, 300);
+    final List<Scan> compact = ScanIndexList.compact(null, new ArrayList<>(scans), ms1Scans);
+
+    final ScanIndexList list = Assertions.assertInstanceOf(ScanIndexList.class, compact);
+    Assertions.assertEquals(0, list.getBitsPerOffset());
+    Assertions.assertEquals(scans, compact);
+  }
+
+  @Test
+  void fileScansAreUsedWithoutSelectedScans() {
+    final List<Scan> scans = ms1Scans.subList(100, 120);
+    final List<Scan> compact = ScanIndexList.compact(null, new ArrayList<>(scans), null);
+
+    final ScanIndexList list = Assertions.assertInstanceOf(ScanIndexList.class, compact);
+    Assertions.assertEquals(8, list.getBitsPerOffset());
+    Assertions.assertEquals(scans, compact);
+  }
+
+  @Test
+  void offsetsUseNarrowestWidth() {
+    // gaps in the selected scans
+    final List<Scan> small = IntStream.range(0, 50).map(i -> i * 5).mapToObj(ms1Scans::get)
+        .toList();
+    final List<Scan> medium = IntStream.range(0, 50).map(i -> i * 100).mapToObj(ms1Scans::get)
+        .toList();
+    final List<Scan> large = List.of(ms1Scans.get(0), ms1Scans.get(1), file.getScans().get(99_990));
+
+    final ScanIndexList smallList = (ScanIndexList) ScanIndexList.compact(null, small, ms1Scans);
+    final ScanIndexList mediumList = (ScanIndexList) ScanIndexList.compact(null, medium, ms1Scans);
+    final ScanIndexList largeList = (ScanIndexList) ScanIndexList.compact(null, large, null);
+
+    Assertions.assertEquals(8, smallList.getBitsPerOffset());
+    Assertions.assertEquals(16, mediumList.getBitsPerOffset());
+    Assertions.assertEquals(32, largeList.getBitsPerOffset());
+    Assertions.assertEquals(small, smallList);
+    Assertions.assertEquals(medium, mediumList);
+    Assertions.assertEquals(large, largeList);
+  }
+
+  @Test
+  void unsortedScansAreKept() {
+    final List<Scan> scans = List.of(ms1Scans.get(2), ms1Scans.get(1));
+    Assertions.assertSame(scans, ScanIndexList.compact(null, scans, ms1Scans));
+  }
+
+  @Test
+  void subSeriesKeepsSelectedScans() {
+    final List<Scan> scans = ms1Scans.subList(10, 20);
+    final SimpleIonTimeSeries series = new SimpleIonTimeSeries(null, new double[10],
+        new double[10], scans, ms1Scans);
+    final SimpleIonTimeSeries sub = series.subSeries(null, List.of(scans.get(2), scans.get(3)));
+
+    Assertions.assertSame(ms1Scans, ScanIndexList.getBaseScans(sub.scans));
+    Assertions.assertEquals(List.of(scans.get(2), scans.get(3)), sub.getSpectra());
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.significance;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestEngine.RowSignificanceTestResults;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class RowSignificanceTestEngineTest {
+
+  private static final int NUM_ROWS = 200;
+
+  private ModularFeatureList flist;
+  private CountingTest test;
+
+  @BeforeEach
+  void setUp() {
+    final RawDataFile raw = Mockito.mock(RawDataFile.class);
+    flist = new ModularFeatureList("List", null, raw);
+    for (int i = 1; i <= NUM_ROWS; i++) {
+      flist.addRow(new ModularFeatureListRow(flist, i));
+    }
+    test = new CountingTest(List.of(List.of(raw)));
+  }
+
+  @Test
+  void testCachedUntilRowsChange() {
+    final RowSignificanceTestResults first = RowSignificanceTestEngine.test(flist, test,
+        AbundanceMeasure.Height, null, () -> false);
+    Assertions.assertEquals(NUM_ROWS, first.results().size());
+    Assertions.assertEquals(NUM_ROWS, test.calls.get());
+
+    final RowSignificanceTestResults cached = RowSignificanceTestEngine.test(flist, test,
+        AbundanceMeasure.Height, null, () -> false);
+    Assertions.assertSame(first, cached);
+    Assertions.assertEquals(NUM_ROWS, test.calls.get());
+
+    // same number of rows but a different row, a key on the row count would miss this
+    flist.removeRow(flist.getRow(0));
+    flist.addRow(new ModularFeatureListRow(flist, NUM_ROWS + 1));
+    final RowSignificanceTestResults changed = RowSignificanceTestEngine.test(flist, test,
+        AbundanceMeasure.Height, null, () -> false);
+    Assertions.assertNotSame(first, changed);
+    Assertions.assertEquals(2 * NUM_ROWS, test.calls.get());
+    Assertions.assertEquals(flist.getRows(),
+        changed.results().stream().map(RowSignificanceTestResult::row).toList());
+  }
+
+  @Test
+  void testCanceledRunStopsAndIsNotCached() {
+    final int cancelAfter = 10;
+    final RowSignificanceTestResults canceled = RowSignificanceTestEngine.test(flist, test,
+        AbundanceMeasure.Height, null, () -> test.calls.get() >= cancelAfter);
+    // rows that were already started in parallel may finish
+    Assertions.assertTrue(canceled.results().size() < NUM_ROWS);
+    Assertions.assertTrue(test.calls.get() < NUM_ROWS);
+
+    final int callsBefore = test.calls.get();
+    final RowSignificanceTestResults complete = RowSignificanceTestEngine.test(flist, test,
+        AbundanceMeasure.Height, null, () -> false);
+    Assertions.assertEquals(NUM_ROWS, complete.results().size());
+    Assertions.assertEquals(callsBefore + NUM_ROWS, test.calls.get());
+  }
+
+  private record Result(double pValue, FeatureListRow row, String groupingColumn) implements
+      RowSignificanceTestResult {
+
+  }
+
+  private static final class CountingTest implements RowSignificanceTest {
+
+    private final List<List<RawDataFile>> groupedFiles;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private CountingTest(List<List<RawDataFile>> groupedFiles) {
+      this.groupedFiles = groupedFiles;
+    }
+
+    @Override
+    public @Nullable RowSignificanceTestResult test(FeatureListRow row,
+        List<double[]> groupAbundances) {
+      calls.incrementAndGet();
+      return new Result(row.getID() / (double) (NUM_ROWS + 1), row, "group");
+    }
+
+    @Override
+    public @NotNull List<List<RawDataFile>> getGroupedFiles() {
+      return groupedFiles;
+    }
+  }
+}
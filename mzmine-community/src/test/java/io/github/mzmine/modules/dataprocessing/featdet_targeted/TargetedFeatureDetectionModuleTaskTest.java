@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_targeted;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.modules.dataprocessing.featdet_targeted.TargetedFeatureDetectionModuleTask.GapBlock;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.Gap;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.multithreaded.ImsGap;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+/**
+ * Checks that the RT blocks and the sweep offer every gap the same scans as going over all scans
+ * for each gap.
+ */
+class TargetedFeatureDetectionModuleTaskTest {
+
+  private static final Range<Double> MZ_RANGE = Range.closed(200d, 200.01d);
+
+  @Test
+  void testOverlappingAndAdjacentGaps() {
+    final List<Scan> scans = createScans(Scan.class, 3000);
+    final List<Gap> gaps = createGaps(rtRange -> new Gap(null, null, MZ_RANGE, rtRange, 0, false));
+    assertSweepMatchesPerGapScan(gaps, scans);
+  }
+
+  @Test
+  void testImsGaps() {
+    final List<Frame> frames = createScans(Frame.class, 3000);
+    final FeatureListRow row = Mockito.mock(FeatureListRow.class);
+    final RawDataFile file = Mockito.mock(RawDataFile.class);
+    final BinningMobilogramDataAccess binning = Mockito.mock(BinningMobilogramDataAccess.class);
+    final List<ImsGap> gaps = createGaps(
+        rtRange -> new ImsGap(row, file, MZ_RANGE, rtRange, Range.closed(0.8f, 0.9f), 0, binning,
+            false));
+    assertSweepMatchesPerGapScan(gaps, frames);
+  }
+
+  /**
+   * Scans every 0.01 min from 0 to 30 min
+   */
+  private static <S extends Scan> List<S> createScans(Class<S> scanClass, int numScans) {
+    final List<S> scans = new ArrayList<>();
+    for (int i = 0; i < numScans; i++) {
+      final S scan = Mockito.mock(scanClass);
+      Mockito.when(scan.getRetentionTime()).thenReturn(i / 100f);
+      scans.add(scan);
+    }
+    return scans;
+  }
+
+  /**
+   * More gaps than fit into one block, with random overlaps, chains of adjacent gaps that share an
+   * RT endpoint with a scan, gaps between two scans and gaps outside of the scans.
+   */
+  private static <G extends Gap> List<G> createGaps(Function<Range<Float>, G> gapFactory) {
+    final Random random = new Random(42);
+    final List<G> gaps = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      final int start = random.nextInt(3000);
+      final int width = 1 + random.nextInt(50);
+      gaps.add(gapFactory.apply(Range.closed(start / 100f, (start + width) / 100f)));
+    }
+    // adjacent gaps
+    for (int start = 500; start < 2500; start += 10) {
+      gaps.add(gapFactory.apply(Range.closed(start / 100f, (start + 10) / 100f)));
+    }
+    // between two scans
+    gaps.add(gapFactory.apply(Range.closed(10.001f, 10.004f)));
+    // before and after all scans
+    gaps.add(gapFactory.apply(Range.closed(-2f, -1f)));
+    gaps.add(gapFactory.apply(Range.closed(29.995f, 31f)));
+    gaps.add(gapFactory.apply(Range.closed(35f, 36f)));
+    return gaps;
+  }
+
+  private static <G extends Gap, S extends Scan> void assertSweepMatchesPerGapScan(List<G> gaps,
+      List<S> scans) {
+    final List<GapBlock<G, S>> blocks = TargetedFeatureDetectionModuleTask.createBlocks(gaps,
+        scans);
+    Assertions.assertTrue(blocks.size() > 1);
+
+    final Map<G, List<Scan>> offered = new IdentityHashMap<>();
+    final AtomicInteger processedScans = new AtomicInteger();
+    for (final GapBlock<G, S> block : blocks) {
+      final Iterator<S> blockScans = block.scans().iterator();
+      final boolean finished = TargetedFeatureDetectionModuleTask.sweep(block,
+          () -> blockScans.hasNext() ? blockScans.next() : null,
+          (gap, scan) -> offered.computeIfAbsent(gap, _ -> new ArrayList<>()).add(scan),
+          () -> false, processedScans::incrementAndGet);
+      Assertions.assertTrue(finished);
+    }
+    Assertions.assertEquals(blocks.stream().mapToInt(block -> block.scans().size()).sum(),
+        processedScans.get());
+
+    for (final G gap : gaps) {
+      final List<Scan> expected = scans.stream()
+          .filter(scan -> gap.getRtRange().contains(scan.getRetentionTime()))
+          .map(Scan.class::cast).toList();
+      Assertions.assertEquals(expected, offered.getOrDefault(gap, List.of()),
+          "gap " + gap.getRtRange());
+    }
+  }
+}
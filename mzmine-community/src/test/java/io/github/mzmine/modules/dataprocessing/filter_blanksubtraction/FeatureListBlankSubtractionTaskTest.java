@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_blanksubtraction;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.AreaType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
+import io.github.mzmine.project.ProjectService;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rows only in blanks, only in samples and in both, with sample abundances around the fold change
+ * of the maximum and average blank abundance.
+ */
+class FeatureListBlankSubtractionTaskTest {
+
+  private static final double FOLD_CHANGE = 3.0;
+
+  @Test
+  void testMaximumBlankAbundance() {
+    runBlankSubtraction(RatioType.MAXIMUM,
+        // kept rows with their sample features
+        Map.of(2, Set.of("s1", "s2"), 3, Set.of("s1", "s3")),
+        // background rows with blank features and sample features below the fold change
+        Map.of(1, Set.of("b1", "b2"), 4, Set.of("b1", "s1", "s2"), 5,
+            Set.of("b1", "b2", "s1", "s2")));
+  }
+
+  @Test
+  void testAverageBlankAbundance() {
+    runBlankSubtraction(RatioType.AVERAGE,
+        Map.of(2, Set.of("s1", "s2"), 3, Set.of("s1", "s2", "s3"), 5, Set.of("s1")),
+        Map.of(1, Set.of("b1", "b2"), 4, Set.of("b1", "s1", "s2")));
+  }
+
+  private void runBlankSubtraction(RatioType ratioType, Map<Integer, Set<String>> expectedKept,
+      Map<Integer, Set<String>> expectedBackground) {
+    ProjectService.getProjectManager().setCurrentProject(new MZmineProjectImpl());
+    final MZmineProject project = ProjectService.getProject();
+    final RawDataFile b1 = createFile(project, "b1");
+    final RawDataFile b2 = createFile(project, "b2");
+    final RawDataFile s1 = createFile(project, "s1");
+    final RawDataFile s2 = createFile(project, "s2");
+    final RawDataFile s3 = createFile(project, "s3");
+    final ModularFeatureList flist = new ModularFeatureList("aligned", null,
+        List.of(b1, b2, s1, s2, s3));
+
+    // only in blanks
+    addRow(flist, 1, Map.of(b1, 1000d, b2, 500d));
+    // only in samples, the blank abundance is 0
+    addRow(flist, 2, Map.of(s1, 10d, s2, 20d));
+    // exactly at and just below three times the maximum, above three times the average
+    addRow(flist, 3, Map.of(b1, 1000d, b2, 400d, s1, 3000d, s2, 2999d, s3, 5000d));
+    // all samples below the fold change of a single blank
+    addRow(flist, 4, Map.of(b1, 100d, s1, 250d, s2, 299d));
+    // exactly at and just below three times the average
+    addRow(flist, 5, Map.of(b1, 1000d, b2, 400d, s1, 2100d, s2, 2099d));
+
+    final ParameterSet parameters = new FeatureListBlankSubtractionParameters().cloneParameterSet();
+    parameters.setParameter(FeatureListBlankSubtractionParameters.alignedPeakList,
+        new FeatureListsSelection(flist));
+    parameters.setParameter(FeatureListBlankSubtractionParameters.blankRawDataFiles,
+        new RawDataFilesSelection(new RawDataFile[]{b1, b2}));
+    parameters.setParameter(FeatureListBlankSubtractionParameters.minBlanks, 1);
+    parameters.setParameter(FeatureListBlankSubtractionParameters.quantType,
+        AbundanceMeasure.Height);
+    parameters.setParameter(FeatureListBlankSubtractionParameters.ratioType, ratioType);
+    parameters.setParameter(FeatureListBlankSubtractionParameters.foldChange, true, FOLD_CHANGE);
+    parameters.setParameter(FeatureListBlankSubtractionParameters.keepBackgroundFeatures,
+        BlankSubtractionOptions.REMOVE);
+    parameters.setParameter(FeatureListBlankSubtractionParameters.createDeleted, true);
+    parameters.setParameter(FeatureListBlankSubtractionParameters.suffix, "subtracted");
+
+    final FeatureListBlankSubtractionTask task = new FeatureListBlankSubtractionTask(project,
+        (FeatureListBlankSubtractionParameters) parameters, null, Instant.now());
+    task.run();
+    Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus());
+
+    Assertions.assertEquals(expectedKept, getFeatureFiles(project, "aligned subtracted"));
+    Assertions.assertEquals(expectedBackground,
+        getFeatureFiles(project, "aligned subtractedBackground"));
+  }
+
+  private static RawDataFile createFile(MZmineProject project, String name) {
+    final RawDataFile file = new RawDataFileImpl(name, null, null, Color.BLACK);
+    project.addFile(file);
+    return file;
+  }
+
+  private static void addRow(ModularFeatureList flist, int id,
+      Map<RawDataFile, Double> heights) {
+    final ModularFeatureListRow row = new ModularFeatureListRow(flist, id);
+    heights.forEach((file, height) -> {
+      final ModularFeature feature = new ModularFeature(flist);
+      feature.set(RawFileType.class, file);
+      feature.set(MZType.class, 200d + id);
+      feature.set(RTType.class, (float) id);
+      feature.set(HeightType.class, height.floatValue());
+      feature.set(AreaType.class, height.floatValue() * 10);
+      feature.set(DetectionType.class, FeatureStatus.DETECTED);
+      row.addFeature(file, feature);
+    });
+    flist.addRow(row);
+  }
+
+  /**
+   * @return the names of the files with a feature for each row id
+   */
+  private static Map<Integer, Set<String>> getFeatureFiles(MZmineProject project, String name) {
+    final FeatureList result = project.getCurrentFeatureLists().stream()
+        .filter(flist -> flist.getName().equals(name)).findFirst().orElseThrow();
+    final Map<Integer, Set<String>> files = new TreeMap<>();
+    for (final FeatureListRow row : result.getRows()) {
+      files.put(row.getID(), row.getFeatures().stream().map(Feature::getRawDataFile)
+          .map(RawDataFile::getName).collect(Collectors.toSet()));
+    }
+    return files;
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_diams2;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.correlation.CorrelationData;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderTask;
+import io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation.FeatureCorrelationUtil.DIA;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.DataPointUtils;
+import io.github.mzmine.util.DataTypeUtils;
+import io.github.mzmine.util.scans.SpectraMerging;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the pseudo MS2 spectra of the task with the previous implementation, which built the
+ * MS2 chromatograms of all MS2 scans at once.
+ */
+class DiaMs2CorrTaskTest {
+
+  private static final int CYCLES = 300;
+  private static final float CYCLE_TIME = 0.02f;
+  private static final double SIGMA = 5d;
+
+  /**
+   * precursor m/z, apex cycle, height and two fragment m/zs. The second and third precursor elute
+   * across the 200th MS2 scan.
+   */
+  private static final double[][] PRECURSORS = { //
+      {300.1, 40, 1E6, 120.08, 210.12}, //
+      {450.2, 200, 5E5, 250.11, 320.15}, //
+      {612.3, 205, 8E5, 185.09, 402.21}, //
+      {700.4, 290, 4E5, 230.13, 515.27}};
+
+  @Test
+  void testPseudoSpectraMatchPreviousImplementation() {
+    final RawDataFile file = new RawDataFileImpl("dia", null, null, Color.BLACK);
+    final List<Scan> ms1Scans = new ArrayList<>();
+    for (int i = 0; i < CYCLES; i++) {
+      ms1Scans.add(addScan(file, 2 * i, 1, i * CYCLE_TIME, ms1Signals(i)));
+      addScan(file, 2 * i + 1, 2, (i + 0.5f) * CYCLE_TIME, ms2Signals(i + 0.5));
+    }
+
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, file);
+    DataTypeUtils.addDefaultChromatographicTypeColumns(flist);
+    for (int p = 0; p < PRECURSORS.length; p++) {
+      final int apex = (int) PRECURSORS[p][1];
+      final List<Scan> scans = ms1Scans.subList(Math.max(apex - 15, 0),
+          Math.min(apex + 16, CYCLES));
+      final double[] mzs = new double[scans.size()];
+      final double[] intensities = new double[scans.size()];
+      for (int i = 0; i < scans.size(); i++) {
+        mzs[i] = PRECURSORS[p][0];
+        intensities[i] = intensity(p, scans.get(i).getScanNumber() / 2d);
+      }
+      final ModularFeature feature = new ModularFeature(flist, file,
+          new SimpleIonTimeSeries(null, mzs, intensities, scans), FeatureStatus.DETECTED);
+      flist.addRow(new ModularFeatureListRow(flist, p + 1, feature));
+    }
+
+    final ParameterSet parameters = new DiaMs2CorrParameters().cloneParameterSet();
+    parameters.setParameter(DiaMs2CorrParameters.ms2ScanSelection, new ScanSelection(2));
+    parameters.setParameter(DiaMs2CorrParameters.minMs1Intensity, 5E3);
+    parameters.setParameter(DiaMs2CorrParameters.minMs2Intensity, 1E3);
+    parameters.setParameter(DiaMs2CorrParameters.numCorrPoints, 5);
+    parameters.setParameter(DiaMs2CorrParameters.minPearson, 0.8);
+    parameters.setParameter(DiaMs2CorrParameters.ms2ScanToScanAccuracy,
+        new MZTolerance(0.003, 15));
+
+    final Map<Feature, double[][]> expected = previousPseudoSpectra(flist, parameters);
+    Assertions.assertFalse(expected.isEmpty());
+
+    final DiaMs2CorrTask task = new DiaMs2CorrTask(null, Instant.now(), flist, parameters);
+    task.run();
+    Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus());
+
+    for (ModularFeature feature : flist.streamFeatures().toList()) {
+      final double[][] expectedSpectrum = expected.get(feature);
+      final List<Scan> ms2s = feature.getAllMS2FragmentScans();
+      if (expectedSpectrum == null) {
+        Assertions.assertTrue(ms2s == null || ms2s.isEmpty());
+        continue;
+      }
+      Assertions.assertEquals(1, ms2s.size());
+      final Scan ms2 = ms2s.getFirst();
+      Assertions.assertArrayEquals(expectedSpectrum[0],
+          ms2.getMzValues(new double[ms2.getNumberOfDataPoints()]));
+      Assertions.assertArrayEquals(expectedSpectrum[1],
+          ms2.getIntensityValues(new double[ms2.getNumberOfDataPoints()]));
+    }
+  }
+
+  private static Scan addScan(RawDataFile file, int scanNumber, int msLevel, float rt,
+      TreeMap<Double, Double> signals) {
+    final double[] mzs = signals.keySet().stream().mapToDouble(Double::doubleValue).toArray();
+    final double[] intensities = signals.values().stream().mapToDouble(Double::doubleValue)
+        .toArray();
+    final SimpleScan scan = new SimpleScan(file, scanNumber, msLevel, rt, null, mzs, intensities,
+        MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(50d, 1000d));
+    scan.addMassList(new ScanPointerMassList(scan));
+    Assertions.assertDoesNotThrow(() -> file.addScan(scan));
+    return scan;
+  }
+
+  private static double intensity(int precursor, double cycle) {
+    final double x = (cycle - PRECURSORS[precursor][1]) / SIGMA;
+    return PRECURSORS[precursor][2] * Math.exp(-0.5 * x * x);
+  }
+
+  private static TreeMap<Double, Double> ms1Signals(double cycle) {
+    final TreeMap<Double, Double> signals = new TreeMap<>();
+    for (int p = 0; p < PRECURSORS.length; p++) {
+      final double intensity = intensity(p, cycle);
+      if (intensity >= 1) {
+        signals.put(PRECURSORS[p][0], intensity);
+      }
+    }
+    return signals;
+  }
+
+  private static TreeMap<Double, Double> ms2Signals(double cycle) {
+    final TreeMap<Double, Double> signals = new TreeMap<>();
+    // uncorrelated background
+    signals.put(150.05, 2E4);
+    for (int p = 0; p < PRECURSORS.length; p++) {
+      final double intensity = intensity(p, cycle);
+      if (intensity >= 1) {
+        signals.put(PRECURSORS[p][3], 0.3 * intensity);
+        signals.put(PRECURSORS[p][4], 0.1 * intensity);
+      }
+    }
+    return signals;
+  }
+
+  /**
+   * The previous implementation: ms2 chromatograms of all ms2 scans built once by the chromatogram
+   * builder, rows processed one after another.
+   *
+   * @return the pseudo ms2 m/zs and intensities of each feature with a pseudo spectrum
+   */
+  private static Map<Feature, double[][]> previousPseudoSpectra(ModularFeatureList flist,
+      ParameterSet parameters) {
+    final ScanSelection ms2ScanSelection = parameters.getValue(
+        DiaMs2CorrParameters.ms2ScanSelection);
+    final double minMs1Intensity = parameters.getValue(DiaMs2CorrParameters.minMs1Intensity);
+    final double minMs2Intensity = parameters.getValue(DiaMs2CorrParameters.minMs2Intensity);
+    final int minCorrPoints = parameters.getValue(DiaMs2CorrParameters.numCorrPoints);
+    final MZTolerance mzTolerance = parameters.getValue(
+        DiaMs2CorrParameters.ms2ScanToScanAccuracy);
+    final double minPearson = parameters.getValue(DiaMs2CorrParameters.minPearson);
+
+    final ParameterSet adapParameters = MZmineCore.getConfiguration()
+        .getModuleParameters(ModularADAPChromatogramBuilderModule.class).cloneParameterSet();
+    adapParameters.setParameter(ADAPChromatogramBuilderParameters.scanSelection, ms2ScanSelection);
+    adapParameters.setParameter(ADAPChromatogramBuilderParameters.minimumConsecutiveScans,
+        minCorrPoints);
+    adapParameters.setParameter(ADAPChromatogramBuilderParameters.mzTolerance, mzTolerance);
+    adapParameters.setParameter(ADAPChromatogramBuilderParameters.suffix, "chroms");
+    adapParameters.setParameter(ADAPChromatogramBuilderParameters.minGroupIntensity,
+        minMs2Intensity / 5);
+    adapParameters.setParameter(ADAPChromatogramBuilderParameters.minHighestPoint, minMs2Intensity);
+
+    final RawDataFile file = flist.getRawDataFile(0);
+    final List<Scan> ms2Scans = List.of(ms2ScanSelection.getMatchingScans(file));
+    final MZmineProject dummyProject = new MZmineProjectImpl();
+    ModularADAPChromatogramBuilderTask.forChromatography(dummyProject, file, adapParameters, null,
+        Instant.now(), DiaMs2CorrModule.class).run();
+    final var ms2Flist = dummyProject.getCurrentFeatureLists().getFirst();
+
+    final RangeMap<Double, IonTimeSeries<?>> ms2Eics = TreeRangeMap.create();
+    ms2Flist.getRows().stream().map(row -> row.getFeature(file)).filter(Objects::nonNull)
+        .sorted(Comparator.comparingDouble(Feature::getHeight).reversed()).forEach(
+            feature -> ms2Eics.put(SpectraMerging.createNewNonOverlappingRange(ms2Eics,
+                feature.getRawDataPointsMZRange()), feature.getFeatureData()));
+
+    final Map<Feature, double[][]> spectra = new HashMap<>();
+    for (Feature feature : flist.streamFeatures().toList()) {
+      if (feature.getHeight() < minMs1Intensity) {
+        continue;
+      }
+      final double[][] shape = extractPointsAroundMaximum(feature.getHeight() * 0.1d,
+          feature.getFeatureData(), feature.getRepresentativeScan());
+      if (shape == null || shape[0].length < minCorrPoints) {
+        continue;
+      }
+      final Range<Float> rtRange = Range.closed((float) shape[0][0],
+          (float) shape[0][shape[0].length - 1]);
+      final List<Scan> ms2sInRtRange = ms2Scans.stream()
+          .filter(scan -> rtRange.contains(scan.getRetentionTime())).toList();
+      // the last scan in range, like the previous closest scan search
+      if (ms2sInRtRange.size() < minCorrPoints) {
+        continue;
+      }
+      final MassList massList = ms2sInRtRange.getLast().getMassList();
+
+      final List<IonTimeSeries<?>> eligibleEICs = new ArrayList<>();
+      for (int i = 0; i < massList.getNumberOfDataPoints(); i++) {
+        if (minMs2Intensity <= massList.getIntensityValue(i)) {
+          final IonTimeSeries<?> series = ms2Eics.get(massList.getMzValue(i));
+          if (series != null) {
+            eligibleEICs.add(series);
+          }
+        }
+      }
+
+      final DoubleArrayList ms2Mzs = new DoubleArrayList();
+      final DoubleArrayList ms2Intensities = new DoubleArrayList();
+      for (IonTimeSeries<?> eic : eligibleEICs) {
+        final int num = eic.getNumberOfValues();
+        final double[] intensities = new double[num];
+        final double[] rts = new double[num];
+        for (int i = 0; i < num; i++) {
+          intensities[i] = eic.getIntensity(i);
+          rts[i] = eic.getRetentionTime(i);
+        }
+        final CorrelationData correlationData = DIA.corrFeatureShape(shape[0], shape[1], rts,
+            intensities, minCorrPoints, 2, minMs2Intensity / 3);
+        if (correlationData == null || !correlationData.isValid()
+            || correlationData.getPearsonR() <= 0 || correlationData.getPearsonR() <= minPearson) {
+          continue;
+        }
+
+        int startIndex = -1;
+        int endIndex = -1;
+        double maxIntensity = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < num; j++) {
+          final boolean inRange = rtRange.contains(eic.getSpectra().get(j).getRetentionTime());
+          if (startIndex == -1 && inRange) {
+            startIndex = j;
+          }
+          if (startIndex != -1 && eic.getIntensity(j) > maxIntensity) {
+            maxIntensity = eic.getIntensity(j);
+          }
+          if (startIndex != -1 && !inRange) {
+            endIndex = j - 1;
+            break;
+          }
+        }
+        if (startIndex == -1) {
+          continue;
+        }
+        if (endIndex == -1) {
+          endIndex = num - 1;
+        }
+        ms2Mzs.add(FeatureDataUtils.calculateCenterMz(eic,
+            FeatureDataUtils.DEFAULT_CENTER_FUNCTION, startIndex, endIndex));
+        ms2Intensities.add(maxIntensity);
+      }
+
+      if (!ms2Mzs.isEmpty()) {
+        // spectra are sorted by m/z
+        final SimpleSpectralArrays sorted = DataPointUtils.ensureSortingMzAscendingDefault(
+            new SimpleSpectralArrays(ms2Mzs.toDoubleArray(), ms2Intensities.toDoubleArray()));
+        spectra.put(feature, new double[][]{sorted.mzs(), sorted.intensities()});
+      }
+    }
+    return spectra;
+  }
+
+  private static double[][] extractPointsAroundMaximum(double minCorrelationIntensity,
+      IonTimeSeries<? extends Scan> chromatogram, Scan maximumScan) {
+    if (maximumScan == null) {
+      return null;
+    }
+    final int index = Math.abs(Collections.binarySearch(chromatogram.getSpectra(), maximumScan));
+    int lower = 0;
+    for (int i = index; i >= 0; i--) {
+      if (chromatogram.getIntensity(i) < minCorrelationIntensity) {
+        lower = i;
+        break;
+      }
+    }
+    int upper = chromatogram.getNumberOfValues() - 1;
+    for (int i = index; i < chromatogram.getNumberOfValues(); i++) {
+      if (chromatogram.getIntensity(i) < minCorrelationIntensity) {
+        upper = i;
+        break;
+      }
+    }
+    final double[] rts = new double[upper - lower];
+    final double[] intensities = new double[upper - lower];
+    for (int i = lower; i < upper; i++) {
+      rts[i - lower] = chromatogram.getRetentionTime(i);
+      intensities[i - lower] = chromatogram.getIntensity(i);
+    }
+    return new double[][]{rts, intensities};
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_duplicatefilter;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.AreaType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.modules.dataprocessing.filter_duplicatefilter.DuplicateFilterParameters.FilterMode;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.FeatureListRowSorter;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+/**
+ * Compares the duplicate filter with the previous filter that compared each row with all following
+ * rows, on rows that chain within the m/z and RT tolerances.
+ */
+class DuplicateFilterTaskTest {
+
+  private static final MZTolerance MZ_TOLERANCE = new MZTolerance(0.005, 0);
+  private static final RTTolerance RT_TOLERANCE = new RTTolerance(0.1f, Unit.MINUTES);
+
+  private final RawDataFile raw = Mockito.mock(RawDataFile.class);
+
+  @Test
+  void testChainedRowsMatchPreviousMerging() {
+    for (final FilterMode mode : FilterMode.values()) {
+      for (final boolean requireSameId : new boolean[]{false, true}) {
+        assertFilterMatchesPrevious(createChains(), mode, requireSameId);
+        assertFilterMatchesPrevious(createDenseRows(), mode, requireSameId);
+      }
+    }
+  }
+
+  /**
+   * Each row is within the tolerances of its neighbors but not of the rows after. Heights increase
+   * or decrease along the chain, so the merged row takes the features of later rows or keeps its
+   * own.
+   */
+  private ModularFeatureList createChains() {
+    final ModularFeatureList flist = new ModularFeatureList("List", null, raw);
+    int id = 1;
+    for (int i = 0; i < 6; i++) {
+      id = addRow(flist, id, 200 + i * 0.004, 1f + i * 0.08f, 1E4 * (i + 1));
+      id = addRow(flist, id, 300 + i * 0.004, 1f + i * 0.08f, 1E4 * (6 - i));
+      // same m/z, chained only in RT
+      id = addRow(flist, id, 400, 1f + i * 0.08f, 1E4 * ((i * 7) % 6 + 1));
+    }
+    return flist;
+  }
+
+  private ModularFeatureList createDenseRows() {
+    final ModularFeatureList flist = new ModularFeatureList("List", null, raw);
+    final Random random = new Random(3);
+    int id = 1;
+    for (int i = 0; i < 300; i++) {
+      // m/z values on a grid so that some rows are only ordered by RT
+      final double mz = 300 + random.nextInt(150) * 0.001;
+      final float rt = random.nextInt(100) * 0.01f;
+      id = addRow(flist, id, mz, rt, 1E3 + random.nextInt(1_000_000));
+    }
+    return flist;
+  }
+
+  private void assertFilterMatchesPrevious(ModularFeatureList flist, FilterMode mode,
+      boolean requireSameId) {
+    final Map<Integer, RowValues> expected = switch (mode) {
+      case OLD_AVERAGE -> previousOldAverage(flist.getRows());
+      case NEW_AVERAGE -> previousMerging(flist.getRows(), false);
+      case SINGLE_FEATURE -> previousMerging(flist.getRows(), true);
+    };
+    final int numRows = flist.getNumberOfRows();
+
+    final ParameterSet parameters = new DuplicateFilterParameters().cloneParameterSet();
+    parameters.setParameter(DuplicateFilterParameters.suffix, "filtered");
+    parameters.setParameter(DuplicateFilterParameters.filterMode, mode);
+    parameters.setParameter(DuplicateFilterParameters.mzDifferenceMax, MZ_TOLERANCE);
+    parameters.setParameter(DuplicateFilterParameters.rtDifferenceMax, RT_TOLERANCE);
+    parameters.setParameter(DuplicateFilterParameters.mobilityDifferenceMax, false);
+    parameters.setParameter(DuplicateFilterParameters.requireSameIdentification, requireSameId);
+    parameters.setParameter(DuplicateFilterParameters.handleOriginal,
+        OriginalFeatureListOption.PROCESS_IN_PLACE);
+
+    final DuplicateFilterTask task = new DuplicateFilterTask(Mockito.mock(MZmineProject.class),
+        flist, parameters, null, Instant.now());
+    task.run();
+    Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus());
+
+    final Map<Integer, RowValues> actual = new TreeMap<>();
+    for (final FeatureListRow row : flist.getRows()) {
+      actual.put(row.getID(),
+          new RowValues(row.getAverageMZ(), row.getAverageRT(), row.getMaxHeight()));
+    }
+    Assertions.assertEquals(expected, actual, mode + " require same id " + requireSameId);
+    Assertions.assertTrue(actual.size() < numRows);
+  }
+
+  private int addRow(ModularFeatureList flist, int id, double mz, float rt, double height) {
+    final ModularFeature feature = new ModularFeature(flist);
+    feature.set(RawFileType.class, raw);
+    feature.set(MZType.class, mz);
+    feature.set(RTType.class, rt);
+    feature.set(HeightType.class, (float) height);
+    feature.set(AreaType.class, (float) height * 10);
+    feature.set(DetectionType.class, FeatureStatus.DETECTED);
+    flist.addRow(new ModularFeatureListRow(flist, id, feature));
+    return id + 1;
+  }
+
+  /**
+   * Rows sorted by area, each row removes all following rows within the tolerances.
+   */
+  private static Map<Integer, RowValues> previousOldAverage(List<FeatureListRow> rows) {
+    final List<FeatureListRow> sorted = new ArrayList<>(rows);
+    sorted.sort(new FeatureListRowSorter(SortingProperty.Area, SortingDirection.Descending));
+    final FeatureListRow[] rowArray = sorted.toArray(FeatureListRow[]::new);
+
+    final Map<Integer, RowValues> result = new TreeMap<>();
+    for (int i = 0; i < rowArray.length; i++) {
+      final FeatureListRow first = rowArray[i];
+      if (first == null) {
+        continue;
+      }
+      for (int j = i + 1; j < rowArray.length; j++) {
+        final FeatureListRow second = rowArray[j];
+        if (second != null && MZ_TOLERANCE.checkWithinTolerance(first.getAverageMZ(),
+            second.getAverageMZ()) && RT_TOLERANCE.checkWithinTolerance(first.getAverageRT(),
+            second.getAverageRT())) {
+          rowArray[j] = null;
+        }
+      }
+      result.put(first.getID(),
+          new RowValues(first.getAverageMZ(), first.getAverageRT(), first.getMaxHeight()));
+    }
+    return result;
+  }
+
+  /**
+   * Rows sorted by m/z, each row takes the features of all following duplicates with a larger
+   * height. The m/z window is fixed by the original row, RT is compared to the merged row.
+   *
+   * @param singleFeature also compare the m/z of the merged row. With a single raw data file, this
+   *                      is the single feature mode
+   */
+  private static Map<Integer, RowValues> previousMerging(List<FeatureListRow> rows,
+      boolean singleFeature) {
+    final List<FeatureListRow> sorted = new ArrayList<>(rows);
+    sorted.sort(new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
+    final int[] ids = new int[sorted.size()];
+    final RowValues[] values = new RowValues[sorted.size()];
+    for (int i = 0; i < values.length; i++) {
+      final FeatureListRow row = sorted.get(i);
+      ids[i] = row.getID();
+      values[i] = new RowValues(row.getAverageMZ(), row.getAverageRT(), row.getMaxHeight());
+    }
+
+    final Map<Integer, RowValues> result = new TreeMap<>();
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        continue;
+      }
+      final Range<Double> mzRange = MZ_TOLERANCE.getToleranceRange(values[i].mz());
+      for (int j = i + 1; j < values.length; j++) {
+        final RowValues second = values[j];
+        if (second == null) {
+          continue;
+        }
+        if (second.mz() < mzRange.lowerEndpoint()) {
+          continue;
+        }
+        if (second.mz() > mzRange.upperEndpoint()) {
+          break;
+        }
+        if ((!singleFeature || MZ_TOLERANCE.checkWithinTolerance(values[i].mz(), second.mz()))
+            && RT_TOLERANCE.checkWithinTolerance(values[i].rt(), second.rt())) {
+          if (values[i].height() < second.height()) {
+            values[i] = second;
+          }
+          values[j] = null;
+        }
+      }
+      result.put(ids[i], values[i]);
+    }
+    return result;
+  }
+
+  private record RowValues(double mz, float rt, float height) {
+
+  }
+}
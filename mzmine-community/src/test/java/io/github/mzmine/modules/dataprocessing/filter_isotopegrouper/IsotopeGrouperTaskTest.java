@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_isotopegrouper;
+
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.IsotopePattern;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.modules.tools.isotopeprediction.IsotopePatternCalculator;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.FeatureListRowSorter;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+/**
+ * Compares the grouping by connected components of {@link IsotopeCandidateGraph} with the previous
+ * greedy grouping over all rows.
+ */
+class IsotopeGrouperTaskTest {
+
+  private static final double ISOTOPE_DISTANCE = IsotopePatternCalculator.THIRTHEEN_C_DISTANCE;
+  private static final MZTolerance MZ_TOLERANCE = new MZTolerance(0.003, 10);
+  private static final RTTolerance RT_TOLERANCE = new RTTolerance(0.05f, Unit.MINUTES);
+  private static final int MAX_CHARGE = 2;
+
+  private final RawDataFile raw = Mockito.mock(RawDataFile.class);
+
+  @Test
+  void testOverlappingPatternsMatchPreviousGrouping() {
+    final ModularFeatureList flist = new ModularFeatureList("List", null, raw);
+    int id = 1;
+    // charge 1 and charge 2 patterns of the same main row share the isotope at +1 Da
+    final double a = 300;
+    id = addRow(flist, id, a, 5f, 1E6);
+    id = addRow(flist, id, a + ISOTOPE_DISTANCE / 2, 5f, 4E5);
+    id = addRow(flist, id, a + ISOTOPE_DISTANCE, 5f, 5E5);
+    id = addRow(flist, id, a + 1.5 * ISOTOPE_DISTANCE, 5f, 1E5);
+    id = addRow(flist, id, a + 2 * ISOTOPE_DISTANCE, 5f, 2E5);
+    id = addRow(flist, id, a - ISOTOPE_DISTANCE, 5.01f, 3E5);
+    // a second compound that overlaps with the charge 2 isotope
+    id = addRow(flist, id, a + ISOTOPE_DISTANCE / 2 + 0.0005, 5.02f, 3.5E5);
+    id = addRow(flist, id, a + ISOTOPE_DISTANCE * 1.5 + 0.0005, 5.02f, 1.5E5);
+
+    // a chain in RT: each isotope is within the RT tolerance of its neighbors but not of the main
+    // row, so one component covers more than twice the RT tolerance
+    final double b = 400;
+    id = addRow(flist, id, b, 10f, 9E5);
+    id = addRow(flist, id, b + ISOTOPE_DISTANCE, 10.04f, 8E5);
+    id = addRow(flist, id, b + 2 * ISOTOPE_DISTANCE, 10.08f, 7E5);
+    id = addRow(flist, id, b + 3 * ISOTOPE_DISTANCE, 10.12f, 6E5);
+
+    // two components with the same m/z that are just outside of the RT tolerance
+    final double c = 500;
+    id = addRow(flist, id, c, 20f, 5E5);
+    id = addRow(flist, id, c + ISOTOPE_DISTANCE, 20f, 2E5);
+    id = addRow(flist, id, c, 20.06f, 6E5);
+    id = addRow(flist, id, c + ISOTOPE_DISTANCE, 20.06f, 2.5E5);
+    addRow(flist, id, c + 2 * ISOTOPE_DISTANCE, 20.03f, 1E5);
+
+    assertGroupingMatchesPrevious(flist, false);
+  }
+
+  @Test
+  void testDenseRandomRowsMatchPreviousGrouping() {
+    for (final boolean monotonicShape : new boolean[]{false, true}) {
+      final Random random = new Random(17);
+      final ModularFeatureList flist = new ModularFeatureList("List", null, raw);
+      int id = 1;
+      for (int i = 0; i < 80; i++) {
+        // patterns of random charge with random overlaps in m/z and RT
+        final double mz = 200 + random.nextDouble() * 6;
+        final float rt = random.nextFloat() * 2f;
+        final int charge = 1 + random.nextInt(MAX_CHARGE);
+        final int numIsotopes = 1 + random.nextInt(4);
+        double height = 1E4 + random.nextDouble() * 1E6;
+        for (int n = 0; n < numIsotopes; n++) {
+          final double isotopeMz = mz + n * ISOTOPE_DISTANCE / charge
+                                   + random.nextGaussian() * 0.0008;
+          final float isotopeRt = rt + (float) random.nextGaussian() * 0.02f;
+          id = addRow(flist, id, isotopeMz, isotopeRt, height);
+          height *= 0.3 + random.nextDouble() * 0.9;
+        }
+      }
+      assertGroupingMatchesPrevious(flist, monotonicShape);
+    }
+  }
+
+  private void assertGroupingMatchesPrevious(ModularFeatureList flist, boolean monotonicShape) {
+    final Map<Integer, Pattern> expected = previousGrouping(flist.getRows(), monotonicShape);
+
+    final ParameterSet parameters = new IsotopeGrouperParameters().cloneParameterSet();
+    parameters.setParameter(IsotopeGrouperParameters.suffix, "deisotoped");
+    parameters.setParameter(IsotopeGrouperParameters.mzTolerance, MZ_TOLERANCE);
+    parameters.setParameter(IsotopeGrouperParameters.rtTolerance, RT_TOLERANCE);
+    parameters.setParameter(IsotopeGrouperParameters.mobilityTolerace, false);
+    parameters.setParameter(IsotopeGrouperParameters.monotonicShape, monotonicShape);
+    parameters.setParameter(IsotopeGrouperParameters.maximumCharge, MAX_CHARGE);
+    parameters.setParameter(IsotopeGrouperParameters.representativeIsotope,
+        IsotopeGrouperParameters.ChooseTopIntensity);
+    parameters.setParameter(IsotopeGrouperParameters.keepAllMS2, false);
+    parameters.setParameter(IsotopeGrouperParameters.handleOriginal,
+        OriginalFeatureListOption.PROCESS_IN_PLACE);
+
+    final IsotopeGrouperTask task = new IsotopeGrouperTask(Mockito.mock(MZmineProject.class),
+        flist, parameters, null, Instant.now());
+    task.run();
+    Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus());
+
+    final Map<Integer, Pattern> actual = new TreeMap<>();
+    for (final FeatureListRow row : flist.getRows()) {
+      final Feature feature = row.getFeatures().getFirst();
+      final IsotopePattern pattern = feature.getIsotopePattern();
+      if (pattern == null) {
+        actual.put(row.getID(), new Pattern(0, new double[0]));
+        continue;
+      }
+      final double[] mzs = new double[pattern.getNumberOfDataPoints()];
+      for (int i = 0; i < mzs.length; i++) {
+        mzs[i] = pattern.getMzValue(i);
+      }
+      actual.put(row.getID(), new Pattern(feature.getCharge(), mzs));
+    }
+
+    Assertions.assertEquals(expected.keySet(), actual.keySet());
+    expected.forEach((rowId, pattern) -> {
+      Assertions.assertEquals(pattern.charge(), actual.get(rowId).charge(), "row " + rowId);
+      Assertions.assertArrayEquals(pattern.mzs(), actual.get(rowId).mzs(), "row " + rowId);
+    });
+    // at least one group, otherwise the comparison is trivial
+    Assertions.assertTrue(expected.values().stream().anyMatch(p -> p.charge() > 0));
+  }
+
+  private int addRow(ModularFeatureList flist, int id, double mz, float rt, double height) {
+    final ModularFeature feature = new ModularFeature(flist);
+    feature.set(RawFileType.class, raw);
+    feature.set(MZType.class, mz);
+    feature.set(RTType.class, rt);
+    feature.set(HeightType.class, (float) height);
+    feature.set(DetectionType.class, FeatureStatus.DETECTED);
+    flist.addRow(new ModularFeatureListRow(flist, id, feature));
+    return id + 1;
+  }
+
+  /**
+   * The greedy grouping over all rows, before the rows were split into independent components.
+   * Always keeps the most intense isotope.
+   *
+   * @return the pattern of every remaining row by row id, charge 0 if the row is not grouped
+   */
+  private static Map<Integer, Pattern> previousGrouping(List<FeatureListRow> rows,
+      boolean monotonicShape) {
+    final FeatureListRowSorter rowsHeightSorter = new FeatureListRowSorter(SortingProperty.Height,
+        SortingDirection.Descending);
+    final FeatureListRowSorter rowsMzSorter = new FeatureListRowSorter(SortingProperty.MZ,
+        SortingDirection.Ascending);
+
+    final List<FeatureListRow> rowsSortedByHeight = new ArrayList<>(rows);
+    rowsSortedByHeight.sort(rowsHeightSorter);
+    final List<FeatureListRow> rowsSortedByMz = new ArrayList<>(rows);
+    rowsSortedByMz.sort(rowsMzSorter);
+
+    final Map<Integer, Pattern> result = new TreeMap<>();
+    while (!rowsSortedByHeight.isEmpty()) {
+      final FeatureListRow mostIntenseRow = rowsSortedByHeight.removeFirst();
+      final int indexMzSorted = Collections.binarySearch(rowsSortedByMz, mostIntenseRow,
+          rowsMzSorter);
+      rowsSortedByMz.remove(indexMzSorted);
+
+      int bestFitCharge = 0;
+      List<FeatureListRow> bestFitRows = null;
+      for (int charge = 1; charge <= MAX_CHARGE; charge++) {
+        final List<FeatureListRow> fittedRows = new ArrayList<>();
+        fittedRows.add(mostIntenseRow);
+        if (!monotonicShape) {
+          fitHalfPattern(mostIntenseRow, charge, -1, fittedRows, rowsSortedByMz, indexMzSorted);
+        }
+        fitHalfPattern(mostIntenseRow, charge, 1, fittedRows, rowsSortedByMz, indexMzSorted);
+        if (bestFitRows == null || fittedRows.size() > bestFitRows.size()) {
+          bestFitCharge = charge;
+          bestFitRows = fittedRows;
+        }
+      }
+
+      if (bestFitRows.size() == 1) {
+        result.put(mostIntenseRow.getID(), new Pattern(0, new double[0]));
+        continue;
+      }
+
+      final double[] mzs = bestFitRows.stream().mapToDouble(FeatureListRow::getAverageMZ).sorted()
+          .toArray();
+      bestFitRows.sort(rowsHeightSorter);
+      result.put(bestFitRows.getFirst().getID(), new Pattern(bestFitCharge, mzs));
+
+      bestFitRows.removeFirst();
+      rowsSortedByHeight.removeAll(bestFitRows);
+      rowsSortedByMz.removeAll(bestFitRows);
+    }
+    return result;
+  }
+
+  private static void fitHalfPattern(FeatureListRow row, int charge, int direction,
+      List<FeatureListRow> fittedRows, List<FeatureListRow> rowsSortedByMz, int startRowIndex) {
+    final double mainMZ = row.getAverageMZ();
+    final float mainRT = row.getAverageRT();
+    final double absoluteMzTolerance = MZ_TOLERANCE.getMzToleranceForMass(mainMZ);
+
+    boolean followingPeakFound;
+    int n = 1;
+    do {
+      followingPeakFound = false;
+      final List<FeatureListRow> goodCandidates = new ArrayList<>();
+      for (int ind = startRowIndex; ind < rowsSortedByMz.size() && ind >= 0; ind += direction) {
+        final FeatureListRow candidate = rowsSortedByMz.get(ind);
+        final double isotopeMZ =
+            candidate.getAverageMZ() - ISOTOPE_DISTANCE * direction * n / charge;
+        final double deltaMZ = isotopeMZ - mainMZ;
+        if (deltaMZ * direction > absoluteMzTolerance) {
+          break;
+        }
+        if (Math.abs(deltaMZ) <= absoluteMzTolerance && RT_TOLERANCE.checkWithinTolerance(
+            candidate.getAverageRT(), mainRT)) {
+          goodCandidates.add(candidate);
+        }
+      }
+      if (!goodCandidates.isEmpty()) {
+        fittedRows.addAll(goodCandidates);
+        n++;
+        followingPeakFound = true;
+      }
+    } while (followingPeakFound);
+  }
+
+  private record Pattern(int charge, double[] mzs) {
+
+    @Override
+    public String toString() {
+      return "Pattern{charge=" + charge + ", mzs=" + Arrays.toString(mzs) + '}';
+    }
+  }
+}
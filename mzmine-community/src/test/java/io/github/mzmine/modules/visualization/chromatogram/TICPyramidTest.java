@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.chromatogram;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Scan;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class TICPyramidTest {
+
+  private static final int NUM_SCANS = 1000;
+  private final Range<Double> mzRange = Range.closed(0d, 1000d);
+  private List<Scan> scans;
+  private double[] intensities;
+
+  @BeforeEach
+  void setUp() {
+    scans = new ArrayList<>();
+    intensities = new double[NUM_SCANS];
+    for (int i = 0; i < NUM_SCANS; i++) {
+      intensities[i] = 100 + Math.sin(i / 10d) * 50 + (i == 503 ? 1000 : 0);
+      final Scan scan = Mockito.mock(Scan.class);
+      Mockito.when(scan.getRetentionTime()).thenReturn(i / 10f);
+      Mockito.when(scan.getBasePeakMz()).thenReturn(500d);
+      Mockito.when(scan.getBasePeakIntensity()).thenReturn(intensities[i]);
+      scans.add(scan);
+    }
+  }
+
+  @Test
+  void testEnvelopeKeepsExtremes() {
+    final TICPyramid pyramid = TICPyramid.compute(scans, mzRange, TICPlotType.BASEPEAK,
+        () -> false);
+    Assertions.assertNotNull(pyramid);
+    Assertions.assertEquals(1100d, pyramid.getMaxIntensity(), 1e-9);
+    Assertions.assertEquals(50d, pyramid.getMinIntensity(), 0.01);
+
+    // few scans in range are displayed completely
+    Assertions.assertNull(pyramid.getEnvelopeIndices(10, 15, 100));
+
+    final int[] envelope = pyramid.getEnvelopeIndices(0, 100, 50);
+    Assertions.assertNotNull(envelope);
+    Assertions.assertTrue(envelope.length <= 2 * 50 + 4);
+    // sorted, first and last scan and the spike are kept
+    for (int i = 1; i < envelope.length; i++) {
+      Assertions.assertTrue(envelope[i - 1] < envelope[i]);
+    }
+    Assertions.assertEquals(0, envelope[0]);
+    Assertions.assertEquals(NUM_SCANS - 1, envelope[envelope.length - 1]);
+    Assertions.assertTrue(Arrays.stream(envelope).anyMatch(i -> i == 503));
+  }
+
+  @Test
+  void testCanceled() {
+    final AtomicBoolean canceled = new AtomicBoolean(true);
+    Assertions.assertNull(
+        TICPyramid.compute(scans, mzRange, TICPlotType.BASEPEAK, canceled::get));
+  }
+}
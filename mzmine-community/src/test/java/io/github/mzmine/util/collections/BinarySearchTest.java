@@ -117,4 +117,21 @@ class BinarySearchTest {
     assertEquals(5, BinarySearch.binarySearch(data, 5, DefaultTo.MINUS_INSERTION_POINT));
     assertEquals(-7, BinarySearch.binarySearch(data, 5.01, DefaultTo.MINUS_INSERTION_POINT));
   }
-}
\ No newline at end of file
+
+  @Test
+  void lowerBound() {
+    assertEquals(0, BinarySearch.lowerBound(data, -1));
+    assertEquals(1, BinarySearch.lowerBound(data, 0.5));
+    assertEquals(5, BinarySearch.lowerBound(data, 5));
+    assertEquals(10, BinarySearch.lowerBound(data, 9.5));
+    assertEquals(3, BinarySearch.lowerBound(data, 3, 6, 1));
+    assertEquals(6, BinarySearch.lowerBound(data, 3, 6, 8));
+
+    // duplicates resolve to the first occurrence
+    final float[] duplicates = {1f, 2f, 2f, 2f, 3f};
+    assertEquals(1, BinarySearch.lowerBound(duplicates, 2f));
+    assertEquals(4, BinarySearch.lowerBound(duplicates, Math.nextUp(2f)));
+    assertEquals(5, BinarySearch.lowerBound(duplicates, 4f));
+    assertEquals(0, BinarySearch.lowerBound(new float[0], 4f));
+  }
+}
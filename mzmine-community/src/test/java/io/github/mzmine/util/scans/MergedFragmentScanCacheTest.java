@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.parameters.parametertypes.combowithinput.MsLevelFilter;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.scans.FragmentScanSelection.IncludeInputSpectra;
+import io.github.mzmine.util.scans.MergedFragmentScanCache.Settings;
+import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class MergedFragmentScanCacheTest {
+
+  private final Settings settings = new Settings(new MZTolerance(0.005, 10), true,
+      IncludeInputSpectra.ALL, IntensityMergingType.MAXIMUM, MsLevelFilter.ALL_LEVELS, null);
+
+  private ModularFeatureList flist;
+  private List<Scan> scans;
+  private List<Scan> merged;
+  private AtomicInteger computed;
+  private Supplier<List<Scan>> computeFn;
+
+  @BeforeEach
+  void setUp() {
+    flist = new ModularFeatureList("List", null, Mockito.mock(RawDataFile.class));
+    scans = List.of(Mockito.mock(Scan.class), Mockito.mock(Scan.class));
+    merged = List.of(Mockito.mock(Scan.class));
+    computed = new AtomicInteger();
+    computeFn = () -> {
+      computed.incrementAndGet();
+      return merged;
+    };
+  }
+
+  private FeatureListRow row(int id) {
+    return new ModularFeatureListRow(flist, id);
+  }
+
+  @Test
+  void testReuseForSameScans() {
+    final MergedFragmentScanCache cache = flist.getMergedFragmentScanCache();
+    final FeatureListRow row = row(1);
+
+    Assertions.assertEquals(merged, cache.getOrCompute(row, settings, scans, computeFn));
+    Assertions.assertEquals(merged,
+        cache.getOrCompute(row, settings, List.copyOf(scans), computeFn));
+    Assertions.assertEquals(1, computed.get());
+
+    // other scan instances invalidate the entry
+    cache.getOrCompute(row, settings, List.of(scans.get(0)), computeFn);
+    Assertions.assertEquals(2, computed.get());
+  }
+
+  @Test
+  void testSettingsAreSeparated() {
+    final MergedFragmentScanCache cache = flist.getMergedFragmentScanCache();
+    final FeatureListRow row = row(1);
+    final Settings withStorage = new Settings(settings.mzTol(), settings.mergeSeparateEnergies(),
+        settings.inputSpectra(), settings.intensityMergeType(), settings.msLevelFilter(),
+        MemoryMapStorage.create());
+
+    cache.getOrCompute(row, settings, scans, computeFn);
+    // spectra in a storage are never returned to selections without storage and vice versa
+    cache.getOrCompute(row, withStorage, scans, computeFn);
+    Assertions.assertEquals(2, computed.get());
+    Assertions.assertEquals(2, cache.size());
+  }
+
+  @Test
+  void testBoundedAndClearable() {
+    final MergedFragmentScanCache cache = new MergedFragmentScanCache(2);
+    final FeatureListRow first = row(1);
+    cache.getOrCompute(first, settings, scans, computeFn);
+    cache.getOrCompute(row(2), settings, scans, computeFn);
+    cache.getOrCompute(row(3), settings, scans, computeFn);
+    Assertions.assertEquals(2, cache.size());
+
+    // least recently used entry was removed
+    cache.getOrCompute(first, settings, scans, computeFn);
+    Assertions.assertEquals(4, computed.get());
+
+    cache.clear();
+    Assertions.assertEquals(0, cache.size());
+  }
+
+  @Test
+  void testCachePerFeatureList() {
+    final ModularFeatureList other = new ModularFeatureList("Other", null,
+        Mockito.mock(RawDataFile.class));
+    Assertions.assertSame(flist.getMergedFragmentScanCache(), flist.getMergedFragmentScanCache());
+    Assertions.assertNotSame(flist.getMergedFragmentScanCache(),
+        other.getMergedFragmentScanCache());
+  }
+}
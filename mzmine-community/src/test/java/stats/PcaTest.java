@@ -28,12 +28,18 @@ package stats;
 
 import io.github.mzmine.modules.dataanalysis.pca_new.PCAResult;
 import io.github.mzmine.modules.dataanalysis.pca_new.PCAUtils;
+import io.github.mzmine.modules.dataanalysis.pca_new.RandomizedSVD;
 import io.github.mzmine.modules.dataanalysis.utils.StatisticUtils;
 import io.github.mzmine.modules.dataanalysis.utils.scaling.RangeScalingFunction;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.logging.Logger;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.QRDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 public class PcaTest {
@@ -78,5 +84,92 @@ public class PcaTest {
     logger.info(() -> STR."Loadings: \{pcaResult.getLoadingsMatrix().toString()}");
   }
 
+  @Test
+  void randomizedSvdMatchesFullSvd() {
+    final double[][] data = Arrays.stream(rows).map(str -> str.split("\\s+"))
+        .map(strings -> Arrays.stream(strings).mapToDouble(Double::valueOf).toArray())
+        .toArray(double[][]::new);
+    final RealMatrix centered = StatisticUtils.center(new Array2DRowRealMatrix(data), false);
+    final int n = centered.getRowDimension();
+    final int m = centered.getColumnDimension();
+    final double[] columnMajor = new double[n * m];
+    for (int col = 0; col < m; col++) {
+      System.arraycopy(centered.getColumn(col), 0, columnMajor, col * n, n);
+    }
+
+    final PCAResult full = new PCAResult(new SingularValueDecomposition(centered));
+    final PCAResult truncated = RandomizedSVD.compute(columnMajor, n, m, 3);
+
+    Assertions.assertEquals(3, truncated.componentCount());
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertEquals(full.s().getEntry(i, i), truncated.s().getEntry(i, i), 1E-6);
+      // components are equal up to the sign
+      final double dot = full.u().getColumnVector(i).dotProduct(truncated.u().getColumnVector(i));
+      Assertions.assertEquals(1d, Math.abs(dot), 1E-6);
+    }
+  }
+
+  @Test
+  void randomizedSvdWithSmallSketchMatchesFullSvd() {
+    // rank 3 signal with noise, the sketch of 3 + 5 columns is much smaller than min(n, m)
+    final int n = 60;
+    final int m = 80;
+    final int numComponents = 3;
+    final int oversampling = 5;
+    final double[] singularValues = {100, 50, 25};
+    final Random random = new Random(7);
+    final RealMatrix left = new QRDecomposition(randomMatrix(random, n, numComponents)).getQ()
+        .getSubMatrix(0, n - 1, 0, numComponents - 1);
+    final RealMatrix right = new QRDecomposition(randomMatrix(random, m, numComponents)).getQ()
+        .getSubMatrix(0, m - 1, 0, numComponents - 1);
+    final RealMatrix data = left.multiply(MatrixUtils.createRealDiagonalMatrix(singularValues))
+        .multiply(right.transpose()).add(randomMatrix(random, n, m).scalarMultiply(0.01));
+
+    final double[] columnMajor = new double[n * m];
+    for (int col = 0; col < m; col++) {
+      System.arraycopy(data.getColumn(col), 0, columnMajor, col * n, n);
+    }
+
+    final PCAResult full = new PCAResult(new SingularValueDecomposition(data));
+    final PCAResult truncated = RandomizedSVD.compute(columnMajor, n, m, numComponents,
+        oversampling, 2);
+
+    Assertions.assertTrue(numComponents + oversampling < Math.min(n, m));
+    Assertions.assertEquals(numComponents, truncated.componentCount());
+    Assertions.assertEquals(n, truncated.u().getRowDimension());
+    Assertions.assertEquals(m, truncated.v().getRowDimension());
+    for (int i = 0; i < numComponents; i++) {
+      final double expected = full.s().getEntry(i, i);
+      Assertions.assertEquals(expected, truncated.s().getEntry(i, i), expected * 1E-6);
+      // components and loadings are equal up to the same sign
+      final double dotU = full.u().getColumnVector(i).dotProduct(truncated.u().getColumnVector(i));
+      final double dotV = full.v().getColumnVector(i).dotProduct(truncated.v().getColumnVector(i));
+      Assertions.assertEquals(1d, Math.abs(dotU), 1E-6);
+      Assertions.assertEquals(dotU, dotV, 1E-6);
+    }
+
+    // scores of the first components
+    final RealMatrix expectedScores = full.projectDataToScores(2);
+    final RealMatrix scores = truncated.projectDataToScores(2);
+    for (int col = 0; col < 2; col++) {
+      final double sign = Math.signum(
+          expectedScores.getColumnVector(col).dotProduct(scores.getColumnVector(col)));
+      for (int row = 0; row < n; row++) {
+        Assertions.assertEquals(expectedScores.getEntry(row, col), sign * scores.getEntry(row, col),
+            1E-4);
+      }
+    }
+  }
+
+  private static RealMatrix randomMatrix(Random random, int rows, int cols) {
+    final RealMatrix matrix = new Array2DRowRealMatrix(rows, cols);
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        matrix.setEntry(row, col, random.nextGaussian());
+      }
+    }
+    return matrix;
+  }
+
 
 }
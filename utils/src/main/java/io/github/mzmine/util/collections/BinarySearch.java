@@ -335,6 +335,74 @@ public class BinarySearch {
     };
   }
 
+  /**
+   * Lower bound search in sorted data, duplicates are resolved to their first occurrence.
+   *
+   * @param sorted data sorted ascending
+   * @param key    search for this value
+   * @return index of the first value >= key or the length of the array if all values are smaller
+   */
+  public static int lowerBound(double[] sorted, double key) {
+    return lowerBound(sorted, 0, sorted.length, key);
+  }
+
+  /**
+   * Lower bound search in sorted data, duplicates are resolved to their first occurrence.
+   *
+   * @param sorted           data sorted ascending
+   * @param fromIndex        inclusive lower end
+   * @param toIndexExclusive exclusive upper end
+   * @param key              search for this value
+   * @return index of the first value >= key or toIndexExclusive if all values are smaller
+   */
+  public static int lowerBound(double[] sorted, int fromIndex, int toIndexExclusive, double key) {
+    int low = fromIndex;
+    int high = toIndexExclusive;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sorted[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Lower bound search in sorted data, duplicates are resolved to their first occurrence.
+   *
+   * @param sorted data sorted ascending
+   * @param key    search for this value
+   * @return index of the first value >= key or the length of the array if all values are smaller
+   */
+  public static int lowerBound(float[] sorted, float key) {
+    return lowerBound(sorted, 0, sorted.length, key);
+  }
+
+  /**
+   * Lower bound search in sorted data, duplicates are resolved to their first occurrence.
+   *
+   * @param sorted           data sorted ascending
+   * @param fromIndex        inclusive lower end
+   * @param toIndexExclusive exclusive upper end
+   * @param key              search for this value
+   * @return index of the first value >= key or toIndexExclusive if all values are smaller
+   */
+  public static int lowerBound(float[] sorted, int fromIndex, int toIndexExclusive, float key) {
+    int low = fromIndex;
+    int high = toIndexExclusive;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sorted[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
   private static int closestValue(final double value, final int toIndex,
       final IntToDoubleFunction valueAtIndexProvider, final int index) {
     if (index >= toIndex) {